@@ -33,6 +33,14 @@ import java.time.LocalDate;
 import static fr.insalyonif.hubert.model.CreateDynamique.*;
 
 public class Controller {
+    /**
+     * Propriété système qui règle la hiérarchie de contraction au chargement d'une carte. Elle est
+     * préparée par défaut, avec les étiquettes de hubs qui en sont dérivées : les deux ne sont
+     * construites qu'au premier chargement d'une carte, puis relues depuis le dossier des fichiers
+     * dérivés. Mettre la propriété à {@code false} s'en passe et garde la contraction des chaînes.
+     */
+    public static final String CONTRACTION_HIERARCHY_PROPERTY = "hubert.contractionHierarchy";
+
     private CityMap cityMap;
 
     private int sizeGraph;
@@ -44,6 +52,9 @@ public class Controller {
     private static LocalDate globalDate;
     private String fileName;
 
+    // Si vrai, un clic est rattaché à l'intersection desservable la plus proche plutôt que refusé
+    private boolean snapToReachable = false;
+
     public static LocalDate getGlobalDate() {
         return globalDate;
     }
@@ -74,6 +85,14 @@ public class Controller {
         this.sizeGraph = sizeGraph;
     }
 
+    public boolean isSnapToReachable() {
+        return snapToReachable;
+    }
+
+    public void setSnapToReachable(boolean snapToReachable) {
+        this.snapToReachable = snapToReachable;
+    }
+
     public ArrayList<DeliveryTour> getListeDelivery() {
         return listeDelivery;
     }
@@ -82,6 +101,10 @@ public class Controller {
         this.listeDelivery = listeDelivery;
     }
 
+    private static boolean useContractionHierarchy() {
+        return Boolean.parseBoolean(System.getProperty(CONTRACTION_HIERARCHY_PROPERTY, "true"));
+    }
+
     public Controller(String path) {
         //initialize class variables
         cityMap = new CityMap();
@@ -103,7 +126,18 @@ public class Controller {
                 fileName = fileName.substring(0, extensionIndex);
             }
 
-            cityMap.loadFromXML(xmlMap);
+            cityMap.load(xmlMap);
+            cityMap.renumberForLocality();
+            // Avec une hiérarchie, les recherches vont d'un point à l'autre : la contraction des
+            // chaînes ne sert qu'aux recherches sur tout le graphe. Les étiquettes de hubs en sont
+            // dérivées et remplissent les matrices de distances des tournées sans recherche
+            if (useContractionHierarchy()) {
+                cityMap.prepareContractionHierarchy(xmlMap);
+                cityMap.prepareHubLabels(xmlMap);
+            } else {
+                cityMap.contractChains();
+            }
+            cityMap.prepareSearchCache(xmlMap);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -156,6 +190,9 @@ public class Controller {
 
         deliveryTour.getDijkstra().getDeliveryRequest().remove(interToDelete);
         deliveryTour.getDijkstraInverse().getDeliveryRequest().remove(interToDelete);
+        // Les arbres des recherches lancées depuis le point supprimé ne servent plus à cette tournée
+        deliveryTour.getDijkstra().releaseTree(interToDelete);
+        deliveryTour.getDijkstraInverse().releaseTree(interToDelete);
         deliveryTour.getRequests().remove(requestToDelete);
         deliveryTour.clearCheminsDij();
         deliveryTour.majCheminsDij(deliveryTour.getDijkstra().getChemins());
@@ -223,7 +260,9 @@ public class Controller {
         double d = 0;
         List<Integer> optimalPath = new ArrayList<>();
         optimalPath.add(0,0);
-        Graph g = new CompleteGraph(deliveryTour.getCheminDij(), deliveryTour.getRequests(), cityMap);
+        // Une seule matrice pour toute la tournée : chaque sous-problème n'en garde que ses lignes
+        DistanceMatrix matrix = DistanceMatrix.forTour(cityMap, deliveryTour.getRequests());
+        Graph g = new CompleteGraph(matrix);
         CreateDynamique dynamique = new CreateDynamique(g);
         int nextStart = 0;
         ArrayList<DeliveryRequest> nextrequests = new ArrayList<>();
@@ -245,7 +284,7 @@ public class Controller {
                 for (int request = 0; request < nextrequests.size(); request++) {
 //                    rTemp.remove(0);
                     rTemp.add(nextrequests.get(request));
-                    Graph g8 = new CompleteGraph(deliveryTour.getCheminDij(), rTemp, cityMap);
+                    Graph g8 = new CompleteGraph(matrix, DistanceMatrix.tourRows(deliveryTour.getRequests(), rTemp));
                     CreateDynamique dynamique8 = new CreateDynamique(g8);
                     int n = g8.getNbVertices() - 1;
                     int s = dynamique8.createSet(n); // s contains all integer values ranging between 1 and n
@@ -264,7 +303,7 @@ public class Controller {
                 }
             } else {
 
-                Graph g8 = new CompleteGraph(deliveryTour.getCheminDij(), rTemp, cityMap);
+                Graph g8 = new CompleteGraph(matrix, DistanceMatrix.tourRows(deliveryTour.getRequests(), rTemp));
                 CreateDynamique dynamique8 = new CreateDynamique(g8);
                 int n = g8.getNbVertices();
                 int s = dynamique8.createSet(n); // s contains all integer values ranging between 1 and n
@@ -307,7 +346,7 @@ public class Controller {
                         rTemp.remove(0);
                     }
                     rTemp.add(nextrequests.get(request));
-                    Graph g9 = new CompleteGraph(deliveryTour.getCheminDij(), rTemp, cityMap);
+                    Graph g9 = new CompleteGraph(matrix, DistanceMatrix.tourRows(deliveryTour.getRequests(), rTemp));
                     CreateDynamique dynamique9 = new CreateDynamique(g9);
                     int n = g9.getNbVertices();
                     if (nextStart !=0){
@@ -329,7 +368,7 @@ public class Controller {
                 }
             } else {
 
-                Graph g9 = new CompleteGraph(deliveryTour.getCheminDij(), rTemp, cityMap);
+                Graph g9 = new CompleteGraph(matrix, DistanceMatrix.tourRows(deliveryTour.getRequests(), rTemp));
                 CreateDynamique dynamique9 = new CreateDynamique(g9);
                 int n = g9.getNbVertices();
                 int s = dynamique9.createSet(n); // s contains all integer values ranging between 1 and n
@@ -368,7 +407,7 @@ public class Controller {
                         rTemp.remove(0);
                     }
                     rTemp.add(nextrequests.get(request));
-                    Graph g10 = new CompleteGraph(deliveryTour.getCheminDij(), rTemp, cityMap);
+                    Graph g10 = new CompleteGraph(matrix, DistanceMatrix.tourRows(deliveryTour.getRequests(), rTemp));
                     CreateDynamique dynamique10 = new CreateDynamique(g10);
                     int n = g10.getNbVertices();
                     if (nextStart !=0){
@@ -390,7 +429,7 @@ public class Controller {
                 }
             } else {
 
-                Graph g10 = new CompleteGraph(deliveryTour.getCheminDij(), rTemp, cityMap);
+                Graph g10 = new CompleteGraph(matrix, DistanceMatrix.tourRows(deliveryTour.getRequests(), rTemp));
                 CreateDynamique dynamique10 = new CreateDynamique(g10);
                 int n = g10.getNbVertices();
                 int s = dynamique10.createSet(n); // s contains all integer values ranging between 1 and n
@@ -421,7 +460,7 @@ public class Controller {
             rTemp.addAll(requests11);
 
 
-            Graph g11 = new CompleteGraph(deliveryTour.getCheminDij(), rTemp, cityMap);
+            Graph g11 = new CompleteGraph(matrix, DistanceMatrix.tourRows(deliveryTour.getRequests(), rTemp));
             CreateDynamique dynamique11 = new CreateDynamique(g11);
             int n = g11.getNbVertices();
             int s = dynamique11.createSet(n); // s contains all integer values ranging between 1 and n
@@ -459,7 +498,9 @@ public class Controller {
         DeliveryTour deliveryTour= listeDelivery.get(idDeliveryTour);
         if(deliveryIHM.getLatDouble()!=0 && deliveryIHM.getLngDouble()!=0) {
 
-            Intersection intersectionPlusProche = trouverIntersectionPlusProche(deliveryIHM.getLatDouble(), deliveryIHM.getLngDouble(), cityMap.getIntersections());
+            Intersection intersectionPlusProche = snapToReachable
+                    ? trouverIntersectionPlusProche(deliveryIHM.getLatDouble(), deliveryIHM.getLngDouble(), cityMap.getIntersections(), cityMap::isReachableFromWareHouse)
+                    : trouverIntersectionPlusProche(deliveryIHM.getLatDouble(), deliveryIHM.getLngDouble(), cityMap.getIntersections());
 
             // Afficher les résultats
             System.out.println("Coordonnées de l'emplacement donné : " + deliveryIHM.getLatDouble() + ", " + deliveryIHM.getLngDouble());
@@ -479,9 +520,14 @@ public class Controller {
             }
 
             if (!intersectionExist) {
+                // Hors de la composante de l'entrepôt, aucun aller-retour n'existe : inutile de lancer Dijkstra
+                if (!cityMap.isReachableFromWareHouse(intersectionPlusProche)) {
+                    return 1; //Error -> Non accessible
+                }
 
                 boolean b1 = deliveryTour.getDijkstra().runDijkstra(intersectionPlusProche, sizeGraph);
                 boolean b2 = deliveryTour.getDijkstraInverse().runDijkstra(intersectionPlusProche, sizeGraph);
+                cityMap.getSearchCache().flush();
 
                 //Si un des deux false alors pop up BOOL1 && BOOL2
                 if (b1 && b2) {
@@ -553,6 +599,38 @@ public class Controller {
         return intersectionPlusProche;
     }
 
+    /**
+     * Trouve l'intersection la plus proche parmi celles qui satisfont un filtre,
+     * par exemple celles qui peuvent être desservies depuis l'entrepôt.
+     *
+     * @param lat           La latitude de l'emplacement.
+     * @param lng           La longitude de l'emplacement.
+     * @param intersections Les intersections candidates.
+     * @param filtre        Le filtre que l'intersection retenue doit satisfaire.
+     * @return L'intersection la plus proche satisfaisant le filtre, ou null s'il n'y en a aucune.
+     */
+    public static Intersection trouverIntersectionPlusProche(double lat, double lng, List<Intersection> intersections,
+                                                             java.util.function.Predicate<Intersection> filtre) {
+        if (intersections == null) {
+            return null;
+        }
+
+        Intersection intersectionPlusProche = null;
+        double distanceMin = Double.MAX_VALUE;
+        for (Intersection intersection : intersections) {
+            if (!filtre.test(intersection)) {
+                continue;
+            }
+            double distanceActuelle = distance(lat, lng, intersection.getLatitude(), intersection.getLongitude());
+            if (distanceActuelle < distanceMin) {
+                distanceMin = distanceActuelle;
+                intersectionPlusProche = intersection;
+            }
+        }
+
+        return intersectionPlusProche;
+    }
+
     protected static double distance(double lat1, double lng1, double lat2, double lng2) {
         double earthRadius = 6371; // Rayon de la Terre en kilomètres
 
@@ -650,6 +728,7 @@ public class Controller {
     public void loadArchiveFile(String path) throws Exception {
         // Création d'une instance de File pour le fichier XML
         listeDelivery.clear();
+        cityMap.getShortestPathTrees().clear();
 
         File xmlFile = new File(path);
 
@@ -691,6 +770,7 @@ public class Controller {
 
             //Add the delivery requests
             NodeList deliveryRequestList = deliveryTourElement.getElementsByTagName("deliveryRequest");
+            List<DeliveryRequest> requests = new ArrayList<>();
             for (int j = 0; j < deliveryRequestList.getLength(); j++) {
                 Element deliveryRequest = (Element) deliveryRequestList.item(j);
                 Element deliveryLocation = (Element) deliveryRequest.getElementsByTagName("deliveryLocation").item(0);
@@ -706,36 +786,67 @@ public class Controller {
                 Intersection intersectionPlusProche = cityMap.findIntersectionByID((long) idInter);
                 System.out.println(intersectionPlusProche );
 
-                boolean b1 = listeDelivery.get(i).getDijkstra().runDijkstra(intersectionPlusProche, sizeGraph);
-                boolean b2 = listeDelivery.get(i).getDijkstraInverse().runDijkstra(intersectionPlusProche, sizeGraph);
-
-
+                System.out.println(timeWindow.getAttribute("startTime"));
+                int startTime = Integer.parseInt(timeWindow.getAttribute("startTime"));
+                int endTime = Integer.parseInt(timeWindow.getAttribute("endTime"));
+                TimeWindow timeWindowToCreate = new TimeWindow(startTime,endTime);
+                requests.add(new DeliveryRequest(intersectionPlusProche,timeWindowToCreate));
+            }
 
-                if(b1 && b2) {
-                    System.out.println(timeWindow.getAttribute("startTime"));
-                    int startTime = Integer.parseInt(timeWindow.getAttribute("startTime"));
-                    int endTime = Integer.parseInt(timeWindow.getAttribute("endTime"));
-                    TimeWindow timeWindowToCreate = new TimeWindow(startTime,endTime);
+            // Les recherches de tous les points de la tournée sont lancées ensemble, puis la tournée est optimisée une fois
+            List<DeliveryRequest> accepted = new ParallelMatrixBuilder().addRequests(listeDelivery.get(i), requests, cityMap);
+            if (!accepted.isEmpty()) {
+                List<Chemin> bestChemin = UseDynamic(listeDelivery.get(i));
 
+                listeDelivery.get(i).setPaths(bestChemin);
+                MAJDeliveryPointList(i);
+            }
 
-                    listeDelivery.get(i).clearCheminsDij();
-                    listeDelivery.get(i).majCheminsDij(listeDelivery.get(i).getDijkstra().getChemins());
-                    listeDelivery.get(i).majCheminsDij(listeDelivery.get(i).getDijkstraInverse().getChemins());
-                    DeliveryRequest deli = new DeliveryRequest(intersectionPlusProche,timeWindowToCreate);
-                    listeDelivery.get(i).getRequests().add(deli);
+        }
+    }
 
-                    List<Chemin> bestChemin = UseDynamic(listeDelivery.get(i));
 
-                    listeDelivery.get(i).setPaths(bestChemin);
-                    MAJDeliveryPointList(i);
+    /**
+     * Change la longueur d'un segment de la carte, pour pénaliser une rue ou la fermer en pratique
+     * par une longueur assez grande, puis recalcule les chemins et l'ordre de toutes les tournées.
+     * La carte reconstruit son graphe sans refaire la partition de sa recherche sur partition,
+     * préparée au premier changement : la hiérarchie de contraction, qui ne vaut que pour les
+     * anciennes longueurs, est abandonnée.
+     *
+     * @param segment le segment de la carte à modifier.
+     * @param length  la nouvelle longueur, en kilomètres.
+     * @throws IllegalArgumentException si la longueur est négative ou infinie : un segment
+     *                                  infranchissable changerait les composantes de la carte.
+     */
+    public void changeSegmentLength(RoadSegment segment, double length) {
+        if (!(length >= 0) || Double.isInfinite(length)) {
+            throw new IllegalArgumentException("Longueur de segment invalide : " + length);
+        }
+        segment.setLength(length);
+        cityMap.updateSegmentLengths();
+        if (cityMap.getCustomizableRouting() == null) {
+            cityMap.prepareCustomizableRouting();
+        }
 
-                }
+        // Les arbres des recherches ont été abandonnés avec les anciennes longueurs : chaque tournée est refaite
+        sizeGraph = cityMap.getIntersections().size();
+        for (int i = 0; i < listeDelivery.size(); i++) {
+            DeliveryTour deliveryTour = listeDelivery.get(i);
+            List<DeliveryRequest> requests = new ArrayList<>(deliveryTour.getRequests());
+            deliveryTour.getRequests().clear();
+            deliveryTour.setDijkstra(new Dijkstra(sizeGraph, cityMap));
+            deliveryTour.setDijkstraInverse(new DijkstraInverse(sizeGraph, cityMap));
+            List<DeliveryRequest> accepted = new ParallelMatrixBuilder().addRequests(deliveryTour, requests, cityMap);
+            if (!accepted.isEmpty()) {
+                deliveryTour.setPaths(UseDynamic(deliveryTour));
+                MAJDeliveryPointList(i);
+                computeDeliveryTime(i);
+            } else {
+                deliveryTour.setPaths(new ArrayList<>());
             }
-
         }
     }
 
-
     public DeliveryRequest computeDeliveryTime(int idDeliveryTour){
         DeliveryTour deliveryTour = this.getListeDelivery().get(idDeliveryTour);
         ArrayList<DeliveryRequest> deliveryRequests = deliveryTour.getRequests();
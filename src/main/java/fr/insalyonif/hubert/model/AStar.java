@@ -0,0 +1,184 @@
+package fr.insalyonif.hubert.model;
+
+/**
+ * Recherche A* d'un plus court chemin entre deux intersections, par exemple pour recalculer
+ * un seul trajet d'une tournée sans relancer une recherche vers toute la carte.
+ *
+ * <p>L'estimation est la distance orthodromique (haversine) en mètres jusqu'à la destination,
+ * multipliée par le plus petit rapport longueur / distance à vol d'oiseau des segments de la
+ * carte. Un segment ne peut donc jamais être plus court que ce que l'estimation suppose :
+ * l'estimation est admissible et cohérente, et le coût trouvé est celui de Dijkstra. À coût
+ * égal, le chemin retenu peut différer.
+ *
+ * <p>Si la carte a des repères ({@link CityMap#prepareLandmarks(String, int)}), l'estimation est
+ * le maximum de cette borne et de la borne des {@link Landmarks} (recherche ALT), bien plus
+ * serrée. Un nœud déjà fixé peut alors être rouvert si un chemin plus court y mène, ce qui
+ * garantit le coût optimal même avec une estimation seulement admissible.
+ *
+ * <p>La recherche parcourt le graphe compressé de la carte tel qu'il est à la construction ;
+ * un objet AStar doit être recréé si la carte est rechargée ou renumérotée.
+ */
+public class AStar {
+    /**
+     * Rayon moyen de la Terre, en mètres.
+     */
+    public static final double EARTH_RADIUS = 6371000;
+
+    private final CityMap cityMap;
+    private final CompressedGraph graph;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cosLatitudes;
+    private final double ratio;
+    private final Landmarks landmarks;
+    private int nbSettled;
+
+    /**
+     * Constructeur de la classe AStar. Parcourt une fois les segments pour calculer le rapport
+     * de l'estimation, et reprend les repères de la carte s'ils ont été préparés.
+     *
+     * @param cityMap la carte de la ville.
+     */
+    public AStar(CityMap cityMap) {
+        this.cityMap = cityMap;
+        this.graph = cityMap.getCompressedGraph();
+        int n = graph.getNbVertices();
+        this.latitudes = new double[n];
+        this.longitudes = new double[n];
+        this.cosLatitudes = new double[n];
+        for (Intersection intersection : cityMap.getIntersections()) {
+            int u = intersection.getPos();
+            latitudes[u] = Math.toRadians(intersection.getLatitude());
+            longitudes[u] = Math.toRadians(intersection.getLongitude());
+        }
+        for (int u = 0; u < n; u++) {
+            cosLatitudes[u] = Math.cos(latitudes[u]);
+        }
+        this.ratio = fastestEdgeRatio();
+        this.landmarks = cityMap.getLandmarks();
+    }
+
+    /**
+     * Calcule la distance orthodromique entre deux points.
+     *
+     * @param lat1 la latitude du premier point, en degrés.
+     * @param lng1 la longitude du premier point, en degrés.
+     * @param lat2 la latitude du second point, en degrés.
+     * @param lng2 la longitude du second point, en degrés.
+     * @return la distance en mètres.
+     */
+    public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        return haversine(phi1, Math.toRadians(lng1), Math.cos(phi1), phi2, Math.toRadians(lng2), Math.cos(phi2));
+    }
+
+    private static double haversine(double phi1, double lambda1, double cosPhi1,
+                                    double phi2, double lambda2, double cosPhi2) {
+        double sinDPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDLambda = Math.sin((lambda2 - lambda1) / 2);
+        double a = sinDPhi * sinDPhi + cosPhi1 * cosPhi2 * sinDLambda * sinDLambda;
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(1.0, a)));
+    }
+
+    private double haversine(int u, int v) {
+        return haversine(latitudes[u], longitudes[u], cosLatitudes[u], latitudes[v], longitudes[v], cosLatitudes[v]);
+    }
+
+    /**
+     * Plus petit rapport entre la longueur d'un segment et la distance à vol d'oiseau de ses
+     * extrémités. Les segments entre deux points confondus sont ignorés.
+     */
+    private double fastestEdgeRatio() {
+        CompressedGraph.Adjacency forward = graph.forward();
+        double min = 1.0;
+        for (int u = 0; u < graph.getNbVertices(); u++) {
+            for (int e = forward.begin(u); e < forward.end(u); e++) {
+                double straight = haversine(u, forward.target(e));
+                if (straight > 0) {
+                    min = Math.min(min, forward.weight(e) / straight);
+                }
+            }
+        }
+        // Marge pour les arrondis du calcul de la distance orthodromique
+        return Math.max(0.0, min * (1 - 1e-9));
+    }
+
+    /**
+     * Retourne le rapport appliqué à la distance orthodromique pour obtenir l'estimation.
+     *
+     * @return le plus petit rapport longueur / distance à vol d'oiseau des segments.
+     */
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * Estime le coût restant entre deux intersections, sans jamais le surestimer.
+     *
+     * @param from  la position de départ.
+     * @param goal  la position de la destination.
+     * @return une borne inférieure du coût du plus court chemin, en mètres.
+     */
+    public double heuristic(int from, int goal) {
+        double bound = ratio * haversine(from, goal);
+        return landmarks == null ? bound : Math.max(bound, landmarks.lowerBound(from, goal));
+    }
+
+    /**
+     * Cherche le plus court chemin de {@code start} à {@code destination}.
+     *
+     * @param start       l'intersection de départ.
+     * @param destination l'intersection d'arrivée.
+     * @return le chemin, codé comme ceux de {@link Dijkstra}, ou null si la destination est inaccessible.
+     */
+    public Chemin findPath(Intersection start, Intersection destination) {
+        int s = start.getPos();
+        int t = destination.getPos();
+        CompressedGraph.Adjacency forward = graph.forward();
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(graph.getNbVertices())) {
+            IndexedHeap heap = workspace.heap();
+            workspace.markPending(t);
+            workspace.set(s, 0.0, -1);
+            heap.insertOrDecrease(s, heuristic(s, t));
+            while (!heap.isEmpty()) {
+                int u = heap.pop();
+                if (workspace.settle(u)) {
+                    break;
+                }
+                double du = workspace.distance(u);
+                for (int e = forward.begin(u); e < forward.end(u); e++) {
+                    int v = forward.target(e);
+                    double dv = du + forward.weight(e);
+                    if (dv < workspace.distance(v)) {
+                        workspace.set(v, dv, u);
+                        heap.insertOrDecrease(v, dv + heuristic(v, t));
+                    }
+                }
+            }
+            nbSettled = workspace.getNbSettled();
+            if (!workspace.isReached(t)) {
+                return null;
+            }
+
+            int count = 1;
+            for (int j = t; j != s; j = workspace.pi(j)) {
+                count++;
+            }
+            int[] nodes = new int[count];
+            for (int j = t; count > 0; j = workspace.pi(j)) {
+                nodes[--count] = j;
+            }
+            return Chemin.fromNodes(start, destination, nodes, cityMap.getIntersections().size(), workspace.distance(t));
+        }
+    }
+
+    /**
+     * Retourne le nombre de nœuds fixés par la dernière recherche.
+     *
+     * @return le nombre de nœuds sortis de la file lors de la dernière recherche.
+     */
+    public int getNbSettled() {
+        return nbSettled;
+    }
+}
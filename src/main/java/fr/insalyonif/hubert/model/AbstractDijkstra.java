@@ -1,20 +1,14 @@
 package fr.insalyonif.hubert.model;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Classe abstraite pour implémenter l'algorithme de Dijkstra.
  */
 public abstract class AbstractDijkstra {
-    private final int INFINITY = Integer.MAX_VALUE;
-
-    public double[] distance;
-    public int[] pi;
-    public boolean[] visited;
-
-    public String[] colors;
+    private double[] distance;
+    private int[] pi;
 
     private ArrayList<Chemin> chemins ;
 
@@ -22,6 +16,8 @@ public abstract class AbstractDijkstra {
 
     protected CityMap cityMap;
 
+    private boolean targetBounded = true;
+
     /**
      * Constructeur de la classe AbstractDijkstra.
      *
@@ -29,20 +25,59 @@ public abstract class AbstractDijkstra {
      * @param cityMap   La carte de la ville.
      */
     public AbstractDijkstra(int sizeGraph, CityMap cityMap) {
-        this.distance = new double[sizeGraph];
-        this.pi = new int[sizeGraph];
-        this.visited = new boolean[sizeGraph];
+        // Les tableaux de la recherche sont prêtés par un SearchWorkspace : une tournée n'en garde pas en propre
         this.cityMap = cityMap;
         this.chemins = new ArrayList<Chemin>();
         deliveryRequest = new ArrayList<Intersection>();
         deliveryRequest.add(cityMap.getWareHouseLocation());
+    }
 
+    /**
+     * Indique si les recherches s'arrêtent dès que tous les points de livraison sont atteints.
+     *
+     * @return true si les recherches sont bornées aux points de livraison.
+     */
+    public boolean isTargetBounded() {
+        return targetBounded;
+    }
 
+    /**
+     * Choisit entre une recherche bornée aux points de livraison (par défaut) et une recherche
+     * sur tout le graphe, qui rend définitives les distances de toutes les intersections.
+     * Seule une recherche sur tout le graphe garde ses résultats, lus par {@link #getDistance()}
+     * et {@link #getPi()} ; une recherche bornée ne garde que les chemins vers les points de livraison.
+     *
+     * @param targetBounded true pour arrêter la recherche dès que les points de livraison sont atteints.
+     */
+    public void setTargetBounded(boolean targetBounded) {
+        this.targetBounded = targetBounded;
+    }
 
+    /**
+     * Retourne les distances depuis le départ de la dernière recherche sur tout le graphe.
+     *
+     * @return les distances, indexées par position d'intersection.
+     * @throws IllegalStateException si aucune recherche sur tout le graphe n'a été lancée.
+     */
+    public double[] getDistance() {
+        if (distance == null) {
+            throw new IllegalStateException("Distances disponibles seulement après une recherche sur tout le graphe");
+        }
+        return distance;
+    }
 
-
-        colors = new String[sizeGraph];
-        Arrays.fill(colors, "white");
+    /**
+     * Retourne les prédécesseurs de la dernière recherche sur tout le graphe.
+     *
+     * @return les prédécesseurs, indexés par position d'intersection, -1 pour le départ et les
+     * intersections non atteintes.
+     * @throws IllegalStateException si aucune recherche sur tout le graphe n'a été lancée.
+     */
+    public int[] getPi() {
+        if (pi == null) {
+            throw new IllegalStateException("Prédécesseurs disponibles seulement après une recherche sur tout le graphe");
+        }
+        return pi;
     }
 
     public void cleanDij(){
@@ -63,7 +98,8 @@ public abstract class AbstractDijkstra {
     }
 
     /**
-     * Fonction heuristique pour l'algorithme A*.
+     * Fonction heuristique pour l'algorithme A*. Elle est exprimée en degrés et n'est donc pas
+     * comparable aux longueurs des segments : {@link AStar} utilise une estimation en mètres.
      *
      * @param current L'intersection actuelle.
      * @param goal    L'intersection objectif.
@@ -74,117 +110,214 @@ public abstract class AbstractDijkstra {
     }
 
     /**
-     * Vérifie s'il y a un nœud gris dans le graphe.
+     * Exécute l'algorithme de Dijkstra pour trouver les chemins les plus courts.
      *
-     * @return true s'il y a un nœud gris, sinon false.
+     * @param start     L'intersection de départ.
+     * @param sizeGraph La taille du graphe.
+     * @return true si le point de départ peut atteindre tous les points de livraison, sinon false.
      */
-    protected boolean hasGrayNode() {
-        for (String color : colors) {
-            if (color.equals("gray")) {
-                return true;
-            }
+    public boolean runDijkstra(Intersection start, int sizeGraph) {
+        if (!deliveryRequest.contains(start)) {
+            deliveryRequest.add(start);
         }
-        return false;
+        System.out.println("caca" + deliveryRequest);
+
+        List<Chemin> found = findChemins(start, deliveryRequest, sizeGraph);
+        if (found == null) {
+            deliveryRequest.remove(start);
+            chemins.removeIf(chemin -> chemin.getDebut().equals(start));
+            chemins.removeIf(chemin -> chemin.getFin().equals(start));
+            return false;
+        }
+        chemins.addAll(found);
+        return true;
     }
 
     /**
-     * Trouve le nœud gris avec la plus petite distance dans le graphe.
+     * Calcule les chemins entre un départ et des points, sans modifier les chemins ni les points
+     * de livraison de l'objet : plusieurs appels peuvent s'exécuter en même temps (voir
+     * {@link ParallelMatrixBuilder}), chacun avec son propre espace de travail. Seule une
+     * recherche sur tout le graphe ({@link #setTargetBounded(boolean)}) garde ses distances et
+     * ses prédécesseurs (voir {@link #getDistance()}).
      *
-     * @return L'intersection correspondant au nœud gris avec la plus petite distance.
+     * <p>Une recherche bornée reprend l'arbre de la même source gardé par le magasin s'il contient
+     * tous les points, sinon celui du {@link SearchCache} : seuls les points qu'il ne contient pas
+     * encore sont cherchés, et la recherche reste bornée à ces points.
+     *
+     * @param start     L'intersection de départ.
+     * @param points    Les points à relier au départ ; le départ lui-même est ignoré s'il y figure.
+     * @param sizeGraph La taille du graphe.
+     * @return les chemins, dans l'ordre des points, ou null si l'un des points n'est pas relié au départ.
      */
-    protected Intersection minGrayNode() {
-        double min = INFINITY;
-        Intersection minNode = null;
-
-        for (int i = 0; i < colors.length; i++) {
-            if (colors[i].equals("gray") && distance[i] < min) {
-                min = distance[i];
-                minNode = cityMap.findIntersectionByPos(i);
+    public List<Chemin> findChemins(Intersection start, List<Intersection> points, int sizeGraph) {
+        ContractionHierarchy hierarchy = cityMap.getContractionHierarchy();
+        CustomizableRouting routing = cityMap.getCustomizableRouting();
+        boolean pointToPoint = targetBounded && (hierarchy != null || routing != null);
+
+        // Si les chaînes de degré 2 sont contractées, la recherche de Dijkstra parcourt le graphe contracté
+        ChainContraction contraction = pointToPoint ? null : cityMap.getChainContraction();
+        CompressedGraph graph = contraction == null ? cityMap.getCompressedGraph() : contraction.getGraph();
+        CompressedGraph.Adjacency adjacency = getAdjacency(graph);
+        boolean reverse = adjacency == graph.reverse();
+        ShortestPathTreeStore store = cityMap.getShortestPathTrees();
+        SearchCache cache = cityMap.getSearchCache();
+
+        ShortestPathTree tree;
+        if (!targetBounded) {
+            tree = search(graph, adjacency, reverse, contraction, start, points, null, sizeGraph);
+        } else {
+            // Un arbre de la même source qui contient déjà tous les points évite la recherche
+            tree = store.find(start, reverse, points);
+            if (tree != null) {
+                return createChemins(start, points, tree, sizeGraph);
+            }
+            ShortestPathTree cached = cache.get(start, reverse, points);
+            List<Intersection> missing = missingPoints(cached, points);
+            if (missing.isEmpty()) {
+                store.add(cached);
+                return createChemins(start, points, cached, sizeGraph);
             }
+            tree = pointToPoint
+                    ? findPointToPoint(hierarchy, routing, reverse, start, missing, cached, sizeGraph)
+                    : search(graph, adjacency, reverse, contraction, start, missing, cached, sizeGraph);
         }
+        if (tree == null) {
+            return null;
+        }
+        cache.put(tree);
+        store.add(tree);
+        return createChemins(start, points, tree, sizeGraph);
+    }
 
-        return minNode;
+    private static List<Intersection> missingPoints(ShortestPathTree tree, List<Intersection> points) {
+        if (tree == null) {
+            return points;
+        }
+        List<Intersection> missing = new ArrayList<>();
+        for (Intersection point : points) {
+            if (!tree.contains(point.getPos())) {
+                missing.add(point);
+            }
+        }
+        return missing;
     }
 
     /**
-     * Exécute l'algorithme de Dijkstra pour trouver les chemins les plus courts.
+     * Lance une recherche de Dijkstra depuis le départ, bornée aux points sauf pour une recherche
+     * sur tout le graphe, et complète l'arbre de base par les branches des points.
      *
-     * @param start     L'intersection de départ.
-     * @param sizeGraph La taille du graphe.
-     * @return true si le point de départ peut atteindre tous les points de livraison, sinon false.
+     * @return l'arbre complété, ou null si l'un des points n'est pas relié au départ.
      */
-    public boolean runDijkstra(Intersection start, int sizeGraph) {
-        if (!deliveryRequest.contains(start)) {
-            deliveryRequest.add(start);
-        }
-        System.out.println("caca" + deliveryRequest);
-
-        for (int i = 0; i < sizeGraph; i++) {
-            distance[i] = INFINITY;
-            this.pi[i] = -1;
-            colors[i] = "white";
+    private ShortestPathTree search(CompressedGraph graph, CompressedGraph.Adjacency adjacency, boolean reverse,
+                                    ChainContraction contraction, Intersection start, List<Intersection> points,
+                                    ShortestPathTree base, int sizeGraph) {
+        int[] targets = null;
+        if (targetBounded) {
+            // Seules les distances vers les points sont utiles : la recherche s'arrête quand ils sont fixés
+            targets = new int[points.size()];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = points.get(i).getPos();
+            }
         }
 
-        distance[start.getPos()] = 0.0;
-        colors[start.getPos()] = "gray";
-
-        while (hasGrayNode()) {
-            Intersection u = minGrayNode();
-
-            for (RoadSegment roadSegment : getNeighbors(u)) {
-                Intersection v = selectNode(roadSegment);
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(graph.getNbVertices())) {
+            new DijkstraEngine().run(workspace, adjacency, reverse, contraction, start.getPos(), targets);
+            if (!targetBounded) {
+                double[] fullDistance = new double[sizeGraph];
+                int[] fullPi = new int[sizeGraph];
+                workspace.copyTo(fullDistance, fullPi);
+                distance = fullDistance;
+                pi = fullPi;
+            }
 
-                if (colors[v.getPos()].equals("white") || colors[v.getPos()].equals("gray")) {
-                    relax(u, v, roadSegment.getLength());
-                    colors[v.getPos()] = "gray";
+            for (Intersection deliveryPoint : points) {
+                if (!workspace.isReached(deliveryPoint.getPos())
+                        || (deliveryPoint != start && workspace.pi(deliveryPoint.getPos()) == -1)) {
+                    return null;
                 }
             }
-            colors[u.getPos()] = "black";
+            return ShortestPathTree.extract(start, reverse, workspace, points, base);
         }
+    }
 
-        boolean canReachAllDeliveryPoints = true;
-        for (Intersection deliveryPoint : deliveryRequest) {
-            if (distance[deliveryPoint.getPos()] == INFINITY) {
-                canReachAllDeliveryPoints = false;
-                break;
+    private List<Chemin> createChemins(Intersection start, List<Intersection> points, ShortestPathTree tree, int sizeGraph) {
+        List<Chemin> found = new ArrayList<>();
+        for (Intersection deliveryPoint : points) {
+            if (deliveryPoint != start) {
+                found.add(createChemin(start, deliveryPoint, tree, sizeGraph));
             }
         }
+        return found;
+    }
 
-        if (!canReachAllDeliveryPoints) {
-            deliveryRequest.remove(start);
-            chemins.removeIf(chemin -> chemin.getDebut().equals(start));
-            chemins.removeIf(chemin -> chemin.getFin().equals(start));
-            return false;
-        }
+    /**
+     * Libère l'arbre de la recherche lancée depuis une intersection, par exemple quand elle est
+     * retirée de la tournée (voir {@link ShortestPathTreeStore#release}).
+     *
+     * @param start L'intersection de départ de la recherche.
+     */
+    public void releaseTree(Intersection start) {
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        cityMap.getShortestPathTrees().release(start, getAdjacency(graph) == graph.reverse());
+    }
 
-        for (Intersection deliveryRequest : deliveryRequest) {
-            if (deliveryRequest != start) {
-                int[] piCopy = new int[sizeGraph];
-                Arrays.fill(piCopy, -1);
-                if (pi[deliveryRequest.getPos()] == -1) {
-                    return false;
-                }
-                piCopyConstructor(piCopy, start, deliveryRequest);
-                Chemin chemin = createChemin(start, deliveryRequest, piCopy, distance[deliveryRequest.getPos()]);
-                chemins.add(chemin);
+    /**
+     * Calcule les chemins entre le départ et des points par des requêtes point à point, sur la
+     * hiérarchie de contraction si elle existe, sinon sur la partition, au lieu d'une recherche
+     * depuis le départ. Les chemins obtenus complètent l'arbre de base de la source, partagé
+     * comme celui d'une recherche de Dijkstra (voir {@link ShortestPathTreeStore}).
+     *
+     * @param hierarchy La hiérarchie de contraction de la carte, ou null.
+     * @param routing   La recherche sur partition de la carte, utilisée sans hiérarchie.
+     * @param reverse   true si les chemins se terminent au départ.
+     * @param start     L'intersection de départ.
+     * @param points    Les points à relier au départ.
+     * @param base      L'arbre de la source à compléter, ou null.
+     * @param sizeGraph La taille du graphe.
+     * @return l'arbre complété, ou null si l'un des points n'est pas relié au départ.
+     */
+    private ShortestPathTree findPointToPoint(ContractionHierarchy hierarchy, CustomizableRouting routing,
+                                              boolean reverse, Intersection start, List<Intersection> points,
+                                              ShortestPathTree base, int sizeGraph) {
+        List<int[]> paths = new ArrayList<>();
+        List<double[]> lengths = new ArrayList<>();
+        for (Intersection deliveryPoint : points) {
+            if (deliveryPoint == start) {
+                continue;
+            }
+            int from = reverse ? deliveryPoint.getPos() : start.getPos();
+            int to = reverse ? start.getPos() : deliveryPoint.getPos();
+            DoubleList pathLengths = new DoubleList();
+            int[] path = hierarchy != null
+                    ? hierarchy.path(from, to, pathLengths)
+                    : routing.path(from, to, pathLengths);
+            if (path == null) {
+                return null;
             }
+            paths.add(path);
+            lengths.add(pathLengths.toArray());
         }
-        return true;
+        return ShortestPathTree.fromPaths(start, reverse, paths, lengths, sizeGraph, base);
     }
 
-    protected abstract Iterable<RoadSegment> getNeighbors(Intersection intersection);
-    protected abstract Intersection selectNode(RoadSegment roadSegment);
-    protected abstract Chemin createChemin(Intersection start, Intersection destination, int[] pi, double cout);
-    protected abstract void relax(Intersection u, Intersection v, double weight);
+    /**
+     * Sélectionne la direction du graphe compressé parcourue par la recherche.
+     *
+     * @param graph Le graphe compressé de la carte.
+     * @return L'adjacence à parcourir.
+     */
+    protected abstract CompressedGraph.Adjacency getAdjacency(CompressedGraph graph);
 
     /**
-     * Copie les prédécesseurs du chemin pour une demande de livraison spécifique.
+     * Crée le chemin d'une demande de livraison, qui référence l'arbre de la recherche.
      *
-     * @param piCopy    Tableau de prédécesseurs à copier.
-     * @param start     Intersection de départ.
-     * @param delivery  Intersection de destination (demande de livraison).
+     * @param start     Intersection de départ de la recherche, racine de l'arbre.
+     * @param delivery  Intersection de la demande de livraison.
+     * @param tree      L'arbre de la recherche.
+     * @param sizeGraph La taille du graphe.
+     * @return Le chemin, orienté dans le sens de circulation.
      */
-    protected abstract void piCopyConstructor(int[] piCopy, Intersection start, Intersection delivery);
+    protected abstract Chemin createChemin(Intersection start, Intersection delivery, ShortestPathTree tree, int sizeGraph);
 
     /**
      * Retourne la liste des chemins calculés par l'algorithme de Dijkstra.
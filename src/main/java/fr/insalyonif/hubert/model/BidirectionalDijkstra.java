@@ -0,0 +1,112 @@
+package fr.insalyonif.hubert.model;
+
+/**
+ * Recherche bidirectionnelle d'un plus court chemin entre deux intersections : une recherche
+ * part du départ en suivant les successeurs, l'autre part de l'arrivée en suivant les
+ * prédécesseurs, et elles s'arrêtent quand elles se sont rejointes. Chacune ne couvre qu'un
+ * disque de rayon environ moitié, ce qui réduit fortement le nombre de nœuds fixés par rapport
+ * à une recherche depuis le départ vers toute la carte.
+ *
+ * <p>Le coût trouvé est celui de Dijkstra ; à coût égal, le chemin retenu peut différer.
+ */
+public class BidirectionalDijkstra {
+    private final CityMap cityMap;
+    private int nbSettled;
+
+    /**
+     * Constructeur de la classe BidirectionalDijkstra.
+     *
+     * @param cityMap la carte de la ville.
+     */
+    public BidirectionalDijkstra(CityMap cityMap) {
+        this.cityMap = cityMap;
+    }
+
+    /**
+     * Cherche le plus court chemin de {@code start} à {@code destination}.
+     *
+     * @param start       l'intersection de départ.
+     * @param destination l'intersection d'arrivée.
+     * @return le chemin, codé comme ceux de {@link Dijkstra}, ou null si la destination est inaccessible.
+     */
+    public Chemin findPath(Intersection start, Intersection destination) {
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int s = start.getPos();
+        int t = destination.getPos();
+        try (SearchWorkspace forward = SearchWorkspace.borrow(graph.getNbVertices());
+             SearchWorkspace backward = SearchWorkspace.borrow(graph.getNbVertices())) {
+            forward.set(s, 0.0, -1);
+            forward.heap().insertOrDecrease(s, 0.0);
+            backward.set(t, 0.0, -1);
+            backward.heap().insertOrDecrease(t, 0.0);
+
+            // Meilleur coût connu d'un chemin passant par un nœud atteint des deux côtés
+            double best = s == t ? 0.0 : SearchWorkspace.INFINITY;
+            int meeting = s == t ? s : -1;
+            IndexedHeap forwardHeap = forward.heap();
+            IndexedHeap backwardHeap = backward.heap();
+            while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()
+                    && forwardHeap.minKey() + backwardHeap.minKey() < best) {
+                // On avance le côté dont la frontière est la plus proche de son origine
+                boolean forwardStep = forwardHeap.minKey() <= backwardHeap.minKey();
+                SearchWorkspace side = forwardStep ? forward : backward;
+                SearchWorkspace other = forwardStep ? backward : forward;
+                CompressedGraph.Adjacency adjacency = forwardStep ? graph.forward() : graph.reverse();
+
+                int u = side.heap().pop();
+                side.settle(u);
+                double du = side.distance(u);
+                for (int e = adjacency.begin(u); e < adjacency.end(u); e++) {
+                    int v = adjacency.target(e);
+                    if (side.isSettled(v)) {
+                        continue;
+                    }
+                    double dv = du + adjacency.weight(e);
+                    if (dv < side.distance(v)) {
+                        side.set(v, dv, u);
+                        side.heap().insertOrDecrease(v, dv);
+                        if (other.isReached(v) && dv + other.distance(v) < best) {
+                            best = dv + other.distance(v);
+                            meeting = v;
+                        }
+                    }
+                }
+            }
+            nbSettled = forward.getNbSettled() + backward.getNbSettled();
+            if (meeting == -1) {
+                return null;
+            }
+
+            // La rencontre sépare la branche de l'arbre avant (vers le départ) de celle de l'arbre arrière
+            int before = 0;
+            for (int j = meeting; j != s; j = forward.pi(j)) {
+                before++;
+            }
+            int after = 0;
+            for (int j = meeting; j != t; j = backward.pi(j)) {
+                after++;
+            }
+            int[] nodes = new int[before + after + 1];
+            int i = before;
+            for (int j = meeting; i >= 0; j = forward.pi(j)) {
+                nodes[i--] = j;
+            }
+            i = before;
+            for (int j = meeting; j != t; ) {
+                j = backward.pi(j);
+                nodes[++i] = j;
+            }
+            return Chemin.fromNodes(start, destination, nodes, cityMap.getIntersections().size(),
+                    forward.distance(meeting) + backward.distance(meeting));
+        }
+    }
+
+    /**
+     * Retourne le nombre de nœuds fixés par la dernière recherche, des deux côtés.
+     *
+     * @return le nombre de nœuds sortis des deux files lors de la dernière recherche.
+     */
+    public int getNbSettled() {
+        return nbSettled;
+    }
+}
@@ -0,0 +1,84 @@
+package fr.insalyonif.hubert.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Lecture et écriture des fichiers binaires dérivés d'une carte (voir
+ * {@link MapCompiler#derivedPath(String, String)}) : carte compilée, hiérarchie de contraction,
+ * repères, étiquettes de hubs et recherches enregistrées.
+ */
+final class BinaryFiles {
+
+    /**
+     * Contenu d'un fichier, écrit dans un flux.
+     */
+    @FunctionalInterface
+    interface Content {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    private BinaryFiles() {
+    }
+
+    /**
+     * Écrit un fichier d'abord à côté de la cible puis le renomme, pour qu'un lecteur ne voie
+     * jamais un fichier incomplet. Le dossier de la cible est créé au besoin, et le fichier
+     * temporaire est supprimé si l'écriture échoue.
+     *
+     * @param target  le fichier à écrire.
+     * @param content le contenu du fichier.
+     * @throws IOException si l'écriture échoue.
+     */
+    static void writeAtomically(Path target, Content content) throws IOException {
+        Path folder = target.toAbsolutePath().getParent();
+        if (folder != null) {
+            Files.createDirectories(folder);
+        }
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            content.writeTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lit des entiers à la position du tampon, puis avance la position.
+     */
+    static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Lit des réels à la position du tampon, puis avance la position.
+     */
+    static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + count * Double.BYTES);
+        return values;
+    }
+
+    /**
+     * Lit des réels simple précision à la position du tampon, puis avance la position.
+     */
+    static float[] readFloats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * Float.BYTES);
+        return values;
+    }
+}
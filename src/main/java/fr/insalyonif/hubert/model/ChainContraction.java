@@ -0,0 +1,435 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Contraction des chaînes de degré 2 du réseau routier.
+ * Une intersection qui n'a qu'une entrée et qu'une sortie (ou, sur une rue à double sens,
+ * exactement deux voisins reliés dans les deux sens) n'est qu'un point de géométrie le long
+ * d'une rue. Les suites de tels points sont remplacées par un raccourci pondéré entre les deux
+ * intersections qui les bordent, ce qui évite à Dijkstra de les traiter une par une.
+ *
+ * <p>La séquence des nœuds de chaque chaîne est conservée : après la recherche,
+ * {@link #expand(boolean, SearchWorkspace, IntList)} recalcule la distance et le prédécesseur de
+ * chaque nœud contracté des chaînes dont une extrémité a été fixée, si bien que les tableaux {@code distance} et {@code pi} sont les mêmes que sur
+ * le graphe complet et que les chemins restent dessinables nœud par nœud.
+ */
+public class ChainContraction {
+    private final CompressedGraph graph;
+    private final boolean[] contracted;
+    private final int[] chainOfNode;
+    private final int[] indexInChain;
+
+    // Chaîne c : nœuds chainNodes[chainStart[c] .. chainStart[c + 1]), extrémités comprises
+    private final int[] chainStart;
+    private final int[] chainNodes;
+    private final double[] forwardPrefix;
+    private final double[] backwardPrefix;
+    private final boolean[] twoWay;
+
+    // Chaînes bordées par l'intersection v : endChains[endOffsets[v] .. endOffsets[v + 1])
+    private final int[] endOffsets;
+    private final int[] endChains;
+
+    // Pour chaque arc du graphe contracté : -1, ou 2 * chaîne + (1 si parcourue de la fin vers le début)
+    private final int[] forwardVia;
+    private final int[] reverseVia;
+
+    /**
+     * Contracte les chaînes du graphe donné.
+     *
+     * @param original  le graphe compressé complet.
+     * @param protectedNodes les positions à ne jamais contracter (l'entrepôt par exemple).
+     */
+    public ChainContraction(CompressedGraph original, int... protectedNodes) {
+        int n = original.getNbVertices();
+        CompressedGraph.Adjacency out = original.forward();
+        CompressedGraph.Adjacency in = original.reverse();
+
+        boolean[] candidate = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            candidate[v] = isPassThrough(out, in, v);
+        }
+        for (int p : protectedNodes) {
+            if (p >= 0 && p < n) {
+                candidate[p] = false;
+            }
+        }
+
+        // Parcours des chaînes à partir de chaque intersection conservée
+        this.contracted = new boolean[n];
+        this.chainOfNode = new int[n];
+        this.indexInChain = new int[n];
+        Arrays.fill(chainOfNode, -1);
+        boolean[] visited = new boolean[n];
+        IntList starts = new IntList();
+        IntList nodes = new IntList();
+        DoubleList forward = new DoubleList();
+        DoubleList backward = new DoubleList();
+        BooleanList chainTwoWay = new BooleanList();
+        for (int a = 0; a < n; a++) {
+            if (candidate[a]) {
+                continue;
+            }
+            for (int e = out.begin(a); e < out.end(a); e++) {
+                int first = out.target(e);
+                if (!candidate[first] || visited[first]) {
+                    continue;
+                }
+                int begin = nodes.size();
+                nodes.add(a);
+                int previous = a;
+                int current = first;
+                while (candidate[current] && !visited[current]) {
+                    visited[current] = true;
+                    nodes.add(current);
+                    int next = nextInChain(out, current, previous);
+                    previous = current;
+                    current = next;
+                }
+                int b = current;
+                if (candidate[b] || b == a) {
+                    // Boucle sur elle-même ou cycle sans extrémité : la chaîne est conservée telle quelle
+                    nodes.truncate(begin);
+                    continue;
+                }
+                nodes.add(b);
+
+                int chain = starts.size();
+                starts.add(begin);
+                boolean both = in.end(first) - in.begin(first) == 2;
+                chainTwoWay.add(both);
+                double total = 0;
+                forward.add(0);
+                for (int j = begin + 1; j < nodes.size(); j++) {
+                    total += edgeWeight(out, nodes.get(j - 1), nodes.get(j));
+                    forward.add(total);
+                }
+                double[] back = new double[nodes.size() - begin];
+                if (both) {
+                    for (int j = back.length - 2; j >= 0; j--) {
+                        back[j] = back[j + 1] + edgeWeight(out, nodes.get(begin + j + 1), nodes.get(begin + j));
+                    }
+                }
+                for (double d : back) {
+                    backward.add(d);
+                }
+                for (int j = begin + 1; j < nodes.size() - 1; j++) {
+                    contracted[nodes.get(j)] = true;
+                    chainOfNode[nodes.get(j)] = chain;
+                    indexInChain[nodes.get(j)] = j - begin;
+                }
+            }
+        }
+        starts.add(nodes.size());
+        this.chainStart = starts.toArray();
+        this.chainNodes = nodes.toArray();
+        this.forwardPrefix = forward.toArray();
+        this.backwardPrefix = backward.toArray();
+        this.twoWay = chainTwoWay.toArray();
+
+        int nbChains = chainStart.length - 1;
+        this.endOffsets = new int[n + 1];
+        for (int c = 0; c < nbChains; c++) {
+            endOffsets[chainNodes[chainStart[c]] + 1]++;
+            endOffsets[chainNodes[chainStart[c + 1] - 1] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            endOffsets[v + 1] += endOffsets[v];
+        }
+        this.endChains = new int[2 * nbChains];
+        int[] fill = Arrays.copyOf(endOffsets, n);
+        for (int c = 0; c < nbChains; c++) {
+            endChains[fill[chainNodes[chainStart[c]]]++] = c;
+            endChains[fill[chainNodes[chainStart[c + 1] - 1]]++] = c;
+        }
+
+        // Graphe contracté : chaque arc qui entre dans une chaîne est remplacé, à la même place, par son raccourci
+        int[] forwardOffsets = new int[n + 1];
+        int[] reverseOffsets = new int[n + 1];
+        IntList forwardTargets = new IntList();
+        DoubleList forwardWeights = new DoubleList();
+        IntList forwardVias = new IntList();
+        IntList reverseTargets = new IntList();
+        DoubleList reverseWeights = new DoubleList();
+        IntList reverseVias = new IntList();
+        for (int u = 0; u < n; u++) {
+            if (!contracted[u]) {
+                for (int e = out.begin(u); e < out.end(u); e++) {
+                    int v = out.target(e);
+                    if (!contracted[v]) {
+                        forwardTargets.add(v);
+                        forwardWeights.add(out.weight(e));
+                        forwardVias.add(-1);
+                    } else {
+                        int via = viaFrom(u, v);
+                        forwardTargets.add(farEnd(via));
+                        forwardWeights.add(shortcutWeight(via));
+                        forwardVias.add(via);
+                    }
+                }
+                for (int e = in.begin(u); e < in.end(u); e++) {
+                    int v = in.target(e);
+                    if (!contracted[v]) {
+                        reverseTargets.add(v);
+                        reverseWeights.add(in.weight(e));
+                        reverseVias.add(-1);
+                    } else {
+                        int via = viaFrom(u, v) ^ 1;
+                        reverseTargets.add(nearEnd(via));
+                        reverseWeights.add(shortcutWeight(via));
+                        reverseVias.add(via);
+                    }
+                }
+            }
+            forwardOffsets[u + 1] = forwardTargets.size();
+            reverseOffsets[u + 1] = reverseTargets.size();
+        }
+        this.graph = new CompressedGraph(n,
+                CompressedGraph.Adjacency.of(forwardOffsets, forwardTargets.toArray(), forwardWeights.toArray()),
+                CompressedGraph.Adjacency.of(reverseOffsets, reverseTargets.toArray(), reverseWeights.toArray()));
+        this.forwardVia = forwardVias.toArray();
+        this.reverseVia = reverseVias.toArray();
+    }
+
+    /**
+     * Retourne le graphe contracté, sur les mêmes positions que le graphe complet.
+     * Les nœuds contractés n'y ont aucun arc.
+     *
+     * @return le graphe contracté.
+     */
+    public CompressedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Indique si une intersection a été retirée du graphe contracté.
+     *
+     * @param pos la position de l'intersection.
+     * @return true si l'intersection est à l'intérieur d'une chaîne.
+     */
+    public boolean isContracted(int pos) {
+        return pos >= 0 && pos < contracted.length && contracted[pos];
+    }
+
+    /**
+     * Indique si une intersection borde au moins une chaîne.
+     *
+     * @param pos la position de l'intersection.
+     * @return true si l'intersection est l'extrémité d'une chaîne.
+     */
+    public boolean isChainEnd(int pos) {
+        return endOffsets[pos] < endOffsets[pos + 1];
+    }
+
+    /**
+     * Retourne le nombre d'intersections contractées.
+     *
+     * @return le nombre de nœuds à l'intérieur d'une chaîne.
+     */
+    public int getNbContracted() {
+        return chainNodes.length - 2 * (chainStart.length - 1);
+    }
+
+    /**
+     * Retourne le nœud de la chaîne voisin de {@code target} lorsqu'un raccourci est relâché vers
+     * {@code target} : c'est le vrai prédécesseur (recherche avant) ou successeur (recherche inverse)
+     * de {@code target}.
+     *
+     * @param reverse true pour l'adjacence entrante, false pour l'adjacence sortante.
+     * @param e       l'indice de l'arc relâché dans le graphe contracté.
+     * @param target  la position atteinte par l'arc.
+     * @return la position du nœud de la chaîne voisin de {@code target}, ou -1 si l'arc est un arc d'origine.
+     */
+    public int adjacentNode(boolean reverse, int e, int target) {
+        int via = reverse ? reverseVia[e] : forwardVia[e];
+        if (via < 0) {
+            return -1;
+        }
+        int chain = via >> 1;
+        int begin = chainStart[chain];
+        int end = chainStart[chain + 1] - 1;
+        return chainNodes[begin] == target ? chainNodes[begin + 1] : chainNodes[end - 1];
+    }
+
+    /**
+     * Donne les extrémités de chaîne dont dépend la distance d'une intersection contractée :
+     * une recherche bornée à cette intersection doit les fixer avant de s'arrêter.
+     *
+     * @param pos     la position de l'intersection contractée.
+     * @param reverse true pour une recherche inverse.
+     * @param entry   reçoit chaque extrémité utile.
+     */
+    public void forEachEntry(int pos, boolean reverse, IntConsumer entry) {
+        int chain = chainOfNode[pos];
+        int head = chainNodes[chainStart[chain]];
+        int tail = chainNodes[chainStart[chain + 1] - 1];
+        // Dans le sens début -> fin, on arrive par le début ; en recherche inverse, on repart par la fin
+        entry.accept(reverse ? tail : head);
+        if (twoWay[chain]) {
+            entry.accept(reverse ? head : tail);
+        }
+    }
+
+    /**
+     * Initialise une recherche qui part d'une intersection contractée : les nœuds de sa chaîne
+     * atteignables dans le sens de la recherche reçoivent leur distance, jusqu'aux extrémités.
+     *
+     * @param start     la position de départ, contractée.
+     * @param reverse   true pour une recherche inverse (distances vers le départ).
+     * @param workspace l'espace de travail de la recherche.
+     * @param reached   reçoit chaque extrémité de chaîne atteinte, à ajouter aux nœuds à traiter.
+     */
+    public void seed(int start, boolean reverse, SearchWorkspace workspace, IntConsumer reached) {
+        int chain = chainOfNode[start];
+        walk(chain, indexInChain[start], reverse, true, workspace, reached);
+    }
+
+    /**
+     * Complète une recherche terminée sur le graphe contracté : les nœuds contractés des chaînes
+     * bordées par les extrémités fixées reçoivent leur distance et leur prédécesseur à partir de
+     * ceux de ces extrémités. Les autres chaînes ne sont pas parcourues, si bien qu'une recherche
+     * bornée ne paie que les chaînes qu'elle a atteintes.
+     *
+     * @param reverse   true pour une recherche inverse.
+     * @param workspace l'espace de travail de la recherche.
+     * @param ends      les extrémités de chaîne fixées par la recherche (voir {@link #isChainEnd(int)}).
+     */
+    void expand(boolean reverse, SearchWorkspace workspace, IntList ends) {
+        for (int i = 0; i < ends.size(); i++) {
+            int end = ends.get(i);
+            for (int k = endOffsets[end]; k < endOffsets[end + 1]; k++) {
+                int chain = endChains[k];
+                int from = chainNodes[chainStart[chain]] == end ? 0 : chainStart[chain + 1] - chainStart[chain] - 1;
+                walk(chain, from, reverse, false, workspace, null);
+            }
+        }
+    }
+
+    /**
+     * Propage la distance du nœud d'indice {@code from} le long de la chaîne, dans les deux sens
+     * de circulation autorisés, en ne gardant que les améliorations strictes.
+     */
+    private void walk(int chain, int from, boolean reverse, boolean includeEnds,
+                      SearchWorkspace workspace, IntConsumer reached) {
+        int begin = chainStart[chain];
+        int last = chainStart[chain + 1] - begin - 1;
+        if (!workspace.isReached(chainNodes[begin + from])) {
+            return;
+        }
+        double base = workspace.distance(chainNodes[begin + from]);
+
+        // Sens de circulation début -> fin : la recherche avant monte, la recherche inverse descend
+        int step = reverse ? -1 : 1;
+        propagate(begin, from, step, last, includeEnds, base, forwardPrefix, workspace, reached);
+        if (twoWay[chain]) {
+            // Sens fin -> début, pour les rues à double sens
+            propagate(begin, from, -step, last, includeEnds, base, backwardPrefix, workspace, reached);
+        }
+    }
+
+    private void propagate(int begin, int from, int step, int last, boolean includeEnds, double base,
+                           double[] prefix, SearchWorkspace workspace, IntConsumer reached) {
+        for (int j = from + step; j >= 0 && j <= last; j += step) {
+            boolean end = j == 0 || j == last;
+            if (end && !includeEnds) {
+                break;
+            }
+            // Les cumuls sont monotones le long de la chaîne : l'écart est la longueur parcourue
+            double cost = Math.abs(prefix[begin + j] - prefix[begin + from]);
+            int node = chainNodes[begin + j];
+            if (base + cost < workspace.distance(node)) {
+                workspace.set(node, base + cost, chainNodes[begin + j - step]);
+                if (end && reached != null) {
+                    reached.accept(node);
+                }
+            }
+        }
+    }
+
+    private static boolean isPassThrough(CompressedGraph.Adjacency out, CompressedGraph.Adjacency in, int v) {
+        int outDegree = out.end(v) - out.begin(v);
+        int inDegree = in.end(v) - in.begin(v);
+        if (outDegree == 1 && inDegree == 1) {
+            int successor = out.target(out.begin(v));
+            int predecessor = in.target(in.begin(v));
+            return successor != predecessor && successor != v && predecessor != v;
+        }
+        if (outDegree == 2 && inDegree == 2) {
+            int s1 = out.target(out.begin(v));
+            int s2 = out.target(out.begin(v) + 1);
+            int p1 = in.target(in.begin(v));
+            int p2 = in.target(in.begin(v) + 1);
+            return s1 != s2 && s1 != v && s2 != v
+                    && ((s1 == p1 && s2 == p2) || (s1 == p2 && s2 == p1));
+        }
+        return false;
+    }
+
+    private static int nextInChain(CompressedGraph.Adjacency out, int current, int previous) {
+        for (int e = out.begin(current); e < out.end(current); e++) {
+            if (out.target(e) != previous) {
+                return out.target(e);
+            }
+        }
+        return previous;
+    }
+
+    private static double edgeWeight(CompressedGraph.Adjacency out, int u, int v) {
+        for (int e = out.begin(u); e < out.end(u); e++) {
+            if (out.target(e) == v) {
+                return out.weight(e);
+            }
+        }
+        throw new IllegalStateException("Arc absent : " + u + " -> " + v);
+    }
+
+    /**
+     * Chaîne et sens de parcours correspondant à l'arc d'origine {@code u -> v}, où {@code v} est contracté.
+     */
+    private int viaFrom(int u, int v) {
+        int chain = chainOfNode[v];
+        int begin = chainStart[chain];
+        boolean fromStart = chainNodes[begin] == u && indexInChain[v] == 1;
+        return 2 * chain + (fromStart ? 0 : 1);
+    }
+
+    private int farEnd(int via) {
+        int chain = via >> 1;
+        return (via & 1) == 0 ? chainNodes[chainStart[chain + 1] - 1] : chainNodes[chainStart[chain]];
+    }
+
+    private int nearEnd(int via) {
+        int chain = via >> 1;
+        return (via & 1) == 0 ? chainNodes[chainStart[chain]] : chainNodes[chainStart[chain + 1] - 1];
+    }
+
+    private double shortcutWeight(int via) {
+        int chain = via >> 1;
+        return (via & 1) == 0 ? forwardPrefix[chainStart[chain + 1] - 1] : backwardPrefix[chainStart[chain]];
+    }
+
+    /**
+     * Tableau de booléens extensible.
+     */
+    private static final class BooleanList {
+        private boolean[] values = new boolean[64];
+        private int size;
+
+        void add(boolean value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
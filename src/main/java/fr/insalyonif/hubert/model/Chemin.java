@@ -1,11 +1,35 @@
 package fr.insalyonif.hubert.model;
 
 import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
+/**
+ * Un chemin entre deux intersections, avec son coût.
+ *
+ * <p>Le chemin est rangé comme la suite des positions traversées, du début à la fin : la
+ * première position en entier variable, puis l'écart avec la précédente, en zigzag et en
+ * entier variable (un octet tant que l'écart est compris entre -64 et 63). Un chemin occupe
+ * ainsi quelques octets par intersection traversée, au lieu d'un tableau de prédécesseurs de
+ * la taille de la carte. Ce tableau reste disponible par {@link #getPi()}, mais il est
+ * reconstruit à chaque appel : {@link #nodes()} parcourt le chemin sans le construire.
+ *
+ * <p>Un chemin issu d'une recherche vers plusieurs points ne range rien lui-même : il référence
+ * l'arbre de la recherche ({@link ShortestPathTree}), partagé par tous ses chemins, et n'en
+ * extrait ses intersections qu'à la demande.
+ *
+ * <p>Un tableau de prédécesseurs qui ne mène pas de la fin au début est gardé tel quel, comme
+ * avant : {@link #getPi()} le rend, mais le chemin ne traverse aucune intersection.
+ */
 public class Chemin {
     private Intersection debut;
     private Intersection fin;
+    private byte[] encoded;
+    private int nbNodes;
+    // Tableau de prédécesseurs qui ne décrit pas de chemin, gardé tel quel ; null sinon
     private int[] pi;
+    private ShortestPathTree tree;
+    private int sizeGraph;
     private double cout;
 
     /**
@@ -19,8 +43,53 @@ public class Chemin {
     public Chemin(Intersection debut, Intersection fin, int[] pi, double cout) {
         this.debut = debut;
         this.fin = fin;
-        this.pi = pi;
         this.cout = cout;
+        setPi(pi);
+    }
+
+    private Chemin(Intersection debut, Intersection fin, int[] nodes, int sizeGraph, double cout) {
+        this.debut = debut;
+        this.fin = fin;
+        this.cout = cout;
+        setNodes(nodes, sizeGraph);
+    }
+
+    private Chemin(Intersection debut, Intersection fin, ShortestPathTree tree, int sizeGraph, double cout) {
+        this.debut = debut;
+        this.fin = fin;
+        this.tree = tree;
+        this.sizeGraph = sizeGraph;
+        this.cout = cout;
+    }
+
+    /**
+     * Construit un chemin à partir de la suite des positions traversées, sans passer par un
+     * tableau de prédécesseurs.
+     *
+     * @param debut     L'Intersection de départ du chemin.
+     * @param fin       L'Intersection de fin du chemin.
+     * @param nodes     Les positions traversées, de {@code debut} à {@code fin} compris.
+     * @param sizeGraph La taille du graphe, c'est-à-dire celle du tableau rendu par {@link #getPi()}.
+     * @param cout      Le coût total du chemin.
+     * @return le chemin.
+     */
+    public static Chemin fromNodes(Intersection debut, Intersection fin, int[] nodes, int sizeGraph, double cout) {
+        return new Chemin(debut, fin, nodes, sizeGraph, cout);
+    }
+
+    /**
+     * Construit un chemin qui référence la branche d'un arbre de recherche : de la racine au
+     * point pour un arbre direct, du point à la racine pour un arbre inverse.
+     *
+     * @param debut     L'Intersection de départ du chemin.
+     * @param fin       L'Intersection de fin du chemin.
+     * @param tree      L'arbre de la recherche, enraciné au début (arbre direct) ou à la fin (arbre inverse).
+     * @param sizeGraph La taille du graphe, c'est-à-dire celle du tableau rendu par {@link #getPi()}.
+     * @param cout      Le coût total du chemin.
+     * @return le chemin.
+     */
+    public static Chemin fromTree(Intersection debut, Intersection fin, ShortestPathTree tree, int sizeGraph, double cout) {
+        return new Chemin(debut, fin, tree, sizeGraph, cout);
     }
 
     /**
@@ -42,14 +111,116 @@ public class Chemin {
     }
 
     /**
-     * Obtient le tableau représentant le chemin en termes d'indices des intersections visitées.
+     * Obtient le tableau représentant le chemin en termes d'indices des intersections visitées :
+     * la case d'une intersection du chemin contient la position de l'intersection précédente,
+     * les autres cases valent -1.
+     *
+     * <p>Le tableau n'est pas gardé : chaque appel en alloue un de la taille de la carte et le
+     * remplit, soit 4 octets par intersection de la carte et non du chemin. Dans une boucle, on
+     * appelle donc cette méthode une seule fois, ou on parcourt le chemin par {@link #nodes()}.
+     * Seul un tableau qui ne décrit pas de chemin est gardé, et rendu tel quel.
      *
      * @return Le tableau d'indices représentant le chemin.
      */
     public int[] getPi() {
+        if (this.pi != null) {
+            return this.pi;
+        }
+        int[] pi = new int[sizeGraph];
+        Arrays.fill(pi, -1);
+        PrimitiveIterator.OfInt it = nodes();
+        int previous = it.nextInt();
+        while (it.hasNext()) {
+            int node = it.nextInt();
+            pi[node] = previous;
+            previous = node;
+        }
         return pi;
     }
 
+    /**
+     * Parcourt les positions des intersections traversées, du début à la fin du chemin.
+     *
+     * @return un itérateur sur les positions du chemin.
+     */
+    public PrimitiveIterator.OfInt nodes() {
+        if (tree != null) {
+            return Arrays.stream(treeNodes()).iterator();
+        }
+        return new PrimitiveIterator.OfInt() {
+            private int offset = 0;
+            private int index = 0;
+            private int current = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < nbNodes;
+            }
+
+            @Override
+            public int nextInt() {
+                if (index >= nbNodes) {
+                    throw new NoSuchElementException();
+                }
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = encoded[offset++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                current = index++ == 0 ? value : current + ((value >>> 1) ^ -(value & 1));
+                return current;
+            }
+        };
+    }
+
+    /**
+     * @return les positions des intersections traversées, du début à la fin du chemin.
+     */
+    public int[] toNodes() {
+        if (tree != null) {
+            return treeNodes();
+        }
+        int[] nodes = new int[nbNodes];
+        PrimitiveIterator.OfInt it = nodes();
+        for (int i = 0; i < nbNodes; i++) {
+            nodes[i] = it.nextInt();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return le nombre d'intersections traversées, début et fin compris.
+     */
+    public int getNbNodes() {
+        if (tree != null) {
+            return tree.branchLength(tree.isReverse() ? debut.getPos() : fin.getPos());
+        }
+        return nbNodes;
+    }
+
+    /**
+     * @return l'arbre de recherche référencé par le chemin, ou null si le chemin range ses intersections.
+     */
+    public ShortestPathTree getTree() {
+        return tree;
+    }
+
+    private int[] treeNodes() {
+        if (tree.isReverse()) {
+            return tree.branch(debut.getPos());
+        }
+        int[] branch = tree.branch(fin.getPos());
+        for (int i = 0, j = branch.length - 1; i < j; i++, j--) {
+            int swap = branch[i];
+            branch[i] = branch[j];
+            branch[j] = swap;
+        }
+        return branch;
+    }
+
     /**
      * Obtient le coût total du chemin.
      *
@@ -60,32 +231,124 @@ public class Chemin {
     }
 
     /**
-     * Modifie l'Intersection de départ du chemin.
+     * Modifie l'Intersection de départ du chemin, qui est raccourci pour commencer à cette
+     * intersection. Le coût n'est pas modifié : l'appelant le met à jour par {@link #setCout(double)}.
+     * Un chemin qui référence un arbre de recherche range alors ses propres intersections.
      *
      * @param debut La nouvelle Intersection de départ du chemin.
+     * @throws IllegalArgumentException si l'intersection n'est pas sur le chemin.
      */
     public void setDebut(Intersection debut) {
+        if (pi != null) {
+            // Le tableau gardé est relu avec le nouveau début
+            this.debut = debut;
+            setPi(pi);
+            return;
+        }
+        int[] nodes = toNodes();
+        int i = indexOf(nodes, debut);
         this.debut = debut;
+        setNodes(Arrays.copyOfRange(nodes, i, nodes.length), sizeGraph);
     }
 
     /**
-     * Modifie l'Intersection de fin du chemin.
+     * Modifie l'Intersection de fin du chemin, qui est raccourci pour s'arrêter à cette
+     * intersection. Le coût n'est pas modifié : l'appelant le met à jour par {@link #setCout(double)}.
+     * Un chemin qui référence un arbre de recherche range alors ses propres intersections.
      *
      * @param fin La nouvelle Intersection de fin du chemin.
+     * @throws IllegalArgumentException si l'intersection n'est pas sur le chemin.
      */
     public void setFin(Intersection fin) {
+        if (pi != null) {
+            // Le tableau gardé est relu avec la nouvelle fin
+            this.fin = fin;
+            setPi(pi);
+            return;
+        }
+        int[] nodes = toNodes();
+        int i = indexOf(nodes, fin);
         this.fin = fin;
+        setNodes(Arrays.copyOf(nodes, i + 1), sizeGraph);
+    }
+
+    private static int indexOf(int[] nodes, Intersection intersection) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] == intersection.getPos()) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("L'intersection " + intersection + " n'est pas sur le chemin");
     }
 
     /**
      * Modifie le tableau représentant le chemin en termes d'indices des intersections visitées.
+     * Le chemin est relu en remontant les prédécesseurs depuis la fin jusqu'au début ; un tableau
+     * qui ne mène pas de la fin au début est gardé tel quel.
      *
      * @param pi Le nouveau tableau d'indices représentant le chemin.
      */
     public void setPi(int[] pi) {
+        int[] nodes = nodesFromPi(debut, fin, pi);
+        if (nodes != null) {
+            setNodes(nodes, pi.length);
+            return;
+        }
+        this.encoded = new byte[0];
+        this.nbNodes = 0;
+        this.tree = null;
+        this.sizeGraph = pi.length;
         this.pi = pi;
     }
 
+    /**
+     * Relit un chemin en remontant les prédécesseurs depuis la fin jusqu'au début.
+     *
+     * @return les positions traversées, du début à la fin, ou null si les prédécesseurs ne mènent
+     * pas de la fin au début.
+     */
+    private static int[] nodesFromPi(Intersection debut, Intersection fin, int[] pi) {
+        int[] nodes = new int[16];
+        int count = 0;
+        int v = fin.getPos();
+        nodes[count++] = v;
+        while (v != debut.getPos()) {
+            v = v >= 0 && v < pi.length ? pi[v] : -1;
+            if (v < 0 || count > pi.length) {
+                return null;
+            }
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * count);
+            }
+            nodes[count++] = v;
+        }
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int swap = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = swap;
+        }
+        return Arrays.copyOf(nodes, count);
+    }
+
+    private void setNodes(int[] nodes, int sizeGraph) {
+        byte[] buffer = new byte[5 * nodes.length];
+        int offset = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            int delta = i == 0 ? nodes[0] : nodes[i] - nodes[i - 1];
+            int value = i == 0 ? delta : (delta << 1) ^ (delta >> 31);
+            while ((value & ~0x7F) != 0) {
+                buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[offset++] = (byte) value;
+        }
+        this.encoded = Arrays.copyOf(buffer, offset);
+        this.nbNodes = nodes.length;
+        this.tree = null;
+        this.sizeGraph = sizeGraph;
+        this.pi = null;
+    }
+
     /**
      * Modifie le coût total du chemin.
      *
@@ -105,7 +368,7 @@ public class Chemin {
         return "Chemin{" +
                 "debut=" + debut +
                 ", fin=" + fin +
-                ", pi=" + Arrays.toString(pi) +
+                (pi != null ? ", pi=" + Arrays.toString(pi) : ", noeuds=" + Arrays.toString(toNodes())) +
                 ", cout=" + cout +
                 '}';
     }
@@ -1,12 +1,20 @@
 package fr.insalyonif.hubert.model;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
-import org.w3c.dom.*;
-import javax.xml.parsers.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 
 import java.io.FileWriter;
 import java.io.IOException;
@@ -19,8 +27,26 @@ import java.io.PrintWriter;
  * et charger les données à partir d'un fichier XML.
  */
 public class CityMap {
+    /**
+     * Taille de fichier XML à partir de laquelle {@link #load(String)} utilise le chargeur parallèle.
+     */
+    public static final long PARALLEL_LOAD_THRESHOLD = 8L << 20;
+
     private List<Intersection> intersections;
     private Intersection wareHouseLocation;
+    private CompressedGraph compressedGraph;
+    private StreetNameTable streetNames = new StreetNameTable();
+    private WeightStorage weightStorage = WeightStorage.DOUBLE;
+    private IntersectionIndex intersectionIndex;
+    private ChainContraction chainContraction;
+    private StronglyConnectedComponents components;
+    private ContractionHierarchy contractionHierarchy;
+    private Landmarks landmarks;
+    private HubLabels hubLabels;
+    private CustomizableRouting customizableRouting;
+    private final ShortestPathTreeStore shortestPathTrees = new ShortestPathTreeStore();
+    private SearchCache searchCache = new SearchCache();
+    private double lastParseThroughput;
     //private List<Chemin> chemins; // List to store Chemin objects
 
     /**
@@ -56,6 +82,370 @@ public class CityMap {
      */
     public void setIntersections(List<Intersection> intersections) {
         this.intersections = intersections;
+        this.compressedGraph = null;
+        this.intersectionIndex = null;
+        invalidateDerived(null);
+    }
+
+    /**
+     * Retourne l'index des intersections par position et par identifiant, construit au chargement.
+     * S'il n'existe pas encore (intersections définies à la main), il est construit à la demande.
+     *
+     * @return l'index des intersections de la carte.
+     */
+    public IntersectionIndex getIntersectionIndex() {
+        if (intersectionIndex == null) {
+            intersectionIndex = new IntersectionIndex(intersections);
+        }
+        return intersectionIndex;
+    }
+
+    /**
+     * Retourne l'instantané CSR du réseau routier, construit après le chargement de la carte.
+     * S'il n'existe pas encore (intersections définies à la main), il est construit à la demande.
+     *
+     * @return le graphe compressé de la carte.
+     */
+    public CompressedGraph getCompressedGraph() {
+        if (compressedGraph == null) {
+            compressedGraph = withWeightStorage(new CompressedGraph(intersections));
+        }
+        return compressedGraph;
+    }
+
+    /**
+     * Retourne la précision des longueurs de l'instantané des recherches.
+     *
+     * @return la précision des longueurs du graphe compressé.
+     */
+    public WeightStorage getWeightStorage() {
+        return weightStorage;
+    }
+
+    /**
+     * Choisit la précision du tableau des longueurs de l'instantané des recherches (voir
+     * {@link WeightStorage} pour la tolérance de chaque mode). Les intersections et les segments
+     * gardent leurs valeurs en double. À appeler avant le chargement ; sur une carte déjà
+     * chargée, le graphe est converti et les structures qui en dérivent sont recalculées.
+     *
+     * @param weightStorage la précision des longueurs.
+     */
+    public void setWeightStorage(WeightStorage weightStorage) {
+        this.weightStorage = weightStorage;
+        if (compressedGraph != null) {
+            CompressedGraph previous = compressedGraph;
+            this.compressedGraph = withWeightStorage(new CompressedGraph(intersections));
+            invalidateDerived(previous);
+        }
+    }
+
+    private CompressedGraph withWeightStorage(CompressedGraph graph) {
+        return graph.withWeightStorage(weightStorage);
+    }
+
+    /**
+     * Retourne la table des noms de rue dans laquelle les segments de la carte stockent leur nom.
+     * Chaque chargement remplace la table : celle d'une carte précédente n'est pas gardée.
+     *
+     * @return la table des noms de rue.
+     */
+    public StreetNameTable getStreetNames() {
+        return streetNames;
+    }
+
+    /**
+     * Retourne le nom de rue correspondant à un identifiant de nom.
+     *
+     * @param nameId l'identifiant de nom d'un segment (voir {@link RoadSegment#getNameId()}).
+     * @return le nom de rue.
+     */
+    public String getStreetName(int nameId) {
+        return getStreetNames().get(nameId);
+    }
+
+    /**
+     * Renumérote les intersections le long d'une courbe de Hilbert (voir {@link NodeOrdering}),
+     * pour que les intersections voisines occupent des cases voisines des tableaux indexés par position.
+     * Les identifiants ne changent pas : les archives, qui désignent les intersections par leur
+     * identifiant, restent valides. À appeler juste après le chargement, avant toute recherche.
+     */
+    public void renumberForLocality() {
+        renumber(NodeOrdering.hilbert(intersections, getCompressedGraph().getNbVertices()));
+    }
+
+    /**
+     * Applique une nouvelle numérotation aux intersections. La liste des intersections est triée
+     * selon les nouvelles positions, puis l'index et le graphe compressé sont reconstruits.
+     *
+     * @param newPos la nouvelle position de chaque intersection, indexée par son ancienne position.
+     */
+    public void renumber(int[] newPos) {
+        for (Intersection intersection : intersections) {
+            intersection.setPos(newPos[intersection.getPos()]);
+        }
+        List<Intersection> sorted = new ArrayList<>(intersections);
+        sorted.sort(null);
+        this.intersections = sorted;
+        this.intersectionIndex = new IntersectionIndex(sorted);
+        this.compressedGraph = withWeightStorage(new CompressedGraph(sorted));
+        invalidateDerived(null);
+    }
+
+    /**
+     * Contracte les chaînes de degré 2 du réseau routier (voir {@link ChainContraction}).
+     * Les recherches de plus courts chemins parcourent ensuite le graphe contracté ; leurs
+     * résultats sont inchangés. L'entrepôt n'est jamais contracté. Avec une hiérarchie de
+     * contraction, les recherches bornées aux points de livraison ne la parcourent pas.
+     */
+    public void contractChains() {
+        int wareHousePos = wareHouseLocation == null ? -1 : wareHouseLocation.getPos();
+        this.chainContraction = new ChainContraction(getCompressedGraph(), wareHousePos);
+    }
+
+    /**
+     * Retourne la contraction des chaînes de la carte, si elle a été calculée.
+     *
+     * @return la contraction des chaînes, ou null si {@link #contractChains()} n'a pas été appelée.
+     */
+    public ChainContraction getChainContraction() {
+        return chainContraction;
+    }
+
+    /**
+     * Prépare la hiérarchie de contraction de la carte (voir {@link ContractionHierarchy}) : elle
+     * est relue dans le dossier des fichiers dérivés si elle correspond au graphe chargé, sinon
+     * elle est construite puis enregistrée. Les recherches bornées aux points de livraison l'utilisent
+     * ensuite à la place de Dijkstra.
+     *
+     * @param mapFile le chemin du fichier XML de la carte.
+     */
+    public void prepareContractionHierarchy(String mapFile) {
+        this.contractionHierarchy = ContractionHierarchy.load(mapFile, getCompressedGraph());
+    }
+
+    /**
+     * Retourne la hiérarchie de contraction de la carte, si elle a été préparée.
+     *
+     * @return la hiérarchie, ou null si {@link #prepareContractionHierarchy(String)} n'a pas été appelée.
+     */
+    public ContractionHierarchy getContractionHierarchy() {
+        return contractionHierarchy;
+    }
+
+    /**
+     * Installe une hiérarchie de contraction déjà construite pour le graphe de la carte.
+     *
+     * @param contractionHierarchy la hiérarchie, ou null pour revenir à Dijkstra.
+     * @throws IllegalArgumentException si la hiérarchie a été construite pour un autre graphe.
+     */
+    public void setContractionHierarchy(ContractionHierarchy contractionHierarchy) {
+        if (contractionHierarchy != null && contractionHierarchy.getChecksum() != getCompressedGraph().getChecksum()) {
+            throw new IllegalArgumentException("La hiérarchie de contraction ne correspond pas au graphe de la carte");
+        }
+        this.contractionHierarchy = contractionHierarchy;
+    }
+
+    /**
+     * Prépare les repères de la recherche ALT (voir {@link Landmarks}) : ils sont relus dans le
+     * dossier des fichiers dérivés s'ils correspondent au graphe chargé et au nombre demandé,
+     * sinon ils sont calculés puis enregistrés. {@link AStar} les utilise ensuite pour guider ses recherches.
+     *
+     * @param mapFile     le chemin du fichier XML de la carte.
+     * @param nbLandmarks le nombre de repères : chacun coûte 8 octets par intersection, et resserre la borne.
+     */
+    public void prepareLandmarks(String mapFile, int nbLandmarks) {
+        this.landmarks = Landmarks.load(mapFile, getCompressedGraph(), nbLandmarks);
+    }
+
+    /**
+     * Retourne les repères de la recherche ALT, s'ils ont été préparés.
+     *
+     * @return les repères, ou null si {@link #prepareLandmarks(String, int)} n'a pas été appelée.
+     */
+    public Landmarks getLandmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Installe des repères déjà calculés pour le graphe de la carte. Seule la structure du graphe
+     * est vérifiée : des repères calculés avant l'allongement de segments restent admissibles,
+     * mais l'appelant ne doit pas installer des repères calculés avec des segments plus longs.
+     *
+     * @param landmarks les repères, ou null pour revenir à l'estimation géographique seule.
+     * @throws IllegalArgumentException si les repères ont été calculés pour un graphe d'une autre forme.
+     */
+    public void setLandmarks(Landmarks landmarks) {
+        if (landmarks != null && landmarks.getShapeChecksum() != getCompressedGraph().getShapeChecksum()) {
+            throw new IllegalArgumentException("Les repères ne correspondent pas au graphe de la carte");
+        }
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Prépare les étiquettes de hubs de la carte (voir {@link HubLabels}) : elles sont relues dans
+     * le dossier des fichiers dérivés si elles correspondent au graphe chargé, sinon elles sont
+     * dérivées de la hiérarchie de contraction, préparée au besoin, puis enregistrées.
+     *
+     * @param mapFile le chemin du fichier XML de la carte.
+     */
+    public void prepareHubLabels(String mapFile) {
+        if (contractionHierarchy == null) {
+            prepareContractionHierarchy(mapFile);
+        }
+        this.hubLabels = HubLabels.load(mapFile, contractionHierarchy);
+    }
+
+    /**
+     * Retourne les étiquettes de hubs de la carte, si elles ont été préparées.
+     *
+     * @return les étiquettes, ou null si {@link #prepareHubLabels(String)} n'a pas été appelée.
+     */
+    public HubLabels getHubLabels() {
+        return hubLabels;
+    }
+
+    /**
+     * Installe des étiquettes de hubs déjà construites pour le graphe de la carte.
+     *
+     * @param hubLabels les étiquettes, ou null pour s'en passer.
+     * @throws IllegalArgumentException si les étiquettes ont été construites pour un autre graphe.
+     */
+    public void setHubLabels(HubLabels hubLabels) {
+        if (hubLabels != null && hubLabels.getChecksum() != getCompressedGraph().getChecksum()) {
+            throw new IllegalArgumentException("Les étiquettes de hubs ne correspondent pas au graphe de la carte");
+        }
+        this.hubLabels = hubLabels;
+    }
+
+    /**
+     * Prépare la recherche sur partition (voir {@link CustomizableRouting}) : la partition est
+     * calculée une fois pour la forme du graphe, puis les cliques de ses cellules pour les
+     * longueurs courantes. Sans hiérarchie de contraction, les recherches bornées aux points de
+     * livraison l'utilisent à la place de Dijkstra.
+     */
+    public void prepareCustomizableRouting() {
+        GraphPartition partition = GraphPartition.compute(getCompressedGraph(), intersections);
+        this.customizableRouting = new CustomizableRouting(partition, getCompressedGraph());
+    }
+
+    /**
+     * Retourne la recherche sur partition de la carte, si elle a été préparée.
+     *
+     * @return la recherche sur partition, ou null si {@link #prepareCustomizableRouting()} n'a pas été appelée.
+     */
+    public CustomizableRouting getCustomizableRouting() {
+        return customizableRouting;
+    }
+
+    /**
+     * Retourne les arbres des recherches sur la carte, partagés par leurs chemins.
+     * Ils sont oubliés quand la carte ou les longueurs des segments changent.
+     *
+     * @return le magasin des arbres de la carte.
+     */
+    public ShortestPathTreeStore getShortestPathTrees() {
+        return shortestPathTrees;
+    }
+
+    /**
+     * Retourne le cache des arbres des recherches, partagé par toutes les tournées de la carte.
+     * Il est vidé quand la carte ou les longueurs des segments changent.
+     *
+     * @return le cache des recherches.
+     */
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    /**
+     * Remplace le cache des recherches, par exemple pour changer sa capacité ; un cache de
+     * capacité nulle ne garde que les arbres des tournées en cours.
+     *
+     * @param searchCache le nouveau cache.
+     */
+    public void setSearchCache(SearchCache searchCache) {
+        this.searchCache = searchCache;
+    }
+
+    /**
+     * Attache au cache des recherches le fichier de recherches de la carte (voir
+     * {@link SearchCacheFile}) : les arbres des sessions précédentes sont relus si
+     * le fichier correspond au graphe chargé, et les nouvelles y sont ajoutées. Le fichier est
+     * détaché quand la carte ou les longueurs des segments changent.
+     *
+     * @param mapFile le chemin du fichier XML de la carte.
+     */
+    public void prepareSearchCache(String mapFile) {
+        searchCache.attach(SearchCacheFile.open(mapFile, getCompressedGraph()));
+    }
+
+    /**
+     * Prend en compte des longueurs de {@link RoadSegment} modifiées (fermeture, pénalité) : le
+     * graphe compressé est reconstruit, la contraction des chaînes recalculée si elle existait,
+     * et la recherche sur partition re-personnalisée sans refaire la partition. Les repères sont
+     * gardés si aucun segment n'a raccourci. La hiérarchie de contraction et les étiquettes de
+     * hubs, qui dépendent des longueurs exactes, sont abandonnées.
+     */
+    public void updateSegmentLengths() {
+        CompressedGraph previous = getCompressedGraph();
+        this.compressedGraph = withWeightStorage(new CompressedGraph(intersections));
+        invalidateDerived(previous);
+    }
+
+    /**
+     * Abandonne les structures dérivées du graphe compressé après son remplacement. Celles qui
+     * dépendent des longueurs exactes (hiérarchie de contraction, étiquettes de hubs, arbres et
+     * cache des recherches) sont toujours abandonnées. Si seules les longueurs ont changé, la
+     * contraction des chaînes est recalculée, la recherche sur partition re-personnalisée, et les
+     * repères gardés tant qu'aucun arc n'a raccourci ; sinon tout est abandonné avec les
+     * composantes fortement connexes.
+     *
+     * @param previous le graphe remplacé, de même forme (positions et arcs), ou null si la forme
+     *                 du graphe a changé.
+     */
+    private void invalidateDerived(CompressedGraph previous) {
+        this.contractionHierarchy = null;
+        this.hubLabels = null;
+        shortestPathTrees.clear();
+        searchCache.clear();
+        if (landmarks != null && (previous == null || !compressedGraph.hasNoShorterEdgeThan(previous))) {
+            this.landmarks = null;
+        }
+        if (previous == null) {
+            this.chainContraction = null;
+            this.components = null;
+            this.customizableRouting = null;
+            return;
+        }
+        if (chainContraction != null) {
+            contractChains();
+        }
+        if (customizableRouting != null) {
+            customizableRouting.customize(compressedGraph);
+        }
+    }
+
+    /**
+     * Retourne les composantes fortement connexes du réseau routier, calculées à la première demande.
+     *
+     * @return les composantes fortement connexes de la carte.
+     */
+    public StronglyConnectedComponents getStronglyConnectedComponents() {
+        if (components == null) {
+            components = new StronglyConnectedComponents(getCompressedGraph());
+        }
+        return components;
+    }
+
+    /**
+     * Indique si une intersection peut être desservie depuis l'entrepôt, c'est-à-dire si
+     * elle est atteignable depuis l'entrepôt et peut y revenir. Le test est en temps constant.
+     *
+     * @param intersection l'intersection à tester.
+     * @return true si l'intersection est dans la même composante fortement connexe que l'entrepôt.
+     */
+    public boolean isReachableFromWareHouse(Intersection intersection) {
+        return getStronglyConnectedComponents().sameComponent(wareHouseLocation.getPos(), intersection.getPos());
     }
 
     /**
@@ -74,103 +464,297 @@ public class CityMap {
      */
     public void setWareHouseLocation(Intersection wareHouseLocation) {
         this.wareHouseLocation = wareHouseLocation;
+        this.chainContraction = null;
+    }
+
+    /**
+     * Charge la carte en privilégiant sa version compilée (voir {@link MapCompiler}).
+     * Si le fichier binaire est absent, périmé ou illisible, la carte est lue depuis le XML
+     * (en parallèle au-delà de {@link #PARALLEL_LOAD_THRESHOLD} octets) puis recompilée
+     * dans le dossier des fichiers dérivés ({@link MapCompiler#cacheDirectory()}) pour les
+     * chargements suivants.
+     *
+     * @param filename le chemin du fichier XML de la carte.
+     * @throws Exception si une erreur survient pendant le chargement du XML.
+     */
+    public void load(String filename) throws Exception {
+        File source = new File(filename);
+        Path binary = MapCompiler.binaryPathFor(filename);
+        if (MapCompiler.isUpToDate(binary, source)) {
+            try {
+                loadFromBinary(binary.toString());
+                return;
+            } catch (Exception e) {
+                System.out.println("Carte compilée illisible, lecture du XML : " + e.getMessage());
+            }
+        }
+
+        if (source.length() >= PARALLEL_LOAD_THRESHOLD) {
+            loadFromXMLParallel(filename);
+        } else {
+            loadFromXML(filename);
+        }
+        try {
+            MapCompiler.write(this, source, binary);
+        } catch (IOException e) {
+            System.out.println("Impossible d'écrire la carte compilée " + binary + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Charge les données de la carte à partir d'un fichier compilé par {@link MapCompiler}.
+     * Le fichier est projeté en mémoire et lu sans aucune analyse de texte ; le graphe compressé
+     * est repris tel quel depuis le fichier.
+     *
+     * @param filename le chemin du fichier binaire à charger.
+     * @throws IOException si le fichier est absent, tronqué ou d'un format inconnu.
+     */
+    public void loadFromBinary(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MapCompiler.MAGIC || buffer.getInt() != MapCompiler.VERSION) {
+                throw new IOException("Format de carte compilée inconnu : " + filename);
+            }
+            buffer.getLong(); // taille du XML source
+            buffer.getLong(); // date de modification du XML source
+            int n = buffer.getInt();
+            int m = buffer.getInt();
+            int nbNames = buffer.getInt();
+            int wareHousePos = buffer.getInt();
+
+            // Table des sommets
+            List<Intersection> loaded = new ArrayList<>(n);
+            Intersection[] byPos = new Intersection[n];
+            for (int u = 0; u < n; u++) {
+                long id = buffer.getLong();
+                double latitude = buffer.getDouble();
+                double longitude = buffer.getDouble();
+                byPos[u] = new Intersection(latitude, longitude, id, u);
+                loaded.add(byPos[u]);
+            }
+
+            // Arcs au format CSR et adjacence inverse
+            int[] offsets = BinaryFiles.readInts(buffer, n + 1);
+            int[] targets = BinaryFiles.readInts(buffer, m);
+            double[] weights = BinaryFiles.readDoubles(buffer, m);
+            int[] nameIds = BinaryFiles.readInts(buffer, m);
+            int[] reverseOffsets = BinaryFiles.readInts(buffer, n + 1);
+            int[] reverseEdges = BinaryFiles.readInts(buffer, m);
+
+            // Table des noms de rue de la carte, dans l'ordre du fichier
+            StreetNameTable names = new StreetNameTable(nbNames);
+            for (int i = 0; i < nbNames; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                names.intern(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            // Création des segments dans l'ordre des successeurs, puis des prédécesseurs
+            RoadSegment[] segments = new RoadSegment[m];
+            int[] origins = new int[m];
+            for (int u = 0; u < n; u++) {
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    segments[e] = new RoadSegment(byPos[u], byPos[targets[e]], nameIds[e], weights[e]);
+                    byPos[u].getSuccessors().add(segments[e]);
+                    origins[e] = u;
+                }
+            }
+            int[] reverseTargets = new int[m];
+            double[] reverseWeights = new double[m];
+            for (int v = 0; v < n; v++) {
+                for (int r = reverseOffsets[v]; r < reverseOffsets[v + 1]; r++) {
+                    byPos[v].getPredecessors().add(segments[reverseEdges[r]]);
+                    reverseTargets[r] = origins[reverseEdges[r]];
+                    reverseWeights[r] = weights[reverseEdges[r]];
+                }
+            }
+
+            install(loaded, wareHousePos < 0 ? null : byPos[wareHousePos], new IntersectionIndex(loaded),
+                    new CompressedGraph(n,
+                            CompressedGraph.Adjacency.of(offsets, targets, weights),
+                            CompressedGraph.Adjacency.of(reverseOffsets, reverseTargets, reverseWeights)), names);
+        } catch (RuntimeException e) {
+            // Dépassement de tampon ou index invalide : le fichier est tronqué ou corrompu
+            throw new IOException("Carte compilée corrompue : " + filename, e);
+        }
+    }
+
+    /**
+     * Remplace le contenu de la carte par des structures déjà construites par un chargeur.
+     *
+     * @param intersections     les intersections, rangées par position.
+     * @param wareHouseLocation l'emplacement de l'entrepôt.
+     * @param index             l'index des intersections.
+     * @param graph             le graphe compressé correspondant.
+     * @param streetNames       la table des noms de rue des segments.
+     */
+    void install(List<Intersection> intersections, Intersection wareHouseLocation,
+                 IntersectionIndex index, CompressedGraph graph, StreetNameTable streetNames) {
+        this.intersections = intersections;
+        this.streetNames = streetNames;
+        this.wareHouseLocation = wareHouseLocation;
+        this.intersectionIndex = index;
+        this.compressedGraph = withWeightStorage(graph);
+        invalidateDerived(null);
+    }
+
+    /**
+     * Charge les données de la carte à partir d'un fichier XML avec le {@link ParallelMapLoader} :
+     * la lecture, l'analyse des nombres et la construction de l'adjacence sont réparties sur
+     * tous les cœurs. Le résultat est identique à celui de {@link #loadFromXML(String)}.
+     *
+     * @param filename le chemin du fichier XML à charger.
+     * @throws IOException si le fichier est illisible ou mal formé.
+     */
+    public void loadFromXMLParallel(String filename) throws IOException {
+        long startTime = System.nanoTime();
+        new ParallelMapLoader().load(filename, this);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        long nbElements = intersections.size() + compressedGraph.getNbEdges() + 1;
+        this.lastParseThroughput = nbElements / Math.max(seconds, 1e-9);
     }
 
     /**
      * Charge les données de la carte à partir d'un fichier XML.
-     * Parse le fichier et initialise les intersections et segments de route.
+     * Le fichier est lu en une seule passe par un lecteur StAX : les intersections et les segments
+     * sont créés au fil de la lecture, sans construire d'arbre DOM. Un segment qui référence une
+     * intersection déclarée plus loin est mis en attente, ainsi que tous les segments suivants,
+     * pour conserver l'ordre du document dans les listes de successeurs et de prédécesseurs.
      *
      * @param filename le chemin du fichier XML à charger.
      * @throws Exception si une erreur survient pendant le chargement ou le parsing du fichier.
      */
     public void loadFromXML(String filename) throws Exception {
-        // Création d'une instance de File pour le fichier XML
-        File xmlFile = new File(filename);
-
-        // Initialisation du constructeur de documents XML
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        long startTime = System.nanoTime();
+        long nbElements = 0;
 
-        // Parsing du document XML
-        Document doc = dBuilder.parse(xmlFile);
+        // Initialisation du lecteur StAX, sans DTD ni entités externes
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
 
-        // Normalisation du document XML pour éliminer les espaces blancs inutiles
-        doc.getDocumentElement().normalize();
+        // Index des intersections par identifiant, complété au fil de la lecture
+        IntersectionIndex index = new IntersectionIndex();
+        StreetNameTable names = new StreetNameTable();
+        long warehouseId = -1;
+        List<long[]> pendingEnds = new ArrayList<>();
+        List<String> pendingNames = new ArrayList<>();
+        List<Double> pendingLengths = new ArrayList<>();
 
-        // Utilisation d'une Map pour stocker les intersections avec leur ID comme clé
-        Map<Long, Intersection> intersectionMap = new HashMap<>();
+        try (InputStream input = new BufferedInputStream(new FileInputStream(filename), 1 << 16)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "intersection": {
+                            // Extraction des attributs de chaque intersection
+                            long id = Long.parseLong(reader.getAttributeValue(null, "id"));
+                            double latitude = Double.parseDouble(reader.getAttributeValue(null, "latitude"));
+                            double longitude = Double.parseDouble(reader.getAttributeValue(null, "longitude"));
 
-        // Traitement des éléments "intersection" du XML
-        NodeList intersectionList = doc.getElementsByTagName("intersection");
-        for (int i = 0; i < intersectionList.getLength(); i++) {
-            Element intersectionElement = (Element) intersectionList.item(i);
+                            // Création d'un nouvel objet Intersection et ajout dans la liste et l'index
+                            Intersection intersection = new Intersection(latitude, longitude, id, this.intersections.size());
+                            this.intersections.add(intersection);
+                            index.add(intersection);
+                            nbElements++;
+                            break;
+                        }
+                        case "warehouse":
+                            // L'entrepôt peut référencer une intersection déclarée plus loin
+                            warehouseId = Long.parseLong(reader.getAttributeValue(null, "address"));
+                            nbElements++;
+                            break;
+                        case "segment": {
+                            // Extraction des attributs de chaque segment
+                            long originId = Long.parseLong(reader.getAttributeValue(null, "origin"));
+                            long destinationId = Long.parseLong(reader.getAttributeValue(null, "destination"));
+                            String name = reader.getAttributeValue(null, "name");
+                            double length = Double.parseDouble(reader.getAttributeValue(null, "length"));
+                            nbElements++;
 
-            // Extraction des attributs de chaque intersection
-            long id = Long.parseLong(intersectionElement.getAttribute("id"));
-            double latitude = Double.parseDouble(intersectionElement.getAttribute("latitude"));
-            double longitude = Double.parseDouble(intersectionElement.getAttribute("longitude"));
+                            Intersection origin = index.findById(originId);
+                            Intersection destination = index.findById(destinationId);
+                            if (pendingEnds.isEmpty() && origin != null && destination != null) {
+                                addSegment(names, origin, destination, name, length);
+                            } else {
+                                pendingEnds.add(new long[]{originId, destinationId});
+                                pendingNames.add(name);
+                                pendingLengths.add(length);
+                            }
+                            break;
+                        }
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
 
-            // Création d'un nouvel objet Intersection et ajout dans la Map et la liste
-            Intersection intersection = new Intersection(latitude, longitude, id, i);
-            intersectionMap.put(id, intersection);
-            this.intersections.add(intersection);
+        // Résolution des segments en attente, dans l'ordre du document
+        for (int i = 0; i < pendingEnds.size(); i++) {
+            Intersection origin = index.findById(pendingEnds.get(i)[0]);
+            Intersection destination = index.findById(pendingEnds.get(i)[1]);
+            if (origin == null || destination == null) {
+                throw new XMLStreamException("Segment vers une intersection inconnue : "
+                        + pendingEnds.get(i)[0] + " -> " + pendingEnds.get(i)[1]);
+            }
+            addSegment(names, origin, destination, pendingNames.get(i), pendingLengths.get(i));
         }
 
-        // Traitement de l'élément "warehouse" pour définir l'emplacement de l'entrepôt
-        Element warehouse = (Element) doc.getElementsByTagName("warehouse").item(0);
-        long warehouseId = Long.parseLong(warehouse.getAttribute("address"));
-        this.wareHouseLocation = intersectionMap.get(warehouseId);
+        // Définition de l'emplacement de l'entrepôt
+        this.wareHouseLocation = index.findById(warehouseId);
+        this.intersectionIndex = index;
+        this.streetNames = names;
 
-        // Traitement des éléments "segment" du XML
-        NodeList segmentList = doc.getElementsByTagName("segment");
-        for (int i = 0; i < segmentList.getLength(); i++) {
-            Element segmentElement = (Element) segmentList.item(i);
+        // Construction de l'instantané CSR utilisé par les recherches de plus courts chemins
+        this.compressedGraph = withWeightStorage(new CompressedGraph(this.intersections));
+        invalidateDerived(null);
 
-            // Extraction des attributs de chaque segment
-            long originId = Long.parseLong(segmentElement.getAttribute("origin"));
-            long destinationId = Long.parseLong(segmentElement.getAttribute("destination"));
-            String name = segmentElement.getAttribute("name");
-            double length = Double.parseDouble(segmentElement.getAttribute("length"));
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        this.lastParseThroughput = nbElements / Math.max(seconds, 1e-9);
+    }
 
-            // Récupération des intersections d'origine et de destination
-            Intersection origin = intersectionMap.get(originId);
-            Intersection destination = intersectionMap.get(destinationId);
+    /**
+     * Crée un segment de route et met à jour les listes de successeurs et de prédécesseurs.
+     */
+    private void addSegment(StreetNameTable names, Intersection origin, Intersection destination, String name, double length) {
+        RoadSegment segment = new RoadSegment(origin, destination, names.intern(name), length);
+        origin.getSuccessors().add(segment);
+        destination.getPredecessors().add(segment);
+    }
 
-            // Création d'un nouveau RoadSegment et mise à jour des listes de successeurs et de prédécesseurs
-            RoadSegment segment = new RoadSegment(origin, destination, name, length);
-            origin.getSuccessors().add(segment);
-            destination.getPredecessors().add(segment);
-        }
+    /**
+     * Retourne le débit du dernier chargement XML, en éléments (intersections, entrepôt et segments) par seconde.
+     *
+     * @return le nombre d'éléments lus par seconde, ou 0 si aucune carte XML n'a été chargée.
+     */
+    public double getLastParseThroughput() {
+        return lastParseThroughput;
     }
 
     /**
-     * Trouve une intersection basée sur sa position.
+     * Trouve une intersection basée sur sa position, en temps constant grâce à l'index.
      *
      * @param pos la position de l'intersection à trouver
      * @return l'intersection correspondante, ou null si elle n'est pas trouvée
      */
     public Intersection findIntersectionByPos(int pos) {
-        // Parcourt toutes les intersections
-        for (Intersection intersection : this.intersections) {
-            if (intersection.getPos() == pos) {
-                // Retourne l'intersection si la position correspond
-                return intersection;
-            }
-        }
-        // Retourne null si aucune intersection correspondante n'est trouvée
-        return null;
+        return getIntersectionIndex().findByPos(pos);
     }
 
+    /**
+     * Trouve une intersection basée sur son identifiant, en temps constant grâce à l'index.
+     *
+     * @param id l'identifiant de l'intersection à trouver
+     * @return l'intersection correspondante, ou null si elle n'est pas trouvée
+     */
     public Intersection findIntersectionByID(long id) {
-        // Parcourt toutes les intersections
-        for (Intersection intersection : this.intersections) {
-            if (intersection.getId() == id) {
-                // Retourne l'intersection si la position correspond
-                return intersection;
-            }
-        }
-        // Retourne null si aucune intersection correspondante n'est trouvée
-        return null;
+        return getIntersectionIndex().findById(id);
     }
 
     public void displayIntersections(String filePath) {
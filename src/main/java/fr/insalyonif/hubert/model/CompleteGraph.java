@@ -1,6 +1,7 @@
 package fr.insalyonif.hubert.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,9 +12,12 @@ public class CompleteGraph implements Graph {
 	private static final int MAX_COST = 40;
 	private static final int MIN_COST = 10;
 	int nbVertices;
-	double[][] cost;
+	// Coût de l'arc (i, j) en cost[i * nbVertices + j]
+	double[] cost;
 
 	public Map<Integer, Integer> positionToIndex;
+	// Position de chaque sommet, quand le graphe vient d'une matrice : la Map n'est construite qu'à la demande
+	private int[] positions;
 
 	/**
 	 * Create a complete directed graph such that each edge has a weight within [MIN_COST,MAX_COST]
@@ -23,13 +27,9 @@ public class CompleteGraph implements Graph {
 		this.nbVertices = intersections.size()+1 ;
 		System.out.println("nb vertice "+ nbVertices);
 
-		cost = new double[nbVertices][nbVertices];
-		for (int i = 0; i < nbVertices; i++) {
-			for (int j = 0; j < nbVertices; j++) {
-				cost[i][j] = Double.POSITIVE_INFINITY;
-			}
-		}
-		System.out.println("Cost size "+ cost[0].length);
+		cost = new double[nbVertices * nbVertices];
+		Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		System.out.println("Cost size "+ nbVertices);
 
 		System.out.println("chemins size "+ chemins.size());
 
@@ -54,7 +54,7 @@ public class CompleteGraph implements Graph {
 				int finIndex = positionToIndex.get(chemin.getFin().getPos());
 				double cout = chemin.getCout();
 
-				cost[debutIndex][finIndex] = cout;
+				cost[debutIndex * nbVertices + finIndex] = cout;
 			}
 
 
@@ -64,15 +64,48 @@ public class CompleteGraph implements Graph {
 
 
 			System.out.println("Tableau des coûts :");
-			for (int i = 0; i < cost.length; i++) {
-				for (int j = 0; j < cost[i].length; j++) {
-					System.out.print(cost[i][j] + "\t");
+			for (int i = 0; i < nbVertices; i++) {
+				for (int j = 0; j < nbVertices; j++) {
+					System.out.print(cost[i * nbVertices + j] + "\t");
 				}
 				System.out.println(); // Passer à la ligne après chaque ligne du tableau
 			}
 
 	}
 
+	/**
+	 * Crée le graphe complet de toute une tournée à partir de sa matrice de coûts, dont le
+	 * tableau est utilisé sans copie.
+	 * @param matrix la matrice des coûts de la tournée (voir {@link DistanceMatrix#forTour})
+	 */
+	public CompleteGraph(DistanceMatrix matrix) {
+		this(matrix, identity(matrix.size()));
+	}
+
+	/**
+	 * Crée le graphe complet de quelques points d'une matrice de coûts déjà calculée, sans
+	 * passer par les chemins : le sommet i est la ligne {@code rows[i]} de la matrice. Pour une
+	 * partie d'une tournée, les lignes viennent de {@link DistanceMatrix#tourRows}.
+	 * @param matrix la matrice des coûts
+	 * @param rows les lignes de la matrice à relier, l'entrepôt en premier
+	 */
+	public CompleteGraph(DistanceMatrix matrix, int[] rows) {
+		this.nbVertices = rows.length;
+		this.positions = new int[nbVertices];
+		for (int i = 0; i < nbVertices; i++) {
+			positions[i] = matrix.getPosition(rows[i]);
+		}
+		this.cost = matrix.subMatrix(rows);
+	}
+
+	private static int[] identity(int size) {
+		int[] rows = new int[size];
+		for (int i = 0; i < size; i++) {
+			rows[i] = i;
+		}
+		return rows;
+	}
+
 	@Override
 	public int getNbVertices() {
 		return nbVertices;
@@ -82,7 +115,7 @@ public class CompleteGraph implements Graph {
 	public double getCost(int i, int j) {
 		if (i<0 || i>=nbVertices || j<0 || j>=nbVertices)
 			return -1;
-		return cost[i][j];
+		return cost[i * nbVertices + j];
 	}
 
 	@Override
@@ -93,6 +126,12 @@ public class CompleteGraph implements Graph {
 	}
 
 	public Map<Integer, Integer> getPositionToIndexMap() {
+		if (positionToIndex == null && positions != null) {
+			positionToIndex = new HashMap<>();
+			for (int i = 0; i < nbVertices; i++) {
+				positionToIndex.put(positions[i], i);
+			}
+		}
 		return positionToIndex;
 	}
 
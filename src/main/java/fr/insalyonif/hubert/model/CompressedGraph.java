@@ -0,0 +1,382 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.List;
+
+/**
+ * Instantané immuable du réseau routier au format CSR (compressed sparse row).
+ * Les successeurs et les prédécesseurs de chaque intersection sont rangés dans des tableaux
+ * primitifs contigus, indexés par {@link Intersection#getPos()}, ce qui évite de parcourir
+ * les listes de {@link RoadSegment} à chaque relâchement.
+ */
+public class CompressedGraph {
+    private final int nbVertices;
+    private final int nbEdges;
+    private final Adjacency forward;
+    private final Adjacency reverse;
+    private WeightStorage storage = WeightStorage.DOUBLE;
+
+    /**
+     * Construit l'instantané à partir des intersections d'une carte.
+     * L'ordre des arcs de chaque intersection suit l'ordre de ses listes de successeurs
+     * et de prédécesseurs.
+     *
+     * @param intersections les intersections de la carte.
+     */
+    public CompressedGraph(List<Intersection> intersections) {
+        int size = 0;
+        int edges = 0;
+        for (Intersection intersection : intersections) {
+            size = Math.max(size, intersection.getPos() + 1);
+            edges += intersection.getSuccessors().size();
+        }
+        this.nbVertices = size;
+        this.nbEdges = edges;
+
+        int[] forwardOffsets = new int[size + 1];
+        int[] reverseOffsets = new int[size + 1];
+        for (Intersection intersection : intersections) {
+            forwardOffsets[intersection.getPos() + 1] = intersection.getSuccessors().size();
+            reverseOffsets[intersection.getPos() + 1] = intersection.getPredecessors().size();
+        }
+        for (int i = 0; i < size; i++) {
+            forwardOffsets[i + 1] += forwardOffsets[i];
+            reverseOffsets[i + 1] += reverseOffsets[i];
+        }
+
+        int[] forwardTargets = new int[forwardOffsets[size]];
+        double[] forwardWeights = new double[forwardOffsets[size]];
+        int[] reverseTargets = new int[reverseOffsets[size]];
+        double[] reverseWeights = new double[reverseOffsets[size]];
+        for (Intersection intersection : intersections) {
+            int e = forwardOffsets[intersection.getPos()];
+            for (RoadSegment segment : intersection.getSuccessors()) {
+                forwardTargets[e] = segment.getDestination().getPos();
+                forwardWeights[e] = segment.getLength();
+                e++;
+            }
+            e = reverseOffsets[intersection.getPos()];
+            for (RoadSegment segment : intersection.getPredecessors()) {
+                reverseTargets[e] = segment.getOrigin().getPos();
+                reverseWeights[e] = segment.getLength();
+                e++;
+            }
+        }
+
+        this.forward = Adjacency.of(forwardOffsets, forwardTargets, forwardWeights);
+        this.reverse = Adjacency.of(reverseOffsets, reverseTargets, reverseWeights);
+    }
+
+    /**
+     * Construit l'instantané directement à partir de tableaux CSR déjà calculés,
+     * par exemple lus depuis une carte compilée.
+     *
+     * @param nbVertices le nombre de sommets.
+     * @param forward    l'adjacence sortante.
+     * @param reverse    l'adjacence entrante.
+     */
+    CompressedGraph(int nbVertices, Adjacency forward, Adjacency reverse) {
+        this.nbVertices = nbVertices;
+        this.nbEdges = forward.targets.length;
+        this.forward = forward;
+        this.reverse = reverse;
+    }
+
+    /**
+     * Retourne une copie de l'instantané dans la précision demandée. Les tableaux de cibles et
+     * d'offsets sont partagés avec l'original, seules les longueurs sont converties.
+     *
+     * @param storage la précision des longueurs.
+     * @return l'instantané dans la précision demandée.
+     */
+    public CompressedGraph withWeightStorage(WeightStorage storage) {
+        if (storage == this.storage) {
+            return this;
+        }
+        CompressedGraph graph = new CompressedGraph(nbVertices,
+                forward.withWeightStorage(storage), reverse.withWeightStorage(storage));
+        graph.storage = storage;
+        return graph;
+    }
+
+    /**
+     * Retourne la précision de stockage de l'instantané.
+     *
+     * @return la précision des longueurs.
+     */
+    public WeightStorage getWeightStorage() {
+        return storage;
+    }
+
+    /**
+     * Estime la mémoire occupée par les tableaux des deux adjacences de l'instantané.
+     *
+     * @return le nombre d'octets des tableaux.
+     */
+    public long getFootprint() {
+        return forward.getFootprint() + reverse.getFootprint();
+    }
+
+    /**
+     * Retourne le nombre de sommets, c'est-à-dire la plus grande position plus un.
+     *
+     * @return le nombre de sommets.
+     */
+    public int getNbVertices() {
+        return nbVertices;
+    }
+
+    /**
+     * Retourne le nombre d'arcs (segments de route) du graphe.
+     *
+     * @return le nombre d'arcs.
+     */
+    public int getNbEdges() {
+        return nbEdges;
+    }
+
+    /**
+     * Calcule une empreinte de la structure et des longueurs du graphe. Deux instantanés de
+     * même empreinte ont (sauf collision) les mêmes arcs aux mêmes positions ; elle sert à
+     * vérifier qu'un fichier précalculé correspond bien à la carte chargée.
+     *
+     * @return l'empreinte sur 64 bits du graphe.
+     */
+    public long getChecksum() {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, nbVertices);
+        hash = mix(hash, nbEdges);
+        for (int u = 0; u < nbVertices; u++) {
+            hash = mix(hash, forward.end(u));
+            for (int e = forward.begin(u); e < forward.end(u); e++) {
+                hash = mix(hash, forward.target(e));
+                hash = mix(hash, Double.doubleToLongBits(forward.weight(e)));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Calcule une empreinte de la seule structure du graphe (arcs et positions), sans les
+     * longueurs : elle reste la même quand des segments sont allongés ou raccourcis.
+     *
+     * @return l'empreinte sur 64 bits de la structure du graphe.
+     */
+    public long getShapeChecksum() {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, nbVertices);
+        hash = mix(hash, nbEdges);
+        for (int u = 0; u < nbVertices; u++) {
+            hash = mix(hash, forward.end(u));
+            for (int e = forward.begin(u); e < forward.end(u); e++) {
+                hash = mix(hash, forward.target(e));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Indique si ce graphe a la même structure qu'un graphe précédent et qu'aucun de ses arcs
+     * n'y était plus long : les bornes inférieures calculées sur le précédent restent valables.
+     *
+     * @param previous le graphe précédent.
+     * @return true si les arcs sont les mêmes et qu'aucun n'a raccourci.
+     */
+    public boolean hasNoShorterEdgeThan(CompressedGraph previous) {
+        if (previous.nbVertices != nbVertices || previous.nbEdges != nbEdges) {
+            return false;
+        }
+        for (int u = 0; u < nbVertices; u++) {
+            if (previous.forward.end(u) != forward.end(u)) {
+                return false;
+            }
+        }
+        for (int e = 0; e < nbEdges; e++) {
+            if (previous.forward.target(e) != forward.target(e) || forward.weight(e) < previous.forward.weight(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Retourne l'adjacence sortante (successeurs) de chaque intersection.
+     *
+     * @return l'adjacence dans le sens de circulation.
+     */
+    public Adjacency forward() {
+        return forward;
+    }
+
+    /**
+     * Retourne l'adjacence entrante (prédécesseurs) de chaque intersection.
+     *
+     * @return l'adjacence dans le sens inverse de circulation.
+     */
+    public Adjacency reverse() {
+        return reverse;
+    }
+
+    /**
+     * Une direction du graphe : les arcs du sommet {@code u} occupent les indices
+     * {@code [offsets[u], offsets[u + 1])} des tableaux de cibles et de longueurs. Chaque
+     * précision de stockage a sa propre sous-classe : le tableau des longueurs est choisi une
+     * fois pour toutes, et {@link #weight(int)} ne teste rien pendant les relâchements.
+     */
+    public abstract static class Adjacency {
+        private final int[] offsets;
+        private final int[] targets;
+
+        private Adjacency(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        /**
+         * Crée une adjacence dont les longueurs sont gardées en double.
+         *
+         * @param offsets le premier arc de chaque sommet, suivi du nombre d'arcs.
+         * @param targets le sommet à l'autre extrémité de chaque arc.
+         * @param weights la longueur de chaque arc, en mètres.
+         * @return l'adjacence.
+         */
+        static Adjacency of(int[] offsets, int[] targets, double[] weights) {
+            return new DoubleWeights(offsets, targets, weights);
+        }
+
+        /**
+         * Convertit les longueurs dans la précision demandée, en partageant offsets et cibles.
+         */
+        private Adjacency withWeightStorage(WeightStorage storage) {
+            int m = targets.length;
+            switch (storage) {
+                case FLOAT:
+                    float[] floats = new float[m];
+                    for (int e = 0; e < m; e++) {
+                        floats[e] = (float) weight(e);
+                    }
+                    return new FloatWeights(offsets, targets, floats);
+                case DECIMETRE:
+                    int[] decimetres = new int[m];
+                    for (int e = 0; e < m; e++) {
+                        decimetres[e] = (int) Math.round(weight(e) * 10);
+                    }
+                    return new DecimetreWeights(offsets, targets, decimetres);
+                default:
+                    double[] doubles = new double[m];
+                    for (int e = 0; e < m; e++) {
+                        doubles[e] = weight(e);
+                    }
+                    return new DoubleWeights(offsets, targets, doubles);
+            }
+        }
+
+        /**
+         * @return le nombre d'octets d'une longueur.
+         */
+        abstract int weightBytes();
+
+        private long getFootprint() {
+            return (long) offsets.length * Integer.BYTES + (long) targets.length * (Integer.BYTES + weightBytes());
+        }
+
+        /**
+         * @param u la position d'un sommet.
+         * @return l'indice du premier arc du sommet.
+         */
+        public final int begin(int u) {
+            return offsets[u];
+        }
+
+        /**
+         * @param u la position d'un sommet.
+         * @return l'indice suivant le dernier arc du sommet.
+         */
+        public final int end(int u) {
+            return offsets[u + 1];
+        }
+
+        /**
+         * @param e l'indice d'un arc.
+         * @return la position du sommet à l'autre extrémité de l'arc.
+         */
+        public final int target(int e) {
+            return targets[e];
+        }
+
+        /**
+         * @param e l'indice d'un arc.
+         * @return la longueur de l'arc, en mètres.
+         */
+        public abstract double weight(int e);
+    }
+
+    /**
+     * Longueurs en double, identiques aux valeurs du fichier.
+     */
+    private static final class DoubleWeights extends Adjacency {
+        private final double[] weights;
+
+        private DoubleWeights(int[] offsets, int[] targets, double[] weights) {
+            super(offsets, targets);
+            this.weights = weights;
+        }
+
+        @Override
+        int weightBytes() {
+            return Double.BYTES;
+        }
+
+        @Override
+        public double weight(int e) {
+            return weights[e];
+        }
+    }
+
+    /**
+     * Longueurs en float.
+     */
+    private static final class FloatWeights extends Adjacency {
+        private final float[] weights;
+
+        private FloatWeights(int[] offsets, int[] targets, float[] weights) {
+            super(offsets, targets);
+            this.weights = weights;
+        }
+
+        @Override
+        int weightBytes() {
+            return Float.BYTES;
+        }
+
+        @Override
+        public double weight(int e) {
+            return weights[e];
+        }
+    }
+
+    /**
+     * Longueurs en décimètres entiers.
+     */
+    private static final class DecimetreWeights extends Adjacency {
+        private final int[] weights;
+
+        private DecimetreWeights(int[] offsets, int[] targets, int[] weights) {
+            super(offsets, targets);
+            this.weights = weights;
+        }
+
+        @Override
+        int weightBytes() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public double weight(int e) {
+            return weights[e] / 10.0;
+        }
+    }
+}
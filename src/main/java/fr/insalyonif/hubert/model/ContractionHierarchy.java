@@ -0,0 +1,560 @@
+package fr.insalyonif.hubert.model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Hiérarchie de contraction (Contraction Hierarchies) du réseau routier, construite par
+ * {@link ContractionHierarchyBuilder}. Chaque intersection a un rang ; le graphe est augmenté
+ * de raccourcis tels que tout plus court chemin puisse se décomposer en une montée (rangs
+ * croissants) suivie d'une descente. Une requête est donc une recherche bidirectionnelle qui
+ * ne suit que des arcs montants, et ne visite que quelques centaines de nœuds.
+ *
+ * <p>Chaque raccourci retient les deux arcs qu'il remplace, si bien qu'un chemin se déplie en
+ * la suite complète des intersections traversées, comme celle que dessine la vue.
+ *
+ * <p>La hiérarchie s'enregistre dans le dossier des fichiers dérivés ({@link #pathFor(String)})
+ * avec l'empreinte du graphe ({@link CompressedGraph#getChecksum()}) : un fichier dont
+ * l'empreinte ne correspond plus au graphe chargé (carte modifiée, renumérotée ou stockée dans une autre précision) est
+ * ignoré et recalculé.
+ */
+public class ContractionHierarchy {
+    public static final int MAGIC = 0x48434831; // "HCH1"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".hch";
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    private final int nbVertices;
+    private final int[] rank;
+    private final long checksum;
+
+    // Arc e : tails[e] -> heads[e] de longueur weights[e] ; un raccourci remplace firsts[e] puis seconds[e]
+    private final int[] tails;
+    private final int[] heads;
+    private final double[] weights;
+    private final int[] firsts;
+    private final int[] seconds;
+
+    // Arcs montants sortant de u, et arcs entrant dans u depuis un nœud de rang supérieur
+    private final int[] upOffsets;
+    private final int[] upEdges;
+    private final int[] downOffsets;
+    private final int[] downEdges;
+
+    ContractionHierarchy(int nbVertices, int[] rank, int[] tails, int[] heads, double[] weights,
+                         int[] firsts, int[] seconds, long checksum) {
+        this.nbVertices = nbVertices;
+        this.rank = rank;
+        this.tails = tails;
+        this.heads = heads;
+        this.weights = weights;
+        this.firsts = firsts;
+        this.seconds = seconds;
+        this.checksum = checksum;
+
+        this.upOffsets = new int[nbVertices + 1];
+        this.downOffsets = new int[nbVertices + 1];
+        for (int e = 0; e < tails.length; e++) {
+            if (rank[heads[e]] > rank[tails[e]]) {
+                upOffsets[tails[e] + 1]++;
+            } else {
+                downOffsets[heads[e] + 1]++;
+            }
+        }
+        for (int u = 0; u < nbVertices; u++) {
+            upOffsets[u + 1] += upOffsets[u];
+            downOffsets[u + 1] += downOffsets[u];
+        }
+        this.upEdges = new int[upOffsets[nbVertices]];
+        this.downEdges = new int[downOffsets[nbVertices]];
+        int[] upFill = Arrays.copyOf(upOffsets, nbVertices);
+        int[] downFill = Arrays.copyOf(downOffsets, nbVertices);
+        for (int e = 0; e < tails.length; e++) {
+            if (rank[heads[e]] > rank[tails[e]]) {
+                upEdges[upFill[tails[e]]++] = e;
+            } else {
+                downEdges[downFill[heads[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * Retourne le chemin du fichier de hiérarchie associé à une carte XML (extension .hch,
+     * voir {@link MapCompiler#derivedPath(String, String)}).
+     *
+     * @param xmlFile le chemin de la carte XML.
+     * @return le chemin du fichier de hiérarchie.
+     */
+    public static Path pathFor(String xmlFile) {
+        return MapCompiler.derivedPath(xmlFile, EXTENSION);
+    }
+
+    /**
+     * Charge la hiérarchie enregistrée pour une carte si elle correspond au graphe, ou la
+     * construit et l'enregistre sinon.
+     *
+     * @param xmlFile le chemin de la carte XML.
+     * @param graph   le graphe compressé de la carte chargée.
+     * @return la hiérarchie du graphe.
+     */
+    public static ContractionHierarchy load(String xmlFile, CompressedGraph graph) {
+        Path file = pathFor(xmlFile);
+        long checksum = graph.getChecksum();
+        if (Files.isRegularFile(file)) {
+            try {
+                ContractionHierarchy hierarchy = read(file);
+                if (hierarchy.checksum == checksum) {
+                    return hierarchy;
+                }
+            } catch (IOException e) {
+                System.out.println("Hiérarchie de contraction illisible, recalcul : " + e.getMessage());
+            }
+        }
+        ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph);
+        try {
+            hierarchy.write(file);
+        } catch (IOException e) {
+            System.out.println("Impossible d'écrire la hiérarchie de contraction " + file + " : " + e.getMessage());
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Lit une hiérarchie enregistrée par {@link #write(Path)}. Le fichier est projeté en mémoire.
+     *
+     * @param file le fichier de hiérarchie.
+     * @return la hiérarchie lue.
+     * @throws IOException si le fichier est absent, tronqué ou d'un format inconnu.
+     */
+    public static ContractionHierarchy read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Format de hiérarchie inconnu : " + file);
+            }
+            long checksum = buffer.getLong();
+            int n = buffer.getInt();
+            int m = buffer.getInt();
+            if (channel.size() != HEADER_SIZE + (long) n * Integer.BYTES
+                    + (long) m * (4 * Integer.BYTES + Double.BYTES)) {
+                throw new IOException("Fichier de hiérarchie tronqué : " + file);
+            }
+            int[] rank = BinaryFiles.readInts(buffer, n);
+            int[] tails = BinaryFiles.readInts(buffer, m);
+            int[] heads = BinaryFiles.readInts(buffer, m);
+            double[] weights = BinaryFiles.readDoubles(buffer, m);
+            int[] firsts = BinaryFiles.readInts(buffer, m);
+            int[] seconds = BinaryFiles.readInts(buffer, m);
+            return new ContractionHierarchy(n, rank, tails, heads, weights, firsts, seconds, checksum);
+        }
+    }
+
+    /**
+     * Enregistre la hiérarchie. Le fichier est d'abord écrit à côté de la cible puis renommé,
+     * pour qu'un lecteur ne voie jamais un fichier incomplet.
+     *
+     * @param target le fichier à écrire.
+     * @throws IOException si l'écriture échoue.
+     */
+    public void write(Path target) throws IOException {
+        BinaryFiles.writeAtomically(target, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(checksum);
+            out.writeInt(nbVertices);
+            out.writeInt(tails.length);
+            for (int r : rank) {
+                out.writeInt(r);
+            }
+            for (int[] column : new int[][]{tails, heads}) {
+                for (int value : column) {
+                    out.writeInt(value);
+                }
+            }
+            for (double weight : weights) {
+                out.writeDouble(weight);
+            }
+            for (int[] column : new int[][]{firsts, seconds}) {
+                for (int value : column) {
+                    out.writeInt(value);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return l'empreinte du graphe à partir duquel la hiérarchie a été construite.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return le nombre de sommets de la hiérarchie.
+     */
+    public int getNbVertices() {
+        return nbVertices;
+    }
+
+    /**
+     * @return le nombre de raccourcis ajoutés aux arcs d'origine.
+     */
+    public int getNbShortcuts() {
+        int count = 0;
+        for (int first : firsts) {
+            if (first >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param u une position.
+     * @return le rang de contraction de la position (0 pour la première contractée).
+     */
+    public int getRank(int u) {
+        return rank[u];
+    }
+
+    // Accès aux arcs de la hiérarchie, pour les structures qui en dérivent (étiquettes de hubs)
+
+    int upBegin(int u) {
+        return upOffsets[u];
+    }
+
+    int upEnd(int u) {
+        return upOffsets[u + 1];
+    }
+
+    int upEdge(int i) {
+        return upEdges[i];
+    }
+
+    int downBegin(int u) {
+        return downOffsets[u];
+    }
+
+    int downEnd(int u) {
+        return downOffsets[u + 1];
+    }
+
+    int downEdge(int i) {
+        return downEdges[i];
+    }
+
+    int tail(int e) {
+        return tails[e];
+    }
+
+    int head(int e) {
+        return heads[e];
+    }
+
+    double weight(int e) {
+        return weights[e];
+    }
+
+    /**
+     * Calcule la longueur du plus court chemin entre deux positions.
+     *
+     * @param source la position de départ.
+     * @param target la position d'arrivée.
+     * @return la distance, ou {@link SearchWorkspace#INFINITY} si l'arrivée est inaccessible.
+     */
+    public double distance(int source, int target) {
+        try (SearchWorkspace forward = SearchWorkspace.borrow(nbVertices);
+             SearchWorkspace backward = SearchWorkspace.borrow(nbVertices)) {
+            int meeting = query(source, target, forward, backward);
+            return meeting == -1 ? SearchWorkspace.INFINITY : forward.distance(meeting) + backward.distance(meeting);
+        }
+    }
+
+    /**
+     * Calcule le plus court chemin entre deux positions, raccourcis dépliés.
+     *
+     * @param source la position de départ.
+     * @param target la position d'arrivée.
+     * @return les positions traversées, de {@code source} à {@code target} comprises, ou null
+     * si l'arrivée est inaccessible.
+     */
+    public int[] path(int source, int target) {
+        return path(source, target, null);
+    }
+
+    /**
+     * Calcule le plus court chemin entre deux positions et la distance de la source à chaque
+     * position traversée, lue sur les arcs du graphe en dépliant les raccourcis.
+     *
+     * @param source  la position de départ.
+     * @param target  la position d'arrivée.
+     * @param lengths reçoit la distance de la source à chaque position du chemin, dans l'ordre, ou null.
+     * @return les positions traversées, ou null si l'arrivée est inaccessible.
+     */
+    int[] path(int source, int target, DoubleList lengths) {
+        try (SearchWorkspace forward = SearchWorkspace.borrow(nbVertices);
+             SearchWorkspace backward = SearchWorkspace.borrow(nbVertices)) {
+            int meeting = query(source, target, forward, backward);
+            return meeting == -1 ? null : unpack(source, meeting, forward, backward, lengths);
+        }
+    }
+
+    /**
+     * Calcule le plus court chemin entre deux intersections, codé comme ceux de {@link Dijkstra}.
+     *
+     * @param start       l'intersection de départ.
+     * @param destination l'intersection d'arrivée.
+     * @param sizeGraph   la taille du graphe.
+     * @return le chemin, ou null si l'arrivée est inaccessible.
+     */
+    public Chemin findPath(Intersection start, Intersection destination, int sizeGraph) {
+        try (SearchWorkspace forward = SearchWorkspace.borrow(nbVertices);
+             SearchWorkspace backward = SearchWorkspace.borrow(nbVertices)) {
+            int meeting = query(start.getPos(), destination.getPos(), forward, backward);
+            if (meeting == -1) {
+                return null;
+            }
+            int[] nodes = unpack(start.getPos(), meeting, forward, backward, null);
+            return Chemin.fromNodes(start, destination, nodes, sizeGraph, forward.distance(meeting) + backward.distance(meeting));
+        }
+    }
+
+    /**
+     * Déplie le chemin trouvé par {@link #query} en la suite des positions traversées, et en
+     * ajoute les distances depuis la source à {@code lengths} s'il n'est pas null.
+     */
+    private int[] unpack(int source, int meeting, SearchWorkspace forward, SearchWorkspace backward,
+                         DoubleList lengths) {
+        // Arcs de la montée (de la rencontre vers la source), puis de la descente
+        int[] edges = new int[16];
+        int nbEdges = 0;
+        for (int u = meeting; forward.pi(u) != -1; u = tails[forward.pi(u)]) {
+            edges = push(edges, nbEdges++, forward.pi(u));
+        }
+        for (int i = 0, j = nbEdges - 1; i < j; i++, j--) {
+            int swap = edges[i];
+            edges[i] = edges[j];
+            edges[j] = swap;
+        }
+        for (int u = meeting; backward.pi(u) != -1; u = heads[backward.pi(u)]) {
+            edges = push(edges, nbEdges++, backward.pi(u));
+        }
+
+        int[] nodes = new int[nbEdges + 1];
+        int nbNodes = 0;
+        nodes[nbNodes++] = source;
+        double length = 0.0;
+        if (lengths != null) {
+            lengths.add(length);
+        }
+        int[] stack = new int[16];
+        for (int i = 0; i < nbEdges; i++) {
+            int top = 0;
+            stack[top++] = edges[i];
+            while (top > 0) {
+                int e = stack[--top];
+                if (firsts[e] < 0) {
+                    nodes = push(nodes, nbNodes++, heads[e]);
+                    if (lengths != null) {
+                        length += weights[e];
+                        lengths.add(length);
+                    }
+                } else {
+                    stack = push(stack, top++, seconds[e]);
+                    stack = push(stack, top++, firsts[e]);
+                }
+            }
+        }
+        return Arrays.copyOf(nodes, nbNodes);
+    }
+
+    private static int[] push(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * Requête bidirectionnelle : la source monte par les arcs montants, la cible par les arcs
+     * entrants depuis des rangs supérieurs. Le prédécesseur retenu est l'indice de l'arc emprunté.
+     *
+     * @return la position de rencontre sur le plus court chemin, ou -1 si l'arrivée est inaccessible.
+     */
+    private int query(int source, int target, SearchWorkspace forward, SearchWorkspace backward) {
+        forward.set(source, 0.0, -1);
+        forward.heap().insertOrDecrease(source, 0.0);
+        backward.set(target, 0.0, -1);
+        backward.heap().insertOrDecrease(target, 0.0);
+        double best = source == target ? 0.0 : SearchWorkspace.INFINITY;
+        int meeting = source == target ? source : -1;
+
+        IndexedHeap forwardHeap = forward.heap();
+        IndexedHeap backwardHeap = backward.heap();
+        // Une montée ne s'arrête pas à la rencontre : chaque côté continue tant que sa frontière est sous le meilleur coût
+        while ((!forwardHeap.isEmpty() && forwardHeap.minKey() < best)
+                || (!backwardHeap.isEmpty() && backwardHeap.minKey() < best)) {
+            boolean forwardStep = backwardHeap.isEmpty() || backwardHeap.minKey() >= best
+                    || (!forwardHeap.isEmpty() && forwardHeap.minKey() <= backwardHeap.minKey());
+            SearchWorkspace side = forwardStep ? forward : backward;
+            SearchWorkspace other = forwardStep ? backward : forward;
+
+            int u = side.heap().pop();
+            side.settle(u);
+            double du = side.distance(u);
+            if (other.isReached(u) && du + other.distance(u) < best) {
+                best = du + other.distance(u);
+                meeting = u;
+            }
+            if (isStalled(u, du, side, forwardStep)) {
+                continue;
+            }
+            int[] offsets = forwardStep ? upOffsets : downOffsets;
+            int[] edges = forwardStep ? upEdges : downEdges;
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                int e = edges[i];
+                int v = forwardStep ? heads[e] : tails[e];
+                double dv = du + weights[e];
+                if (dv < side.distance(v)) {
+                    side.set(v, dv, e);
+                    side.heap().insertOrDecrease(v, dv);
+                }
+            }
+        }
+        return meeting;
+    }
+
+    /**
+     * Arrêt à la demande : si un voisin de rang supérieur, déjà atteint, mène à {@code u} par un
+     * arc descendant plus court que la distance de {@code u}, aucun plus court chemin ne monte par
+     * {@code u} et ses arcs n'ont pas besoin d'être relâchés.
+     */
+    private boolean isStalled(int u, double du, SearchWorkspace side, boolean forwardStep) {
+        int[] offsets = forwardStep ? downOffsets : upOffsets;
+        int[] edges = forwardStep ? downEdges : upEdges;
+        for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+            int e = edges[i];
+            int w = forwardStep ? tails[e] : heads[e];
+            if (side.isReached(w) && side.distance(w) + weights[e] < du) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calcule toutes les distances entre des sources et des cibles par la méthode des seaux :
+     * une montée depuis chaque cible dépose sa distance dans un seau à chaque nœud fixé, puis
+     * une montée depuis chaque source combine ses distances avec le contenu des seaux croisés.
+     *
+     * @param sources les positions de départ.
+     * @param targets les positions d'arrivée.
+     * @return la matrice des distances, ligne par source : {@code matrix[i * targets.length + j]}
+     * est la distance de {@code sources[i]} à {@code targets[j]}, ou {@link SearchWorkspace#INFINITY}.
+     */
+    public double[] manyToMany(int[] sources, int[] targets) {
+        int k = targets.length;
+        double[] matrix = new double[sources.length * k];
+        Arrays.fill(matrix, SearchWorkspace.INFINITY);
+
+        // Entrées des seaux, regroupées ensuite par nœud
+        int[] bucketNode = new int[64];
+        int[] bucketTarget = new int[64];
+        double[] bucketDistance = new double[64];
+        int nbEntries = 0;
+        int[] space = new int[nbVertices];
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(nbVertices)) {
+            for (int j = 0; j < k; j++) {
+                workspace.reset();
+                int size = upwardSearch(targets[j], workspace, false, space);
+                for (int s = 0; s < size; s++) {
+                    int u = space[s];
+                    if (nbEntries == bucketNode.length) {
+                        bucketNode = Arrays.copyOf(bucketNode, nbEntries * 2);
+                        bucketTarget = Arrays.copyOf(bucketTarget, nbEntries * 2);
+                        bucketDistance = Arrays.copyOf(bucketDistance, nbEntries * 2);
+                    }
+                    bucketNode[nbEntries] = u;
+                    bucketTarget[nbEntries] = j;
+                    bucketDistance[nbEntries] = workspace.distance(u);
+                    nbEntries++;
+                }
+            }
+
+            int[] bucketStart = new int[nbVertices + 1];
+            for (int i = 0; i < nbEntries; i++) {
+                bucketStart[bucketNode[i] + 1]++;
+            }
+            for (int u = 0; u < nbVertices; u++) {
+                bucketStart[u + 1] += bucketStart[u];
+            }
+            int[] fill = Arrays.copyOf(bucketStart, nbVertices);
+            int[] sortedTarget = new int[nbEntries];
+            double[] sortedDistance = new double[nbEntries];
+            for (int i = 0; i < nbEntries; i++) {
+                int slot = fill[bucketNode[i]]++;
+                sortedTarget[slot] = bucketTarget[i];
+                sortedDistance[slot] = bucketDistance[i];
+            }
+
+            for (int i = 0; i < sources.length; i++) {
+                workspace.reset();
+                int size = upwardSearch(sources[i], workspace, true, space);
+                int row = i * k;
+                for (int s = 0; s < size; s++) {
+                    int u = space[s];
+                    double du = workspace.distance(u);
+                    for (int b = bucketStart[u]; b < bucketStart[u + 1]; b++) {
+                        double candidate = du + sortedDistance[b];
+                        if (candidate < matrix[row + sortedTarget[b]]) {
+                            matrix[row + sortedTarget[b]] = candidate;
+                        }
+                    }
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Montée complète depuis {@code start} : tous les nœuds de rang supérieur accessibles sont
+     * fixés. Les nœuds arrêtés à la demande ne peuvent porter aucun plus court chemin et ne sont
+     * pas retenus.
+     *
+     * @return le nombre de nœuds retenus, rangés au début de {@code space}.
+     */
+    private int upwardSearch(int start, SearchWorkspace workspace, boolean forwardStep, int[] space) {
+        IndexedHeap heap = workspace.heap();
+        workspace.set(start, 0.0, -1);
+        heap.insertOrDecrease(start, 0.0);
+        int[] offsets = forwardStep ? upOffsets : downOffsets;
+        int[] edges = forwardStep ? upEdges : downEdges;
+        int size = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            workspace.settle(u);
+            double du = workspace.distance(u);
+            if (isStalled(u, du, workspace, forwardStep)) {
+                continue;
+            }
+            space[size++] = u;
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                int e = edges[i];
+                int v = forwardStep ? heads[e] : tails[e];
+                double dv = du + weights[e];
+                if (dv < workspace.distance(v)) {
+                    workspace.set(v, dv, e);
+                    heap.insertOrDecrease(v, dv);
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,198 @@
+package fr.insalyonif.hubert.model;
+
+
+/**
+ * Précalcul d'une {@link ContractionHierarchy} : les intersections sont contractées une à une,
+ * de la moins importante à la plus importante. Contracter un nœud {@code v} le retire du graphe
+ * restant ; pour chaque paire de voisins {@code u -> v -> x} dont le plus court chemin passe par
+ * {@code v}, un raccourci {@code u -> x} est ajouté.
+ *
+ * <p>L'ordre est choisi par la différence d'arcs (raccourcis ajoutés moins arcs retirés), à
+ * laquelle s'ajoute le nombre de voisins déjà contractés pour répartir les contractions sur
+ * toute la carte. Les priorités sont mises à jour paresseusement : un nœud n'est contracté que
+ * si sa priorité recalculée reste la plus petite.
+ *
+ * <p>Un raccourci est inutile s'il existe un chemin témoin de {@code u} à {@code x} qui évite
+ * {@code v} et n'est pas plus long. Les recherches de témoins sont des Dijkstra locaux, bornés
+ * par la longueur du plus long raccourci envisagé et par un nombre de nœuds fixés : un témoin
+ * manqué ne fait qu'ajouter un raccourci superflu, jamais un résultat faux.
+ */
+public class ContractionHierarchyBuilder {
+    private static final int WITNESS_SETTLED_LIMIT = 400;
+
+    private final int nbVertices;
+    private final boolean[] contracted;
+    private final int[] deletedNeighbours;
+    private final IntList[] outEdges;
+    private final IntList[] inEdges;
+
+    // Arcs de la hiérarchie : les arcs d'origine, puis les raccourcis dans l'ordre de création
+    private final IntList tails = new IntList();
+    private final IntList heads = new IntList();
+    private final DoubleList weights = new DoubleList();
+    private final IntList firsts = new IntList();
+    private final IntList seconds = new IntList();
+
+    private ContractionHierarchyBuilder(CompressedGraph graph) {
+        this.nbVertices = graph.getNbVertices();
+        this.contracted = new boolean[nbVertices];
+        this.deletedNeighbours = new int[nbVertices];
+        this.outEdges = new IntList[nbVertices];
+        this.inEdges = new IntList[nbVertices];
+        for (int v = 0; v < nbVertices; v++) {
+            outEdges[v] = new IntList(8);
+            inEdges[v] = new IntList(8);
+        }
+        CompressedGraph.Adjacency forward = graph.forward();
+        for (int u = 0; u < nbVertices; u++) {
+            for (int e = forward.begin(u); e < forward.end(u); e++) {
+                int v = forward.target(e);
+                if (v != u) {
+                    addEdge(u, v, forward.weight(e), -1, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Construit la hiérarchie d'un graphe.
+     *
+     * @param graph le graphe compressé de la carte.
+     * @return la hiérarchie, prête pour les requêtes.
+     */
+    public static ContractionHierarchy build(CompressedGraph graph) {
+        return new ContractionHierarchyBuilder(graph).contractAll(graph.getChecksum());
+    }
+
+    private ContractionHierarchy contractAll(long checksum) {
+        int[] rank = new int[nbVertices];
+        IndexedHeap queue = new IndexedHeap(nbVertices);
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(nbVertices)) {
+            for (int v = 0; v < nbVertices; v++) {
+                queue.insertOrDecrease(v, priority(v, workspace));
+            }
+            int order = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.pop();
+                double updated = priority(v, workspace);
+                if (!queue.isEmpty() && updated > queue.minKey()) {
+                    // Priorité périmée : le nœud reprend sa place dans la file
+                    queue.insertOrDecrease(v, updated);
+                    continue;
+                }
+                contract(v, workspace, false);
+                rank[v] = order++;
+            }
+        }
+        return new ContractionHierarchy(nbVertices, rank, tails.toArray(), heads.toArray(), weights.toArray(),
+                firsts.toArray(), seconds.toArray(), checksum);
+    }
+
+    private double priority(int v, SearchWorkspace workspace) {
+        int removed = 0;
+        for (int i = 0; i < inEdges[v].size(); i++) {
+            if (!contracted[tails.get(inEdges[v].get(i))]) {
+                removed++;
+            }
+        }
+        for (int i = 0; i < outEdges[v].size(); i++) {
+            if (!contracted[heads.get(outEdges[v].get(i))]) {
+                removed++;
+            }
+        }
+        int shortcuts = contract(v, workspace, true);
+        return shortcuts - removed + deletedNeighbours[v];
+    }
+
+    /**
+     * Contracte un nœud, ou compte seulement les raccourcis qu'il faudrait ajouter.
+     *
+     * @return le nombre de raccourcis (ajoutés ou nécessaires).
+     */
+    private int contract(int v, SearchWorkspace workspace, boolean simulate) {
+        double maxOut = 0;
+        for (int i = 0; i < outEdges[v].size(); i++) {
+            int e = outEdges[v].get(i);
+            if (!contracted[heads.get(e)]) {
+                maxOut = Math.max(maxOut, weights.get(e));
+            }
+        }
+
+        int nbShortcuts = 0;
+        for (int i = 0; i < inEdges[v].size(); i++) {
+            int in = inEdges[v].get(i);
+            int u = tails.get(in);
+            if (contracted[u]) {
+                continue;
+            }
+            double viaV = weights.get(in);
+            witnessSearch(u, v, viaV + maxOut, workspace);
+            for (int j = 0; j < outEdges[v].size(); j++) {
+                int out = outEdges[v].get(j);
+                int x = heads.get(out);
+                if (contracted[x] || x == u) {
+                    continue;
+                }
+                double length = viaV + weights.get(out);
+                if (workspace.distance(x) <= length) {
+                    continue;
+                }
+                nbShortcuts++;
+                if (!simulate) {
+                    addEdge(u, x, length, in, out);
+                }
+            }
+        }
+
+        if (!simulate) {
+            contracted[v] = true;
+            for (int i = 0; i < inEdges[v].size(); i++) {
+                deletedNeighbours[tails.get(inEdges[v].get(i))]++;
+            }
+            for (int i = 0; i < outEdges[v].size(); i++) {
+                deletedNeighbours[heads.get(outEdges[v].get(i))]++;
+            }
+        }
+        return nbShortcuts;
+    }
+
+    /**
+     * Dijkstra local depuis {@code u} sur le graphe restant privé de {@code v}, arrêté au-delà de
+     * {@code maxLength}. Les distances trouvées restent lisibles dans l'espace de travail.
+     */
+    private void witnessSearch(int u, int v, double maxLength, SearchWorkspace workspace) {
+        workspace.reset();
+        IndexedHeap heap = workspace.heap();
+        workspace.set(u, 0.0, -1);
+        heap.insertOrDecrease(u, 0.0);
+        while (!heap.isEmpty() && heap.minKey() <= maxLength && workspace.getNbSettled() < WITNESS_SETTLED_LIMIT) {
+            int w = heap.pop();
+            workspace.settle(w);
+            double dw = workspace.distance(w);
+            IntList edges = outEdges[w];
+            for (int i = 0; i < edges.size(); i++) {
+                int e = edges.get(i);
+                int x = heads.get(e);
+                if (x == v || contracted[x] || workspace.isSettled(x)) {
+                    continue;
+                }
+                double dx = dw + weights.get(e);
+                if (dx < workspace.distance(x)) {
+                    workspace.set(x, dx, w);
+                    heap.insertOrDecrease(x, dx);
+                }
+            }
+        }
+    }
+
+    private void addEdge(int tail, int head, double weight, int first, int second) {
+        int e = tails.size();
+        tails.add(tail);
+        heads.add(head);
+        weights.add(weight);
+        firsts.add(first);
+        seconds.add(second);
+        outEdges[tail].add(e);
+        inEdges[head].add(e);
+    }
+}
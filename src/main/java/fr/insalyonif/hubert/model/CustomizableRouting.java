@@ -0,0 +1,342 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+
+/**
+ * Recherche de plus courts chemins sur une partition multi-niveaux (customizable route
+ * planning). Pour chaque cellule de la {@link GraphPartition}, une clique relie ses frontières
+ * deux à deux, pondérée par la plus courte distance qui reste dans la cellule.
+ *
+ * <p>Le calcul des cliques (personnalisation) ne dépend que des longueurs : il est refait par
+ * {@link #customize(CompressedGraph)} quand des segments sont allongés, raccourcis ou fermés,
+ * sans toucher à la partition. Chaque niveau se calcule à partir du niveau inférieur, par des
+ * Dijkstra locaux entre les frontières d'une même cellule.
+ *
+ * <p>Une requête est un Dijkstra qui parcourt les segments d'origine dans les cellules les plus
+ * fines de la source et de la destination, et les cliques du plus haut niveau qui les sépare
+ * partout ailleurs. Les arcs de clique du chemin trouvé sont dépliés par un Dijkstra restreint à
+ * leur cellule.
+ */
+public class CustomizableRouting {
+    private final GraphPartition partition;
+    private final int nbVertices;
+    // Clique de la cellule c au niveau l + 1 : matrice b x b des frontières, à partir de cliqueOffsets[l][c]
+    private final int[][] cliqueOffsets;
+    private final double[][] cliques;
+    private CompressedGraph graph;
+    private int nbSettled;
+
+    /**
+     * Prépare les cliques d'une partition et les calcule pour les longueurs d'un graphe.
+     *
+     * @param partition la partition du graphe.
+     * @param graph     le graphe compressé de la carte, de même forme que celui de la partition.
+     */
+    public CustomizableRouting(GraphPartition partition, CompressedGraph graph) {
+        this.partition = partition;
+        this.nbVertices = partition.getNbVertices();
+        int nbLevels = partition.getNbLevels();
+        this.cliqueOffsets = new int[nbLevels][];
+        this.cliques = new double[nbLevels][];
+        for (int level = 1; level <= nbLevels; level++) {
+            int[] offsets = new int[partition.getNbCells(level) + 1];
+            for (int c = 0; c < partition.getNbCells(level); c++) {
+                int b = partition.boundaryEnd(level, c) - partition.boundaryBegin(level, c);
+                offsets[c + 1] = offsets[c] + b * b;
+            }
+            cliqueOffsets[level - 1] = offsets;
+            cliques[level - 1] = new double[offsets[offsets.length - 1]];
+        }
+        computeCliques(graph);
+    }
+
+    /**
+     * Recalcule toutes les cliques pour de nouvelles longueurs de segments.
+     *
+     * @param graph le graphe compressé de la carte, avec les longueurs à jour.
+     * @throws IllegalArgumentException si le graphe n'a pas la forme de celui de la partition.
+     */
+    public void customize(CompressedGraph graph) {
+        computeCliques(graph);
+    }
+
+    private void computeCliques(CompressedGraph graph) {
+        if (graph.getShapeChecksum() != partition.getShapeChecksum()) {
+            throw new IllegalArgumentException("Le graphe n'a pas la forme de celui de la partition");
+        }
+        this.graph = graph;
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(nbVertices)) {
+            for (int level = 1; level <= partition.getNbLevels(); level++) {
+                double[] clique = cliques[level - 1];
+                for (int c = 0; c < partition.getNbCells(level); c++) {
+                    int begin = partition.boundaryBegin(level, c);
+                    int b = partition.boundaryEnd(level, c) - begin;
+                    int offset = cliqueOffsets[level - 1][c];
+                    for (int i = 0; i < b; i++) {
+                        cellSearch(partition.boundary(level, begin + i), level, c, workspace);
+                        for (int j = 0; j < b; j++) {
+                            clique[offset + i * b + j] = workspace.distance(partition.boundary(level, begin + j));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Dijkstra depuis la frontière {@code source} de la cellule {@code cell} du niveau
+     * {@code level}, sans en sortir, sur les cliques du niveau inférieur (ou les segments
+     * d'origine au niveau 1). S'arrête quand toutes les frontières de la cellule sont fixées.
+     */
+    private void cellSearch(int source, int level, int cell, SearchWorkspace workspace) {
+        workspace.reset();
+        for (int i = partition.boundaryBegin(level, cell); i < partition.boundaryEnd(level, cell); i++) {
+            workspace.markPending(partition.boundary(level, i));
+        }
+        IndexedHeap heap = workspace.heap();
+        workspace.set(source, 0.0, -1);
+        heap.insertOrDecrease(source, 0.0);
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            if (workspace.settle(u)) {
+                return;
+            }
+            relax(u, level - 1, level, cell, workspace);
+        }
+    }
+
+    /**
+     * Relâche les arcs de {@code u} au niveau {@code scanLevel} : les segments d'origine au
+     * niveau 0, sinon la clique de sa cellule et les segments qui en sortent. Si
+     * {@code filterLevel} est positif, seules les cibles de la cellule {@code filterCell} de
+     * ce niveau sont gardées. Un arc de clique est noté {@code -(u + 2)} comme prédécesseur.
+     */
+    private void relax(int u, int scanLevel, int filterLevel, int filterCell, SearchWorkspace workspace) {
+        IndexedHeap heap = workspace.heap();
+        double du = workspace.distance(u);
+        if (scanLevel > 0) {
+            int c = partition.getCell(scanLevel, u);
+            int begin = partition.boundaryBegin(scanLevel, c);
+            int b = partition.boundaryEnd(scanLevel, c) - begin;
+            int row = cliqueOffsets[scanLevel - 1][c] + partition.boundaryIndex(scanLevel, u) * b;
+            double[] clique = cliques[scanLevel - 1];
+            for (int j = 0; j < b; j++) {
+                int v = partition.boundary(scanLevel, begin + j);
+                double dv = du + clique[row + j];
+                if (dv < workspace.distance(v) && !workspace.isSettled(v)) {
+                    workspace.set(v, dv, -(u + 2));
+                    heap.insertOrDecrease(v, dv);
+                }
+            }
+        }
+        CompressedGraph.Adjacency forward = graph.forward();
+        for (int e = forward.begin(u); e < forward.end(u); e++) {
+            int v = forward.target(e);
+            if (scanLevel > 0 && partition.getCell(scanLevel, v) == partition.getCell(scanLevel, u)) {
+                continue;
+            }
+            if (filterLevel > 0 && partition.getCell(filterLevel, v) != filterCell) {
+                continue;
+            }
+            double dv = du + forward.weight(e);
+            if (dv < workspace.distance(v) && !workspace.isSettled(v)) {
+                workspace.set(v, dv, u);
+                heap.insertOrDecrease(v, dv);
+            }
+        }
+    }
+
+    /**
+     * Niveau auquel une requête parcourt {@code v} : le plus haut niveau où {@code v} n'est ni
+     * dans la cellule de la source ni dans celle de la destination, ou 0.
+     */
+    private int queryLevel(int v, int source, int target) {
+        for (int level = partition.getNbLevels(); level > 0; level--) {
+            int cell = partition.getCell(level, v);
+            if (cell != partition.getCell(level, source) && cell != partition.getCell(level, target)) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    private boolean query(int source, int target, SearchWorkspace workspace) {
+        workspace.markPending(target);
+        IndexedHeap heap = workspace.heap();
+        workspace.set(source, 0.0, -1);
+        heap.insertOrDecrease(source, 0.0);
+        boolean found = false;
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            if (workspace.settle(u)) {
+                found = true;
+                break;
+            }
+            relax(u, queryLevel(u, source, target), 0, -1, workspace);
+        }
+        nbSettled = workspace.getNbSettled();
+        return found;
+    }
+
+    /**
+     * Calcule la longueur du plus court chemin entre deux positions.
+     *
+     * @param source la position de départ.
+     * @param target la position d'arrivée.
+     * @return la distance, ou {@link SearchWorkspace#INFINITY} si l'arrivée est inaccessible.
+     */
+    public double distance(int source, int target) {
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(nbVertices)) {
+            return query(source, target, workspace) ? workspace.distance(target) : SearchWorkspace.INFINITY;
+        }
+    }
+
+    /**
+     * Cherche le plus court chemin de {@code start} à {@code destination}, déplié en segments de la carte.
+     *
+     * @param start       l'intersection de départ.
+     * @param destination l'intersection d'arrivée.
+     * @param sizeGraph   la taille du graphe.
+     * @return le chemin, ou null si la destination est inaccessible.
+     */
+    public Chemin findPath(Intersection start, Intersection destination, int sizeGraph) {
+        int s = start.getPos();
+        int t = destination.getPos();
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(nbVertices)) {
+            if (!query(s, t, workspace)) {
+                return null;
+            }
+            int[] nodes = unpackPath(s, t, workspace, null);
+            return Chemin.fromNodes(start, destination, nodes, sizeGraph, workspace.distance(t));
+        }
+    }
+
+    /**
+     * Cherche le plus court chemin entre deux positions et la distance de la source à chaque
+     * position traversée, sans construire de {@link Chemin}.
+     *
+     * @param source  la position de départ.
+     * @param target  la position d'arrivée.
+     * @param lengths reçoit la distance de la source à chaque position du chemin, dans l'ordre, ou null.
+     * @return les positions traversées, ou null si l'arrivée est inaccessible.
+     */
+    int[] path(int source, int target, DoubleList lengths) {
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(nbVertices)) {
+            return query(source, target, workspace) ? unpackPath(source, target, workspace, lengths) : null;
+        }
+    }
+
+    /**
+     * Déplie le chemin trouvé par {@link #query} en segments de la carte, et en ajoute les
+     * distances depuis la source à {@code lengths} s'il n'est pas null.
+     */
+    private int[] unpackPath(int s, int t, SearchWorkspace workspace, DoubleList lengths) {
+        // Positions du chemin à rebours, de l'arrivée au départ
+        int[] reversed = new int[16];
+        DoubleList reversedLengths = lengths == null ? null : new DoubleList();
+        int count = 0;
+        for (int v = t; v != s; ) {
+            int p = workspace.pi(v);
+            if (p >= 0) {
+                reversed = push(reversed, count++, v);
+                if (lengths != null) {
+                    reversedLengths.add(workspace.distance(v));
+                }
+                v = p;
+            } else {
+                int u = -p - 2;
+                DoubleList local = lengths == null ? null : new DoubleList();
+                int[] segments = unpack(u, v, queryLevel(u, s, t), local);
+                for (int i = 0; i < segments.length; i++) {
+                    reversed = push(reversed, count++, segments[i]);
+                    if (lengths != null) {
+                        reversedLengths.add(workspace.distance(u) + local.get(i));
+                    }
+                }
+                v = u;
+            }
+        }
+        reversed = push(reversed, count++, s);
+        int[] nodes = new int[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = reversed[count - 1 - i];
+        }
+        if (lengths != null) {
+            lengths.add(0.0);
+            for (int i = count - 2; i >= 0; i--) {
+                lengths.add(reversedLengths.get(i));
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Retrouve les segments d'un arc de clique de {@code u} à {@code v} par un Dijkstra sur
+     * les segments d'origine, restreint à leur cellule commune du niveau donné.
+     *
+     * @param local reçoit la distance de {@code u} à chaque position retournée, ou null.
+     * @return les positions traversées, de {@code v} compris à {@code u} non compris.
+     */
+    private int[] unpack(int u, int v, int level, DoubleList local) {
+        int cell = partition.getCell(level, u);
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(nbVertices)) {
+            workspace.markPending(v);
+            IndexedHeap heap = workspace.heap();
+            workspace.set(u, 0.0, -1);
+            heap.insertOrDecrease(u, 0.0);
+            while (!heap.isEmpty()) {
+                int w = heap.pop();
+                if (workspace.settle(w)) {
+                    break;
+                }
+                relax(w, 0, level, cell, workspace);
+            }
+            int count = 0;
+            for (int w = v; w != u; w = workspace.pi(w)) {
+                count++;
+            }
+            int[] nodes = new int[count];
+            int i = 0;
+            for (int w = v; w != u; w = workspace.pi(w)) {
+                nodes[i++] = w;
+                if (local != null) {
+                    local.add(workspace.distance(w));
+                }
+            }
+            return nodes;
+        }
+    }
+
+    private static int[] push(int[] array, int size, int value) {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[size] = value;
+        return array;
+    }
+
+    /**
+     * @return la partition utilisée.
+     */
+    public GraphPartition getPartition() {
+        return partition;
+    }
+
+    /**
+     * @return le nombre d'arcs de clique, tous niveaux confondus.
+     */
+    public long getNbCliqueEdges() {
+        long count = 0;
+        for (double[] clique : cliques) {
+            count += clique.length;
+        }
+        return count;
+    }
+
+    /**
+     * @return le nombre de nœuds fixés par la dernière requête.
+     */
+    public int getNbSettled() {
+        return nbSettled;
+    }
+}
@@ -5,8 +5,6 @@ import java.util.*;
  */
 public class Dijkstra extends AbstractDijkstra {
 
-    private final int INFINITY = Integer.MAX_VALUE;
-
     /**
      * Constructeur de la classe Dijkstra.
      *
@@ -22,71 +20,28 @@ public class Dijkstra extends AbstractDijkstra {
     }
 
     /**
-     * Relâche un nœud dans l'algorithme de relaxation de Dijkstra.
-     *
-     * @param u      Le nœud source.
-     * @param v      Le nœud de destination.
-     * @param weight Le poids associé à l'arête entre u et v.
-     */
-    @Override
-    protected void relax(Intersection u, Intersection v, double weight) {
-        // Met à jour la distance et le prédecesseur si un chemin plus court est trouvé.
-        if (distance[u.getPos()] + weight < distance[v.getPos()]) {
-            distance[v.getPos()] = distance[u.getPos()] + weight;
-            this.pi[v.getPos()] = u.getPos();
-        }
-    }
-
-    /**
-     * Construit la copie partielle du tableau pi lors de l'ajout d'une demande de livraison.
+     * Crée le chemin du départ vers la livraison, branche de l'arbre de la recherche.
      *
-     * @param piCopy    Tableau partiellement copié.
      * @param start     L'intersection de départ.
      * @param delivery  L'intersection de livraison.
-     */
-    protected void piCopyConstructor(int[] piCopy, Intersection start, Intersection delivery) {
-        int j = delivery.getPos();
-        while (j != start.getPos()) {
-            piCopy[j] = this.pi[j];
-            j = this.pi[j];
-        }
-    }
-
-    /**
-     * Récupère les voisins d'une intersection utilisés dans l'algorithme de Dijkstra.
-     *
-     * @param intersection L'intersection pour laquelle les voisins sont récupérés.
-     * @return Une collection de segments de route voisins.
-     */
-    @Override
-    protected Iterable<RoadSegment> getNeighbors(Intersection intersection) {
-        return intersection.getSuccessors();
-    }
-
-    /**
-     * Sélectionne le nœud suivant à explorer pendant l'algorithme de Dijkstra.
-     *
-     * @param roadSegment Le segment de route connectant le nœud actuel au nœud suivant.
-     * @return Le nœud de destination du segment de route.
+     * @param tree      L'arbre de la recherche, enraciné au départ.
+     * @param sizeGraph La taille du graphe.
+     * @return Le chemin du départ vers la livraison.
      */
     @Override
-    protected Intersection selectNode(RoadSegment roadSegment) {
-        return roadSegment.getDestination();
+    protected Chemin createChemin(Intersection start, Intersection delivery, ShortestPathTree tree, int sizeGraph) {
+        return Chemin.fromTree(start, delivery, tree, sizeGraph, tree.distance(delivery.getPos()));
     }
 
     /**
-     * Crée un objet Chemin représentant le chemin entre deux intersections.
+     * Parcourt les successeurs de chaque intersection dans le graphe compressé.
      *
-     * @param start       L'intersection de départ.
-     * @param destination L'intersection de destination.
-     * @param pi          Tableau de prédécesseurs représentant le chemin.
-     * @param cout        Le coût total du chemin.
-     * @return Un objet Chemin représentant le chemin calculé.
+     * @param graph Le graphe compressé de la carte.
+     * @return L'adjacence sortante.
      */
     @Override
-    protected Chemin createChemin(Intersection start, Intersection destination, int[] pi, double cout) {
-        Chemin chemin = new Chemin(start, destination, pi, cout);
-        return chemin;
+    protected CompressedGraph.Adjacency getAdjacency(CompressedGraph graph) {
+        return graph.forward();
     }
 
     /**
@@ -0,0 +1,127 @@
+package fr.insalyonif.hubert.model;
+
+/**
+ * Moteur de Dijkstra sur le graphe compressé, avec une file de priorité indexée
+ * ({@link IndexedHeap}) au lieu de la recherche linéaire du nœud gris de plus petite distance.
+ * Une recherche coûte O((V + E) log V) au lieu de O(V²).
+ *
+ * <p>Les nœuds sont traités dans le même ordre que par le parcours linéaire (plus petite
+ * distance, puis plus petite position), si bien que les distances et prédécesseurs
+ * produits sont identiques.
+ *
+ * <p>Une recherche peut être bornée à un ensemble de cibles : elle s'arrête dès que toutes les
+ * cibles sont fixées. Seules les distances des cibles (et des nœuds de leurs chemins) sont alors
+ * définitives. Si une cible est inaccessible, la recherche est menée jusqu'au bout, comme avant.
+ *
+ * <p>L'état d'une recherche est entièrement porté par un {@link SearchWorkspace} : le moteur
+ * lui-même ne garde rien d'une recherche à l'autre.
+ */
+public class DijkstraEngine {
+    private int nbSettled;
+
+    /**
+     * Exécute une recherche complète depuis {@code start}. Les tableaux {@code distance} et
+     * {@code pi} reçoivent les résultats pour toutes les positions.
+     *
+     * @param adjacency   l'adjacence parcourue (sortante, ou entrante pour une recherche inverse).
+     * @param reverse     true si l'adjacence est l'adjacence entrante.
+     * @param contraction la contraction des chaînes dont le graphe est issu, ou null.
+     * @param start       la position de départ.
+     * @param distance    les distances depuis (ou vers) le départ.
+     * @param pi          les prédécesseurs (ou successeurs en recherche inverse).
+     */
+    public void run(CompressedGraph.Adjacency adjacency, boolean reverse, ChainContraction contraction,
+                    int start, double[] distance, int[] pi) {
+        run(adjacency, reverse, contraction, start, distance, pi, null);
+    }
+
+    /**
+     * Exécute une recherche depuis {@code start}, arrêtée dès que toutes les cibles sont fixées,
+     * et recopie les résultats dans les tableaux {@code distance} et {@code pi}.
+     *
+     * @param adjacency   l'adjacence parcourue (sortante, ou entrante pour une recherche inverse).
+     * @param reverse     true si l'adjacence est l'adjacence entrante.
+     * @param contraction la contraction des chaînes dont le graphe est issu, ou null.
+     * @param start       la position de départ.
+     * @param distance    les distances depuis (ou vers) le départ.
+     * @param pi          les prédécesseurs (ou successeurs en recherche inverse).
+     * @param targets     les positions dont la distance est demandée, ou null pour parcourir tout le graphe.
+     */
+    public void run(CompressedGraph.Adjacency adjacency, boolean reverse, ChainContraction contraction,
+                    int start, double[] distance, int[] pi, int[] targets) {
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(distance.length)) {
+            run(workspace, adjacency, reverse, contraction, start, targets);
+            workspace.copyTo(distance, pi);
+        }
+    }
+
+    /**
+     * Exécute une recherche depuis {@code start} dans un espace de travail fraîchement emprunté.
+     *
+     * @param workspace   l'espace de travail, qui reçoit les distances et prédécesseurs.
+     * @param adjacency   l'adjacence parcourue (sortante, ou entrante pour une recherche inverse).
+     * @param reverse     true si l'adjacence est l'adjacence entrante.
+     * @param contraction la contraction des chaînes dont le graphe est issu, ou null.
+     * @param start       la position de départ.
+     * @param targets     les positions dont la distance est demandée, ou null pour parcourir tout le graphe.
+     */
+    public void run(SearchWorkspace workspace, CompressedGraph.Adjacency adjacency, boolean reverse,
+                    ChainContraction contraction, int start, int[] targets) {
+        if (targets != null) {
+            for (int target : targets) {
+                // Une cible contractée est fixée par l'expansion, une fois les extrémités utiles de sa chaîne fixées
+                if (contraction != null && contraction.isContracted(target)) {
+                    contraction.forEachEntry(target, reverse, workspace::markPending);
+                } else {
+                    workspace.markPending(target);
+                }
+            }
+        }
+
+        IndexedHeap heap = workspace.heap();
+        workspace.set(start, 0.0, -1);
+        heap.insertOrDecrease(start, 0.0);
+        if (contraction != null && contraction.isContracted(start)) {
+            contraction.seed(start, reverse, workspace, end -> heap.insertOrDecrease(end, workspace.distance(end)));
+        }
+
+        // Extrémités de chaîne fixées : seules leurs chaînes sont développées à la fin
+        IntList settledEnds = contraction == null ? null : new IntList();
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            if (settledEnds != null && contraction.isChainEnd(u)) {
+                settledEnds.add(u);
+            }
+            if (workspace.settle(u)) {
+                break;
+            }
+            double du = workspace.distance(u);
+            for (int e = adjacency.begin(u); e < adjacency.end(u); e++) {
+                int v = adjacency.target(e);
+                if (workspace.isSettled(v)) {
+                    continue;
+                }
+                double dv = du + adjacency.weight(e);
+                if (dv < workspace.distance(v)) {
+                    int viaNode = contraction == null ? -1 : contraction.adjacentNode(reverse, e, v);
+                    workspace.set(v, dv, viaNode >= 0 ? viaNode : u);
+                    heap.insertOrDecrease(v, dv);
+                }
+            }
+        }
+
+        if (contraction != null) {
+            contraction.expand(reverse, workspace, settledEnds);
+        }
+        nbSettled = workspace.getNbSettled();
+    }
+
+    /**
+     * Retourne le nombre de nœuds fixés par la dernière recherche, pour mesurer l'effet de l'arrêt anticipé.
+     *
+     * @return le nombre de nœuds sortis de la file lors de la dernière recherche.
+     */
+    public int getNbSettled() {
+        return nbSettled;
+    }
+}
@@ -0,0 +1,264 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matrice des coûts entre les points d'une tournée (entrepôt et points de livraison), calculée
+ * en une passe et rangée dans un seul tableau de réels, ligne par ligne, que {@link CompleteGraph}
+ * utilise tel quel.
+ *
+ * <p>La matrice d'une tournée reprend d'abord les distances des arbres que ses recherches ont
+ * laissés dans le {@link ShortestPathTreeStore} : l'arbre direct d'un point donne sa ligne,
+ * l'arbre inverse d'un point sa colonne. Seules les lignes qu'ils ne couvrent pas sont
+ * calculées, par la structure la plus rapide préparée sur la carte : les
+ * {@link HubLabels} (une fusion d'étiquettes par case), sinon la méthode des seaux de la
+ * {@link ContractionHierarchy} (une montée par point), sinon une recherche de Dijkstra par
+ * point, arrêtée quand tous les autres points sont fixés. Aucun {@link Chemin} n'est créé : les
+ * chemins eux-mêmes ne sont calculés que pour les trajets retenus.
+ *
+ * <p>Une case vaut {@link Double#POSITIVE_INFINITY} si le trajet n'existe pas, y compris sur
+ * la diagonale, comme les arcs absents de {@link CompleteGraph}.
+ */
+public class DistanceMatrix {
+    private final int[] positions;
+    private final double[] costs;
+    private final int nbSearchedRows;
+
+    private DistanceMatrix(int[] positions, double[] costs, int nbSearchedRows) {
+        this.positions = positions;
+        this.costs = costs;
+        this.nbSearchedRows = nbSearchedRows;
+    }
+
+    /**
+     * Calcule les coûts entre toutes les paires de positions.
+     *
+     * @param cityMap   la carte de la ville.
+     * @param positions les positions des points, dans l'ordre des lignes et des colonnes.
+     * @return la matrice des coûts.
+     */
+    public static DistanceMatrix compute(CityMap cityMap, int[] positions) {
+        int[] points = positions.clone();
+        double[] costs = search(cityMap, points, points);
+        markMissing(costs, points.length);
+        return new DistanceMatrix(points, costs, points.length);
+    }
+
+    /**
+     * Calcule la matrice d'une tournée : l'entrepôt en première ligne, puis les points de
+     * livraison dans l'ordre des demandes.
+     *
+     * @param cityMap  la carte de la ville, avec son entrepôt.
+     * @param requests les demandes de livraison de la tournée.
+     * @return la matrice des coûts de la tournée.
+     */
+    public static DistanceMatrix forTour(CityMap cityMap, List<DeliveryRequest> requests) {
+        List<Intersection> points = new ArrayList<>(requests.size() + 1);
+        points.add(cityMap.getWareHouseLocation());
+        for (DeliveryRequest request : requests) {
+            points.add(request.getDeliveryLocation());
+        }
+        int k = points.size();
+        int[] positions = new int[k];
+        ShortestPathTree[] forward = new ShortestPathTree[k];
+        ShortestPathTree[] backward = new ShortestPathTree[k];
+        ShortestPathTreeStore store = cityMap.getShortestPathTrees();
+        for (int i = 0; i < k; i++) {
+            positions[i] = points.get(i).getPos();
+            forward[i] = store.get(points.get(i), false);
+            backward[i] = store.get(points.get(i), true);
+        }
+
+        double[] costs = new double[k * k];
+        int[] missing = new int[k];
+        int nbMissing = 0;
+        for (int i = 0; i < k; i++) {
+            if (!fillFromTrees(costs, i, positions, forward[i], backward)) {
+                missing[nbMissing++] = i;
+            }
+        }
+        if (nbMissing > 0) {
+            int[] sources = new int[nbMissing];
+            for (int m = 0; m < nbMissing; m++) {
+                sources[m] = positions[missing[m]];
+            }
+            double[] found = search(cityMap, sources, positions);
+            for (int m = 0; m < nbMissing; m++) {
+                System.arraycopy(found, m * k, costs, missing[m] * k, k);
+            }
+        }
+        markMissing(costs, k);
+        return new DistanceMatrix(positions, costs, nbMissing);
+    }
+
+    /**
+     * Remplit une ligne par les arbres gardés : l'arbre direct du point de la ligne, sinon
+     * l'arbre inverse du point de chaque colonne.
+     *
+     * @return false si une case n'est couverte par aucun arbre, la ligne restant à calculer.
+     */
+    private static boolean fillFromTrees(double[] costs, int i, int[] positions, ShortestPathTree forward,
+                                         ShortestPathTree[] backward) {
+        int k = positions.length;
+        for (int j = 0; j < k; j++) {
+            if (j == i) {
+                continue;
+            }
+            if (forward != null && forward.contains(positions[j])) {
+                costs[i * k + j] = forward.distance(positions[j]);
+            } else if (backward[j] != null && backward[j].contains(positions[i])) {
+                costs[i * k + j] = backward[j].distance(positions[i]);
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calcule les coûts des sources vers les cibles par la structure la plus rapide de la carte.
+     */
+    private static double[] search(CityMap cityMap, int[] sources, int[] targets) {
+        HubLabels labels = cityMap.getHubLabels();
+        ContractionHierarchy hierarchy = cityMap.getContractionHierarchy();
+        if (labels != null) {
+            return labels.manyToMany(sources, targets);
+        } else if (hierarchy != null) {
+            return hierarchy.manyToMany(sources, targets);
+        }
+        return searchAll(cityMap, sources, targets);
+    }
+
+    /**
+     * Une recherche de Dijkstra par source, sur le graphe aux chaînes contractées s'il existe,
+     * arrêtée dès que toutes les cibles sont fixées.
+     */
+    private static double[] searchAll(CityMap cityMap, int[] sources, int[] targets) {
+        ChainContraction contraction = cityMap.getChainContraction();
+        CompressedGraph graph = contraction == null ? cityMap.getCompressedGraph() : contraction.getGraph();
+        DijkstraEngine engine = new DijkstraEngine();
+        int k = targets.length;
+        double[] costs = new double[sources.length * k];
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(graph.getNbVertices())) {
+            for (int i = 0; i < sources.length; i++) {
+                workspace.reset();
+                engine.run(workspace, graph.forward(), false, contraction, sources[i], targets);
+                for (int j = 0; j < k; j++) {
+                    costs[i * k + j] = workspace.distance(targets[j]);
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Remplace les trajets inexistants et la diagonale par {@link Double#POSITIVE_INFINITY}.
+     */
+    private static void markMissing(double[] costs, int k) {
+        for (int i = 0; i < costs.length; i++) {
+            if (costs[i] == SearchWorkspace.INFINITY || i / k == i % k) {
+                costs[i] = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    /**
+     * @return le nombre de points de la matrice.
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * @return le nombre de lignes calculées par une recherche, les autres venant des arbres gardés.
+     */
+    int getNbSearchedRows() {
+        return nbSearchedRows;
+    }
+
+    /**
+     * @param i l'indice d'un point.
+     * @return la position du point sur la carte.
+     */
+    public int getPosition(int i) {
+        return positions[i];
+    }
+
+    /**
+     * Retourne les lignes de quelques demandes dans la matrice d'une tournée
+     * ({@link #forTour(CityMap, List)}) : l'entrepôt en ligne 0, puis chaque demande. Les
+     * demandes sont retrouvées elles-mêmes et non par leur position, si bien que deux demandes
+     * au même endroit, ou une demande sur l'entrepôt, gardent chacune leur ligne.
+     *
+     * @param tour     les demandes de la tournée, dans l'ordre de la matrice.
+     * @param requests les demandes à garder, dans l'ordre voulu.
+     * @return les lignes de l'entrepôt puis des demandes.
+     * @throws IllegalArgumentException si une demande ne fait pas partie de la tournée.
+     */
+    public static int[] tourRows(List<DeliveryRequest> tour, List<DeliveryRequest> requests) {
+        int[] rows = new int[requests.size() + 1];
+        for (int i = 0; i < requests.size(); i++) {
+            DeliveryRequest request = requests.get(i);
+            int row = 0;
+            for (int j = 0; j < tour.size() && row == 0; j++) {
+                if (tour.get(j) == request) {
+                    row = j + 1;
+                }
+            }
+            if (row == 0) {
+                throw new IllegalArgumentException("La demande ne fait pas partie de la tournée : " + request);
+            }
+            rows[i + 1] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * @param i l'indice du point de départ.
+     * @param j l'indice du point d'arrivée.
+     * @return le coût du trajet, ou {@link Double#POSITIVE_INFINITY} s'il n'existe pas.
+     */
+    public double getCost(int i, int j) {
+        return costs[i * positions.length + j];
+    }
+
+    /**
+     * Retourne le tableau des coûts, partagé et non copié : la case {@code i * size() + j}
+     * est le coût du point {@code i} vers le point {@code j}.
+     *
+     * @return les coûts, ligne par ligne.
+     */
+    double[] costs() {
+        return costs;
+    }
+
+    /**
+     * Extrait la sous-matrice de quelques points, dans l'ordre donné.
+     *
+     * @param indices les indices des points à garder.
+     * @return les coûts entre ces points, ligne par ligne.
+     */
+    double[] subMatrix(int[] indices) {
+        int k = indices.length;
+        if (k == positions.length && isIdentity(indices)) {
+            return costs;
+        }
+        double[] sub = new double[k * k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                sub[i * k + j] = i == j ? Double.POSITIVE_INFINITY : costs[indices[i] * positions.length + indices[j]];
+            }
+        }
+        return sub;
+    }
+
+    private static boolean isIdentity(int[] indices) {
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
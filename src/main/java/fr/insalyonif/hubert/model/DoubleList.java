@@ -0,0 +1,30 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+
+/**
+ * Tableau de réels extensible, pendant de {@link IntList}.
+ */
+final class DoubleList {
+    private double[] values = new double[64];
+    private int size;
+
+    void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    double get(int i) {
+        return values[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,260 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Partition multi-niveaux du réseau routier, indépendante des longueurs des segments. Au
+ * niveau {@code l} (de 1 au nombre de niveaux), chaque intersection appartient à une cellule
+ * d'au plus {@code cellSizes[l - 1]} intersections ; les cellules d'un niveau sont incluses
+ * dans celles du niveau supérieur.
+ *
+ * <p>Les cellules sont obtenues par bissection récursive selon les coordonnées : chaque
+ * ensemble est coupé à la médiane de son axe le plus étendu, jusqu'à la plus petite taille.
+ * Une intersection est une frontière d'un niveau si l'un de ses segments, entrant ou sortant,
+ * relie deux cellules différentes de ce niveau.
+ *
+ * <p>La partition ne dépend que de la forme du graphe : elle est calculée une fois par carte,
+ * et {@link CustomizableRouting} s'en sert pour toutes les métriques (fermetures, pénalités).
+ */
+public class GraphPartition {
+    /**
+     * Tailles maximales des cellules par défaut, du niveau le plus fin au plus grossier.
+     */
+    public static final int[] DEFAULT_CELL_SIZES = {32, 256, 2048};
+
+    private final int nbVertices;
+    private final long shapeChecksum;
+    private final int nbLevels;
+    // cells[l][v] : cellule de v au niveau l + 1
+    private final int[][] cells;
+    private final int[] nbCells;
+    // Frontières de la cellule c au niveau l + 1 : boundaries[l][boundaryOffsets[l][c] .. boundaryOffsets[l][c + 1])
+    private final int[][] boundaryOffsets;
+    private final int[][] boundaries;
+    // Rang de v parmi les frontières de sa cellule au niveau l + 1, ou -1
+    private final int[][] boundaryIndex;
+
+    private GraphPartition(int nbVertices, int[][] cells, int[] nbCells, CompressedGraph graph) {
+        this.nbVertices = nbVertices;
+        this.shapeChecksum = graph.getShapeChecksum();
+        this.nbLevels = cells.length;
+        this.cells = cells;
+        this.nbCells = nbCells;
+        this.boundaryOffsets = new int[nbLevels][];
+        this.boundaries = new int[nbLevels][];
+        this.boundaryIndex = new int[nbLevels][];
+
+        CompressedGraph.Adjacency forward = graph.forward();
+        for (int l = 0; l < nbLevels; l++) {
+            int[] cell = cells[l];
+            boolean[] boundary = new boolean[nbVertices];
+            for (int u = 0; u < nbVertices; u++) {
+                for (int e = forward.begin(u); e < forward.end(u); e++) {
+                    int v = forward.target(e);
+                    if (cell[u] != cell[v]) {
+                        boundary[u] = true;
+                        boundary[v] = true;
+                    }
+                }
+            }
+            int[] offsets = new int[nbCells[l] + 1];
+            for (int v = 0; v < nbVertices; v++) {
+                if (boundary[v]) {
+                    offsets[cell[v] + 1]++;
+                }
+            }
+            for (int c = 0; c < nbCells[l]; c++) {
+                offsets[c + 1] += offsets[c];
+            }
+            int[] list = new int[offsets[nbCells[l]]];
+            int[] index = new int[nbVertices];
+            Arrays.fill(index, -1);
+            int[] fill = Arrays.copyOf(offsets, nbCells[l]);
+            for (int v = 0; v < nbVertices; v++) {
+                if (boundary[v]) {
+                    index[v] = fill[cell[v]] - offsets[cell[v]];
+                    list[fill[cell[v]]++] = v;
+                }
+            }
+            boundaryOffsets[l] = offsets;
+            boundaries[l] = list;
+            boundaryIndex[l] = index;
+        }
+    }
+
+    /**
+     * Partitionne un graphe avec les tailles de cellules par défaut.
+     *
+     * @param graph         le graphe compressé de la carte.
+     * @param intersections les intersections de la carte, pour leurs coordonnées.
+     * @return la partition du graphe.
+     */
+    public static GraphPartition compute(CompressedGraph graph, List<Intersection> intersections) {
+        return compute(graph, intersections, DEFAULT_CELL_SIZES);
+    }
+
+    /**
+     * Partitionne un graphe par bissections récursives.
+     *
+     * @param graph         le graphe compressé de la carte.
+     * @param intersections les intersections de la carte, pour leurs coordonnées.
+     * @param cellSizes     les tailles maximales des cellules, strictement croissantes, du niveau le plus fin au plus grossier.
+     * @return la partition du graphe.
+     */
+    public static GraphPartition compute(CompressedGraph graph, List<Intersection> intersections, int[] cellSizes) {
+        if (cellSizes.length == 0) {
+            throw new IllegalArgumentException("La partition doit avoir au moins un niveau");
+        }
+        for (int l = 0; l < cellSizes.length; l++) {
+            if (cellSizes[l] < 1 || (l > 0 && cellSizes[l] <= cellSizes[l - 1])) {
+                throw new IllegalArgumentException("Tailles de cellules invalides : " + Arrays.toString(cellSizes));
+            }
+        }
+        int n = graph.getNbVertices();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (Intersection intersection : intersections) {
+            // Projection équirectangulaire : suffisante pour comparer les étendues d'une ville
+            int v = intersection.getPos();
+            y[v] = intersection.getLatitude();
+            x[v] = intersection.getLongitude() * Math.cos(Math.toRadians(intersection.getLatitude()));
+        }
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++) {
+            order[v] = v;
+        }
+        int[][] cells = new int[cellSizes.length][n];
+        int[] nbCells = new int[cellSizes.length];
+        bisect(order, 0, n, cellSizes, cellSizes.length, x, y, cells, nbCells);
+        return new GraphPartition(n, cells, nbCells, graph);
+    }
+
+    /**
+     * Découpe {@code order[lo .. hi)}, déjà contenu dans une seule cellule de chaque niveau
+     * supérieur ou égal à {@code openLevel}.
+     */
+    private static void bisect(int[] order, int lo, int hi, int[] cellSizes, int openLevel,
+                               double[] x, double[] y, int[][] cells, int[] nbCells) {
+        // Les niveaux dont la taille est atteinte reçoivent ici une nouvelle cellule
+        while (openLevel > 0 && hi - lo <= cellSizes[openLevel - 1]) {
+            openLevel--;
+            int cell = nbCells[openLevel]++;
+            for (int i = lo; i < hi; i++) {
+                cells[openLevel][order[i]] = cell;
+            }
+        }
+        if (openLevel == 0) {
+            return;
+        }
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = lo; i < hi; i++) {
+            minX = Math.min(minX, x[order[i]]);
+            maxX = Math.max(maxX, x[order[i]]);
+            minY = Math.min(minY, y[order[i]]);
+            maxY = Math.max(maxY, y[order[i]]);
+        }
+        double[] key = maxX - minX >= maxY - minY ? x : y;
+        int mid = (lo + hi) >>> 1;
+        select(order, lo, hi - 1, mid, key);
+        bisect(order, lo, mid, cellSizes, openLevel, x, y, cells, nbCells);
+        bisect(order, mid, hi, cellSizes, openLevel, x, y, cells, nbCells);
+    }
+
+    /**
+     * Sélection rapide : place en {@code k} l'élément de rang {@code k} de {@code order[lo .. hi]}
+     * selon {@code key}, les plus petits avant, les plus grands après.
+     */
+    private static void select(int[] order, int lo, int hi, int k, double[] key) {
+        while (lo < hi) {
+            double pivot = key[order[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key[order[i]] < pivot) {
+                    i++;
+                }
+                while (key[order[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return le nombre de sommets partitionnés.
+     */
+    public int getNbVertices() {
+        return nbVertices;
+    }
+
+    /**
+     * @return l'empreinte de la structure du graphe partitionné (voir {@link CompressedGraph#getShapeChecksum()}).
+     */
+    public long getShapeChecksum() {
+        return shapeChecksum;
+    }
+
+    /**
+     * @return le nombre de niveaux de la partition.
+     */
+    public int getNbLevels() {
+        return nbLevels;
+    }
+
+    /**
+     * @param level un niveau, de 1 à {@link #getNbLevels()}.
+     * @return le nombre de cellules de ce niveau.
+     */
+    public int getNbCells(int level) {
+        return nbCells[level - 1];
+    }
+
+    /**
+     * @param level un niveau, de 1 à {@link #getNbLevels()}.
+     * @param v     la position d'une intersection.
+     * @return la cellule de l'intersection à ce niveau.
+     */
+    public int getCell(int level, int v) {
+        return cells[level - 1][v];
+    }
+
+    /**
+     * @param level un niveau, de 1 à {@link #getNbLevels()}.
+     * @return le nombre total de frontières de ce niveau.
+     */
+    public int getNbBoundaries(int level) {
+        return boundaries[level - 1].length;
+    }
+
+    int boundaryBegin(int level, int cell) {
+        return boundaryOffsets[level - 1][cell];
+    }
+
+    int boundaryEnd(int level, int cell) {
+        return boundaryOffsets[level - 1][cell + 1];
+    }
+
+    int boundary(int level, int i) {
+        return boundaries[level - 1][i];
+    }
+
+    /**
+     * @return le rang de {@code v} parmi les frontières de sa cellule au niveau donné, ou -1.
+     */
+    int boundaryIndex(int level, int v) {
+        return boundaryIndex[level - 1][v];
+    }
+}
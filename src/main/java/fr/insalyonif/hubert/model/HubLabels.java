@@ -0,0 +1,331 @@
+package fr.insalyonif.hubert.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Étiquettes de hubs (hub labeling) : chaque intersection {@code v} a une étiquette avant
+ * (des hubs {@code h} avec la distance {@code d(v, h)}) et une étiquette arrière (avec
+ * {@code d(h, v)}), telles que tout plus court chemin de {@code s} à {@code t} passe par un hub
+ * commun à l'étiquette avant de {@code s} et à l'étiquette arrière de {@code t}. Une distance
+ * est alors la fusion de deux tableaux triés, en quelques microsecondes, sans aucune recherche.
+ *
+ * <p>Les étiquettes sont dérivées d'une {@link ContractionHierarchy} : l'étiquette d'un nœud
+ * réunit celles de ses voisins de rang supérieur, puis une entrée est élaguée dès que les
+ * étiquettes déjà construites donnent une distance plus courte vers son hub.
+ *
+ * <p>Les étiquettes s'enregistrent dans le dossier des fichiers dérivés ({@link #pathFor(String)})
+ * au format CSR : pour chaque sens, les offsets par intersection, puis les hubs et les
+ * distances, avec l'empreinte du graphe comme la hiérarchie.
+ */
+public class HubLabels {
+    public static final int MAGIC = 0x48484C31; // "HHL1"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".hl";
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+
+    private final int nbVertices;
+    private final long checksum;
+    // Étiquette avant de v : hubs forwardHubs[forwardOffsets[v] .. forwardOffsets[v + 1]), triés
+    private final int[] forwardOffsets;
+    private final int[] forwardHubs;
+    private final double[] forwardDistances;
+    private final int[] backwardOffsets;
+    private final int[] backwardHubs;
+    private final double[] backwardDistances;
+
+    private HubLabels(int nbVertices, long checksum, int[] forwardOffsets, int[] forwardHubs, double[] forwardDistances,
+                      int[] backwardOffsets, int[] backwardHubs, double[] backwardDistances) {
+        this.nbVertices = nbVertices;
+        this.checksum = checksum;
+        this.forwardOffsets = forwardOffsets;
+        this.forwardHubs = forwardHubs;
+        this.forwardDistances = forwardDistances;
+        this.backwardOffsets = backwardOffsets;
+        this.backwardHubs = backwardHubs;
+        this.backwardDistances = backwardDistances;
+    }
+
+    /**
+     * Construit les étiquettes à partir d'une hiérarchie de contraction, des rangs les plus
+     * élevés vers les plus bas.
+     *
+     * @param hierarchy la hiérarchie de contraction du graphe.
+     * @return les étiquettes de toutes les intersections.
+     */
+    public static HubLabels build(ContractionHierarchy hierarchy) {
+        int n = hierarchy.getNbVertices();
+        int[] byRank = new int[n];
+        for (int v = 0; v < n; v++) {
+            byRank[hierarchy.getRank(v)] = v;
+        }
+
+        int[][] forwardHubs = new int[n][];
+        double[][] forwardDistances = new double[n][];
+        int[][] backwardHubs = new int[n][];
+        double[][] backwardDistances = new double[n][];
+        // Meilleure distance provisoire par hub, marquée par le nœud en cours
+        double[] best = new double[n];
+        int[] seenBy = new int[n];
+        Arrays.fill(seenBy, -1);
+        int[] touched = new int[n];
+
+        for (int r = n - 1; r >= 0; r--) {
+            int v = byRank[r];
+            for (boolean forward : new boolean[]{true, false}) {
+                int size = 0;
+                seenBy[v] = 2 * v + (forward ? 0 : 1);
+                best[v] = 0.0;
+                touched[size++] = v;
+                int begin = forward ? hierarchy.upBegin(v) : hierarchy.downBegin(v);
+                int end = forward ? hierarchy.upEnd(v) : hierarchy.downEnd(v);
+                for (int i = begin; i < end; i++) {
+                    int e = forward ? hierarchy.upEdge(i) : hierarchy.downEdge(i);
+                    int w = forward ? hierarchy.head(e) : hierarchy.tail(e);
+                    int[] hubs = forward ? forwardHubs[w] : backwardHubs[w];
+                    double[] distances = forward ? forwardDistances[w] : backwardDistances[w];
+                    for (int j = 0; j < hubs.length; j++) {
+                        int h = hubs[j];
+                        double d = distances[j] + hierarchy.weight(e);
+                        if (seenBy[h] != 2 * v + (forward ? 0 : 1)) {
+                            seenBy[h] = 2 * v + (forward ? 0 : 1);
+                            best[h] = d;
+                            touched[size++] = h;
+                        } else if (d < best[h]) {
+                            best[h] = d;
+                        }
+                    }
+                }
+                Arrays.sort(touched, 0, size);
+                int[] hubs = Arrays.copyOf(touched, size);
+                double[] distances = new double[size];
+                for (int j = 0; j < size; j++) {
+                    distances[j] = best[hubs[j]];
+                }
+
+                // Élagage : une entrée est inutile si un autre hub donne une distance plus courte
+                int kept = 0;
+                for (int j = 0; j < size; j++) {
+                    int h = hubs[j];
+                    double shortest = h == v ? 0.0 : forward
+                            ? merge(hubs, distances, 0, size, backwardHubs[h], backwardDistances[h], 0, backwardHubs[h].length)
+                            : merge(forwardHubs[h], forwardDistances[h], 0, forwardHubs[h].length, hubs, distances, 0, size);
+                    if (distances[j] <= shortest) {
+                        hubs[kept] = h;
+                        distances[kept] = distances[j];
+                        kept++;
+                    }
+                }
+                if (forward) {
+                    forwardHubs[v] = Arrays.copyOf(hubs, kept);
+                    forwardDistances[v] = Arrays.copyOf(distances, kept);
+                } else {
+                    backwardHubs[v] = Arrays.copyOf(hubs, kept);
+                    backwardDistances[v] = Arrays.copyOf(distances, kept);
+                }
+            }
+        }
+
+        int[] forwardOffsets = new int[n + 1];
+        int[] backwardOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            forwardOffsets[v + 1] = forwardOffsets[v] + forwardHubs[v].length;
+            backwardOffsets[v + 1] = backwardOffsets[v] + backwardHubs[v].length;
+        }
+        int[] flatForwardHubs = new int[forwardOffsets[n]];
+        double[] flatForwardDistances = new double[forwardOffsets[n]];
+        int[] flatBackwardHubs = new int[backwardOffsets[n]];
+        double[] flatBackwardDistances = new double[backwardOffsets[n]];
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(forwardHubs[v], 0, flatForwardHubs, forwardOffsets[v], forwardHubs[v].length);
+            System.arraycopy(forwardDistances[v], 0, flatForwardDistances, forwardOffsets[v], forwardHubs[v].length);
+            System.arraycopy(backwardHubs[v], 0, flatBackwardHubs, backwardOffsets[v], backwardHubs[v].length);
+            System.arraycopy(backwardDistances[v], 0, flatBackwardDistances, backwardOffsets[v], backwardHubs[v].length);
+        }
+        return new HubLabels(n, hierarchy.getChecksum(), forwardOffsets, flatForwardHubs, flatForwardDistances,
+                backwardOffsets, flatBackwardHubs, flatBackwardDistances);
+    }
+
+    /**
+     * Plus petite somme des distances sur les hubs communs à deux étiquettes triées.
+     */
+    private static double merge(int[] forwardHubs, double[] forwardDistances, int i, int forwardEnd,
+                                int[] backwardHubs, double[] backwardDistances, int j, int backwardEnd) {
+        double shortest = SearchWorkspace.INFINITY;
+        while (i < forwardEnd && j < backwardEnd) {
+            int a = forwardHubs[i];
+            int b = backwardHubs[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                shortest = Math.min(shortest, forwardDistances[i++] + backwardDistances[j++]);
+            }
+        }
+        return shortest;
+    }
+
+    /**
+     * Retourne le chemin du fichier d'étiquettes associé à une carte XML (extension .hl, voir
+     * {@link MapCompiler#derivedPath(String, String)}).
+     *
+     * @param xmlFile le chemin de la carte XML.
+     * @return le chemin du fichier d'étiquettes.
+     */
+    public static Path pathFor(String xmlFile) {
+        return MapCompiler.derivedPath(xmlFile, EXTENSION);
+    }
+
+    /**
+     * Charge les étiquettes enregistrées pour une carte si elles correspondent à la
+     * hiérarchie, ou les construit et les enregistre sinon.
+     *
+     * @param xmlFile   le chemin de la carte XML.
+     * @param hierarchy la hiérarchie de contraction du graphe chargé.
+     * @return les étiquettes du graphe.
+     */
+    public static HubLabels load(String xmlFile, ContractionHierarchy hierarchy) {
+        Path file = pathFor(xmlFile);
+        if (Files.isRegularFile(file)) {
+            try {
+                HubLabels labels = read(file);
+                if (labels.checksum == hierarchy.getChecksum()) {
+                    return labels;
+                }
+            } catch (IOException e) {
+                System.out.println("Étiquettes de hubs illisibles, recalcul : " + e.getMessage());
+            }
+        }
+        HubLabels labels = build(hierarchy);
+        try {
+            labels.write(file);
+        } catch (IOException e) {
+            System.out.println("Impossible d'écrire les étiquettes de hubs " + file + " : " + e.getMessage());
+        }
+        return labels;
+    }
+
+    /**
+     * Lit des étiquettes enregistrées par {@link #write(Path)}. Le fichier est projeté en mémoire.
+     *
+     * @param file le fichier d'étiquettes.
+     * @return les étiquettes lues.
+     * @throws IOException si le fichier est absent, tronqué ou d'un format inconnu.
+     */
+    public static HubLabels read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Format d'étiquettes inconnu : " + file);
+            }
+            long checksum = buffer.getLong();
+            int n = buffer.getInt();
+            int nbForward = buffer.getInt();
+            int nbBackward = buffer.getInt();
+            if (channel.size() != HEADER_SIZE + 2L * (n + 1) * Integer.BYTES
+                    + (long) (nbForward + nbBackward) * (Integer.BYTES + Double.BYTES)) {
+                throw new IOException("Fichier d'étiquettes tronqué : " + file);
+            }
+            int[] forwardOffsets = BinaryFiles.readInts(buffer, n + 1);
+            int[] forwardHubs = BinaryFiles.readInts(buffer, nbForward);
+            double[] forwardDistances = BinaryFiles.readDoubles(buffer, nbForward);
+            int[] backwardOffsets = BinaryFiles.readInts(buffer, n + 1);
+            int[] backwardHubs = BinaryFiles.readInts(buffer, nbBackward);
+            double[] backwardDistances = BinaryFiles.readDoubles(buffer, nbBackward);
+            return new HubLabels(n, checksum, forwardOffsets, forwardHubs, forwardDistances,
+                    backwardOffsets, backwardHubs, backwardDistances);
+        }
+    }
+
+    /**
+     * Enregistre les étiquettes. Le fichier est d'abord écrit à côté de la cible puis renommé,
+     * pour qu'un lecteur ne voie jamais un fichier incomplet.
+     *
+     * @param target le fichier à écrire.
+     * @throws IOException si l'écriture échoue.
+     */
+    public void write(Path target) throws IOException {
+        BinaryFiles.writeAtomically(target, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(checksum);
+            out.writeInt(nbVertices);
+            out.writeInt(forwardHubs.length);
+            out.writeInt(backwardHubs.length);
+            writeLabels(out, forwardOffsets, forwardHubs, forwardDistances);
+            writeLabels(out, backwardOffsets, backwardHubs, backwardDistances);
+        });
+    }
+
+    private static void writeLabels(DataOutputStream out, int[] offsets, int[] hubs, double[] distances) throws IOException {
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        for (int hub : hubs) {
+            out.writeInt(hub);
+        }
+        for (double distance : distances) {
+            out.writeDouble(distance);
+        }
+    }
+
+    /**
+     * @return l'empreinte du graphe à partir duquel les étiquettes ont été construites.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return le nombre moyen d'entrées par étiquette (avant et arrière confondues).
+     */
+    public double getAverageLabelSize() {
+        return (forwardHubs.length + backwardHubs.length) / (2.0 * Math.max(1, nbVertices));
+    }
+
+    /**
+     * @return la mémoire occupée par les étiquettes, en octets.
+     */
+    public long getFootprint() {
+        return 2L * (nbVertices + 1) * Integer.BYTES
+                + (long) (forwardHubs.length + backwardHubs.length) * (Integer.BYTES + Double.BYTES);
+    }
+
+    /**
+     * Calcule la longueur du plus court chemin entre deux positions.
+     *
+     * @param source la position de départ.
+     * @param target la position d'arrivée.
+     * @return la distance, ou {@link SearchWorkspace#INFINITY} si l'arrivée est inaccessible.
+     */
+    public double distance(int source, int target) {
+        return merge(forwardHubs, forwardDistances, forwardOffsets[source], forwardOffsets[source + 1],
+                backwardHubs, backwardDistances, backwardOffsets[target], backwardOffsets[target + 1]);
+    }
+
+    /**
+     * Calcule toutes les distances entre des sources et des cibles.
+     *
+     * @param sources les positions de départ.
+     * @param targets les positions d'arrivée.
+     * @return la matrice des distances, ligne par source : {@code matrix[i * targets.length + j]}
+     * est la distance de {@code sources[i]} à {@code targets[j]}, ou {@link SearchWorkspace#INFINITY}.
+     */
+    public double[] manyToMany(int[] sources, int[] targets) {
+        double[] matrix = new double[sources.length * targets.length];
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < targets.length; j++) {
+                matrix[i * targets.length + j] = distance(sources[i], targets[j]);
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,152 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+
+/**
+ * File de priorité indexée (tas 4-aire) sur les positions des intersections, avec diminution
+ * de clé en O(log n). Chaque position est présente au plus une fois ; à clé égale, la plus
+ * petite position sort en premier, comme dans le parcours linéaire des nœuds gris.
+ */
+public class IndexedHeap {
+    private static final int ARITY = 4;
+
+    // Les clés sont rangées à côté des positions, dans l'ordre du tas, pour des comparaisons contiguës
+    private final int[] heap;
+    private final double[] heapKeys;
+    private final int[] indexOf;
+    private int size;
+
+    /**
+     * Constructeur de la classe IndexedHeap.
+     *
+     * @param capacity le nombre de positions possibles.
+     */
+    public IndexedHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.heapKeys = new double[capacity];
+        this.indexOf = new int[capacity];
+        Arrays.fill(indexOf, -1);
+    }
+
+    /**
+     * @return la capacité de la file, c'est-à-dire le nombre de positions possibles.
+     */
+    public int capacity() {
+        return indexOf.length;
+    }
+
+    /**
+     * @return true si la file est vide.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return le nombre d'éléments dans la file.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param v une position.
+     * @return true si la position est dans la file.
+     */
+    public boolean contains(int v) {
+        return indexOf[v] >= 0;
+    }
+
+    /**
+     * @return la plus petite clé de la file, qui ne doit pas être vide.
+     */
+    public double minKey() {
+        return heapKeys[0];
+    }
+
+    /**
+     * Ajoute une position avec la clé donnée, ou diminue sa clé si elle est déjà dans la file.
+     * Une clé plus grande que la clé actuelle est ignorée.
+     *
+     * @param v   la position.
+     * @param key la clé (distance ou estimation).
+     */
+    public void insertOrDecrease(int v, double key) {
+        int i = indexOf[v];
+        if (i < 0) {
+            i = size++;
+        } else if (key >= heapKeys[i]) {
+            return;
+        }
+        siftUp(i, v, key);
+    }
+
+    /**
+     * Retire et retourne la position de plus petite clé.
+     *
+     * @return la position retirée.
+     */
+    public int pop() {
+        int top = heap[0];
+        indexOf[top] = -1;
+        size--;
+        if (size > 0) {
+            siftDown(0, heap[size], heapKeys[size]);
+        }
+        return top;
+    }
+
+    /**
+     * Vide la file en temps proportionnel à son nombre d'éléments.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            indexOf[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private static boolean less(double keyA, int a, double keyB, int b) {
+        return keyA < keyB || (keyA == keyB && a < b);
+    }
+
+    private void siftUp(int i, int v, double key) {
+        while (i > 0) {
+            int parent = (i - 1) / ARITY;
+            if (!less(key, v, heapKeys[parent], heap[parent])) {
+                break;
+            }
+            place(i, heap[parent], heapKeys[parent]);
+            i = parent;
+        }
+        place(i, v, key);
+    }
+
+    private void siftDown(int i, int v, double key) {
+        while (true) {
+            int first = i * ARITY + 1;
+            if (first >= size) {
+                break;
+            }
+            int best = first;
+            int last = Math.min(first + ARITY, size);
+            for (int c = first + 1; c < last; c++) {
+                if (less(heapKeys[c], heap[c], heapKeys[best], heap[best])) {
+                    best = c;
+                }
+            }
+            if (!less(heapKeys[best], heap[best], key, v)) {
+                break;
+            }
+            place(i, heap[best], heapKeys[best]);
+            i = best;
+        }
+        place(i, v, key);
+    }
+
+    private void place(int i, int v, double key) {
+        heap[i] = v;
+        heapKeys[i] = key;
+        indexOf[v] = i;
+    }
+}
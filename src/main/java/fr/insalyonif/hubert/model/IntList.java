@@ -0,0 +1,46 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+
+/**
+ * Tableau d'entiers extensible, pour les constructions qui ne connaissent pas leur taille à
+ * l'avance sans passer par des {@code List<Integer>}.
+ */
+final class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(64);
+    }
+
+    /**
+     * @param capacity la capacité initiale, doublée à chaque dépassement.
+     */
+    IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int get(int i) {
+        return values[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void truncate(int newSize) {
+        size = newSize;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
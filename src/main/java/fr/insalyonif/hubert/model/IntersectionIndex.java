@@ -0,0 +1,154 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index des intersections d'une carte permettant de les retrouver en temps constant,
+ * soit par leur position, soit par leur identifiant OSM.
+ * Les positions sont rangées dans un tableau dense et les identifiants dans une table
+ * de hachage à adressage ouvert sur des types primitifs (long vers int).
+ */
+public class IntersectionIndex {
+    private static final int EMPTY = -1;
+
+    private Intersection[] byPos;
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int count;
+    private int size;
+
+    /**
+     * Construit un index vide, complété au fil de la lecture d'une carte avec {@link #add(Intersection)}.
+     */
+    public IntersectionIndex() {
+        this.byPos = new Intersection[16];
+        allocateTable(16);
+    }
+
+    /**
+     * Construit l'index à partir d'une liste d'intersections.
+     *
+     * @param intersections les intersections à indexer.
+     */
+    public IntersectionIndex(List<Intersection> intersections) {
+        int size = 0;
+        for (Intersection intersection : intersections) {
+            size = Math.max(size, intersection.getPos() + 1);
+        }
+        this.byPos = new Intersection[size];
+        this.size = size;
+
+        // Capacité en puissance de deux avec un taux de remplissage d'au plus 50 %
+        allocateTable(Integer.highestOneBit(Math.max(2, intersections.size()) * 2 - 1) << 1);
+
+        for (Intersection intersection : intersections) {
+            if (intersection.getPos() >= 0) {
+                byPos[intersection.getPos()] = intersection;
+                put(intersection.getId(), intersection.getPos());
+            }
+        }
+    }
+
+    /**
+     * Ajoute une intersection à l'index, en agrandissant les tableaux si nécessaire.
+     *
+     * @param intersection l'intersection à ajouter.
+     */
+    public void add(Intersection intersection) {
+        int pos = intersection.getPos();
+        if (pos >= byPos.length) {
+            byPos = Arrays.copyOf(byPos, Math.max(pos + 1, byPos.length * 2));
+        }
+        byPos[pos] = intersection;
+        size = Math.max(size, pos + 1);
+        if ((count + 1) * 2 > keys.length) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            allocateTable(keys.length * 2);
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldValues[slot] != EMPTY) {
+                    put(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+        put(intersection.getId(), pos);
+    }
+
+    /**
+     * Retrouve une intersection à partir de sa position.
+     *
+     * @param pos la position de l'intersection.
+     * @return l'intersection correspondante, ou null si elle n'existe pas.
+     */
+    public Intersection findByPos(int pos) {
+        if (pos < 0 || pos >= byPos.length) {
+            return null;
+        }
+        return byPos[pos];
+    }
+
+    /**
+     * Retrouve une intersection à partir de son identifiant.
+     *
+     * @param id l'identifiant de l'intersection.
+     * @return l'intersection correspondante, ou null si elle n'existe pas.
+     */
+    public Intersection findById(long id) {
+        int pos = posOf(id);
+        return pos == EMPTY ? null : byPos[pos];
+    }
+
+    /**
+     * Retourne la position associée à un identifiant.
+     *
+     * @param id l'identifiant de l'intersection.
+     * @return la position, ou -1 si l'identifiant est inconnu.
+     */
+    public int posOf(long id) {
+        int slot = slot(id);
+        while (values[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Retourne le nombre de positions couvertes par l'index.
+     *
+     * @return la plus grande position indexée plus un.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void allocateTable(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.count = 0;
+        Arrays.fill(values, EMPTY);
+    }
+
+    private void put(long id, int pos) {
+        int slot = slot(id);
+        while (values[slot] != EMPTY && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == EMPTY) {
+            count++;
+        }
+        keys[slot] = id;
+        values[slot] = pos;
+    }
+
+    private int slot(long id) {
+        // Mélange des bits (constante de Fibonacci) pour répartir les identifiants OSM
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,281 @@
+package fr.insalyonif.hubert.model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Repères (landmarks) pour la recherche ALT (A*, Landmarks, inégalité triangulaire). Pour
+ * chaque repère {@code L}, les distances {@code d(L, v)} et {@code d(v, L)} vers toutes les
+ * intersections sont précalculées ; l'inégalité triangulaire donne alors une borne inférieure
+ * de {@code d(v, t)} :
+ * <pre>
+ *     d(v, t) &gt;= max(d(L, t) - d(L, v), d(v, L) - d(t, L))
+ * </pre>
+ * {@link AStar} utilise cette borne lorsque la carte a des repères.
+ *
+ * <p>Les repères sont choisis par la méthode du plus éloigné : chaque nouveau repère est
+ * l'intersection de la grande composante fortement connexe la plus éloignée (aller et retour)
+ * des repères déjà choisis. Plus il y a de repères, plus la borne est serrée et moins la
+ * recherche visite de nœuds, pour {@code 2 * 4} octets de plus par intersection et par repère.
+ *
+ * <p>Les distances sont stockées en float, intersection par intersection, et la borne retire
+ * l'erreur d'arrondi possible : elle reste admissible. Elle le reste aussi si des segments
+ * s'allongent (fermeture, pénalité) ; seul un raccourcissement impose de recalculer les repères.
+ * Les tables s'enregistrent dans le dossier des fichiers dérivés ({@link #pathFor(String)}) avec
+ * l'empreinte du graphe, comme la {@link ContractionHierarchy}, et celle de sa seule structure
+ * ({@link CompressedGraph#getShapeChecksum()}) qui ne change pas avec les longueurs.
+ */
+public class Landmarks {
+    public static final int MAGIC = 0x414C5431; // "ALT1"
+    public static final int VERSION = 2;
+    public static final String EXTENSION = ".alt";
+    public static final int DEFAULT_COUNT = 8;
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+    private static final float UNREACHABLE = Float.POSITIVE_INFINITY;
+
+    private final int nbVertices;
+    private final int[] landmarks;
+    private final long checksum;
+    private final long shapeChecksum;
+    // Distance du repère l vers v en fromLandmark[v * k + l], de v vers le repère l en toLandmark[v * k + l]
+    private final float[] fromLandmark;
+    private final float[] toLandmark;
+
+    private Landmarks(int nbVertices, int[] landmarks, float[] fromLandmark, float[] toLandmark,
+                      long checksum, long shapeChecksum) {
+        this.nbVertices = nbVertices;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+        this.checksum = checksum;
+        this.shapeChecksum = shapeChecksum;
+    }
+
+    /**
+     * Choisit les repères d'un graphe et calcule leurs distances.
+     *
+     * @param graph       le graphe compressé de la carte.
+     * @param nbLandmarks le nombre de repères.
+     * @return les repères et leurs tables de distances.
+     */
+    public static Landmarks compute(CompressedGraph graph, int nbLandmarks) {
+        if (nbLandmarks <= 0) {
+            throw new IllegalArgumentException("Le nombre de repères doit être positif : " + nbLandmarks);
+        }
+        int n = graph.getNbVertices();
+        StronglyConnectedComponents components = new StronglyConnectedComponents(graph);
+        int largest = 0;
+        for (int v = 1; v < n; v++) {
+            if (components.getComponentSize(components.getComponent(v))
+                    > components.getComponentSize(components.getComponent(largest))) {
+                largest = v;
+            }
+        }
+        int k = nbLandmarks;
+
+        int[] chosen = new int[k];
+        float[] from = new float[n * k];
+        float[] to = new float[n * k];
+        // Distance aller-retour de chaque intersection au plus proche des repères choisis
+        double[] closest = new double[n];
+        Arrays.fill(closest, Double.MAX_VALUE);
+        double[] forward = new double[n];
+        double[] backward = new double[n];
+        int[] pi = new int[n];
+        DijkstraEngine engine = new DijkstraEngine();
+
+        // Premier repère : le point le plus éloigné d'une intersection quelconque de la grande composante
+        engine.run(graph.forward(), false, null, largest, forward, pi);
+        int next = largest;
+        for (int v = 0; v < n; v++) {
+            if (components.sameComponent(v, largest) && forward[v] > forward[next]) {
+                next = v;
+            }
+        }
+        for (int l = 0; l < k; l++) {
+            chosen[l] = next;
+            engine.run(graph.forward(), false, null, next, forward, pi);
+            engine.run(graph.reverse(), true, null, next, backward, pi);
+            next = -1;
+            for (int v = 0; v < n; v++) {
+                from[v * k + l] = toFloat(forward[v]);
+                to[v * k + l] = toFloat(backward[v]);
+                if (forward[v] != SearchWorkspace.INFINITY && backward[v] != SearchWorkspace.INFINITY) {
+                    closest[v] = Math.min(closest[v], forward[v] + backward[v]);
+                    if (closest[v] > 0 && (next == -1 || closest[v] > closest[next])) {
+                        next = v;
+                    }
+                }
+            }
+            if (next == -1) {
+                // Toutes les intersections sont déjà des repères (très petite carte) : on répète le premier
+                next = chosen[0];
+            }
+        }
+        return new Landmarks(n, chosen, from, to, graph.getChecksum(), graph.getShapeChecksum());
+    }
+
+    private static float toFloat(double distance) {
+        return distance == SearchWorkspace.INFINITY ? UNREACHABLE : (float) distance;
+    }
+
+    /**
+     * Retourne le chemin du fichier de repères associé à une carte XML (extension .alt, voir
+     * {@link MapCompiler#derivedPath(String, String)}).
+     *
+     * @param xmlFile le chemin de la carte XML.
+     * @return le chemin du fichier de repères.
+     */
+    public static Path pathFor(String xmlFile) {
+        return MapCompiler.derivedPath(xmlFile, EXTENSION);
+    }
+
+    /**
+     * Charge les repères enregistrés pour une carte s'ils correspondent au graphe et au nombre
+     * demandé, ou les calcule et les enregistre sinon.
+     *
+     * @param xmlFile     le chemin de la carte XML.
+     * @param graph       le graphe compressé de la carte chargée.
+     * @param nbLandmarks le nombre de repères.
+     * @return les repères du graphe.
+     */
+    public static Landmarks load(String xmlFile, CompressedGraph graph, int nbLandmarks) {
+        Path file = pathFor(xmlFile);
+        if (Files.isRegularFile(file)) {
+            try {
+                Landmarks landmarks = read(file);
+                // Des repères calculés avec des segments plus longs surestimeraient : l'empreinte doit être exacte
+                if (landmarks.checksum == graph.getChecksum() && landmarks.landmarks.length == nbLandmarks) {
+                    return landmarks;
+                }
+            } catch (IOException e) {
+                System.out.println("Repères illisibles, recalcul : " + e.getMessage());
+            }
+        }
+        Landmarks landmarks = compute(graph, nbLandmarks);
+        try {
+            landmarks.write(file);
+        } catch (IOException e) {
+            System.out.println("Impossible d'écrire les repères " + file + " : " + e.getMessage());
+        }
+        return landmarks;
+    }
+
+    /**
+     * Lit des repères enregistrés par {@link #write(Path)}. Le fichier est projeté en mémoire.
+     *
+     * @param file le fichier de repères.
+     * @return les repères lus.
+     * @throws IOException si le fichier est absent, tronqué ou d'un format inconnu.
+     */
+    public static Landmarks read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Format de repères inconnu : " + file);
+            }
+            long checksum = buffer.getLong();
+            long shapeChecksum = buffer.getLong();
+            int n = buffer.getInt();
+            int k = buffer.getInt();
+            if (channel.size() != HEADER_SIZE + (long) k * Integer.BYTES + 2L * n * k * Float.BYTES) {
+                throw new IOException("Fichier de repères tronqué : " + file);
+            }
+            int[] landmarks = BinaryFiles.readInts(buffer, k);
+            float[] from = BinaryFiles.readFloats(buffer, n * k);
+            float[] to = BinaryFiles.readFloats(buffer, n * k);
+            return new Landmarks(n, landmarks, from, to, checksum, shapeChecksum);
+        }
+    }
+
+    /**
+     * Enregistre les repères. Le fichier est d'abord écrit à côté de la cible puis renommé,
+     * pour qu'un lecteur ne voie jamais un fichier incomplet.
+     *
+     * @param target le fichier à écrire.
+     * @throws IOException si l'écriture échoue.
+     */
+    public void write(Path target) throws IOException {
+        BinaryFiles.writeAtomically(target, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(checksum);
+            out.writeLong(shapeChecksum);
+            out.writeInt(nbVertices);
+            out.writeInt(landmarks.length);
+            for (int landmark : landmarks) {
+                out.writeInt(landmark);
+            }
+            for (float distance : fromLandmark) {
+                out.writeFloat(distance);
+            }
+            for (float distance : toLandmark) {
+                out.writeFloat(distance);
+            }
+        });
+    }
+
+    /**
+     * @return l'empreinte du graphe à partir duquel les repères ont été calculés.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return l'empreinte de la structure du graphe à partir duquel les repères ont été calculés.
+     */
+    public long getShapeChecksum() {
+        return shapeChecksum;
+    }
+
+    /**
+     * @return les positions des repères.
+     */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * @return la mémoire occupée par les tables de distances, en octets.
+     */
+    public long getFootprint() {
+        return (long) (fromLandmark.length + toLandmark.length) * Float.BYTES;
+    }
+
+    /**
+     * Borne inférieure de la distance de {@code v} à {@code t} par l'inégalité triangulaire.
+     *
+     * @param v une position.
+     * @param t la position de la destination.
+     * @return une borne inférieure de la distance, en mètres (0 si aucun repère ne renseigne).
+     */
+    public double lowerBound(int v, int t) {
+        int k = landmarks.length;
+        int iv = v * k;
+        int it = t * k;
+        double bound = 0;
+        for (int l = 0; l < k; l++) {
+            // d(L, t) - d(L, v)
+            float a = fromLandmark[it + l];
+            float b = fromLandmark[iv + l];
+            if (a > b && b != UNREACHABLE && a != UNREACHABLE) {
+                bound = Math.max(bound, a - (double) b - a * 0x1p-23);
+            }
+            // d(v, L) - d(t, L)
+            a = toLandmark[iv + l];
+            b = toLandmark[it + l];
+            if (a > b && b != UNREACHABLE && a != UNREACHABLE) {
+                bound = Math.max(bound, a - (double) b - a * 0x1p-23);
+            }
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,253 @@
+package fr.insalyonif.hubert.model;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compile une carte XML en un fichier binaire compact, chargé ensuite par
+ * {@link CityMap#loadFromBinary(String)} sans aucune analyse de texte.
+ *
+ * <p>Le fichier (gros-boutiste) contient, dans l'ordre :
+ * <ul>
+ *     <li>l'en-tête : magique, version, taille et date de modification du XML source,
+ *     nombre de sommets, d'arcs et de noms, position de l'entrepôt ;</li>
+ *     <li>la table des sommets : identifiant, latitude, longitude ;</li>
+ *     <li>les arcs au format CSR : offsets, cibles, longueurs et identifiants de nom ;</li>
+ *     <li>l'adjacence inverse : offsets et indices des arcs entrants, dans l'ordre du XML ;</li>
+ *     <li>la table des noms de rue, en UTF-8.</li>
+ * </ul>
+ */
+public class MapCompiler {
+    public static final int MAGIC = 0x48424D31; // "HBM1"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".hbm";
+
+    /**
+     * Propriété système qui choisit le dossier des fichiers dérivés des cartes.
+     */
+    public static final String CACHE_DIRECTORY_PROPERTY = "hubert.cache.dir";
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4;
+
+    /**
+     * Retourne le chemin du fichier binaire associé à une carte XML (extension .hbm, voir
+     * {@link #derivedPath(String, String)}).
+     *
+     * @param xmlFile le chemin de la carte XML.
+     * @return le chemin du fichier binaire.
+     */
+    public static Path binaryPathFor(String xmlFile) {
+        return derivedPath(xmlFile, EXTENSION);
+    }
+
+    /**
+     * Retourne le dossier des fichiers dérivés des cartes : celui de la propriété système
+     * {@value #CACHE_DIRECTORY_PROPERTY} si elle est définie, sinon {@code .cache/hubert} dans
+     * le dossier de l'utilisateur. Les cartes fournies avec l'application sont ainsi lues sans
+     * jamais écrire dans leur dossier.
+     *
+     * @return le dossier des fichiers dérivés.
+     */
+    public static Path cacheDirectory() {
+        String configured = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            return Path.of(configured);
+        }
+        return Path.of(System.getProperty("user.home"), ".cache", "hubert");
+    }
+
+    /**
+     * Retourne le chemin d'un fichier dérivé d'une carte XML, dans le {@link #cacheDirectory()}
+     * : même nom que la carte suivi d'une empreinte de son dossier, pour que deux cartes de même
+     * nom dans des dossiers différents ne partagent pas leurs fichiers, puis l'extension.
+     *
+     * @param xmlFile   le chemin de la carte XML.
+     * @param extension l'extension du fichier dérivé, point compris.
+     * @return le chemin du fichier dérivé.
+     */
+    public static Path derivedPath(String xmlFile, String extension) {
+        Path path = Path.of(xmlFile).toAbsolutePath().normalize();
+        String fileName = path.getFileName().toString();
+        int extensionIndex = fileName.lastIndexOf('.');
+        if (extensionIndex > 0) {
+            fileName = fileName.substring(0, extensionIndex);
+        }
+        Path folder = path.getParent();
+        String folderHash = String.format("%08x", folder == null ? 0 : folder.toString().hashCode());
+        return cacheDirectory().resolve(fileName + "-" + folderHash + extension);
+    }
+
+    /**
+     * Vérifie qu'un fichier binaire existe et correspond à la version actuelle du XML source.
+     *
+     * @param binary le fichier binaire.
+     * @param source le fichier XML source.
+     * @return true si le fichier binaire peut être utilisé, false s'il est absent ou périmé.
+     */
+    public static boolean isUpToDate(Path binary, File source) {
+        if (!Files.isRegularFile(binary) || !source.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // lecture de l'en-tête complet
+            }
+            header.flip();
+            return header.getInt() == MAGIC
+                    && header.getInt() == VERSION
+                    && header.getLong() == source.length()
+                    && header.getLong() == source.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Charge une carte XML et écrit le fichier binaire correspondant dans le dossier des fichiers dérivés.
+     *
+     * @param xmlFile le chemin de la carte XML.
+     * @return le chemin du fichier binaire écrit.
+     * @throws Exception si le XML ne peut pas être lu ou le binaire écrit.
+     */
+    public static Path compile(String xmlFile) throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML(xmlFile);
+        Path target = binaryPathFor(xmlFile);
+        write(cityMap, new File(xmlFile), target);
+        return target;
+    }
+
+    /**
+     * Écrit une carte déjà chargée au format binaire. Le fichier est d'abord écrit à côté
+     * de la cible puis renommé, pour qu'un lecteur ne voie jamais un fichier incomplet.
+     *
+     * @param cityMap la carte chargée depuis le XML source.
+     * @param source  le fichier XML source, dont la taille et la date sont enregistrées.
+     * @param target  le fichier binaire à écrire.
+     * @throws IOException si l'écriture échoue.
+     */
+    public static void write(CityMap cityMap, File source, Path target) throws IOException {
+        List<Intersection> intersections = cityMap.getIntersections();
+        Intersection[] byPos = new Intersection[cityMap.getCompressedGraph().getNbVertices()];
+        for (Intersection intersection : intersections) {
+            byPos[intersection.getPos()] = intersection;
+        }
+        int n = byPos.length;
+
+        // Numérotation des arcs dans l'ordre CSR et des noms de rue dans l'ordre d'apparition
+        Map<RoadSegment, Integer> edgeIds = new IdentityHashMap<>();
+        Map<String, Integer> nameIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] offsets = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            offsets[u + 1] = offsets[u];
+            if (byPos[u] == null) {
+                continue;
+            }
+            for (RoadSegment segment : byPos[u].getSuccessors()) {
+                edgeIds.put(segment, offsets[u + 1]++);
+                nameIds.computeIfAbsent(cityMap.getStreetName(segment.getNameId()), name -> {
+                    names.add(name);
+                    return names.size() - 1;
+                });
+            }
+        }
+
+        BinaryFiles.writeAtomically(target, out -> writeTo(out, cityMap, source, byPos, offsets, edgeIds, nameIds, names));
+    }
+
+    private static void writeTo(DataOutputStream out, CityMap cityMap, File source, Intersection[] byPos, int[] offsets,
+                                Map<RoadSegment, Integer> edgeIds, Map<String, Integer> nameIds,
+                                List<String> names) throws IOException {
+        int n = byPos.length;
+        int m = offsets[n];
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(source.length());
+        out.writeLong(source.lastModified());
+        out.writeInt(n);
+        out.writeInt(m);
+        out.writeInt(names.size());
+        Intersection wareHouse = cityMap.getWareHouseLocation();
+        out.writeInt(wareHouse == null ? -1 : wareHouse.getPos());
+
+        for (int u = 0; u < n; u++) {
+            out.writeLong(byPos[u] == null ? -1 : byPos[u].getId());
+            out.writeDouble(byPos[u] == null ? 0 : byPos[u].getLatitude());
+            out.writeDouble(byPos[u] == null ? 0 : byPos[u].getLongitude());
+        }
+
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        for (int u = 0; u < n; u++) {
+            if (byPos[u] != null) {
+                for (RoadSegment segment : byPos[u].getSuccessors()) {
+                    out.writeInt(segment.getDestination().getPos());
+                }
+            }
+        }
+        for (int u = 0; u < n; u++) {
+            if (byPos[u] != null) {
+                for (RoadSegment segment : byPos[u].getSuccessors()) {
+                    out.writeDouble(segment.getLength());
+                }
+            }
+        }
+        for (int u = 0; u < n; u++) {
+            if (byPos[u] != null) {
+                for (RoadSegment segment : byPos[u].getSuccessors()) {
+                    out.writeInt(nameIds.get(cityMap.getStreetName(segment.getNameId())));
+                }
+            }
+        }
+
+        int reverseOffset = 0;
+        out.writeInt(reverseOffset);
+        for (int u = 0; u < n; u++) {
+            reverseOffset += byPos[u] == null ? 0 : byPos[u].getPredecessors().size();
+            out.writeInt(reverseOffset);
+        }
+        for (int u = 0; u < n; u++) {
+            if (byPos[u] != null) {
+                for (RoadSegment segment : byPos[u].getPredecessors()) {
+                    out.writeInt(edgeIds.get(segment));
+                }
+            }
+        }
+
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Compile les cartes XML passées en arguments.
+     *
+     * @param args les chemins des cartes XML à compiler.
+     * @throws Exception si une carte ne peut pas être compilée.
+     */
+    public static void main(String[] args) throws Exception {
+        for (String xmlFile : args) {
+            System.out.println(xmlFile + " -> " + compile(xmlFile));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calcule une nouvelle numérotation des intersections qui rapproche en mémoire les
+ * intersections proches sur la carte. Les intersections sont triées selon leur indice
+ * sur une courbe de Hilbert couvrant l'emprise de la carte : deux voisins sur la route
+ * ont alors presque toujours des positions voisines dans les tableaux {@code distance}
+ * et {@code pi} des recherches.
+ */
+public class NodeOrdering {
+    /**
+     * Nombre de bits par coordonnée de la grille de Hilbert (grille de 2^16 x 2^16 cases).
+     */
+    static final int ORDER = 16;
+
+    private NodeOrdering() {
+    }
+
+    /**
+     * Calcule l'ordre de Hilbert des intersections.
+     *
+     * @param intersections les intersections de la carte.
+     * @param nbVertices    le nombre de positions (plus grande position plus un).
+     * @return le tableau {@code newPos}, indexé par l'ancienne position ; -1 pour une position inutilisée.
+     */
+    public static int[] hilbert(List<Intersection> intersections, int nbVertices) {
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (Intersection intersection : intersections) {
+            minLat = Math.min(minLat, intersection.getLatitude());
+            maxLat = Math.max(maxLat, intersection.getLatitude());
+            minLon = Math.min(minLon, intersection.getLongitude());
+            maxLon = Math.max(maxLon, intersection.getLongitude());
+        }
+        double cells = (1 << ORDER) - 1;
+        double latScale = maxLat > minLat ? cells / (maxLat - minLat) : 0;
+        double lonScale = maxLon > minLon ? cells / (maxLon - minLon) : 0;
+
+        // Clé de tri : indice de Hilbert sur les 32 bits de poids fort, ancienne position ensuite
+        long[] keys = new long[intersections.size()];
+        int k = 0;
+        for (Intersection intersection : intersections) {
+            int x = (int) Math.round((intersection.getLongitude() - minLon) * lonScale);
+            int y = (int) Math.round((intersection.getLatitude() - minLat) * latScale);
+            keys[k++] = (hilbertIndex(x, y) << 32) | intersection.getPos();
+        }
+        Arrays.sort(keys);
+
+        int[] newPos = new int[nbVertices];
+        Arrays.fill(newPos, -1);
+        for (int i = 0; i < keys.length; i++) {
+            newPos[(int) keys[i]] = i;
+        }
+        return newPos;
+    }
+
+    /**
+     * Convertit une case de la grille en son indice le long de la courbe de Hilbert.
+     *
+     * @param x la colonne, entre 0 et 2^ORDER - 1.
+     * @param y la ligne, entre 0 et 2^ORDER - 1.
+     * @return l'indice de la case sur la courbe.
+     */
+    static long hilbertIndex(int x, int y) {
+        int n = 1 << ORDER;
+        long d = 0;
+        for (int s = 1 << (ORDER - 1); s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // Rotation du quadrant pour que la courbe reste continue
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,537 @@
+package fr.insalyonif.hubert.model;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Chargeur de carte XML en pipeline, destiné aux grandes extractions de ville.
+ * <ol>
+ *     <li>le thread appelant découpe le fichier en morceaux qui se terminent toujours entre deux balises ;</li>
+ *     <li>chaque morceau est analysé dans un {@link ForkJoinPool} (attributs et nombres) pendant que
+ *     la lecture continue ;</li>
+ *     <li>les résultats sont concaténés dans l'ordre du document, puis les intersections, les segments,
+ *     les listes d'adjacence et le graphe compressé sont construits en parallèle.</li>
+ * </ol>
+ * Le résultat est identique à celui de {@link CityMap#loadFromXML(String)}, y compris la numérotation
+ * des positions et l'ordre des successeurs et prédécesseurs.
+ */
+public class ParallelMapLoader {
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Construit un chargeur utilisant le pool commun.
+     */
+    public ParallelMapLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construit un chargeur utilisant le pool donné.
+     *
+     * @param pool le pool dans lequel analyser les morceaux et construire l'adjacence.
+     */
+    public ParallelMapLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Charge une carte XML dans la carte donnée.
+     *
+     * @param filename le chemin du fichier XML.
+     * @param cityMap  la carte à remplir.
+     * @throws IOException si le fichier est illisible ou mal formé.
+     */
+    public void load(String filename, CityMap cityMap) throws IOException {
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8)) {
+            Tokenizer tokenizer = new Tokenizer(reader);
+            String text;
+            while ((text = tokenizer.nextChunk()) != null) {
+                String chunkText = text;
+                tasks.add(pool.submit(() -> Chunk.parse(chunkText)));
+            }
+        }
+
+        List<Chunk> chunks = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<Chunk> task : tasks) {
+            try {
+                chunks.add(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Chargement interrompu : " + filename, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Carte mal formée : " + filename + " (" + e.getCause().getMessage() + ")", e.getCause());
+            }
+        }
+
+        try {
+            pool.submit(() -> build(chunks, cityMap)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Chargement interrompu : " + filename, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Carte incohérente : " + filename + " (" + e.getCause().getMessage() + ")", e.getCause());
+        }
+    }
+
+    /**
+     * Assemble les morceaux analysés. Exécutée dans le pool pour que les flux parallèles l'utilisent.
+     */
+    private static Void build(List<Chunk> chunks, CityMap cityMap) {
+        int n = 0;
+        int m = 0;
+        long warehouseId = -1;
+        for (Chunk chunk : chunks) {
+            n += chunk.nbNodes;
+            m += chunk.nbSegments;
+            if (chunk.warehouseId != -1) {
+                warehouseId = chunk.warehouseId;
+            }
+        }
+
+        // Concaténation dans l'ordre du document : la position d'une intersection est son rang
+        long[] nodeIds = new long[n];
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        long[] origins = new long[m];
+        long[] destinations = new long[m];
+        double[] lengths = new double[m];
+        String[] names = new String[m];
+        int nodeOffset = 0;
+        int segmentOffset = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.nodeIds, 0, nodeIds, nodeOffset, chunk.nbNodes);
+            System.arraycopy(chunk.latitudes, 0, latitudes, nodeOffset, chunk.nbNodes);
+            System.arraycopy(chunk.longitudes, 0, longitudes, nodeOffset, chunk.nbNodes);
+            System.arraycopy(chunk.origins, 0, origins, segmentOffset, chunk.nbSegments);
+            System.arraycopy(chunk.destinations, 0, destinations, segmentOffset, chunk.nbSegments);
+            System.arraycopy(chunk.lengths, 0, lengths, segmentOffset, chunk.nbSegments);
+            System.arraycopy(chunk.names, 0, names, segmentOffset, chunk.nbSegments);
+            nodeOffset += chunk.nbNodes;
+            segmentOffset += chunk.nbSegments;
+        }
+
+        Intersection[] byPos = new Intersection[n];
+        IntStream.range(0, n).parallel()
+                .forEach(u -> byPos[u] = new Intersection(latitudes[u], longitudes[u], nodeIds[u], u));
+        List<Intersection> intersections = new ArrayList<>(Arrays.asList(byPos));
+        IntersectionIndex index = new IntersectionIndex(intersections);
+
+        // Résolution des extrémités des segments
+        int[] originPos = new int[m];
+        int[] destinationPos = new int[m];
+        IntStream.range(0, m).parallel().forEach(e -> {
+            originPos[e] = index.posOf(origins[e]);
+            destinationPos[e] = index.posOf(destinations[e]);
+            if (originPos[e] < 0 || destinationPos[e] < 0) {
+                throw new IllegalStateException("Segment vers une intersection inconnue : "
+                        + origins[e] + " -> " + destinations[e]);
+            }
+        });
+        // Noms numérotés dans l'ordre du document, comme par le chargement séquentiel
+        StreetNameTable streetNames = new StreetNameTable();
+        int[] nameIds = new int[m];
+        for (int e = 0; e < m; e++) {
+            nameIds[e] = streetNames.intern(names[e]);
+        }
+        RoadSegment[] segments = new RoadSegment[m];
+        IntStream.range(0, m).parallel().forEach(e -> segments[e] = new RoadSegment(
+                byPos[originPos[e]], byPos[destinationPos[e]], nameIds[e], lengths[e]));
+
+        // Tri par dénombrement, stable : les arcs de chaque sommet restent dans l'ordre du document
+        int[] forwardOffsets = new int[n + 1];
+        int[] reverseOffsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            forwardOffsets[originPos[e] + 1]++;
+            reverseOffsets[destinationPos[e] + 1]++;
+        }
+        for (int u = 0; u < n; u++) {
+            forwardOffsets[u + 1] += forwardOffsets[u];
+            reverseOffsets[u + 1] += reverseOffsets[u];
+        }
+        int[] forwardEdges = new int[m];
+        int[] reverseEdges = new int[m];
+        int[] forwardFill = forwardOffsets.clone();
+        int[] reverseFill = reverseOffsets.clone();
+        for (int e = 0; e < m; e++) {
+            forwardEdges[forwardFill[originPos[e]]++] = e;
+            reverseEdges[reverseFill[destinationPos[e]]++] = e;
+        }
+
+        // Listes d'adjacence et graphe compressé, un sommet par tâche
+        int[] forwardTargets = new int[m];
+        double[] forwardWeights = new double[m];
+        int[] reverseTargets = new int[m];
+        double[] reverseWeights = new double[m];
+        IntStream.range(0, n).parallel().forEach(u -> {
+            List<RoadSegment> successors = byPos[u].getSuccessors();
+            for (int i = forwardOffsets[u]; i < forwardOffsets[u + 1]; i++) {
+                int e = forwardEdges[i];
+                successors.add(segments[e]);
+                forwardTargets[i] = destinationPos[e];
+                forwardWeights[i] = lengths[e];
+            }
+            List<RoadSegment> predecessors = byPos[u].getPredecessors();
+            for (int i = reverseOffsets[u]; i < reverseOffsets[u + 1]; i++) {
+                int e = reverseEdges[i];
+                predecessors.add(segments[e]);
+                reverseTargets[i] = originPos[e];
+                reverseWeights[i] = lengths[e];
+            }
+        });
+
+        CompressedGraph graph = new CompressedGraph(n,
+                CompressedGraph.Adjacency.of(forwardOffsets, forwardTargets, forwardWeights),
+                CompressedGraph.Adjacency.of(reverseOffsets, reverseTargets, reverseWeights));
+        cityMap.install(intersections, index.findById(warehouseId), index, graph, streetNames);
+        return null;
+    }
+
+    /**
+     * Découpe le flux de caractères en morceaux qui se terminent hors de toute balise,
+     * commentaire ou section CDATA.
+     */
+    static final class Tokenizer {
+        private final Reader reader;
+        private final int chunkSize;
+        private final char[] buffer = new char[1 << 16];
+        private final StringBuilder pending = new StringBuilder();
+        private int state = TEXT;
+        private char quote;
+        private boolean eof;
+
+        private static final int TEXT = 0;
+        private static final int TAG = 1;
+        private static final int QUOTED = 2;
+        private static final int COMMENT = 3;
+        private static final int CDATA = 4;
+
+        Tokenizer(Reader reader) {
+            this(reader, CHUNK_SIZE);
+        }
+
+        Tokenizer(Reader reader, int chunkSize) {
+            this.reader = reader;
+            this.chunkSize = chunkSize;
+        }
+
+        String nextChunk() throws IOException {
+            int scanned = 0;
+            int cut = -1;
+            while (true) {
+                // Recherche d'un point de coupe après chunkSize caractères, en dehors de toute balise
+                for (; scanned < pending.length(); scanned++) {
+                    if (!eof && isUndecided(scanned)) {
+                        // Début de commentaire ou de CDATA coupé par la lecture : on lit la suite avant de trancher
+                        break;
+                    }
+                    advance(scanned);
+                    if (state == TEXT && scanned + 1 >= chunkSize && pending.charAt(scanned) == '>') {
+                        cut = scanned + 1;
+                        break;
+                    }
+                }
+                if (cut > 0) {
+                    String chunk = pending.substring(0, cut);
+                    pending.delete(0, cut);
+                    // L'état est de nouveau TEXT au début du reste
+                    return chunk;
+                }
+                if (eof) {
+                    if (pending.length() == 0) {
+                        return null;
+                    }
+                    String chunk = pending.toString();
+                    pending.setLength(0);
+                    return chunk;
+                }
+                int read = reader.read(buffer);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    pending.append(buffer, 0, read);
+                }
+            }
+        }
+
+        private void advance(int i) {
+            char c = pending.charAt(i);
+            switch (state) {
+                case TEXT:
+                    if (c == '<') {
+                        if (startsWith(i, "<!--")) {
+                            state = COMMENT;
+                        } else if (startsWith(i, "<![CDATA[")) {
+                            state = CDATA;
+                        } else {
+                            state = TAG;
+                        }
+                    }
+                    break;
+                case TAG:
+                    if (c == '"' || c == '\'') {
+                        quote = c;
+                        state = QUOTED;
+                    } else if (c == '>') {
+                        state = TEXT;
+                    }
+                    break;
+                case QUOTED:
+                    if (c == quote) {
+                        state = TAG;
+                    }
+                    break;
+                case COMMENT:
+                    if (c == '>' && i >= 2 && pending.charAt(i - 1) == '-' && pending.charAt(i - 2) == '-') {
+                        state = TEXT;
+                    }
+                    break;
+                default:
+                    if (c == '>' && i >= 2 && pending.charAt(i - 1) == ']' && pending.charAt(i - 2) == ']') {
+                        state = TEXT;
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * Indique si le '<' à la position donnée peut encore ouvrir un commentaire ou une
+         * section CDATA, faute de caractères lus après lui.
+         */
+        private boolean isUndecided(int i) {
+            return state == TEXT && pending.charAt(i) == '<' && (isTruncated(i, "<!--") || isTruncated(i, "<![CDATA["));
+        }
+
+        private boolean isTruncated(int i, String prefix) {
+            return pending.length() - i < prefix.length() && startsWith(i, prefix);
+        }
+
+        /**
+         * Compare le préfixe aux caractères lus à partir de la position donnée. Un préfixe
+         * plus long que les caractères lus est comparé sur ceux-ci seulement.
+         */
+        private boolean startsWith(int i, String prefix) {
+            int length = Math.min(prefix.length(), pending.length() - i);
+            for (int k = 0; k < length; k++) {
+                if (pending.charAt(i + k) != prefix.charAt(k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Résultat de l'analyse d'un morceau : les éléments qu'il contient, dans l'ordre du document.
+     */
+    private static final class Chunk {
+        int nbNodes;
+        long[] nodeIds = new long[256];
+        double[] latitudes = new double[256];
+        double[] longitudes = new double[256];
+        int nbSegments;
+        long[] origins = new long[256];
+        long[] destinations = new long[256];
+        double[] lengths = new double[256];
+        String[] names = new String[256];
+        long warehouseId = -1;
+
+        static Chunk parse(String text) {
+            Chunk chunk = new Chunk();
+            Attributes attributes = new Attributes();
+            int i = 0;
+            int length = text.length();
+            while ((i = text.indexOf('<', i)) >= 0) {
+                if (text.startsWith("<!--", i) || text.startsWith("<![CDATA[", i)) {
+                    int end = text.indexOf(text.charAt(i + 2) == '-' ? "-->" : "]]>", i);
+                    if (end < 0) {
+                        break;
+                    }
+                    i = end + 3;
+                    continue;
+                }
+                int nameStart = i + 1;
+                int nameEnd = nameStart;
+                while (nameEnd < length && !isSpace(text.charAt(nameEnd))
+                        && text.charAt(nameEnd) != '/' && text.charAt(nameEnd) != '>') {
+                    nameEnd++;
+                }
+                String name = text.substring(nameStart, nameEnd);
+                i = attributes.read(text, nameEnd);
+                switch (name) {
+                    case "intersection":
+                        chunk.addNode(Long.parseLong(attributes.get("id")),
+                                Double.parseDouble(attributes.get("latitude")),
+                                Double.parseDouble(attributes.get("longitude")));
+                        break;
+                    case "segment":
+                        chunk.addSegment(Long.parseLong(attributes.get("origin")),
+                                Long.parseLong(attributes.get("destination")),
+                                Double.parseDouble(attributes.get("length")),
+                                attributes.get("name"));
+                        break;
+                    case "warehouse":
+                        chunk.warehouseId = Long.parseLong(attributes.get("address"));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return chunk;
+        }
+
+        private void addNode(long id, double latitude, double longitude) {
+            if (nbNodes == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, nbNodes * 2);
+                latitudes = Arrays.copyOf(latitudes, nbNodes * 2);
+                longitudes = Arrays.copyOf(longitudes, nbNodes * 2);
+            }
+            nodeIds[nbNodes] = id;
+            latitudes[nbNodes] = latitude;
+            longitudes[nbNodes] = longitude;
+            nbNodes++;
+        }
+
+        private void addSegment(long origin, long destination, double length, String name) {
+            if (nbSegments == origins.length) {
+                origins = Arrays.copyOf(origins, nbSegments * 2);
+                destinations = Arrays.copyOf(destinations, nbSegments * 2);
+                lengths = Arrays.copyOf(lengths, nbSegments * 2);
+                names = Arrays.copyOf(names, nbSegments * 2);
+            }
+            origins[nbSegments] = origin;
+            destinations[nbSegments] = destination;
+            lengths[nbSegments] = length;
+            names[nbSegments] = name;
+            nbSegments++;
+        }
+    }
+
+    /**
+     * Attributs de la balise courante, réutilisés d'une balise à l'autre.
+     */
+    private static final class Attributes {
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+
+        /**
+         * Lit les attributs à partir de {@code i} jusqu'à la fin de la balise.
+         *
+         * @return l'indice suivant la fin de la balise.
+         */
+        int read(String text, int i) {
+            keys.clear();
+            values.clear();
+            int length = text.length();
+            while (i < length) {
+                char c = text.charAt(i);
+                if (c == '>') {
+                    return i + 1;
+                }
+                if (isSpace(c) || c == '/' || c == '?') {
+                    i++;
+                    continue;
+                }
+                int keyStart = i;
+                while (i < length && !isSpace(text.charAt(i)) && text.charAt(i) != '='
+                        && text.charAt(i) != '>' && text.charAt(i) != '/') {
+                    i++;
+                }
+                String key = text.substring(keyStart, i);
+                while (i < length && isSpace(text.charAt(i))) {
+                    i++;
+                }
+                if (i >= length || text.charAt(i) != '=') {
+                    // Mot sans valeur (nom d'une balise fermante par exemple)
+                    continue;
+                }
+                i++;
+                while (i < length && isSpace(text.charAt(i))) {
+                    i++;
+                }
+                if (i >= length || (text.charAt(i) != '"' && text.charAt(i) != '\'')) {
+                    break;
+                }
+                char quote = text.charAt(i);
+                int valueEnd = text.indexOf(quote, i + 1);
+                if (valueEnd < 0) {
+                    break;
+                }
+                keys.add(key);
+                values.add(decode(text, i + 1, valueEnd));
+                i = valueEnd + 1;
+            }
+            throw new IllegalStateException("Balise non terminée");
+        }
+
+        String get(String key) {
+            int i = keys.indexOf(key);
+            if (i < 0) {
+                throw new IllegalStateException("Attribut manquant : " + key);
+            }
+            return values.get(i);
+        }
+
+        /**
+         * Décode les entités et normalise les blancs d'une valeur d'attribut, comme le ferait un parseur XML.
+         */
+        private static String decode(String text, int start, int end) {
+            boolean plain = true;
+            for (int i = start; i < end && plain; i++) {
+                char c = text.charAt(i);
+                plain = c != '&' && c != '\n' && c != '\r' && c != '\t';
+            }
+            if (plain) {
+                return text.substring(start, end);
+            }
+            StringBuilder value = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == '\r' && i + 1 < end && text.charAt(i + 1) == '\n') {
+                    continue;
+                }
+                if (c == '\n' || c == '\r' || c == '\t') {
+                    value.append(' ');
+                } else if (c == '&') {
+                    int semicolon = text.indexOf(';', i);
+                    String entity = text.substring(i + 1, semicolon);
+                    switch (entity) {
+                        case "amp": value.append('&'); break;
+                        case "lt": value.append('<'); break;
+                        case "gt": value.append('>'); break;
+                        case "quot": value.append('"'); break;
+                        case "apos": value.append('\''); break;
+                        default:
+                            if (entity.startsWith("#x")) {
+                                value.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                            } else if (entity.startsWith("#")) {
+                                value.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                            } else {
+                                throw new IllegalStateException("Entité inconnue : &" + entity + ";");
+                            }
+                    }
+                    i = semicolon;
+                } else {
+                    value.append(c);
+                }
+            }
+            return value.toString();
+        }
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
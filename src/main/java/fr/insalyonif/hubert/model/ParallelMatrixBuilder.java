@@ -0,0 +1,104 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Ajoute d'un coup plusieurs demandes de livraison à une tournée, en calculant leurs chemins
+ * en parallèle au lieu d'enchaîner {@link AbstractDijkstra#runDijkstra(Intersection, int)}
+ * point par point.
+ *
+ * <p>Pour chaque point, une recherche vers les points précédents (entrepôt compris) et une
+ * recherche depuis ces points sont soumises au pool ; chacune emprunte son propre
+ * {@link SearchWorkspace} et ne modifie rien de partagé
+ * (voir {@link AbstractDijkstra#findChemins(Intersection, List, int)}). Les chemins sont
+ * ensuite rangés dans l'ordre de l'ajout point par point : la tournée obtenue est la même.
+ *
+ * <p>Un point est accepté s'il est dans la composante fortement connexe de l'entrepôt, ce que
+ * l'ajout point par point découvre par ses recherches. Un point refusé n'est ajouté ni à la
+ * recherche directe ni à la recherche inverse.
+ */
+public class ParallelMatrixBuilder {
+    private final ForkJoinPool pool;
+
+    /**
+     * Construit un constructeur utilisant le pool commun.
+     */
+    public ParallelMatrixBuilder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construit un constructeur utilisant le pool donné.
+     *
+     * @param pool le pool dans lequel lancer les recherches.
+     */
+    public ParallelMatrixBuilder(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Ajoute des demandes de livraison à une tournée, avec leurs chemins vers et depuis les
+     * points déjà présents, puis met à jour les chemins de la tournée.
+     *
+     * @param tour     la tournée, avec ses recherches directe et inverse bornées aux points de livraison.
+     * @param requests les demandes à ajouter, dans l'ordre.
+     * @param cityMap  la carte de la ville.
+     * @return les demandes acceptées, dans l'ordre.
+     */
+    public List<DeliveryRequest> addRequests(DeliveryTour tour, List<DeliveryRequest> requests, CityMap cityMap) {
+        Dijkstra dijkstra = tour.getDijkstra();
+        DijkstraInverse inverse = tour.getDijkstraInverse();
+        if (!dijkstra.isTargetBounded() || !inverse.isTargetBounded()) {
+            // Une recherche sur tout le graphe recopie ses tableaux dans l'objet : elle ne peut pas être partagée
+            throw new IllegalStateException("Les recherches en parallèle doivent être bornées aux points de livraison");
+        }
+        int sizeGraph = cityMap.getIntersections().size();
+        // Structures construites à la demande : elles le sont ici, avant que les tâches ne les lisent
+        cityMap.getCompressedGraph();
+        cityMap.getStronglyConnectedComponents();
+
+        List<DeliveryRequest> accepted = new ArrayList<>();
+        List<ForkJoinTask<List<Chemin>>> forward = new ArrayList<>();
+        List<ForkJoinTask<List<Chemin>>> backward = new ArrayList<>();
+        List<Intersection> points = new ArrayList<>(dijkstra.getDeliveryRequest());
+        for (DeliveryRequest request : requests) {
+            Intersection point = request.getDeliveryLocation();
+            if (!cityMap.isReachableFromWareHouse(point)) {
+                continue;
+            }
+            List<Intersection> previous = List.copyOf(points);
+            accepted.add(request);
+            forward.add(pool.submit(() -> dijkstra.findChemins(point, previous, sizeGraph)));
+            backward.add(pool.submit(() -> inverse.findChemins(point, previous, sizeGraph)));
+            if (!points.contains(point)) {
+                points.add(point);
+            }
+        }
+
+        for (int i = 0; i < accepted.size(); i++) {
+            List<Chemin> found = forward.get(i).join();
+            List<Chemin> foundInverse = backward.get(i).join();
+            if (found == null || foundInverse == null) {
+                throw new IllegalStateException("Point de la composante de l'entrepôt non relié : " + accepted.get(i));
+            }
+            Intersection point = accepted.get(i).getDeliveryLocation();
+            if (!dijkstra.getDeliveryRequest().contains(point)) {
+                dijkstra.getDeliveryRequest().add(point);
+                inverse.getDeliveryRequest().add(point);
+            }
+            dijkstra.getChemins().addAll(found);
+            inverse.getChemins().addAll(foundInverse);
+            tour.getRequests().add(accepted.get(i));
+        }
+        // Les arbres des recherches du lot sont écrits ensemble, une fois toutes les tâches terminées
+        cityMap.getSearchCache().flush();
+
+        tour.clearCheminsDij();
+        tour.majCheminsDij(dijkstra.getChemins());
+        tour.majCheminsDij(inverse.getChemins());
+        return accepted;
+    }
+}
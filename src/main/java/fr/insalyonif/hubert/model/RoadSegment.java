@@ -5,11 +5,13 @@ package fr.insalyonif.hubert.model;
 /**
  * Représente un segment de route dans une carte de ville.
  * Chaque segment est défini par une origine, une destination, un nom et une longueur.
+ * Le segment ne garde que l'identifiant de son nom dans la {@link StreetNameTable} de sa carte :
+ * le nom se lit par {@link CityMap#getStreetName(int)}.
  */
 public class RoadSegment {
     private Intersection origin;
     private Intersection destination;
-    private String name;
+    private int nameId;
     private double length;
 
     /**
@@ -17,13 +19,14 @@ public class RoadSegment {
      *
      * @param origin l'intersection d'origine du segment de route.
      * @param destination l'intersection de destination du segment de route.
-     * @param name le nom du segment de route.
+     * @param nameId l'identifiant du nom du segment dans la table des noms de sa carte
+     *               ({@link CityMap#getStreetNames()}), ou -1 sans nom.
      * @param length la longueur du segment de route, en kilomètres.
      */
-    public RoadSegment(Intersection origin, Intersection destination, String name, double length) {
+    public RoadSegment(Intersection origin, Intersection destination, int nameId, double length) {
         this.origin = origin;
         this.destination = destination;
-        this.name = name;
+        this.nameId = nameId;
         this.length = length;
     }
 
@@ -46,12 +49,13 @@ public class RoadSegment {
     }
 
     /**
-     * Retourne le nom du segment de route.
+     * Retourne l'identifiant du nom du segment dans la table des noms de sa carte. Le nom
+     * lui-même se lit par {@link CityMap#getStreetName(int)}.
      *
-     * @return le nom du segment.
+     * @return l'identifiant du nom, ou -1 sans nom.
      */
-    public String getName() {
-        return name;
+    public int getNameId() {
+        return nameId;
     }
 
     /**
@@ -84,10 +88,11 @@ public class RoadSegment {
     /**
      * Définit le nom du segment de route.
      *
-     * @param name le nouveau nom du segment.
+     * @param nameId l'identifiant du nouveau nom dans la table des noms de la carte
+     *               ({@link StreetNameTable#intern(String)}), ou -1 sans nom.
      */
-    public void setName(String name) {
-        this.name = name;
+    public void setNameId(int nameId) {
+        this.nameId = nameId;
     }
 
     /**
@@ -109,7 +114,7 @@ public class RoadSegment {
         return "RoadSegment{" +
                 "origin=" + origin +
                 ", destination=" + destination +
-                ", name='" + name + '\'' +
+                ", nameId=" + nameId +
                 ", length=" + length +
                 '}';
     }
@@ -0,0 +1,234 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Arbres des plus courts chemins des recherches bornées, partagés par toutes les tournées d'une
+ * carte et rangés par source et par direction. Quand deux livreurs desservent la même
+ * intersection, ou qu'une adresse revient après avoir été supprimée, la recherche n'est pas
+ * relancée : les chemins sont relus dans l'arbre gardé. Un arbre qui ne contient qu'une partie
+ * des points demandés sert de base : la recherche, toujours bornée, ne cherche que les autres
+ * points, et l'arbre complété remplace l'ancien.
+ *
+ * <p>Contrairement au {@link ShortestPathTreeStore}, qui ne garde que les arbres des tournées en
+ * cours, le cache garde aussi ceux des points retirés. Un arbre occupe 16 octets par
+ * intersection (voir {@link ShortestPathTree}). Le cache est borné en octets : au-delà, les
+ * arbres les moins récemment utilisés sont retirés. Il peut être consulté par plusieurs
+ * recherches en même temps (voir {@link ParallelMatrixBuilder}) ; une recherche manquante est
+ * calculée hors du verrou, et deux recherches simultanées de la même source peuvent donc la
+ * calculer chacune.
+ *
+ * <p>Un fichier de recherches peut y être attaché ({@link #attach}) : les arbres absents de la
+ * mémoire y sont cherchés, et chaque nouvel arbre y est ajouté, pour la session suivante. Les
+ * ajouts ne sont écrits sur le disque qu'à {@link #flush()}, appelé après chaque lot de
+ * recherches, pour que les recherches elles-mêmes n'attendent pas le disque.
+ */
+public class SearchCache {
+    /**
+     * Capacité par défaut, en octets : environ 4 millions d'intersections d'arbres.
+     */
+    public static final long DEFAULT_CAPACITY = 64L << 20;
+
+    private final long capacity;
+    private final LinkedHashMap<Long, ShortestPathTree> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private volatile SearchCacheFile file;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskReads = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Construit un cache avec la capacité par défaut.
+     */
+    public SearchCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construit un cache borné.
+     *
+     * @param capacity la taille maximale des arbres gardés, en octets ; 0 pour ne rien garder.
+     */
+    public SearchCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacité négative : " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    private static long key(int source, boolean reverse) {
+        return ((long) source << 1) | (reverse ? 1 : 0);
+    }
+
+    /**
+     * Attache un fichier de recherches au cache.
+     *
+     * @param file le fichier de recherches de la carte chargée, ou null pour n'en garder aucun.
+     */
+    public void attach(SearchCacheFile file) {
+        this.file = file;
+    }
+
+    /**
+     * @return le fichier de recherches attaché, ou null.
+     */
+    public SearchCacheFile getFile() {
+        return file;
+    }
+
+    /**
+     * Cherche l'arbre d'une source et le marque comme récemment utilisé. Un arbre absent de la
+     * mémoire est cherché dans le fichier attaché, puis gardé en mémoire. La consultation compte
+     * comme trouvée si l'arbre contient tous les points.
+     *
+     * @param source  la source de la recherche.
+     * @param reverse true pour une recherche sur les prédécesseurs.
+     * @param points  les points demandés.
+     * @return l'arbre gardé, qui peut ne contenir qu'une partie des points, ou null.
+     */
+    public ShortestPathTree get(Intersection source, boolean reverse, List<Intersection> points) {
+        ShortestPathTree tree;
+        synchronized (trees) {
+            tree = trees.get(key(source.getPos(), reverse));
+        }
+        SearchCacheFile current = file;
+        if (tree == null && current != null) {
+            tree = current.get(source, reverse);
+            if (tree != null) {
+                diskReads.incrementAndGet();
+                keep(tree, current);
+            }
+        }
+        (tree != null && tree.containsAll(points) ? hits : misses).incrementAndGet();
+        return tree;
+    }
+
+    /**
+     * Garde l'arbre d'une recherche, à la place de celui de la même source, et l'ajoute au
+     * fichier attaché, qui l'écrira au prochain {@link #flush()}.
+     *
+     * @param tree l'arbre à garder.
+     */
+    public void put(ShortestPathTree tree) {
+        SearchCacheFile current = file;
+        if (current != null) {
+            current.append(tree);
+        }
+        keep(tree, null);
+    }
+
+    /**
+     * Range un arbre en mémoire, en retirant les moins récemment utilisés si la capacité est
+     * dépassée. Un arbre plus grand que la capacité n'est pas gardé, ni un arbre lu dans un
+     * fichier détaché entre-temps par {@link #clear()} : il vaudrait pour l'ancien graphe.
+     *
+     * @param tree l'arbre à garder.
+     * @param from le fichier dont l'arbre a été lu, ou null.
+     */
+    private void keep(ShortestPathTree tree, SearchCacheFile from) {
+        if (tree.weight() > capacity) {
+            return;
+        }
+        synchronized (trees) {
+            if (from != null && file != from) {
+                return;
+            }
+            ShortestPathTree old = trees.put(key(tree.getSource().getPos(), tree.isReverse()), tree);
+            weight += tree.weight() - (old == null ? 0 : old.weight());
+            Iterator<ShortestPathTree> eldest = trees.values().iterator();
+            while (weight > capacity) {
+                weight -= eldest.next().weight();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Écrit dans le fichier attaché les arbres ajoutés depuis la dernière écriture.
+     */
+    public void flush() {
+        SearchCacheFile current = file;
+        if (current != null) {
+            current.flush();
+        }
+    }
+
+    /**
+     * @return le nombre de consultations dont l'arbre contenait tous les points.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return le nombre d'arbres relus dans le fichier attaché.
+     */
+    public long getDiskReads() {
+        return diskReads.get();
+    }
+
+    /**
+     * @return le nombre de consultations qui ont demandé une recherche, au moins pour une partie des points.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return le nombre d'arbres retirés pour respecter la capacité.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return la part des consultations trouvées dans le cache, entre 0 et 1.
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    /**
+     * @return le nombre d'arbres gardés.
+     */
+    public int size() {
+        synchronized (trees) {
+            return trees.size();
+        }
+    }
+
+    /**
+     * @return la taille des arbres gardés, en octets.
+     */
+    public long getWeight() {
+        synchronized (trees) {
+            return weight;
+        }
+    }
+
+    /**
+     * @return la taille maximale des arbres gardés, en octets.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Oublie tous les arbres, par exemple quand la carte ou les longueurs des segments
+     * changent. Le fichier attaché, qui ne vaut que pour l'ancien graphe, est détaché. Les
+     * statistiques sont gardées.
+     */
+    public void clear() {
+        synchronized (trees) {
+            file = null;
+            trees.clear();
+            weight = 0;
+        }
+    }
+}
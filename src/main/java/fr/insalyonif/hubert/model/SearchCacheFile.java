@@ -0,0 +1,506 @@
+package fr.insalyonif.hubert.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Arbres des recherches enregistrés dans le dossier des fichiers dérivés de la carte
+ * ({@link #pathFor(String)}), pour que les adresses déjà servies, à commencer par l'entrepôt, ne
+ * soient plus recherchées d'une session à l'autre. {@link SearchCache} consulte ce fichier quand
+ * un arbre n'est pas en mémoire, et y ajoute chaque nouvel arbre.
+ *
+ * <p>Après l'en-tête (format, version, empreinte du graphe, nombre d'intersections), le fichier
+ * est une suite d'enregistrements de longueur variable, un par arbre ({@link ShortestPathTree}) :
+ * la longueur de l'enregistrement, la source, la direction, puis le nombre d'intersections,
+ * leurs positions (écarts entre positions croissantes), leurs parents (écart à l'intersection)
+ * et leurs distances. Nombres et écarts sont des entiers de longueur variable, d'un octet pour
+ * les petites valeurs. Un arbre complété est ajouté à la suite, et le dernier enregistrement
+ * d'une source est celui qui compte.
+ *
+ * <p>Le fichier est borné en octets. Quand une écriture dépasserait la capacité, ou qu'un fichier
+ * plus grand est ouvert, il est compacté : seul le dernier arbre de chaque source est gardé, des
+ * plus récents aux plus anciens, jusqu'à la moitié de la capacité.
+ *
+ * <p>Les ajouts ({@link #append}) ne touchent pas au disque : les arbres attendent en mémoire,
+ * où ils restent lisibles, et sont écrits ensemble par {@link #flush()}, une fois qu'un lot de
+ * recherches est terminé. Le fichier est projeté en mémoire à l'ouverture, et chaque écriture
+ * projette seulement les octets qu'elle a ajoutés. Un enregistrement incomplet en fin de fichier
+ * (écriture interrompue) est ignoré puis écrasé par l'écriture suivante. Un fichier d'un autre
+ * graphe, ou qui ne peut pas être projeté, est remplacé.
+ */
+public class SearchCacheFile {
+    public static final int MAGIC = 0x48534331; // "HSC1"
+    public static final int VERSION = 3;
+    public static final String EXTENSION = ".sc";
+
+    /**
+     * Capacité par défaut du fichier, en octets.
+     */
+    public static final long DEFAULT_CAPACITY = 64L << 20;
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    // Longueur, source et direction d'un enregistrement
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 1;
+
+    /**
+     * Position et taille d'un arbre dans le fichier, et ses octets dans la projection qui le contient.
+     */
+    private static final class Record {
+        final long offset;
+        final int length;
+        final int nbNodes;
+        final ByteBuffer bytes;
+
+        Record(long offset, int length, int nbNodes, ByteBuffer bytes) {
+            this.offset = offset;
+            this.length = length;
+            this.nbNodes = nbNodes;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Path file;
+    private final long checksum;
+    private final int nbVertices;
+    private final long capacity;
+    // Dernier enregistrement de chaque source, par source et direction
+    private final HashMap<Long, Record> records = new HashMap<>();
+    // Arbres ajoutés mais pas encore écrits, dans l'ordre des ajouts
+    private final LinkedHashMap<Long, ShortestPathTree> pending = new LinkedHashMap<>();
+    private long end;
+
+    private SearchCacheFile(Path file, long checksum, int nbVertices, long capacity) {
+        this.file = file;
+        this.checksum = checksum;
+        this.nbVertices = nbVertices;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Retourne le chemin du fichier de recherches associé à une carte XML (extension .sc, voir
+     * {@link MapCompiler#derivedPath(String, String)}).
+     *
+     * @param xmlFile le chemin de la carte XML.
+     * @return le chemin du fichier de recherches.
+     */
+    public static Path pathFor(String xmlFile) {
+        return MapCompiler.derivedPath(xmlFile, EXTENSION);
+    }
+
+    /**
+     * Ouvre le fichier de recherches d'une carte, avec la capacité par défaut.
+     *
+     * @param xmlFile le chemin de la carte XML.
+     * @param graph   le graphe compressé de la carte chargée.
+     * @return le fichier de recherches, vide s'il n'existait pas ou venait d'un autre graphe.
+     */
+    public static SearchCacheFile open(String xmlFile, CompressedGraph graph) {
+        return open(pathFor(xmlFile), graph.getChecksum(), graph.getNbVertices());
+    }
+
+    /**
+     * Ouvre un fichier de recherches avec la capacité par défaut.
+     *
+     * @param file       le fichier de recherches.
+     * @param checksum   l'empreinte du graphe des recherches.
+     * @param nbVertices le nombre d'intersections du graphe.
+     * @return le fichier de recherches, vide s'il n'existait pas ou venait d'un autre graphe.
+     */
+    public static SearchCacheFile open(Path file, long checksum, int nbVertices) {
+        return open(file, checksum, nbVertices, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Ouvre un fichier de recherches et projette en mémoire ses enregistrements complets. Le
+     * fichier n'est créé qu'au premier ajout.
+     *
+     * @param file       le fichier de recherches.
+     * @param checksum   l'empreinte du graphe des recherches.
+     * @param nbVertices le nombre d'intersections du graphe.
+     * @param capacity   la taille maximale du fichier, en octets.
+     * @return le fichier de recherches, vide s'il n'existait pas ou venait d'un autre graphe.
+     */
+    public static SearchCacheFile open(Path file, long checksum, int nbVertices, long capacity) {
+        if (capacity < HEADER_SIZE) {
+            throw new IllegalArgumentException("Capacité trop petite : " + capacity);
+        }
+        SearchCacheFile cacheFile = new SearchCacheFile(file, checksum, nbVertices, capacity);
+        if (Files.isRegularFile(file)) {
+            try {
+                cacheFile.load();
+                if (cacheFile.end > capacity) {
+                    cacheFile.compact();
+                }
+            } catch (IOException | IllegalArgumentException | UncheckedIOException e) {
+                System.out.println("Fichier de recherches illisible, remplacé : " + e.getMessage());
+                cacheFile.reset();
+            }
+        }
+        return cacheFile;
+    }
+
+    private void load() throws IOException {
+        MappedByteBuffer buffer = map();
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getLong(8) != checksum || buffer.getInt(16) != nbVertices) {
+            System.out.println("Fichier de recherches d'un autre graphe, remplacé : " + file);
+            return;
+        }
+        index(buffer);
+    }
+
+    /**
+     * Projette tout le fichier en mémoire. Un fichier trop grand pour une projection est refusé.
+     */
+    private MappedByteBuffer map() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("fichier trop grand (" + size + " octets)");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Range les enregistrements complets d'une projection, jusqu'au premier incomplet ou invalide.
+     */
+    private void index(MappedByteBuffer buffer) {
+        records.clear();
+        long size = buffer.capacity();
+        long offset = HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE < size) {
+            int length = buffer.getInt((int) offset);
+            int source = buffer.getInt((int) offset + 4);
+            if (length <= RECORD_HEADER_SIZE || offset + length > size || source < 0 || source >= nbVertices) {
+                break;
+            }
+            boolean reverse = buffer.get((int) offset + 8) != 0;
+            int nbNodes;
+            try {
+                nbNodes = readVarint(buffer.slice((int) offset + RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE));
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                break;
+            }
+            records.put(key(source, reverse), new Record(offset, length, nbNodes, buffer.slice((int) offset, length)));
+            offset += length;
+        }
+        end = offset;
+    }
+
+    private void reset() {
+        records.clear();
+        end = 0;
+    }
+
+    private static long key(int source, boolean reverse) {
+        return ((long) source << 1) | (reverse ? 1 : 0);
+    }
+
+    /**
+     * Cherche l'arbre enregistré d'une source, ou ajouté et pas encore écrit.
+     *
+     * @param source  la source de la recherche.
+     * @param reverse true pour une recherche sur les prédécesseurs.
+     * @return l'arbre relu dans le fichier, ou null s'il n'est pas enregistré ou illisible.
+     */
+    public synchronized ShortestPathTree get(Intersection source, boolean reverse) {
+        long key = key(source.getPos(), reverse);
+        ShortestPathTree waiting = pending.get(key);
+        if (waiting != null) {
+            return waiting;
+        }
+        Record record = records.get(key);
+        if (record == null) {
+            return null;
+        }
+        try {
+            return decode(source, reverse, record.bytes.duplicate());
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.out.println("Arbre illisible dans le fichier de recherches " + file + " : " + e.getMessage());
+            return null;
+        }
+    }
+
+    private ShortestPathTree decode(Intersection source, boolean reverse, ByteBuffer record) {
+        record.position(4);
+        if (record.getInt() != source.getPos() || (record.get() != 0) != reverse) {
+            throw new IllegalArgumentException("enregistrement d'une autre source");
+        }
+        int count = readVarint(record);
+        if (count < 0 || count > nbVertices) {
+            throw new IllegalArgumentException("nombre d'intersections invalide : " + count);
+        }
+        int[] nodes = new int[count];
+        int[] parents = new int[count];
+        int root = source.getPos();
+        int node = 0;
+        for (int i = 0; i < count; i++) {
+            node += readVarint(record);
+            if (node < 0 || node >= nbVertices || (i > 0 && node <= nodes[i - 1])) {
+                throw new IllegalArgumentException("position invalide : " + node);
+            }
+            nodes[i] = node;
+        }
+        // Chaque parent est la racine ou une intersection de l'arbre, sinon une branche sortirait de l'arbre
+        int[] parentIndexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            int gap = readVarint(record);
+            parents[i] = nodes[i] + ((gap >>> 1) ^ -(gap & 1));
+            parentIndexes[i] = parents[i] == root ? -1 : Arrays.binarySearch(nodes, parents[i]);
+            if (parentIndexes[i] < -1 || (parentIndexes[i] == -1 && parents[i] != root)) {
+                throw new IllegalArgumentException("parent invalide : " + parents[i]);
+            }
+        }
+        checkAcyclic(parentIndexes);
+        double[] distances = BinaryFiles.readDoubles(record, count);
+        return new ShortestPathTree(source, reverse, nodes, parents, distances);
+    }
+
+    /**
+     * Vérifie que chaque intersection remonte jusqu'à la racine (indice -1), sans quoi une
+     * branche bouclerait indéfiniment.
+     */
+    private static void checkAcyclic(int[] parentIndexes) {
+        // 0 : pas encore vue, 1 : sur la remontée en cours, 2 : reliée à la racine
+        byte[] state = new byte[parentIndexes.length];
+        for (int i = 0; i < parentIndexes.length; i++) {
+            int j = i;
+            while (j != -1 && state[j] == 0) {
+                state[j] = 1;
+                j = parentIndexes[j];
+            }
+            if (j != -1 && state[j] == 1) {
+                throw new IllegalArgumentException("cycle dans les parents");
+            }
+            for (j = i; j != -1 && state[j] == 1; j = parentIndexes[j]) {
+                state[j] = 2;
+            }
+        }
+    }
+
+    /**
+     * Ajoute un arbre, sauf si celui de la même source, enregistré ou en attente, est au moins
+     * aussi grand. L'arbre reste en mémoire jusqu'au prochain {@link #flush()}.
+     *
+     * @param tree l'arbre à enregistrer.
+     */
+    public synchronized void append(ShortestPathTree tree) {
+        long key = key(tree.getSource().getPos(), tree.isReverse());
+        Record recorded = records.get(key);
+        ShortestPathTree waiting = pending.get(key);
+        if ((recorded != null && recorded.nbNodes >= tree.getNbNodes())
+                || (waiting != null && waiting.getNbNodes() >= tree.getNbNodes())) {
+            return;
+        }
+        pending.put(key, tree);
+    }
+
+    /**
+     * Écrit à la fin du fichier les arbres ajoutés depuis la dernière écriture, puis projette
+     * les octets écrits. Si le lot dépasserait la capacité, le fichier est d'abord compacté, et
+     * les arbres qui ne tiennent toujours pas sont abandonnés. En cas d'erreur d'écriture, les
+     * arbres ne sont simplement pas enregistrés.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<ShortestPathTree> trees = new ArrayList<>(pending.values());
+        pending.clear();
+        List<ByteBuffer> encoded = new ArrayList<>(trees.size());
+        long total = 0;
+        for (ShortestPathTree tree : trees) {
+            ByteBuffer record = encode(tree);
+            encoded.add(record);
+            total += record.remaining();
+        }
+        try {
+            if (end == 0) {
+                create();
+            }
+            if (end + total > capacity) {
+                compact();
+            }
+            long start = end;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // Un enregistrement incomplet laissé en fin de fichier est retiré avant l'ajout
+                if (channel.size() > end) {
+                    channel.truncate(end);
+                }
+                int[] written = new int[encoded.size()];
+                int nbWritten = 0;
+                long position = start;
+                for (int i = 0; i < encoded.size(); i++) {
+                    ByteBuffer record = encoded.get(i);
+                    if (position + record.remaining() > capacity) {
+                        continue;
+                    }
+                    while (record.hasRemaining()) {
+                        position += channel.write(record, position);
+                    }
+                    written[nbWritten++] = i;
+                }
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, position - start);
+                int offset = 0;
+                for (int w = 0; w < nbWritten; w++) {
+                    int i = written[w];
+                    ShortestPathTree tree = trees.get(i);
+                    int length = encoded.get(i).limit();
+                    records.put(key(tree.getSource().getPos(), tree.isReverse()),
+                            new Record(start + offset, length, tree.getNbNodes(), region.slice(offset, length)));
+                    offset += length;
+                }
+                end = position;
+            }
+        } catch (IOException | IllegalArgumentException | UncheckedIOException e) {
+            System.out.println("Impossible d'écrire le fichier de recherches " + file + " : " + e.getMessage());
+            reset();
+        }
+    }
+
+    private static ByteBuffer encode(ShortestPathTree tree) {
+        int[] nodes = tree.nodes();
+        int[] parents = tree.parents();
+        double[] distances = tree.distances();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 5 + 18 * nodes.length);
+        record.position(4);
+        record.putInt(tree.getSource().getPos());
+        record.put((byte) (tree.isReverse() ? 1 : 0));
+        writeVarint(record, nodes.length);
+        int previous = 0;
+        for (int node : nodes) {
+            writeVarint(record, node - previous);
+            previous = node;
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            int gap = parents[i] - nodes[i];
+            writeVarint(record, (gap << 1) ^ (gap >> 31));
+        }
+        for (double distance : distances) {
+            record.putDouble(distance);
+        }
+        record.putInt(0, record.position());
+        return record.flip();
+    }
+
+    /**
+     * Écrit un entier positif par groupes de 7 bits, le bit de poids fort de chaque octet
+     * indiquant qu'un autre suit.
+     */
+    private static void writeVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("entier de longueur variable invalide");
+    }
+
+    /**
+     * Écrit l'en-tête d'un fichier vide (voir {@link BinaryFiles#writeAtomically}), après avoir
+     * abandonné les enregistrements, et donc les projections, de l'ancien fichier.
+     */
+    private void create() throws IOException {
+        records.clear();
+        BinaryFiles.writeAtomically(file, this::writeHeader);
+        end = HEADER_SIZE;
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(checksum);
+        out.writeInt(nbVertices);
+    }
+
+    /**
+     * Réécrit le fichier avec le dernier arbre de chaque source, des plus récents aux plus
+     * anciens tant qu'ils tiennent dans la moitié de la capacité. Les arbres gardés sont copiés
+     * hors de la projection, et les enregistrements abandonnés, avant de remplacer le fichier :
+     * un fichier encore projeté ne peut pas être remplacé sous Windows.
+     */
+    private void compact() throws IOException {
+        List<Record> live = new ArrayList<>(records.values());
+        live.sort(Comparator.comparingLong(record -> record.offset));
+        long budget = capacity / 2 - HEADER_SIZE;
+        int first = live.size();
+        while (first > 0 && live.get(first - 1).length <= budget) {
+            budget -= live.get(--first).length;
+        }
+        List<byte[]> kept = new ArrayList<>(live.size() - first);
+        for (Record record : live.subList(first, live.size())) {
+            byte[] bytes = new byte[record.length];
+            record.bytes.get(0, bytes);
+            kept.add(bytes);
+        }
+        live.clear();
+        records.clear();
+        BinaryFiles.writeAtomically(file, out -> {
+            writeHeader(out);
+            for (byte[] bytes : kept) {
+                out.write(bytes);
+            }
+        });
+        index(map());
+    }
+
+    /**
+     * @return le nombre d'arbres enregistrés, ou en attente d'écriture.
+     */
+    public synchronized int size() {
+        int size = records.size();
+        for (Long key : pending.keySet()) {
+            if (!records.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return la taille maximale du fichier, en octets.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return l'empreinte du graphe des recherches.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return le chemin du fichier.
+     */
+    public Path getFile() {
+        return file;
+    }
+}
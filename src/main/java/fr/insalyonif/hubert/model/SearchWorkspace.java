@@ -0,0 +1,200 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Espace de travail réutilisable d'une recherche de plus courts chemins : distances,
+ * prédécesseurs, file de priorité et marques des nœuds fixés ou attendus.
+ *
+ * <p>Au lieu de remettre tous les tableaux à zéro avant chaque recherche, chaque entrée porte
+ * le numéro de génération (epoch) de la recherche qui l'a écrite ; une entrée d'une génération
+ * plus ancienne est considérée comme vide. Une petite recherche ne paie donc que les nœuds
+ * qu'elle touche.
+ *
+ * <p>Les espaces de travail sont prêtés par un réservoir propre à chaque thread
+ * ({@link #borrow(int)}) et rendus par {@link #close()}, idéalement dans un
+ * try-with-resources. La mémoire ne dépend plus du nombre de tournées, mais seulement du
+ * nombre de recherches simultanées.
+ */
+public class SearchWorkspace implements AutoCloseable {
+    /**
+     * Distance d'un nœud non atteint.
+     */
+    public static final double INFINITY = Integer.MAX_VALUE;
+
+    private static final ThreadLocal<ArrayDeque<SearchWorkspace>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final double[] distance;
+    private final int[] pi;
+    private final int[] reached;
+    private final int[] settled;
+    private final int[] pending;
+    private final IndexedHeap heap;
+    private int epoch;
+    private int nbPending;
+    private int nbSettled;
+    private boolean borrowed;
+
+    /**
+     * Constructeur de la classe SearchWorkspace.
+     *
+     * @param capacity le nombre de positions du graphe.
+     */
+    public SearchWorkspace(int capacity) {
+        this.distance = new double[capacity];
+        this.pi = new int[capacity];
+        this.reached = new int[capacity];
+        this.settled = new int[capacity];
+        this.pending = new int[capacity];
+        this.heap = new IndexedHeap(capacity);
+    }
+
+    /**
+     * Emprunte un espace de travail au réservoir du thread courant, prêt pour une nouvelle recherche.
+     *
+     * @param nbVertices le nombre de positions du graphe parcouru.
+     * @return un espace de travail vide d'au moins {@code nbVertices} positions.
+     */
+    public static SearchWorkspace borrow(int nbVertices) {
+        ArrayDeque<SearchWorkspace> pool = POOL.get();
+        SearchWorkspace workspace = pool.pollFirst();
+        // Un espace trop petit (carte plus grande chargée entre-temps) est abandonné
+        while (workspace != null && workspace.capacity() < nbVertices) {
+            workspace = pool.pollFirst();
+        }
+        if (workspace == null) {
+            workspace = new SearchWorkspace(nbVertices);
+        }
+        workspace.borrowed = true;
+        workspace.reset();
+        return workspace;
+    }
+
+    /**
+     * Rend l'espace de travail au réservoir du thread courant.
+     */
+    @Override
+    public void close() {
+        if (borrowed) {
+            borrowed = false;
+            POOL.get().addFirst(this);
+        }
+    }
+
+    /**
+     * Prépare l'espace pour une nouvelle recherche en changeant de génération.
+     */
+    public void reset() {
+        heap.clear();
+        nbPending = 0;
+        nbSettled = 0;
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            // Après 2^31 recherches, les marques sont réellement effacées une fois
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            Arrays.fill(pending, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * @return le nombre de positions de l'espace.
+     */
+    public int capacity() {
+        return distance.length;
+    }
+
+    /**
+     * @param v une position.
+     * @return la distance de la position dans la recherche courante, ou {@link #INFINITY}.
+     */
+    public double distance(int v) {
+        return reached[v] == epoch ? distance[v] : INFINITY;
+    }
+
+    /**
+     * @param v une position.
+     * @return le prédécesseur (successeur en recherche inverse) de la position, ou -1.
+     */
+    public int pi(int v) {
+        return reached[v] == epoch ? pi[v] : -1;
+    }
+
+    /**
+     * @param v une position.
+     * @return true si la position a été atteinte par la recherche courante.
+     */
+    public boolean isReached(int v) {
+        return reached[v] == epoch;
+    }
+
+    /**
+     * Met à jour la distance et le prédécesseur d'une position.
+     *
+     * @param v        la position.
+     * @param distance la nouvelle distance.
+     * @param pi       le nouveau prédécesseur (successeur en recherche inverse).
+     */
+    public void set(int v, double distance, int pi) {
+        this.distance[v] = distance;
+        this.pi[v] = pi;
+        this.reached[v] = epoch;
+    }
+
+    /**
+     * @return la file de priorité de la recherche.
+     */
+    IndexedHeap heap() {
+        return heap;
+    }
+
+    boolean isSettled(int v) {
+        return settled[v] == epoch;
+    }
+
+    /**
+     * Marque une position comme fixée.
+     *
+     * @return true si la position était attendue et que c'était la dernière.
+     */
+    boolean settle(int v) {
+        settled[v] = epoch;
+        nbSettled++;
+        if (pending[v] == epoch) {
+            pending[v] = 0;
+            return --nbPending == 0;
+        }
+        return false;
+    }
+
+    void markPending(int v) {
+        if (pending[v] != epoch) {
+            pending[v] = epoch;
+            nbPending++;
+        }
+    }
+
+    /**
+     * @return le nombre de nœuds fixés par la recherche courante.
+     */
+    public int getNbSettled() {
+        return nbSettled;
+    }
+
+    /**
+     * Recopie les résultats de la recherche dans des tableaux complets. Les positions non
+     * atteintes reçoivent la distance {@link #INFINITY} et le prédécesseur -1.
+     *
+     * @param distances le tableau des distances à remplir.
+     * @param pis       le tableau des prédécesseurs à remplir.
+     */
+    public void copyTo(double[] distances, int[] pis) {
+        int n = Math.min(distances.length, capacity());
+        for (int v = 0; v < n; v++) {
+            distances[v] = distance(v);
+            pis[v] = pi(v);
+        }
+    }
+}
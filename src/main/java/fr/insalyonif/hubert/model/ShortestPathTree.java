@@ -0,0 +1,270 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Arbre des plus courts chemins d'une recherche depuis une intersection, réduit aux branches
+ * qui mènent aux points de livraison. Tous les chemins de la recherche partagent cet arbre
+ * (voir {@link Chemin#fromTree}) : une branche commune à plusieurs points n'est rangée
+ * qu'une fois, au lieu d'un tableau de prédécesseurs par chemin.
+ *
+ * <p>Dans un arbre direct, le parent d'une intersection est la précédente sur le chemin depuis
+ * la racine ; dans un arbre inverse (recherche sur les prédécesseurs), c'est la suivante sur le
+ * chemin vers la racine. Les intersections sont rangées par position croissante, et le parent
+ * d'une intersection est retrouvé par recherche dichotomique.
+ *
+ * <p>Les arbres sont partagés par {@link ShortestPathTreeStore}, qui compte leurs utilisations.
+ */
+public class ShortestPathTree {
+    private final Intersection source;
+    private final boolean reverse;
+    private final int[] nodes;
+    private final int[] parents;
+    private final double[] distances;
+    // Nombre de recherches qui utilisent l'arbre, modifié par ShortestPathTreeStore seulement
+    int refCount;
+
+    ShortestPathTree(Intersection source, boolean reverse, int[] nodes, int[] parents, double[] distances) {
+        this.source = source;
+        this.reverse = reverse;
+        this.nodes = nodes;
+        this.parents = parents;
+        this.distances = distances;
+    }
+
+    /**
+     * Extrait l'arbre d'une recherche terminée : les branches de l'espace de travail qui relient
+     * la source aux points donnés.
+     *
+     * @param source    la source de la recherche.
+     * @param reverse   true si la recherche a suivi les prédécesseurs.
+     * @param workspace l'espace de travail de la recherche, où tous les points sont atteints.
+     * @param points    les points dont les branches sont gardées.
+     * @return l'arbre réduit aux branches des points.
+     */
+    public static ShortestPathTree extract(Intersection source, boolean reverse, SearchWorkspace workspace,
+                                           List<Intersection> points) {
+        return extract(source, reverse, workspace, points, null);
+    }
+
+    /**
+     * Complète un arbre de la même source par les branches d'une recherche terminée. Une branche
+     * s'arrête à la première intersection déjà dans l'arbre complété : elle y a la même distance,
+     * puisque les deux recherches partent de la même source.
+     *
+     * @param source    la source de la recherche.
+     * @param reverse   true si la recherche a suivi les prédécesseurs.
+     * @param workspace l'espace de travail de la recherche, où tous les points sont atteints.
+     * @param points    les points dont les branches sont ajoutées.
+     * @param base      l'arbre à compléter, ou null.
+     * @return l'arbre complété, qui contient les branches de la base et celles des points.
+     */
+    public static ShortestPathTree extract(Intersection source, boolean reverse, SearchWorkspace workspace,
+                                           List<Intersection> points, ShortestPathTree base) {
+        int[] positions = new int[points.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = points.get(i).getPos();
+        }
+        return extract(source, reverse, workspace::pi, workspace::distance, positions, base);
+    }
+
+    /**
+     * Complète un arbre de la même source par des plus courts chemins calculés point à point
+     * (hiérarchie de contraction ou partition). Une intersection commune à plusieurs chemins, ou
+     * déjà dans la base, garde son premier parent : les deux préfixes sont des plus courts
+     * chemins de même longueur, et chaque intersection ajoutée a pour parent une intersection
+     * déjà reliée à la racine, ce qui exclut les cycles. Les parents et les distances sont
+     * rangés dans un espace de travail, comme ceux d'une recherche de Dijkstra.
+     *
+     * @param source    la racine de l'arbre.
+     * @param reverse   true pour un arbre inverse, où chaque chemin se termine à la source.
+     * @param paths     les positions de chaque chemin entre la source et un point, dans le sens de circulation.
+     * @param lengths   pour chaque chemin, la distance de son début à chacune de ses positions.
+     * @param sizeGraph la taille du graphe.
+     * @param base      l'arbre à compléter, ou null.
+     * @return l'arbre complété, qui contient les branches de la base et celles des chemins.
+     */
+    public static ShortestPathTree fromPaths(Intersection source, boolean reverse, List<int[]> paths,
+                                             List<double[]> lengths, int sizeGraph, ShortestPathTree base) {
+        int root = source.getPos();
+        int[] points = new int[paths.size()];
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(sizeGraph)) {
+            for (int p = 0; p < paths.size(); p++) {
+                int[] nodes = paths.get(p);
+                double[] length = lengths.get(p);
+                int last = nodes.length - 1;
+                // On parcourt le chemin depuis la racine : son début pour un arbre direct, sa fin sinon
+                int previous = root;
+                for (int i = 1; i <= last; i++) {
+                    int k = reverse ? last - i : i;
+                    int v = nodes[k];
+                    if (v != root && !workspace.isReached(v) && (base == null || !base.contains(v))) {
+                        workspace.set(v, reverse ? length[last] - length[k] : length[k], previous);
+                    }
+                    previous = v;
+                }
+                points[p] = reverse ? nodes[0] : nodes[last];
+            }
+            return extract(source, reverse, workspace::pi, workspace::distance, points, base);
+        }
+    }
+
+    private static ShortestPathTree extract(Intersection source, boolean reverse, IntUnaryOperator pi,
+                                            IntToDoubleFunction distance, int[] points,
+                                            ShortestPathTree base) {
+        int root = source.getPos();
+        IntList nodes = new IntList(16);
+        IntList parents = new IntList(16);
+        DoubleList distances = new DoubleList();
+        BitSet included = new BitSet();
+        if (base != null) {
+            for (int i = 0; i < base.nodes.length; i++) {
+                included.set(base.nodes[i]);
+                nodes.add(base.nodes[i]);
+                parents.add(base.parents[i]);
+                distances.add(base.distances[i]);
+            }
+        }
+        for (int point : points) {
+            // On remonte la branche jusqu'à la racine ou jusqu'à une branche déjà gardée
+            for (int v = point; v != root && !included.get(v); v = pi.applyAsInt(v)) {
+                included.set(v);
+                nodes.add(v);
+                parents.add(pi.applyAsInt(v));
+                distances.add(distance.applyAsDouble(v));
+            }
+        }
+
+        int count = nodes.size();
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) nodes.get(i) << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] sortedNodes = new int[count];
+        int[] sortedParents = new int[count];
+        double[] sortedDistances = new double[count];
+        for (int i = 0; i < count; i++) {
+            int j = (int) order[i];
+            sortedNodes[i] = nodes.get(j);
+            sortedParents[i] = parents.get(j);
+            sortedDistances[i] = distances.get(j);
+        }
+        return new ShortestPathTree(source, reverse, sortedNodes, sortedParents, sortedDistances);
+    }
+
+    /**
+     * @return la racine de l'arbre.
+     */
+    public Intersection getSource() {
+        return source;
+    }
+
+    /**
+     * @return true si l'arbre vient d'une recherche sur les prédécesseurs.
+     */
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    /**
+     * @return le nombre d'intersections de l'arbre, racine non comprise.
+     */
+    public int getNbNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @param v la position d'une intersection.
+     * @return true si l'intersection est la racine ou une intersection de l'arbre.
+     */
+    public boolean contains(int v) {
+        return v == source.getPos() || Arrays.binarySearch(nodes, v) >= 0;
+    }
+
+    /**
+     * @param points des intersections.
+     * @return true si toutes les intersections sont dans l'arbre.
+     */
+    public boolean containsAll(List<Intersection> points) {
+        for (Intersection point : points) {
+            if (!contains(point.getPos())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param v la position d'une intersection de l'arbre.
+     * @return la distance entre la racine et l'intersection, dans le sens de la recherche.
+     */
+    public double distance(int v) {
+        return v == source.getPos() ? 0.0 : distances[Arrays.binarySearch(nodes, v)];
+    }
+
+    /**
+     * Compte les intersections de la branche d'une intersection, sans la construire.
+     *
+     * @param v la position d'une intersection de l'arbre.
+     * @return le nombre d'intersections de {@code v} à la racine comprises.
+     */
+    public int branchLength(int v) {
+        int root = source.getPos();
+        int length = 1;
+        for (int u = v; u != root; u = parents[Arrays.binarySearch(nodes, u)]) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Remonte la branche d'une intersection jusqu'à la racine.
+     *
+     * @param v la position d'une intersection de l'arbre.
+     * @return les positions de la branche, de {@code v} à la racine comprises.
+     */
+    public int[] branch(int v) {
+        int root = source.getPos();
+        int[] branch = new int[branchLength(v)];
+        int i = 0;
+        for (int u = v; ; u = parents[Arrays.binarySearch(nodes, u)]) {
+            branch[i++] = u;
+            if (u == root) {
+                return branch;
+            }
+        }
+    }
+
+    /**
+     * @return la mémoire occupée par l'arbre, en octets : 16 par intersection, racine comprise.
+     */
+    long weight() {
+        return 16L * (nodes.length + 1);
+    }
+
+    /**
+     * @return les positions des intersections de l'arbre, croissantes, sans copie.
+     */
+    int[] nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return le parent de chaque intersection de {@link #nodes()}, sans copie.
+     */
+    int[] parents() {
+        return parents;
+    }
+
+    /**
+     * @return la distance de chaque intersection de {@link #nodes()}, sans copie.
+     */
+    double[] distances() {
+        return distances;
+    }
+}
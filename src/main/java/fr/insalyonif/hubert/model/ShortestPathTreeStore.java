@@ -0,0 +1,104 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Arbres des plus courts chemins d'une carte, rangés par source et par direction de recherche,
+ * avec le nombre de recherches qui les utilisent.
+ *
+ * <p>Une recherche réussie ajoute son arbre ({@link #add}) ou reprend celui de la même source
+ * s'il contient déjà tous ses points ({@link #find}) ; chaque fois, le compteur de l'arbre
+ * augmente. {@link #release} le diminue quand la source est retirée d'une tournée, et l'arbre
+ * quitte le magasin à zéro : il ne reste alors en mémoire que par les chemins qui le
+ * référencent encore.
+ *
+ * <p>Le magasin peut être utilisé par plusieurs recherches en même temps (voir
+ * {@link ParallelMatrixBuilder}).
+ */
+public class ShortestPathTreeStore {
+    private final ConcurrentHashMap<Long, ShortestPathTree> trees = new ConcurrentHashMap<>();
+
+    private static long key(Intersection source, boolean reverse) {
+        return ((long) source.getPos() << 1) | (reverse ? 1 : 0);
+    }
+
+    /**
+     * Reprend l'arbre d'une source s'il contient tous les points donnés.
+     *
+     * @param source  la source de la recherche.
+     * @param reverse true pour une recherche sur les prédécesseurs.
+     * @param points  les points que l'arbre doit contenir.
+     * @return l'arbre, dont le compteur est augmenté, ou null s'il faut relancer la recherche.
+     */
+    public ShortestPathTree find(Intersection source, boolean reverse, List<Intersection> points) {
+        ShortestPathTree[] found = new ShortestPathTree[1];
+        trees.computeIfPresent(key(source, reverse), (key, tree) -> {
+            if (tree.containsAll(points)) {
+                tree.refCount++;
+                found[0] = tree;
+            }
+            return tree;
+        });
+        return found[0];
+    }
+
+    /**
+     * Retourne l'arbre d'une source sans changer son compteur, pour en lire les distances.
+     *
+     * @param source  la source de la recherche.
+     * @param reverse true pour une recherche sur les prédécesseurs.
+     * @return l'arbre de la source, ou null s'il n'y en a pas.
+     */
+    public ShortestPathTree get(Intersection source, boolean reverse) {
+        return trees.get(key(source, reverse));
+    }
+
+    /**
+     * Ajoute l'arbre d'une recherche. Il remplace l'arbre de la même source s'il y en a un, et
+     * en reprend le compteur.
+     *
+     * @param tree l'arbre à ajouter.
+     */
+    public void add(ShortestPathTree tree) {
+        tree.refCount = 1;
+        trees.merge(key(tree.getSource(), tree.isReverse()), tree, (old, added) -> {
+            added.refCount = old.refCount + 1;
+            return added;
+        });
+    }
+
+    /**
+     * Libère l'arbre d'une source, retiré du magasin quand plus aucune recherche ne l'utilise.
+     *
+     * @param source  la source de la recherche.
+     * @param reverse true pour une recherche sur les prédécesseurs.
+     */
+    public void release(Intersection source, boolean reverse) {
+        trees.computeIfPresent(key(source, reverse), (key, tree) -> --tree.refCount > 0 ? tree : null);
+    }
+
+    /**
+     * @param source  la source de la recherche.
+     * @param reverse true pour une recherche sur les prédécesseurs.
+     * @return le nombre de recherches qui utilisent l'arbre de la source, 0 s'il n'y en a pas.
+     */
+    public int getRefCount(Intersection source, boolean reverse) {
+        ShortestPathTree tree = trees.get(key(source, reverse));
+        return tree == null ? 0 : tree.refCount;
+    }
+
+    /**
+     * @return le nombre d'arbres du magasin.
+     */
+    public int size() {
+        return trees.size();
+    }
+
+    /**
+     * Vide le magasin, par exemple quand les tournées sont abandonnées ou que la carte change.
+     */
+    public void clear() {
+        trees.clear();
+    }
+}
@@ -0,0 +1,84 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionnaire des noms de rue : chaque nom distinct reçoit un identifiant entier, et les
+ * {@link RoadSegment} ne conservent que cet identifiant au lieu de leur propre chaîne.
+ * Une même rue est découpée en dizaines de segments, le nom n'est donc stocké qu'une fois.
+ *
+ * <p>Chaque carte a sa propre table ({@link CityMap#getStreetNames()}), remplie par le chargeur :
+ * ses segments n'en gardent que leur identifiant, et elle disparaît avec la carte. Elle peut être
+ * remplie depuis plusieurs threads.
+ */
+public class StreetNameTable {
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names;
+    private int size;
+
+    /**
+     * Construit une table vide.
+     */
+    public StreetNameTable() {
+        this(256);
+    }
+
+    /**
+     * Construit une table vide.
+     *
+     * @param capacity le nombre de noms prévus, doublé à chaque dépassement.
+     */
+    public StreetNameTable(int capacity) {
+        this.names = new String[Math.max(1, capacity)];
+    }
+
+    /**
+     * Retourne l'identifiant d'un nom, en l'ajoutant à la table s'il est nouveau.
+     *
+     * @param name le nom de rue (null est accepté).
+     * @return l'identifiant du nom, ou -1 pour null.
+     */
+    public int intern(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = name;
+            names = current;
+            ids.put(name, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Retourne le nom correspondant à un identifiant.
+     *
+     * @param id l'identifiant obtenu par {@link #intern(String)}.
+     * @return le nom de rue, ou null pour -1.
+     */
+    public String get(int id) {
+        return id < 0 ? null : names[id];
+    }
+
+    /**
+     * Retourne le nombre de noms distincts de la table.
+     *
+     * @return le nombre de noms.
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
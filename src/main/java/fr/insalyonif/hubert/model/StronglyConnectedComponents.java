@@ -0,0 +1,130 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+
+/**
+ * Composantes fortement connexes du réseau routier, calculées une seule fois par l'algorithme
+ * de Tarjan (version itérative, sans récursion, pour supporter les grandes cartes).
+ * Deux intersections de la même composante peuvent chacune atteindre l'autre : une tournée
+ * qui part de l'entrepôt et y revient ne peut desservir que la composante de l'entrepôt.
+ */
+public class StronglyConnectedComponents {
+    private final int[] component;
+    private final int[] componentSizes;
+
+    /**
+     * Calcule les composantes fortement connexes d'un graphe compressé.
+     *
+     * @param graph le graphe compressé de la carte.
+     */
+    public StronglyConnectedComponents(CompressedGraph graph) {
+        int n = graph.getNbVertices();
+        CompressedGraph.Adjacency forward = graph.forward();
+        this.component = new int[n];
+        Arrays.fill(component, -1);
+
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int stackSize = 0;
+        // Pile d'appels explicite : sommet et prochain arc à explorer
+        int[] callVertex = new int[n];
+        int[] callEdge = new int[n];
+        int nextIndex = 0;
+        int nbComponents = 0;
+        int[] sizes = new int[16];
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int depth = 0;
+            callVertex[0] = root;
+            callEdge[0] = forward.begin(root);
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int u = callVertex[depth];
+                if (callEdge[depth] < forward.end(u)) {
+                    int v = forward.target(callEdge[depth]++);
+                    if (index[v] == -1) {
+                        index[v] = lowLink[v] = nextIndex++;
+                        stack[stackSize++] = v;
+                        onStack[v] = true;
+                        depth++;
+                        callVertex[depth] = v;
+                        callEdge[depth] = forward.begin(v);
+                    } else if (onStack[v]) {
+                        lowLink[u] = Math.min(lowLink[u], index[v]);
+                    }
+                    continue;
+                }
+
+                // Tous les arcs de u sont explorés : u est-il la racine d'une composante ?
+                if (lowLink[u] == index[u]) {
+                    if (nbComponents == sizes.length) {
+                        sizes = Arrays.copyOf(sizes, nbComponents * 2);
+                    }
+                    int v;
+                    do {
+                        v = stack[--stackSize];
+                        onStack[v] = false;
+                        component[v] = nbComponents;
+                        sizes[nbComponents]++;
+                    } while (v != u);
+                    nbComponents++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callVertex[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[u]);
+                }
+            }
+        }
+        this.componentSizes = Arrays.copyOf(sizes, nbComponents);
+    }
+
+    /**
+     * Retourne le numéro de la composante d'une intersection.
+     *
+     * @param pos la position de l'intersection.
+     * @return le numéro de sa composante.
+     */
+    public int getComponent(int pos) {
+        return component[pos];
+    }
+
+    /**
+     * Retourne le nombre de composantes fortement connexes.
+     *
+     * @return le nombre de composantes.
+     */
+    public int getNbComponents() {
+        return componentSizes.length;
+    }
+
+    /**
+     * Retourne le nombre d'intersections d'une composante.
+     *
+     * @param component le numéro de la composante.
+     * @return le nombre d'intersections de la composante.
+     */
+    public int getComponentSize(int component) {
+        return componentSizes[component];
+    }
+
+    /**
+     * Indique si deux intersections peuvent chacune atteindre l'autre.
+     *
+     * @param a la position de la première intersection.
+     * @param b la position de la seconde intersection.
+     * @return true si elles appartiennent à la même composante.
+     */
+    public boolean sameComponent(int a, int b) {
+        return component[a] == component[b];
+    }
+}
@@ -0,0 +1,35 @@
+package fr.insalyonif.hubert.model;
+
+/**
+ * Précision du tableau des longueurs du {@link CompressedGraph}, l'instantané parcouru par les
+ * recherches. Le mode se choisit sur la {@link CityMap} avant le chargement. Seul ce tableau est
+ * réduit (voir {@link CompressedGraph#getFootprint()}) : les {@link Intersection} et
+ * {@link RoadSegment} gardent leurs valeurs exactes en double, et la mémoire totale d'une carte
+ * chargée diminue peu.
+ *
+ * <p>Tolérance sur le coût d'un chemin par rapport au mode {@link #DOUBLE} (les sommes sont
+ * toujours faites en double) :
+ * <ul>
+ *     <li>{@link #FLOAT} : erreur relative d'au plus 2<sup>-24</sup> (6.10<sup>-8</sup>) du coût,
+ *     soit moins d'un millimètre sur 10 km ;</li>
+ *     <li>{@link #DECIMETRE} : au plus 5 cm par segment parcouru.</li>
+ * </ul>
+ * Entre deux chemins dont les coûts diffèrent de moins que cette tolérance, le plus court
+ * retenu peut changer.
+ */
+public enum WeightStorage {
+    /**
+     * Longueurs en double, identiques aux valeurs du fichier.
+     */
+    DOUBLE,
+
+    /**
+     * Longueurs en float (4 octets au lieu de 8).
+     */
+    FLOAT,
+
+    /**
+     * Longueurs en décimètres entiers (4 octets au lieu de 8).
+     */
+    DECIMETRE
+}
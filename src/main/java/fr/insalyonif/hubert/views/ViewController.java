@@ -24,6 +24,7 @@ import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.PrimitiveIterator;
 import java.util.Random;
 import java.io.IOException;
 import java.net.URL;
@@ -317,27 +318,21 @@ public class ViewController implements Initializable {
             if(deliveryTour.getPaths()!=null) {
                 for (int i = deliveryTour.getPaths().size() - 1; i >= 0; i--) {
                     Chemin chemin = deliveryTour.getPaths().get(i);
-                    // Begin with the end intersection
-                    int currentIndex = chemin.getFin().getPos();
-                    int nextIndex = chemin.getPi()[currentIndex];
-
                     StringBuilder polylineCoords = new StringBuilder("[");
-                    polylineCoords.append("[").append(chemin.getFin().getLatitude()).append(", ").append(chemin.getFin().getLongitude()).append("],");
 
-                    System.out.println("fin" + chemin.getFin());
-                    // Loop through pi array
-                    while (nextIndex != -1) {
-                        Intersection currentIntersection = cityMap.findIntersectionByPos(nextIndex);
-                        System.out.println(currentIntersection);
+                    System.out.println("debut" + chemin.getDebut());
+                    // Parcours des intersections du chemin, du début à la fin
+                    PrimitiveIterator.OfInt nodes = chemin.nodes();
+                    while (nodes.hasNext()) {
+                        Intersection currentIntersection = cityMap.findIntersectionByPos(nodes.nextInt());
                         if (currentIntersection != null) {
                             polylineCoords.append("[").append(currentIntersection.getLatitude()).append(", ").append(currentIntersection.getLongitude()).append("],");
                         }
-                        currentIndex = nextIndex;
-                        nextIndex = chemin.getPi()[currentIndex];
                     }
-                    System.out.println("debut" + chemin.getDebut());
-                    // End with the start intersection
-                    polylineCoords.append("[").append(chemin.getDebut().getLatitude()).append(", ").append(chemin.getDebut().getLongitude()).append("]");
+                    System.out.println("fin" + chemin.getFin());
+                    if (polylineCoords.charAt(polylineCoords.length() - 1) == ',') {
+                        polylineCoords.setLength(polylineCoords.length() - 1);
+                    }
                     polylineCoords.append("]");
 
                     
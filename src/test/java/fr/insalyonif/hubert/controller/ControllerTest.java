@@ -24,6 +24,20 @@ class ControllerTest {
         assertSame(expected, result, "La méthode trouverIntersectionPlusProche ne retourne pas l'intersection la plus proche attendue");
     }
 
+    @Test
+    void testTrouverIntersectionPlusProcheAvecFiltre() {
+        List<Intersection> intersections = new ArrayList<>();
+        intersections.add(new Intersection(45.4, 8.7, 12345, 1));
+        intersections.add(new Intersection(45.5, 8.8, 54321, 2));
+        intersections.add(new Intersection(45.6, 8.9, 67890, 3));
+
+        Intersection result = Controller.trouverIntersectionPlusProche(45.48, 8.78, intersections,
+                intersection -> intersection.getId() != 54321);
+
+        assertSame(intersections.get(0), result, "Le filtre doit écarter l'intersection la plus proche");
+        assertNull(Controller.trouverIntersectionPlusProche(45.48, 8.78, intersections, intersection -> false));
+    }
+
     @Test
     void testDistance() {
         double lat1 = 45.4;
@@ -0,0 +1,83 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AStarTest {
+
+    @Test
+    void testHaversineInMetres() {
+        // Un degré de latitude mesure environ 111,2 km
+        assertEquals(111195, AStar.haversine(45.0, 4.8, 46.0, 4.8), 1.0);
+        assertEquals(0.0, AStar.haversine(45.75, 4.85, 45.75, 4.85));
+    }
+
+    @Test
+    void testSameCostsAsDijkstra() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml");
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int n = graph.getNbVertices();
+        AStar aStar = new AStar(cityMap);
+        assertTrue(aStar.getRatio() > 0 && aStar.getRatio() <= 1, "Le rapport doit être dans ]0, 1]");
+
+        DijkstraEngine engine = new DijkstraEngine();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        for (int start = 0; start < n; start += 53) {
+            Arrays.fill(distance, Integer.MAX_VALUE);
+            Arrays.fill(pi, -1);
+            engine.run(graph.forward(), false, null, start, distance, pi);
+            for (int goal = 7; goal < n; goal += 41) {
+                assertTrue(aStar.heuristic(start, goal) <= distance[goal] + 1e-6,
+                        "L'estimation ne doit pas dépasser la distance réelle de " + start + " à " + goal);
+                Chemin chemin = aStar.findPath(cityMap.findIntersectionByPos(start), cityMap.findIntersectionByPos(goal));
+                if (distance[goal] == Integer.MAX_VALUE) {
+                    assertNull(chemin, "Une destination inaccessible ne doit pas donner de chemin");
+                    continue;
+                }
+                assertNotNull(chemin);
+                assertEquals(distance[goal], chemin.getCout(), 1e-6, "Coût différent de " + start + " à " + goal);
+                assertEquals(distance[goal], pathLength(graph, chemin.getPi(), start, goal), 1e-6,
+                        "Le chemin doit avoir le coût annoncé");
+            }
+        }
+    }
+
+    @Test
+    void testSettlesFewerNodesThanDijkstra() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/largeMap.xml");
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int n = graph.getNbVertices();
+        int start = cityMap.getWareHouseLocation().getPos();
+        int goal = -1;
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(pi, -1);
+        DijkstraEngine engine = new DijkstraEngine();
+        engine.run(graph.forward(), false, null, start, distance, pi);
+        for (int v = 0; v < n; v++) {
+            if (distance[v] != Integer.MAX_VALUE && (goal == -1 || distance[v] > distance[goal])) {
+                goal = v;
+            }
+        }
+        // Une destination à mi-distance de la plus éloignée
+        double half = distance[goal] / 2;
+        for (int v = 0; v < n; v++) {
+            if (distance[v] != Integer.MAX_VALUE && Math.abs(distance[v] - half) < Math.abs(distance[goal] - half)) {
+                goal = v;
+            }
+        }
+        engine.run(graph.forward(), false, null, start, distance, pi, new int[]{goal});
+        AStar aStar = new AStar(cityMap);
+        assertNotNull(aStar.findPath(cityMap.findIntersectionByPos(start), cityMap.findIntersectionByPos(goal)));
+        assertTrue(aStar.getNbSettled() < engine.getNbSettled(),
+                "A* doit fixer moins de nœuds que Dijkstra (" + aStar.getNbSettled() + " / " + engine.getNbSettled() + ")");
+    }
+}
@@ -0,0 +1,81 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BidirectionalDijkstraTest {
+
+    @Test
+    void testSameCostsAsDijkstra() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml");
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int n = graph.getNbVertices();
+        BidirectionalDijkstra bidirectional = new BidirectionalDijkstra(cityMap);
+
+        DijkstraEngine engine = new DijkstraEngine();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        for (int start = 0; start < n; start += 53) {
+            Arrays.fill(distance, Integer.MAX_VALUE);
+            Arrays.fill(pi, -1);
+            engine.run(graph.forward(), false, null, start, distance, pi);
+            for (int goal = 3; goal < n; goal += 41) {
+                Chemin chemin = bidirectional.findPath(cityMap.findIntersectionByPos(start), cityMap.findIntersectionByPos(goal));
+                if (distance[goal] == Integer.MAX_VALUE) {
+                    assertNull(chemin, "Une destination inaccessible ne doit pas donner de chemin");
+                    continue;
+                }
+                assertNotNull(chemin);
+                assertEquals(distance[goal], chemin.getCout(), 1e-6, "Coût différent de " + start + " à " + goal);
+                assertEquals(start, chemin.getDebut().getPos());
+                assertEquals(goal, chemin.getFin().getPos());
+                assertEquals(distance[goal], pathLength(graph, chemin.getPi(), start, goal), 1e-6,
+                        "Le chemin doit avoir le coût annoncé");
+            }
+        }
+    }
+
+    @Test
+    void testSameStartAndDestination() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml");
+        Intersection wareHouse = cityMap.getWareHouseLocation();
+        Chemin chemin = new BidirectionalDijkstra(cityMap).findPath(wareHouse, wareHouse);
+        assertNotNull(chemin);
+        assertEquals(0.0, chemin.getCout());
+    }
+
+    @Test
+    void testSettlesFewerNodesThanDijkstra() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/largeMap.xml");
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int n = graph.getNbVertices();
+        int start = cityMap.getWareHouseLocation().getPos();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(pi, -1);
+        DijkstraEngine engine = new DijkstraEngine();
+        engine.run(graph.forward(), false, null, start, distance, pi);
+        int full = engine.getNbSettled();
+
+        BidirectionalDijkstra bidirectional = new BidirectionalDijkstra(cityMap);
+        long settled = 0;
+        int nbQueries = 0;
+        for (int goal = 0; goal < n; goal += 97) {
+            if (distance[goal] != Integer.MAX_VALUE) {
+                assertNotNull(bidirectional.findPath(cityMap.findIntersectionByPos(start), cityMap.findIntersectionByPos(goal)));
+                settled += bidirectional.getNbSettled();
+                nbQueries++;
+            }
+        }
+        assertTrue(settled * 3 < (long) full * nbQueries,
+                "La recherche bidirectionnelle doit fixer bien moins de nœuds (" + settled / nbQueries + " / " + full + ")");
+    }
+}
@@ -0,0 +1,79 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChainContractionTest {
+
+    private static final String SMALL_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml";
+
+    private CityMap fullMap;
+    private CityMap contractedMap;
+    private ChainContraction contraction;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fullMap = new CityMap();
+        fullMap.loadFromXML(SMALL_MAP);
+        contractedMap = new CityMap();
+        contractedMap.loadFromXML(SMALL_MAP);
+        contractedMap.contractChains();
+        contraction = contractedMap.getChainContraction();
+    }
+
+    @Test
+    void testContractedGraphSkipsChainNodes() {
+        assertTrue(contraction.getNbContracted() > 0, "La petite carte contient des chaînes de degré 2");
+        CompressedGraph graph = contraction.getGraph();
+        assertEquals(fullMap.getCompressedGraph().getNbVertices(), graph.getNbVertices());
+        assertTrue(graph.getNbEdges() < fullMap.getCompressedGraph().getNbEdges(), "Le graphe contracté doit avoir moins d'arcs");
+        assertFalse(contraction.isContracted(contractedMap.getWareHouseLocation().getPos()), "L'entrepôt ne doit pas être contracté");
+        for (int u = 0; u < graph.getNbVertices(); u++) {
+            for (int e = graph.forward().begin(u); e < graph.forward().end(u); e++) {
+                assertFalse(contraction.isContracted(graph.forward().target(e)), "Un arc mène à un nœud contracté");
+            }
+        }
+    }
+
+    @Test
+    void testSameShortestPathsFromEveryNode() {
+        int n = fullMap.getIntersections().size();
+        for (int s = 0; s < n; s++) {
+            assertSameSearch(new Dijkstra(n, fullMap), new Dijkstra(n, contractedMap), s);
+            assertSameSearch(new DijkstraInverse(n, fullMap), new DijkstraInverse(n, contractedMap), s);
+        }
+    }
+
+    @Test
+    void testStartInsideChain() {
+        int n = fullMap.getIntersections().size();
+        int start = -1;
+        for (int s = 0; s < n && start == -1; s++) {
+            if (contraction.isContracted(s)) {
+                start = s;
+            }
+        }
+        assertNotEquals(-1, start);
+        Dijkstra full = new Dijkstra(n, fullMap);
+        Dijkstra contracted = new Dijkstra(n, contractedMap);
+        assertEquals(full.runDijkstra(fullMap.findIntersectionByPos(start), n),
+                contracted.runDijkstra(contractedMap.findIntersectionByPos(start), n));
+        Chemin expected = full.getChemins().get(0);
+        Chemin actual = contracted.getChemins().get(0);
+        assertEquals(expected.getCout(), actual.getCout(), 1e-6, "Le coût du chemin doit être inchangé");
+        assertArrayEquals(expected.getPi(), actual.getPi(), "Le chemin doit passer par les mêmes intersections");
+    }
+
+    private void assertSameSearch(AbstractDijkstra full, AbstractDijkstra contracted, int start) {
+        full.setTargetBounded(false);
+        contracted.setTargetBounded(false);
+        full.runDijkstra(fullMap.findIntersectionByPos(start), fullMap.getIntersections().size());
+        contracted.runDijkstra(contractedMap.findIntersectionByPos(start), contractedMap.getIntersections().size());
+        for (int v = 0; v < full.getDistance().length; v++) {
+            assertEquals(full.getDistance()[v], contracted.getDistance()[v], 1e-6, "Distance différente depuis " + start + " vers " + v);
+            assertEquals(full.getPi()[v], contracted.getPi()[v], "Prédécesseur différent depuis " + start + " pour " + v);
+        }
+    }
+}
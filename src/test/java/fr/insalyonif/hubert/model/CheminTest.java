@@ -4,6 +4,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -70,4 +72,63 @@ class CheminTest {
                 '}';
         assertEquals(expectedString, cheminTest.toString(), "La méthode toString ne fonctionne pas correctement");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testNodes() {
+        Intersection a = new Intersection(45.0, 4.0, 1, 70000);
+        Intersection b = new Intersection(45.1, 4.1, 2, 3);
+        int[] nodes = {70000, 70001, 12, 69999, 150, 3};
+        Chemin chemin = Chemin.fromNodes(a, b, nodes, 70002, 42.0);
+        assertEquals(nodes.length, chemin.getNbNodes());
+        assertArrayEquals(nodes, chemin.toNodes(), "Les positions décodées doivent être celles du chemin");
+
+        int[] pi = chemin.getPi();
+        assertEquals(70002, pi.length);
+        assertEquals(-1, pi[70000], "Le début n'a pas de prédécesseur");
+        assertEquals(150, pi[3]);
+        assertEquals(70000, pi[70001]);
+        assertArrayEquals(nodes, new Chemin(a, b, pi, 42.0).toNodes(), "Le tableau pi doit redonner le même chemin");
+
+        PrimitiveIterator.OfInt it = Chemin.fromNodes(a, a, new int[]{70000}, 70002, 0.0).nodes();
+        assertEquals(70000, it.nextInt());
+        assertFalse(it.hasNext());
+        assertThrows(NoSuchElementException.class, it::nextInt);
+    }
+
+    @Test
+    void testPiThatIsNotAPath() {
+        // Le tableau du montage ne mène pas de la fin au début : il est gardé tel quel, sans intersection
+        assertSame(pi, cheminTest.getPi());
+        assertEquals(0, cheminTest.getNbNodes());
+        assertFalse(cheminTest.nodes().hasNext());
+
+        cheminTest.setPi(new int[]{-1, -1, 1});
+        assertArrayEquals(new int[]{1, 2}, cheminTest.toNodes(), "Un tableau qui relie la fin au début est relu");
+        cheminTest.setPi(new int[]{-1, -1, 2});
+        assertEquals(0, cheminTest.getNbNodes(), "Un tableau qui boucle ne décrit pas de chemin");
+    }
+
+    @Test
+    void testSettersShortenThePath() {
+        Intersection a = new Intersection(45.0, 4.0, 1, 10);
+        Intersection b = new Intersection(45.1, 4.1, 2, 11);
+        Intersection c = new Intersection(45.2, 4.2, 3, 12);
+        Intersection d = new Intersection(45.3, 4.3, 4, 13);
+        Chemin chemin = Chemin.fromNodes(a, d, new int[]{10, 11, 12, 13}, 20, 3.0);
+        chemin.setDebut(b);
+        chemin.setFin(c);
+        assertArrayEquals(new int[]{11, 12}, chemin.toNodes());
+        assertThrows(IllegalArgumentException.class, () -> chemin.setFin(d), "La fin doit être sur le chemin");
+        assertSame(c, chemin.getFin());
+
+        // Branche 10 -> 11 -> 12 d'un arbre direct enraciné en 10
+        ShortestPathTree tree = new ShortestPathTree(a, false, new int[]{11, 12}, new int[]{10, 11},
+                new double[]{1.0, 2.0});
+        Chemin branche = Chemin.fromTree(a, c, tree, 20, 2.0);
+        assertEquals(3, branche.getNbNodes());
+        assertThrows(IllegalArgumentException.class, () -> branche.setDebut(d), "Le début doit être sur le chemin");
+        branche.setDebut(b);
+        assertNull(branche.getTree(), "Un chemin raccourci range ses propres intersections");
+        assertArrayEquals(new int[]{11, 12}, branche.toNodes());
+    }
+}
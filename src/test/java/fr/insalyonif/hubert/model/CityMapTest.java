@@ -2,7 +2,10 @@ package fr.insalyonif.hubert.model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -59,4 +62,50 @@ class CityMapTest {
         double expectedLng = 4.8704023;
         assertEquals(expectedLng, cityMap.findIntersectionByPos(2).getLongitude());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFindIntersectionByID() throws Exception {
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml");
+
+        // Test pour vérifier que la fonction findIntersectionByID retrouve l'entrepôt et ignore les identifiants inconnus
+        assertSame(cityMap.getWareHouseLocation(), cityMap.findIntersectionByID(25303831L));
+        assertNull(cityMap.findIntersectionByID(42L));
+    }
+
+    @Test
+    void testIndexFollowsSetIntersections() {
+        cityMap.setIntersections(testIntersections);
+
+        // Test pour vérifier que l'index est reconstruit après un changement de la liste d'intersections
+        assertSame(testIntersections.get(1), cityMap.findIntersectionByPos(2));
+        assertSame(testIntersections.get(0), cityMap.findIntersectionByID(12345));
+        assertNull(cityMap.findIntersectionByPos(0));
+    }
+
+    @Test
+    void testLoadFromXMLWithForwardReferences(@TempDir Path tempDir) throws Exception {
+        Path xml = tempDir.resolve("forward.xml");
+        Files.writeString(xml, "<map>\n"
+                + "<warehouse address=\"3\"/>\n"
+                + "<intersection id=\"1\" latitude=\"45.0\" longitude=\"4.0\"/>\n"
+                + "<segment destination=\"1\" length=\"5.0\" name=\"A\" origin=\"2\"/>\n"
+                + "<intersection id=\"2\" latitude=\"45.1\" longitude=\"4.1\"/>\n"
+                + "<segment destination=\"2\" length=\"7.0\" name=\"B\" origin=\"1\"/>\n"
+                + "<segment destination=\"3\" length=\"9.0\" name=\"C\" origin=\"2\"/>\n"
+                + "<intersection id=\"3\" latitude=\"45.2\" longitude=\"4.2\"/>\n"
+                + "</map>\n");
+
+        cityMap.loadFromXML(xml.toString());
+
+        // Test pour vérifier que les références en avant sont résolues en conservant l'ordre du document
+        assertEquals(3, cityMap.getIntersections().size());
+        assertEquals(3, cityMap.getWareHouseLocation().getId());
+        Intersection second = cityMap.findIntersectionByID(2);
+        assertEquals(1, second.getPos());
+        assertEquals(2, second.getSuccessors().size());
+        assertEquals("A", cityMap.getStreetName(second.getSuccessors().get(0).getNameId()));
+        assertEquals("C", cityMap.getStreetName(second.getSuccessors().get(1).getNameId()));
+        assertEquals("B", cityMap.getStreetName(second.getPredecessors().get(0).getNameId()));
+        assertTrue(cityMap.getLastParseThroughput() > 0, "Le débit de lecture doit être mesuré");
+    }
+}
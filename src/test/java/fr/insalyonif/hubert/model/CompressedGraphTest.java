@@ -0,0 +1,54 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedGraphTest {
+
+    private CityMap cityMap;
+    private CompressedGraph graph;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml");
+        graph = cityMap.getCompressedGraph();
+    }
+
+    @Test
+    void testSizes() {
+        assertEquals(308, graph.getNbVertices(), "Le nombre de sommets du graphe compressé est incorrect");
+        assertEquals(616, graph.getNbEdges(), "Le nombre d'arcs du graphe compressé est incorrect");
+    }
+
+    @Test
+    void testForwardMatchesSuccessors() {
+        for (Intersection intersection : cityMap.getIntersections()) {
+            int u = intersection.getPos();
+            CompressedGraph.Adjacency forward = graph.forward();
+            assertEquals(intersection.getSuccessors().size(), forward.end(u) - forward.begin(u), "Nombre de successeurs incorrect");
+            int e = forward.begin(u);
+            for (RoadSegment segment : intersection.getSuccessors()) {
+                assertEquals(segment.getDestination().getPos(), forward.target(e), "Successeur incorrect");
+                assertEquals(segment.getLength(), forward.weight(e), "Longueur incorrecte");
+                e++;
+            }
+        }
+    }
+
+    @Test
+    void testReverseMatchesPredecessors() {
+        for (Intersection intersection : cityMap.getIntersections()) {
+            int u = intersection.getPos();
+            CompressedGraph.Adjacency reverse = graph.reverse();
+            assertEquals(intersection.getPredecessors().size(), reverse.end(u) - reverse.begin(u), "Nombre de prédécesseurs incorrect");
+            int e = reverse.begin(u);
+            for (RoadSegment segment : intersection.getPredecessors()) {
+                assertEquals(segment.getOrigin().getPos(), reverse.target(e), "Prédécesseur incorrect");
+                e++;
+            }
+        }
+    }
+}
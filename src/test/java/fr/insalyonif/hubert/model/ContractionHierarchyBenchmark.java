@@ -0,0 +1,95 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Random;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+
+/**
+ * Mesure le précalcul et les requêtes de la hiérarchie de contraction et des étiquettes de hubs
+ * qui en dérivent, comparées à Dijkstra.
+ * Ce n'est pas un test JUnit : à lancer à la main, depuis la racine du projet, avec les noms
+ * des cartes en arguments (par défaut les trois cartes fournies).
+ */
+public class ContractionHierarchyBenchmark {
+    private static final int NB_PAIRS = 1000;
+    private static final int MATRIX_SIZE = 20;
+
+    public static void main(String[] args) throws Exception {
+        String[] maps = args.length > 0 ? args : new String[]{"smallMap", "mediumMap", "largeMap"};
+        for (String map : maps) {
+            CityMap cityMap = loadMap(map);
+            CompressedGraph graph = cityMap.getCompressedGraph();
+            int n = graph.getNbVertices();
+
+            long begin = System.nanoTime();
+            ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph);
+            double build = (System.nanoTime() - begin) / 1e6;
+            begin = System.nanoTime();
+            HubLabels labels = HubLabels.build(hierarchy);
+            double labelBuild = (System.nanoTime() - begin) / 1e6;
+
+            Random random = new Random(42);
+            int[] sources = new int[NB_PAIRS];
+            int[] targets = new int[NB_PAIRS];
+            for (int i = 0; i < NB_PAIRS; i++) {
+                sources[i] = random.nextInt(n);
+                targets[i] = random.nextInt(n);
+            }
+            int[] points = new int[MATRIX_SIZE];
+            for (int i = 0; i < MATRIX_SIZE; i++) {
+                points[i] = random.nextInt(n);
+            }
+
+            BidirectionalDijkstra bidirectional = new BidirectionalDijkstra(cityMap);
+            DijkstraEngine engine = new DijkstraEngine();
+            double[] distance = new double[n];
+            int[] pi = new int[n];
+            // Un premier passage pour chauffer la JVM, puis la mesure
+            for (int round = 0; round < 2; round++) {
+                begin = System.nanoTime();
+                for (int i = 0; i < NB_PAIRS; i++) {
+                    hierarchy.path(sources[i], targets[i]);
+                }
+                double query = (System.nanoTime() - begin) / 1e6 / NB_PAIRS;
+                begin = System.nanoTime();
+                for (int i = 0; i < NB_PAIRS; i++) {
+                    hierarchy.distance(sources[i], targets[i]);
+                }
+                double hierarchyDistance = (System.nanoTime() - begin) / 1e3 / NB_PAIRS;
+                begin = System.nanoTime();
+                for (int i = 0; i < NB_PAIRS; i++) {
+                    labels.distance(sources[i], targets[i]);
+                }
+                double labelDistance = (System.nanoTime() - begin) / 1e3 / NB_PAIRS;
+                begin = System.nanoTime();
+                for (int i = 0; i < NB_PAIRS; i++) {
+                    bidirectional.findPath(cityMap.findIntersectionByPos(sources[i]), cityMap.findIntersectionByPos(targets[i]));
+                }
+                double bidirectionnel = (System.nanoTime() - begin) / 1e6 / NB_PAIRS;
+                begin = System.nanoTime();
+                hierarchy.manyToMany(points, points);
+                double matrix = (System.nanoTime() - begin) / 1e6;
+                begin = System.nanoTime();
+                labels.manyToMany(points, points);
+                double labelMatrix = (System.nanoTime() - begin) / 1e6;
+                begin = System.nanoTime();
+                for (int point : points) {
+                    engine.run(graph.forward(), false, null, point, distance, pi, points);
+                }
+                double dijkstraMatrix = (System.nanoTime() - begin) / 1e6;
+                if (round == 1) {
+                    System.out.printf("%s : précalcul %.0f ms, %d raccourcis pour %d arcs%n",
+                            map, build, hierarchy.getNbShortcuts(), graph.getNbEdges());
+                    System.out.printf("  étiquettes : %.0f ms, %.1f hubs par étiquette, %d Ko%n",
+                            labelBuild, labels.getAverageLabelSize(), labels.getFootprint() / 1024);
+                    System.out.printf("  distance point à point : %.2f µs (étiquettes) / %.2f µs (hiérarchie)%n",
+                            labelDistance, hierarchyDistance);
+                    System.out.printf("  chemin point à point : %.3f ms (hiérarchie) / %.3f ms (Dijkstra bidirectionnel)%n",
+                            query, bidirectionnel);
+                    System.out.printf("  matrice %dx%d : %.3f ms (étiquettes) / %.3f ms (hiérarchie) / %.3f ms (Dijkstra borné)%n",
+                            MATRIX_SIZE, MATRIX_SIZE, labelMatrix, matrix, dijkstraMatrix);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContractionHierarchyTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+
+    private CityMap cityMap;
+    private CompressedGraph graph;
+    private ContractionHierarchy hierarchy;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityMap = new CityMap();
+        cityMap.loadFromXML(MEDIUM_MAP);
+        graph = cityMap.getCompressedGraph();
+        hierarchy = ContractionHierarchyBuilder.build(graph);
+    }
+
+    @Test
+    void testSameDistancesAndPathsAsDijkstra() {
+        int n = graph.getNbVertices();
+        DijkstraEngine engine = new DijkstraEngine();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        for (int source = 0; source < n; source += 61) {
+            engine.run(graph.forward(), false, null, source, distance, pi);
+            for (int target = 5; target < n; target += 29) {
+                if (distance[target] == SearchWorkspace.INFINITY) {
+                    assertEquals(SearchWorkspace.INFINITY, hierarchy.distance(source, target));
+                    assertNull(hierarchy.path(source, target), "Une cible inaccessible ne doit pas donner de chemin");
+                    continue;
+                }
+                assertEquals(distance[target], hierarchy.distance(source, target), 1e-6,
+                        "Distance différente de " + source + " à " + target);
+                int[] nodes = hierarchy.path(source, target);
+                assertEquals(source, nodes[0]);
+                assertEquals(target, nodes[nodes.length - 1]);
+                assertEquals(distance[target], pathLength(nodes), 1e-6,
+                        "Le chemin déplié doit suivre des segments de la carte et avoir le bon coût");
+                DoubleList lengths = new DoubleList();
+                assertArrayEquals(nodes, hierarchy.path(source, target, lengths));
+                assertEquals(nodes.length, lengths.size());
+                for (int i = 0; i < nodes.length; i++) {
+                    assertEquals(distance[nodes[i]], lengths.get(i), 1e-6, "Distance fausse le long du chemin déplié");
+                }
+            }
+        }
+    }
+
+    @Test
+    void testManyToManyMatchesPointToPoint() {
+        int[] sources = {0, 17, 230, 999, 1400};
+        int[] targets = {3, 17, 640, 1200};
+        double[] matrix = hierarchy.manyToMany(sources, targets);
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < targets.length; j++) {
+                assertEquals(hierarchy.distance(sources[i], targets[j]), matrix[i * targets.length + j], 1e-6,
+                        "Entrée (" + i + ", " + j + ") différente");
+            }
+        }
+    }
+
+    @Test
+    void testWriteAndReadBack(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("mediumMap" + ContractionHierarchy.EXTENSION);
+        hierarchy.write(file);
+        ContractionHierarchy read = ContractionHierarchy.read(file);
+        assertEquals(graph.getChecksum(), read.getChecksum());
+        assertEquals(hierarchy.getNbShortcuts(), read.getNbShortcuts());
+        assertArrayEquals(hierarchy.path(12, 1300), read.path(12, 1300));
+
+        Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 100));
+        assertThrows(java.io.IOException.class, () -> ContractionHierarchy.read(file), "Un fichier tronqué doit être refusé");
+    }
+
+    @Test
+    void testLoadRebuildsWhenGraphChanges(@TempDir Path folder) throws Exception {
+        String mapFile = folder.resolve("mediumMap.xml").toString();
+        ContractionHierarchy.load(mapFile, graph);
+        assertTrue(Files.isRegularFile(ContractionHierarchy.pathFor(mapFile)), "La hiérarchie doit être enregistrée pour la carte");
+        assertEquals(graph.getChecksum(), ContractionHierarchy.load(mapFile, graph).getChecksum());
+
+        cityMap.renumberForLocality();
+        CompressedGraph renumbered = cityMap.getCompressedGraph();
+        assertNotEquals(graph.getChecksum(), renumbered.getChecksum());
+        assertEquals(renumbered.getChecksum(), ContractionHierarchy.load(mapFile, renumbered).getChecksum(),
+                "Une hiérarchie périmée doit être recalculée");
+    }
+
+    @Test
+    void testRunDijkstraUsesHierarchy() throws Exception {
+        CityMap withHierarchy = new CityMap();
+        withHierarchy.loadFromXML(MEDIUM_MAP);
+        withHierarchy.setContractionHierarchy(hierarchy);
+        int n = cityMap.getIntersections().size();
+        for (int pos : new int[]{40, 400, 1100}) {
+            Dijkstra expected = new Dijkstra(n, cityMap);
+            Dijkstra actual = new Dijkstra(n, withHierarchy);
+            DijkstraInverse expectedInverse = new DijkstraInverse(n, cityMap);
+            DijkstraInverse actualInverse = new DijkstraInverse(n, withHierarchy);
+            assertEquals(expected.runDijkstra(cityMap.findIntersectionByPos(pos), n),
+                    actual.runDijkstra(withHierarchy.findIntersectionByPos(pos), n));
+            assertEquals(expectedInverse.runDijkstra(cityMap.findIntersectionByPos(pos), n),
+                    actualInverse.runDijkstra(withHierarchy.findIntersectionByPos(pos), n));
+            assertSameCosts(expected, actual);
+            assertSameCosts(expectedInverse, actualInverse);
+        }
+    }
+
+    private static void assertSameCosts(AbstractDijkstra expected, AbstractDijkstra actual) {
+        assertEquals(expected.getChemins().size(), actual.getChemins().size());
+        for (int i = 0; i < expected.getChemins().size(); i++) {
+            Chemin a = expected.getChemins().get(i);
+            Chemin b = actual.getChemins().get(i);
+            assertEquals(a.getDebut().getPos(), b.getDebut().getPos());
+            assertEquals(a.getFin().getPos(), b.getFin().getPos());
+            assertEquals(a.getCout(), b.getCout(), 1e-6, "Coût différent pour le chemin " + i);
+        }
+    }
+
+    private double pathLength(int[] nodes) {
+        double length = 0;
+        for (int i = 1; i < nodes.length; i++) {
+            double best = Double.MAX_VALUE;
+            for (int e = graph.forward().begin(nodes[i - 1]); e < graph.forward().end(nodes[i - 1]); e++) {
+                if (graph.forward().target(e) == nodes[i]) {
+                    best = Math.min(best, graph.forward().weight(e));
+                }
+            }
+            length += best;
+        }
+        return length;
+    }
+}
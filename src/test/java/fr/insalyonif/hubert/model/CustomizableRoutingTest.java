@@ -0,0 +1,142 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomizableRoutingTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+
+    private CityMap cityMap;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityMap = new CityMap();
+        cityMap.loadFromXML(MEDIUM_MAP);
+    }
+
+    @Test
+    void testPartitionCellsAreNestedAndBounded() {
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        GraphPartition partition = GraphPartition.compute(graph, cityMap.getIntersections(), new int[]{16, 128, 1024});
+        assertEquals(3, partition.getNbLevels());
+        for (int level = 1; level <= 3; level++) {
+            int[] sizes = new int[partition.getNbCells(level)];
+            for (int v = 0; v < graph.getNbVertices(); v++) {
+                sizes[partition.getCell(level, v)]++;
+            }
+            for (int size : sizes) {
+                assertTrue(size <= new int[]{16, 128, 1024}[level - 1], "Cellule trop grande au niveau " + level);
+            }
+        }
+        for (int level = 1; level < 3; level++) {
+            Set<Long> parents = new HashSet<>();
+            Set<Integer> cells = new HashSet<>();
+            for (int v = 0; v < graph.getNbVertices(); v++) {
+                cells.add(partition.getCell(level, v));
+                parents.add(((long) partition.getCell(level, v) << 32) | partition.getCell(level + 1, v));
+            }
+            assertEquals(cells.size(), parents.size(), "Une cellule du niveau " + level + " doit avoir un seul parent");
+        }
+        assertThrows(IllegalArgumentException.class, () -> GraphPartition.compute(graph, cityMap.getIntersections(), new int[]{64, 32}));
+    }
+
+    @Test
+    void testSameDistancesAndPathsAsDijkstra() {
+        cityMap.prepareCustomizableRouting();
+        assertSameAsDijkstra(cityMap.getCustomizableRouting(), cityMap.getCompressedGraph());
+    }
+
+    @Test
+    void testCustomizeAfterLengthChanges() {
+        cityMap.prepareCustomizableRouting();
+        CustomizableRouting routing = cityMap.getCustomizableRouting();
+        GraphPartition partition = routing.getPartition();
+        // Pénalités sur une partie des segments, fermeture d'autres
+        int i = 0;
+        for (Intersection intersection : cityMap.getIntersections()) {
+            for (RoadSegment segment : intersection.getSuccessors()) {
+                if (i % 7 == 0) {
+                    segment.setLength(segment.getLength() * 3);
+                } else if (i % 31 == 0) {
+                    segment.setLength(1e7);
+                }
+                i++;
+            }
+        }
+        cityMap.updateSegmentLengths();
+        assertSame(routing, cityMap.getCustomizableRouting());
+        assertSame(partition, routing.getPartition(), "La partition ne doit pas être recalculée");
+        assertNull(cityMap.getContractionHierarchy());
+        assertSameAsDijkstra(routing, cityMap.getCompressedGraph());
+
+        CityMap small = new CityMap();
+        assertDoesNotThrow(() -> small.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml"));
+        assertThrows(IllegalArgumentException.class, () -> routing.customize(small.getCompressedGraph()));
+    }
+
+    @Test
+    void testRunDijkstraUsesPartition() {
+        CityMap withPartition = new CityMap();
+        assertDoesNotThrow(() -> withPartition.loadFromXML(MEDIUM_MAP));
+        withPartition.prepareCustomizableRouting();
+        int n = cityMap.getIntersections().size();
+        for (int pos : new int[]{40, 400, 1100}) {
+            Dijkstra expected = new Dijkstra(n, cityMap);
+            Dijkstra actual = new Dijkstra(n, withPartition);
+            assertEquals(expected.runDijkstra(cityMap.findIntersectionByPos(pos), n),
+                    actual.runDijkstra(withPartition.findIntersectionByPos(pos), n));
+            assertEquals(expected.getChemins().size(), actual.getChemins().size());
+            for (int j = 0; j < expected.getChemins().size(); j++) {
+                assertEquals(expected.getChemins().get(j).getCout(), actual.getChemins().get(j).getCout(), 1e-6,
+                        "Coût différent pour le chemin " + j);
+            }
+        }
+    }
+
+    private void assertSameAsDijkstra(CustomizableRouting routing, CompressedGraph graph) {
+        int n = graph.getNbVertices();
+        DijkstraEngine engine = new DijkstraEngine();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        for (int source = 0; source < n; source += 83) {
+            engine.run(graph.forward(), false, null, source, distance, pi);
+            for (int target = 5; target < n; target += 41) {
+                assertEquals(distance[target], routing.distance(source, target), 1e-6,
+                        "Distance différente de " + source + " à " + target);
+                Chemin chemin = routing.findPath(cityMap.findIntersectionByPos(source), cityMap.findIntersectionByPos(target), n);
+                if (distance[target] == SearchWorkspace.INFINITY) {
+                    assertNull(chemin);
+                    continue;
+                }
+                assertEquals(distance[target], chemin.getCout(), 1e-6);
+                double length = 0;
+                for (int v = target; v != source; v = chemin.getPi()[v]) {
+                    length += edgeLength(graph, chemin.getPi()[v], v);
+                }
+                assertEquals(distance[target], length, 1e-6, "Le chemin déplié doit suivre des segments de la carte");
+                DoubleList lengths = new DoubleList();
+                int[] nodes = routing.path(source, target, lengths);
+                assertArrayEquals(chemin.toNodes(), nodes);
+                for (int i = 0; i < nodes.length; i++) {
+                    assertEquals(distance[nodes[i]], lengths.get(i), 1e-6, "Distance fausse le long du chemin déplié");
+                }
+            }
+        }
+    }
+
+    private static double edgeLength(CompressedGraph graph, int u, int v) {
+        double best = Double.MAX_VALUE;
+        for (int e = graph.forward().begin(u); e < graph.forward().end(u); e++) {
+            if (graph.forward().target(e) == v) {
+                best = Math.min(best, graph.forward().weight(e));
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,161 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DijkstraEngineTest {
+
+    @Test
+    void testHeapOrderAndDecreaseKey() {
+        IndexedHeap heap = new IndexedHeap(6);
+        heap.insertOrDecrease(3, 5.0);
+        heap.insertOrDecrease(1, 2.0);
+        heap.insertOrDecrease(4, 2.0);
+        heap.insertOrDecrease(0, 9.0);
+        heap.insertOrDecrease(0, 1.0);
+        heap.insertOrDecrease(1, 7.0); // clé plus grande : ignorée
+        assertEquals(4, heap.size());
+        assertEquals(1.0, heap.minKey());
+        assertEquals(0, heap.pop());
+        assertEquals(1, heap.pop(), "À clé égale, la plus petite position sort en premier");
+        assertEquals(4, heap.pop());
+        assertFalse(heap.contains(4));
+        assertTrue(heap.contains(3));
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(3));
+    }
+
+    @Test
+    void testSameResultsAsLinearScan() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml");
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int n = graph.getNbVertices();
+        DijkstraEngine engine = new DijkstraEngine();
+        for (int start = 0; start < n; start += 37) {
+            for (CompressedGraph.Adjacency adjacency : new CompressedGraph.Adjacency[]{graph.forward(), graph.reverse()}) {
+                double[] expectedDistance = new double[n];
+                int[] expectedPi = new int[n];
+                linearScan(adjacency, start, expectedDistance, expectedPi);
+
+                double[] distance = new double[n];
+                int[] pi = new int[n];
+                Arrays.fill(distance, Integer.MAX_VALUE);
+                Arrays.fill(pi, -1);
+                engine.run(adjacency, adjacency == graph.reverse(), null, start, distance, pi);
+
+                assertArrayEquals(expectedDistance, distance, "Distances différentes depuis " + start);
+                assertArrayEquals(expectedPi, pi, "Prédécesseurs différents depuis " + start);
+            }
+        }
+    }
+
+    @Test
+    void testTargetBoundedSearchStopsEarly() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/largeMap.xml");
+        cityMap.contractChains();
+        int n = cityMap.getIntersections().size();
+        Intersection start = cityMap.getWareHouseLocation();
+
+        Dijkstra full = new Dijkstra(n, cityMap);
+        full.setTargetBounded(false);
+        Dijkstra bounded = new Dijkstra(n, cityMap);
+        for (int target : new int[]{start.getPos() + 1, start.getPos() + 2}) {
+            full.addDeliveryRequest(cityMap.findIntersectionByPos(target));
+            bounded.addDeliveryRequest(cityMap.findIntersectionByPos(target));
+        }
+        assertEquals(full.runDijkstra(start, n), bounded.runDijkstra(start, n));
+        assertEquals(n, full.getDistance().length);
+        assertThrows(IllegalStateException.class, bounded::getDistance,
+                "Une recherche bornée ne garde pas les distances de tout le graphe");
+        assertEquals(full.getChemins().size(), bounded.getChemins().size());
+        for (int i = 0; i < full.getChemins().size(); i++) {
+            assertEquals(full.getChemins().get(i).getCout(), bounded.getChemins().get(i).getCout());
+            assertArrayEquals(full.getChemins().get(i).getPi(), bounded.getChemins().get(i).getPi(),
+                    "Le chemin vers un point de livraison doit être le même");
+        }
+
+        // Recherche bornée directement sur le moteur : elle fixe moins de nœuds que la recherche complète
+        CompressedGraph graph = cityMap.getChainContraction().getGraph();
+        DijkstraEngine engine = new DijkstraEngine();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(pi, -1);
+        int target = graph.forward().target(graph.forward().begin(start.getPos()));
+        engine.run(graph.forward(), false, cityMap.getChainContraction(), start.getPos(), distance, pi, new int[]{target});
+        int boundedSettled = engine.getNbSettled();
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(pi, -1);
+        engine.run(graph.forward(), false, cityMap.getChainContraction(), start.getPos(), distance, pi);
+        assertTrue(boundedSettled < engine.getNbSettled() / 10, "La recherche bornée doit s'arrêter bien avant la fin");
+    }
+
+    @Test
+    void testUnreachableTargetExhaustsSearch() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml");
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int n = graph.getNbVertices();
+        int start = cityMap.getWareHouseLocation().getPos();
+        StronglyConnectedComponents components = cityMap.getStronglyConnectedComponents();
+        int outside = -1;
+        for (int v = 0; v < n && outside == -1; v++) {
+            if (!components.sameComponent(start, v)) {
+                outside = v;
+            }
+        }
+        assertNotEquals(-1, outside);
+
+        DijkstraEngine engine = new DijkstraEngine();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(pi, -1);
+        engine.run(graph.forward(), false, null, start, distance, pi, new int[]{outside});
+        int bounded = engine.getNbSettled();
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(pi, -1);
+        engine.run(graph.forward(), false, null, start, distance, pi);
+        assertTrue(bounded <= engine.getNbSettled());
+    }
+
+    /**
+     * Dijkstra de référence, avec la recherche linéaire du nœud gris de plus petite distance.
+     */
+    private static void linearScan(CompressedGraph.Adjacency adjacency, int start, double[] distance, int[] pi) {
+        int n = distance.length;
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(pi, -1);
+        int[] colors = new int[n]; // 0 blanc, 1 gris, 2 noir
+        distance[start] = 0.0;
+        colors[start] = 1;
+        while (true) {
+            int u = -1;
+            for (int i = 0; i < n; i++) {
+                if (colors[i] == 1 && (u == -1 || distance[i] < distance[u])) {
+                    u = i;
+                }
+            }
+            if (u == -1) {
+                return;
+            }
+            for (int e = adjacency.begin(u); e < adjacency.end(u); e++) {
+                int v = adjacency.target(e);
+                if (colors[v] != 2) {
+                    if (distance[u] + adjacency.weight(e) < distance[v]) {
+                        distance[v] = distance[u] + adjacency.weight(e);
+                        pi[v] = u;
+                    }
+                    colors[v] = 1;
+                }
+            }
+            colors[u] = 2;
+        }
+    }
+}
@@ -54,23 +54,6 @@ class DijkstraTest {
         assertEquals(expected, result, "La valeur heuristique doit correspondre à la distance euclidienne");
     }
 
-    @Test
-    void testHasGrayNode() {
-        dijkstra.colors = new String[]{"white", "gray", "black"};
-        assertTrue(dijkstra.hasGrayNode(), "Devrait retourner vrai quand il y a un nœud gris");
-
-        dijkstra.colors = new String[]{"white", "white", "black"};
-        assertFalse(dijkstra.hasGrayNode(), "Devrait retourner faux quand il n'y a pas de nœud gris");
-    }
-
-    @Test
-    void testMinGrayNode() {
-        dijkstra.colors = new String[]{"gray", "white", "gray"};
-        dijkstra.distance = new double[]{5.0, 10.0, 3.0};
-        Intersection expected = cityMap.findIntersectionByPos(2); // Assurez-vous que cela correspond à l'intersection attendue
-        assertEquals(expected, dijkstra.minGrayNode(), "Doit retourner le nœud gris avec la plus petite distance");
-    }
-
     @Test
     void testGetChemins() {
         ArrayList<Chemin> expected = dijkstra.getChemins();
@@ -84,25 +67,6 @@ class DijkstraTest {
         assertTrue(expected.containsAll(deliveryRequest), "La liste des demandes de livraison doit contenir tous les éléments de deliveryRequest");
     }
 
-    @Test
-    void testSelectNode() {
-        RoadSegment roadSegment = new RoadSegment(inter1, inter2, "Route 66",1.0);
-        Intersection result = dijkstra.selectNode(roadSegment);
-        assertEquals(inter2, result, "selectNode doit retourner la destination du RoadSegment");
-    }
-
-    @Test
-    void testCreateChemin() {
-        int[] pi = new int[]{0, 1, 2}; // Un exemple de tableau de prédécesseurs
-        double cout = 10.0;
-        Chemin result = dijkstra.createChemin(inter1, inter3, pi, cout);
-
-        assertEquals(inter1, result.getDebut(), "Le début du chemin doit être inter1");
-        assertEquals(inter3, result.getFin(), "La fin du chemin doit être inter3");
-        assertEquals(cout, result.getCout(), 0.0001, "Le coût du chemin doit être correct");
-        assertArrayEquals(pi, result.getPi(), "Le tableau de prédécesseurs doit correspondre");
-    }
-
     @Test
     void testAddDeliveryRequest() {
         Intersection newDelivery = new Intersection(3, 1.0, 123, 10); // Créez une nouvelle intersection de livraison
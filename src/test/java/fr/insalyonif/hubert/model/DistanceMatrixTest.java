@@ -0,0 +1,132 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceMatrixTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+    private static final int NB_REQUESTS = 6;
+
+    private CityMap cityMap;
+    private ArrayList<DeliveryRequest> requests;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityMap = new CityMap();
+        cityMap.loadFromXML(MEDIUM_MAP);
+        // Des points de la composante de l'entrepôt, pour que tous les trajets existent
+        StronglyConnectedComponents components = cityMap.getStronglyConnectedComponents();
+        int wareHouse = cityMap.getWareHouseLocation().getPos();
+        requests = new ArrayList<>();
+        for (int pos = 40; requests.size() < NB_REQUESTS; pos += 197) {
+            if (components.sameComponent(pos, wareHouse)) {
+                requests.add(new DeliveryRequest(cityMap.findIntersectionByPos(pos), new TimeWindow(8, 9)));
+            }
+        }
+    }
+
+    @Test
+    void testSameCostsAsCompleteGraphFromChemins() {
+        int n = cityMap.getIntersections().size();
+        Dijkstra dijkstra = new Dijkstra(n, cityMap);
+        DijkstraInverse inverse = new DijkstraInverse(n, cityMap);
+        List<Intersection> points = new ArrayList<>();
+        points.add(cityMap.getWareHouseLocation());
+        for (DeliveryRequest request : requests) {
+            points.add(request.getDeliveryLocation());
+        }
+        for (Intersection point : points) {
+            assertTrue(dijkstra.runDijkstra(point, n));
+            assertTrue(inverse.runDijkstra(point, n));
+        }
+        List<Chemin> chemins = new ArrayList<>(dijkstra.getChemins());
+        chemins.addAll(inverse.getChemins());
+        CompleteGraph expected = new CompleteGraph(chemins, requests, cityMap);
+
+        DistanceMatrix matrix = DistanceMatrix.forTour(cityMap, requests);
+        CompleteGraph actual = new CompleteGraph(matrix);
+        assertEquals(expected.getNbVertices(), actual.getNbVertices());
+        assertEquals(expected.getPositionToIndexMap(), actual.getPositionToIndexMap());
+        for (int i = 0; i < expected.getNbVertices(); i++) {
+            for (int j = 0; j < expected.getNbVertices(); j++) {
+                assertEquals(expected.getCost(i, j), actual.getCost(i, j), 1e-6, "Coût différent de " + i + " à " + j);
+            }
+        }
+        assertSame(matrix.costs(), actual.cost, "La matrice de toute la tournée doit être utilisée sans copie");
+        assertEquals(0, matrix.getNbSearchedRows(), "Les arbres de la tournée couvrent toute la matrice");
+    }
+
+    @Test
+    void testRowsMissingFromTheTreesAreSearched() {
+        DistanceMatrix searched = DistanceMatrix.forTour(cityMap, requests);
+        assertEquals(NB_REQUESTS + 1, searched.getNbSearchedRows());
+
+        // Seuls les deux premiers points ont un arbre vers tous les autres : les autres lignes sont cherchées
+        int n = cityMap.getIntersections().size();
+        Dijkstra dijkstra = new Dijkstra(n, cityMap);
+        for (DeliveryRequest request : requests) {
+            dijkstra.addDeliveryRequest(request.getDeliveryLocation());
+        }
+        for (int i = 0; i < 2; i++) {
+            assertTrue(dijkstra.runDijkstra(requests.get(i).getDeliveryLocation(), n));
+        }
+        DistanceMatrix matrix = DistanceMatrix.forTour(cityMap, requests);
+        assertEquals(NB_REQUESTS - 1, matrix.getNbSearchedRows());
+        for (int i = 0; i < matrix.size(); i++) {
+            for (int j = 0; j < matrix.size(); j++) {
+                assertEquals(searched.getCost(i, j), matrix.getCost(i, j), 1e-6, "Coût différent de " + i + " à " + j);
+            }
+        }
+    }
+
+    @Test
+    void testAllEnginesAgree() {
+        DistanceMatrix byDijkstra = DistanceMatrix.forTour(cityMap, requests);
+        cityMap.setContractionHierarchy(ContractionHierarchyBuilder.build(cityMap.getCompressedGraph()));
+        DistanceMatrix byHierarchy = DistanceMatrix.forTour(cityMap, requests);
+        cityMap.setHubLabels(HubLabels.build(cityMap.getContractionHierarchy()));
+        DistanceMatrix byLabels = DistanceMatrix.forTour(cityMap, requests);
+        for (int i = 0; i < byDijkstra.size(); i++) {
+            assertEquals(Double.POSITIVE_INFINITY, byLabels.getCost(i, i), "La diagonale ne doit pas être un arc");
+            for (int j = 0; j < byDijkstra.size(); j++) {
+                assertEquals(byDijkstra.getCost(i, j), byHierarchy.getCost(i, j), 1e-6);
+                assertEquals(byDijkstra.getCost(i, j), byLabels.getCost(i, j), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void testSubsetOfTheTour() {
+        DistanceMatrix matrix = DistanceMatrix.forTour(cityMap, requests);
+        List<DeliveryRequest> subset = List.of(requests.get(4), requests.get(1));
+        CompleteGraph graph = new CompleteGraph(matrix, DistanceMatrix.tourRows(requests, subset));
+        assertEquals(3, graph.getNbVertices());
+        assertEquals(matrix.getCost(0, 5), graph.getCost(0, 1));
+        assertEquals(matrix.getCost(5, 2), graph.getCost(1, 2));
+        assertEquals(matrix.getCost(2, 0), graph.getCost(2, 0));
+        DeliveryRequest other = new DeliveryRequest(requests.get(0).getDeliveryLocation(), new TimeWindow(8, 9));
+        assertThrows(IllegalArgumentException.class, () -> DistanceMatrix.tourRows(requests, List.of(other)));
+    }
+
+    @Test
+    void testRequestsSharingAPosition() {
+        // Deux demandes au même endroit et une sur l'entrepôt : chacune garde sa ligne
+        requests.add(new DeliveryRequest(requests.get(2).getDeliveryLocation(), new TimeWindow(9, 10)));
+        requests.add(new DeliveryRequest(cityMap.getWareHouseLocation(), new TimeWindow(9, 10)));
+        DistanceMatrix matrix = DistanceMatrix.forTour(cityMap, requests);
+        List<DeliveryRequest> subset = List.of(requests.get(2), requests.get(NB_REQUESTS), requests.get(NB_REQUESTS + 1));
+        assertArrayEquals(new int[]{0, 3, NB_REQUESTS + 1, NB_REQUESTS + 2}, DistanceMatrix.tourRows(requests, subset));
+
+        CompleteGraph graph = new CompleteGraph(matrix, DistanceMatrix.tourRows(requests, subset));
+        assertEquals(0, graph.getCost(1, 2), "Deux demandes au même endroit sont à distance nulle");
+        assertEquals(0, graph.getCost(0, 3), "Une demande sur l'entrepôt est à distance nulle");
+        assertEquals(matrix.getCost(3, 0), graph.getCost(2, 0));
+        assertEquals(Double.POSITIVE_INFINITY, graph.getCost(1, 1));
+    }
+}
@@ -0,0 +1,81 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HubLabelsTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+
+    private CityMap cityMap;
+    private CompressedGraph graph;
+    private HubLabels labels;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityMap = new CityMap();
+        cityMap.loadFromXML(MEDIUM_MAP);
+        graph = cityMap.getCompressedGraph();
+        labels = HubLabels.build(ContractionHierarchyBuilder.build(graph));
+    }
+
+    @Test
+    void testSameDistancesAsDijkstra() {
+        int n = graph.getNbVertices();
+        DijkstraEngine engine = new DijkstraEngine();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        for (int source = 0; source < n; source += 37) {
+            engine.run(graph.forward(), false, null, source, distance, pi);
+            for (int target = 0; target < n; target++) {
+                assertEquals(distance[target], labels.distance(source, target), 1e-6,
+                        "Distance différente de " + source + " à " + target);
+            }
+        }
+        assertTrue(labels.getAverageLabelSize() < n / 10.0, "Les étiquettes doivent rester petites");
+    }
+
+    @Test
+    void testManyToManyMatchesPointToPoint() {
+        int[] sources = {0, 17, 230, 999, 1400};
+        int[] targets = {3, 17, 640, 1200};
+        double[] matrix = labels.manyToMany(sources, targets);
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < targets.length; j++) {
+                assertEquals(labels.distance(sources[i], targets[j]), matrix[i * targets.length + j],
+                        "Entrée (" + i + ", " + j + ") différente");
+            }
+        }
+    }
+
+    @Test
+    void testWriteAndReadBack(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("mediumMap" + HubLabels.EXTENSION);
+        labels.write(file);
+        HubLabels read = HubLabels.read(file);
+        assertEquals(graph.getChecksum(), read.getChecksum());
+        assertEquals(labels.getFootprint(), read.getFootprint());
+        for (int v = 0; v < graph.getNbVertices(); v += 11) {
+            assertEquals(labels.distance(v, 700), read.distance(v, 700));
+        }
+
+        Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 100));
+        assertThrows(java.io.IOException.class, () -> HubLabels.read(file), "Un fichier tronqué doit être refusé");
+    }
+
+    @Test
+    void testCityMapRefusesLabelsOfAnotherGraph() throws Exception {
+        CityMap small = new CityMap();
+        small.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml");
+        assertThrows(IllegalArgumentException.class, () -> small.setHubLabels(labels));
+        cityMap.setHubLabels(labels);
+        assertSame(labels, cityMap.getHubLabels());
+    }
+}
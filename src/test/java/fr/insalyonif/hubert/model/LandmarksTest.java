@@ -0,0 +1,111 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LandmarksTest {
+
+    private CityMap cityMap;
+    private CompressedGraph graph;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml");
+        graph = cityMap.getCompressedGraph();
+    }
+
+    @Test
+    void testLowerBoundIsAdmissible() {
+        Landmarks landmarks = Landmarks.compute(graph, 6);
+        assertEquals(6, landmarks.getLandmarks().length);
+        assertEquals(2L * 6 * graph.getNbVertices() * Float.BYTES, landmarks.getFootprint());
+        int n = graph.getNbVertices();
+        DijkstraEngine engine = new DijkstraEngine();
+        double[] distance = new double[n];
+        int[] pi = new int[n];
+        for (int source = 0; source < n; source += 47) {
+            engine.run(graph.forward(), false, null, source, distance, pi);
+            for (int target = 0; target < n; target++) {
+                if (distance[target] != SearchWorkspace.INFINITY) {
+                    assertTrue(landmarks.lowerBound(source, target) <= distance[target],
+                            "La borne ne doit pas dépasser la distance de " + source + " à " + target);
+                }
+            }
+        }
+        int landmark = landmarks.getLandmarks()[0];
+        engine.run(graph.forward(), false, null, landmark, distance, pi);
+        int far = 0;
+        for (int v = 0; v < n; v++) {
+            if (distance[v] != SearchWorkspace.INFINITY && distance[v] > distance[far]) {
+                far = v;
+            }
+        }
+        assertEquals(distance[far], landmarks.lowerBound(landmark, far), distance[far] * 1e-6,
+                "Depuis un repère, la borne doit être la distance exacte");
+    }
+
+    @Test
+    void testAStarWithLandmarks() throws Exception {
+        AStar plain = new AStar(cityMap);
+        CityMap withLandmarks = new CityMap();
+        withLandmarks.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml");
+        withLandmarks.setLandmarks(Landmarks.compute(withLandmarks.getCompressedGraph(), 8));
+        AStar alt = new AStar(withLandmarks);
+
+        int n = graph.getNbVertices();
+        long plainSettled = 0;
+        long altSettled = 0;
+        for (int source = 3; source < n; source += 71) {
+            for (int target = 11; target < n; target += 97) {
+                Chemin expected = plain.findPath(cityMap.findIntersectionByPos(source), cityMap.findIntersectionByPos(target));
+                plainSettled += plain.getNbSettled();
+                Chemin actual = alt.findPath(withLandmarks.findIntersectionByPos(source), withLandmarks.findIntersectionByPos(target));
+                altSettled += alt.getNbSettled();
+                if (expected == null) {
+                    assertNull(actual);
+                } else {
+                    assertEquals(expected.getCout(), actual.getCout(), 1e-6, "Coût différent de " + source + " à " + target);
+                }
+            }
+        }
+        assertTrue(altSettled < plainSettled, "Les repères doivent réduire la recherche (" + altSettled + " / " + plainSettled + ")");
+    }
+
+    @Test
+    void testKeptWhileSegmentsOnlyGetLonger() {
+        Landmarks landmarks = Landmarks.compute(graph, 4);
+        cityMap.setLandmarks(landmarks);
+        RoadSegment segment = cityMap.getIntersections().get(0).getSuccessors().get(0);
+        double length = segment.getLength();
+
+        segment.setLength(length * 3);
+        cityMap.updateSegmentLengths();
+        assertSame(landmarks, cityMap.getLandmarks(), "Un allongement ne doit pas abandonner les repères");
+        assertNotEquals(landmarks.getChecksum(), cityMap.getCompressedGraph().getChecksum());
+        cityMap.setLandmarks(landmarks);
+
+        segment.setLength(length / 2);
+        cityMap.updateSegmentLengths();
+        assertNull(cityMap.getLandmarks(), "Un raccourcissement doit abandonner les repères");
+    }
+
+    @Test
+    void testLoadCachesPerMapAndCount(@TempDir Path folder) throws Exception {
+        String mapFile = folder.resolve("mediumMap.xml").toString();
+        Landmarks computed = Landmarks.load(mapFile, graph, 4);
+        Landmarks read = Landmarks.read(Landmarks.pathFor(mapFile));
+        assertArrayEquals(computed.getLandmarks(), read.getLandmarks());
+        assertEquals(graph.getChecksum(), read.getChecksum());
+        assertEquals(graph.getShapeChecksum(), read.getShapeChecksum());
+        for (int v = 0; v < graph.getNbVertices(); v += 13) {
+            assertEquals(computed.lowerBound(v, 100), read.lowerBound(v, 100));
+        }
+        assertEquals(2, Landmarks.load(mapFile, graph, 2).getLandmarks().length, "Un autre nombre de repères doit être recalculé");
+    }
+}
@@ -0,0 +1,75 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapCompilerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path xmlMap;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        xmlMap = tempDir.resolve("smallMap.xml");
+        Files.copy(Path.of("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml"), xmlMap);
+    }
+
+    @Test
+    void testBinaryPathFor() throws Exception {
+        Path binary = MapCompiler.binaryPathFor(xmlMap.toString());
+        assertEquals(MapCompiler.cacheDirectory(), binary.getParent(), "La carte compilée ne doit pas être écrite à côté du XML");
+        assertTrue(binary.getFileName().toString().startsWith("smallMap-"));
+        assertTrue(binary.getFileName().toString().endsWith(MapCompiler.EXTENSION));
+
+        Path other = Files.createDirectory(tempDir.resolve("other")).resolve("smallMap.xml");
+        assertNotEquals(binary, MapCompiler.binaryPathFor(other.toString()),
+                "Deux cartes de même nom dans des dossiers différents doivent avoir leur propre fichier");
+    }
+
+    @Test
+    void testLoadWritesAndReusesBinary() throws Exception {
+        CityMap fromXml = new CityMap();
+        fromXml.load(xmlMap.toString());
+        Path binary = MapCompiler.binaryPathFor(xmlMap.toString());
+        assertTrue(MapCompiler.isUpToDate(binary, xmlMap.toFile()), "Le chargement doit compiler la carte");
+
+        CityMap fromBinary = new CityMap();
+        fromBinary.loadFromBinary(binary.toString());
+        assertSameMap(fromXml, fromBinary);
+    }
+
+    @Test
+    void testStaleBinaryIsIgnored() throws Exception {
+        Path binary = MapCompiler.compile(xmlMap.toString());
+        assertTrue(xmlMap.toFile().setLastModified(xmlMap.toFile().lastModified() + 10_000));
+        assertFalse(MapCompiler.isUpToDate(binary, xmlMap.toFile()), "Un binaire plus ancien que le XML doit être périmé");
+
+        CityMap cityMap = new CityMap();
+        cityMap.load(xmlMap.toString());
+        assertEquals(308, cityMap.getIntersections().size());
+        assertTrue(MapCompiler.isUpToDate(binary, xmlMap.toFile()), "Le binaire périmé doit être recompilé");
+    }
+
+    @Test
+    void testCorruptedBinaryFallsBackToXml() throws Exception {
+        Path binary = MapCompiler.compile(xmlMap.toString());
+        byte[] truncated = Files.readAllBytes(binary);
+        Files.write(binary, Arrays.copyOf(truncated, truncated.length / 2));
+        assertTrue(binary.toFile().length() > 0);
+
+        CityMap cityMap = new CityMap();
+        cityMap.load(xmlMap.toString());
+        assertEquals(308, cityMap.getIntersections().size());
+        assertEquals(4.87572, cityMap.getWareHouseLocation().getLongitude());
+    }
+}
@@ -0,0 +1,66 @@
+package fr.insalyonif.hubert.model;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+
+/**
+ * Mesure l'effet de la renumérotation de Hilbert sur les recherches de plus courts chemins.
+ * Ce n'est pas un test JUnit : à lancer à la main, depuis la racine du projet, avec les noms
+ * des cartes en arguments (par défaut mediumMap et largeMap).
+ */
+public class NodeOrderingBenchmark {
+    private static final int NB_SEARCHES = 40;
+
+    public static void main(String[] args) throws Exception {
+        String[] maps = args.length > 0 ? args : new String[]{"mediumMap", "largeMap"};
+        for (String map : maps) {
+            CityMap documentOrder = loadMap(map);
+            CityMap hilbertOrder = loadMap(map);
+            hilbertOrder.renumberForLocality();
+
+            System.out.printf("%s : écart moyen entre positions voisines %.1f (XML) -> %.1f (Hilbert)%n",
+                    map, averageEdgeSpan(documentOrder), averageEdgeSpan(hilbertOrder));
+            // Un premier passage pour chauffer la JVM, puis la mesure
+            for (int round = 0; round < 2; round++) {
+                double xml = timeSearches(documentOrder);
+                double hilbert = timeSearches(hilbertOrder);
+                if (round == 1) {
+                    System.out.printf("%s : %d recherches en %.1f ms (XML) / %.1f ms (Hilbert)%n",
+                            map, NB_SEARCHES, xml, hilbert);
+                }
+            }
+        }
+    }
+
+    private static double averageEdgeSpan(CityMap cityMap) {
+        CompressedGraph.Adjacency forward = cityMap.getCompressedGraph().forward();
+        long total = 0;
+        int nbVertices = cityMap.getCompressedGraph().getNbVertices();
+        for (int u = 0; u < nbVertices; u++) {
+            for (int e = forward.begin(u); e < forward.end(u); e++) {
+                total += Math.abs(forward.target(e) - u);
+            }
+        }
+        return (double) total / cityMap.getCompressedGraph().getNbEdges();
+    }
+
+    private static double timeSearches(CityMap cityMap) {
+        int n = cityMap.getIntersections().size();
+        // Mêmes départs, choisis par identifiant, quelle que soit la numérotation
+        long[] ids = cityMap.getIntersections().stream().mapToLong(Intersection::getId).sorted().toArray();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < NB_SEARCHES; i++) {
+                Intersection source = cityMap.findIntersectionByID(ids[(int) ((long) i * ids.length / NB_SEARCHES)]);
+                new Dijkstra(n, cityMap).runDijkstra(source, n);
+            }
+        } finally {
+            System.setOut(out);
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
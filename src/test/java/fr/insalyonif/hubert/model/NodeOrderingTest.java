@@ -0,0 +1,84 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeOrderingTest {
+
+    private static final String SMALL_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml";
+
+    private CityMap documentOrder;
+    private CityMap hilbertOrder;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        documentOrder = new CityMap();
+        documentOrder.loadFromXML(SMALL_MAP);
+        hilbertOrder = new CityMap();
+        hilbertOrder.loadFromXML(SMALL_MAP);
+        hilbertOrder.renumberForLocality();
+    }
+
+    @Test
+    void testHilbertIndexIsAPermutation() {
+        boolean[] seen = new boolean[16];
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                long d = NodeOrdering.hilbertIndex(x << (NodeOrdering.ORDER - 2), y << (NodeOrdering.ORDER - 2)) >> (2 * (NodeOrdering.ORDER - 2));
+                assertFalse(seen[(int) d], "Deux cases ont le même indice de Hilbert");
+                seen[(int) d] = true;
+            }
+        }
+    }
+
+    @Test
+    void testRenumberKeepsIdsAndPositions() {
+        List<Intersection> intersections = hilbertOrder.getIntersections();
+        assertEquals(308, intersections.size());
+        for (int i = 0; i < intersections.size(); i++) {
+            Intersection intersection = intersections.get(i);
+            assertEquals(i, intersection.getPos(), "La liste doit être triée par position");
+            assertSame(intersection, hilbertOrder.findIntersectionByPos(i));
+            assertSame(intersection, hilbertOrder.findIntersectionByID(intersection.getId()), "L'index par identifiant doit suivre la renumérotation");
+        }
+        assertEquals(documentOrder.getWareHouseLocation().getId(), hilbertOrder.getWareHouseLocation().getId());
+    }
+
+    @Test
+    void testRenumberImprovesLocality() {
+        assertTrue(averageEdgeSpan(hilbertOrder) < averageEdgeSpan(documentOrder) / 2,
+                "Les intersections voisines doivent être plus proches en mémoire");
+    }
+
+    @Test
+    void testShortestPathsUnchanged() {
+        int n = documentOrder.getIntersections().size();
+        Intersection source = documentOrder.findIntersectionByPos(42);
+        Dijkstra before = new Dijkstra(n, documentOrder);
+        before.setTargetBounded(false);
+        before.runDijkstra(source, n);
+        Dijkstra after = new Dijkstra(n, hilbertOrder);
+        after.setTargetBounded(false);
+        after.runDijkstra(hilbertOrder.findIntersectionByID(source.getId()), n);
+        for (Intersection intersection : documentOrder.getIntersections()) {
+            int renumbered = hilbertOrder.findIntersectionByID(intersection.getId()).getPos();
+            assertEquals(before.getDistance()[intersection.getPos()], after.getDistance()[renumbered], 1e-6,
+                    "Distance différente pour l'intersection " + intersection.getId());
+        }
+    }
+
+    private static double averageEdgeSpan(CityMap cityMap) {
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        long total = 0;
+        for (int u = 0; u < graph.getNbVertices(); u++) {
+            for (int e = graph.forward().begin(u); e < graph.forward().end(u); e++) {
+                total += Math.abs(graph.forward().target(e) - u);
+            }
+        }
+        return (double) total / graph.getNbEdges();
+    }
+}
@@ -0,0 +1,73 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelMapLoaderTest {
+
+    @Test
+    void testSameResultAsLoadFromXML() throws Exception {
+        String map = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/largeMap.xml";
+        CityMap expected = new CityMap();
+        expected.loadFromXML(map);
+        CityMap actual = new CityMap();
+        actual.loadFromXMLParallel(map);
+
+        assertSameMap(expected, actual);
+    }
+
+    @Test
+    void testEntitiesAndComments(@TempDir Path tempDir) throws Exception {
+        Path xml = tempDir.resolve("entities.xml");
+        Files.writeString(xml, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<map>\n"
+                + "<!-- <segment origin=\"9\"> ignoré -->\n"
+                + "<warehouse address=\"2\"/>\n"
+                + "<intersection id=\"1\" latitude=\"45.0\" longitude=\"4.0\"/>\n"
+                + "<intersection id=\"2\" latitude=\"45.1\" longitude=\"4.1\"/>\n"
+                + "<segment destination=\"2\" length=\"5.5\" name=\"Rue d&apos;Anvers &amp; Quai\" origin=\"1\"/>\n"
+                + "<segment destination='1' length='6.5' name='Cours &#233;mile' origin='2' />\n"
+                + "</map>\n");
+
+        CityMap expected = new CityMap();
+        expected.loadFromXML(xml.toString());
+        CityMap actual = new CityMap();
+        actual.loadFromXMLParallel(xml.toString());
+
+        assertSameMap(expected, actual);
+        assertEquals("Rue d'Anvers & Quai", actual.getStreetName(actual.findIntersectionByID(1).getSuccessors().get(0).getNameId()));
+        assertEquals("Cours émile", actual.getStreetName(actual.findIntersectionByID(2).getSuccessors().get(0).getNameId()));
+    }
+
+    @Test
+    void testCommentSplitAcrossReads() throws Exception {
+        String text = "<a/><!-- <b x=\"1\"/> it's --><![CDATA[ <c y='2'/> ]]><d/>";
+        // Un caractère par lecture : chaque début de commentaire ou de CDATA est coupé
+        Reader reader = new FilterReader(new StringReader(text)) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        ParallelMapLoader.Tokenizer tokenizer = new ParallelMapLoader.Tokenizer(reader, 1);
+        List<String> chunks = new ArrayList<>();
+        String chunk;
+        while ((chunk = tokenizer.nextChunk()) != null) {
+            chunks.add(chunk);
+        }
+
+        assertEquals(List.of("<a/>", "<!-- <b x=\"1\"/> it's -->", "<![CDATA[ <c y='2'/> ]]>", "<d/>"), chunks,
+                "Les morceaux ne doivent pas être coupés dans un commentaire ou une section CDATA");
+    }
+}
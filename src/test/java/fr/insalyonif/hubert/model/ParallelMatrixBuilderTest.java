@@ -0,0 +1,95 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelMatrixBuilderTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+    private static final int NB_REQUESTS = 8;
+
+    private CityMap cityMap;
+    private int n;
+    private List<DeliveryRequest> requests;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityMap = new CityMap();
+        cityMap.loadFromXML(MEDIUM_MAP);
+        n = cityMap.getIntersections().size();
+        requests = new ArrayList<>();
+        for (int pos = 40; requests.size() < NB_REQUESTS; pos += 97) {
+            Intersection point = cityMap.findIntersectionByPos(pos);
+            if (cityMap.isReachableFromWareHouse(point)) {
+                requests.add(new DeliveryRequest(point, new TimeWindow(8, 9)));
+            }
+        }
+    }
+
+    @Test
+    void testSameCheminsAsSequentialRuns() {
+        DeliveryTour expected = newTour();
+        for (DeliveryRequest request : requests) {
+            assertTrue(expected.getDijkstra().runDijkstra(request.getDeliveryLocation(), n));
+            assertTrue(expected.getDijkstraInverse().runDijkstra(request.getDeliveryLocation(), n));
+        }
+
+        DeliveryTour actual = newTour();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(requests, new ParallelMatrixBuilder(pool).addRequests(actual, requests, cityMap));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(requests, actual.getRequests());
+        assertEquals(expected.getDijkstra().getDeliveryRequest(), actual.getDijkstra().getDeliveryRequest());
+        assertSameChemins(expected.getDijkstra().getChemins(), actual.getDijkstra().getChemins());
+        assertSameChemins(expected.getDijkstraInverse().getChemins(), actual.getDijkstraInverse().getChemins());
+        assertEquals(actual.getDijkstra().getChemins().size() + actual.getDijkstraInverse().getChemins().size(),
+                actual.getCheminDij().size());
+    }
+
+    @Test
+    void testUnreachablePointIsRejected() {
+        Intersection outside = null;
+        for (Intersection intersection : cityMap.getIntersections()) {
+            if (!cityMap.isReachableFromWareHouse(intersection)) {
+                outside = intersection;
+                break;
+            }
+        }
+        assertNotNull(outside, "La carte doit avoir une intersection hors de la composante de l'entrepôt");
+        List<DeliveryRequest> withOutside = new ArrayList<>(requests);
+        DeliveryRequest rejected = new DeliveryRequest(outside, new TimeWindow(9, 10));
+        withOutside.add(2, rejected);
+
+        DeliveryTour tour = newTour();
+        List<DeliveryRequest> accepted = new ParallelMatrixBuilder().addRequests(tour, withOutside, cityMap);
+        assertEquals(requests, accepted);
+        assertFalse(tour.getDijkstra().getDeliveryRequest().contains(outside));
+        assertFalse(tour.getDijkstraInverse().getDeliveryRequest().contains(outside));
+        assertEquals(NB_REQUESTS * (NB_REQUESTS + 1) / 2, tour.getDijkstra().getChemins().size());
+    }
+
+    private DeliveryTour newTour() {
+        DeliveryTour tour = new DeliveryTour();
+        tour.setDijkstra(new Dijkstra(n, cityMap));
+        tour.setDijkstraInverse(new DijkstraInverse(n, cityMap));
+        return tour;
+    }
+
+    private static void assertSameChemins(List<Chemin> expected, List<Chemin> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i).getDebut(), actual.get(i).getDebut());
+            assertSame(expected.get(i).getFin(), actual.get(i).getFin());
+            assertEquals(expected.get(i).getCout(), actual.get(i).getCout(), 1e-9, "Coût différent pour le chemin " + i);
+        }
+    }
+}
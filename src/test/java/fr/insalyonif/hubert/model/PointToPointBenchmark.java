@@ -0,0 +1,117 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+
+/**
+ * Compare les recherches d'un plus court chemin entre deux intersections (A*, Dijkstra
+ * bidirectionnel, ALT avec plusieurs nombres de repères, partition personnalisable) à la
+ * recherche complète de Dijkstra,
+ * sur des paires tirées au hasard. Ce n'est pas un test JUnit : à lancer à la main, depuis la racine du projet, avec les
+ * noms des cartes en arguments (par défaut les trois cartes fournies).
+ */
+public class PointToPointBenchmark {
+    private static final int NB_PAIRS = 200;
+    private static final int[] LANDMARK_COUNTS = {4, 8, 16};
+
+    public static void main(String[] args) throws Exception {
+        String[] maps = args.length > 0 ? args : new String[]{"smallMap", "mediumMap", "largeMap"};
+        for (String map : maps) {
+            CityMap cityMap = loadMap(map);
+            CompressedGraph graph = cityMap.getCompressedGraph();
+            int n = graph.getNbVertices();
+            AStar aStar = new AStar(cityMap);
+            BidirectionalDijkstra bidirectional = new BidirectionalDijkstra(cityMap);
+            DijkstraEngine engine = new DijkstraEngine();
+            double[] distance = new double[n];
+            int[] pi = new int[n];
+
+            Random random = new Random(42);
+            int[] starts = new int[NB_PAIRS];
+            int[] goals = new int[NB_PAIRS];
+            for (int i = 0; i < NB_PAIRS; i++) {
+                starts[i] = random.nextInt(n);
+                goals[i] = random.nextInt(n);
+            }
+
+            // Un premier passage pour chauffer la JVM, puis la mesure
+            for (int round = 0; round < 2; round++) {
+                long dijkstraSettled = 0;
+                long aStarSettled = 0;
+                long bidirectionalSettled = 0;
+                long begin = System.nanoTime();
+                for (int i = 0; i < NB_PAIRS; i++) {
+                    Arrays.fill(distance, Integer.MAX_VALUE);
+                    Arrays.fill(pi, -1);
+                    engine.run(graph.forward(), false, null, starts[i], distance, pi);
+                    dijkstraSettled += engine.getNbSettled();
+                }
+                double dijkstra = (System.nanoTime() - begin) / 1e6;
+                begin = System.nanoTime();
+                for (int i = 0; i < NB_PAIRS; i++) {
+                    aStar.findPath(cityMap.findIntersectionByPos(starts[i]), cityMap.findIntersectionByPos(goals[i]));
+                    aStarSettled += aStar.getNbSettled();
+                }
+                double astar = (System.nanoTime() - begin) / 1e6;
+                begin = System.nanoTime();
+                for (int i = 0; i < NB_PAIRS; i++) {
+                    bidirectional.findPath(cityMap.findIntersectionByPos(starts[i]), cityMap.findIntersectionByPos(goals[i]));
+                    bidirectionalSettled += bidirectional.getNbSettled();
+                }
+                double bidirectionnel = (System.nanoTime() - begin) / 1e6;
+                if (round == 1) {
+                    System.out.printf("%s : %d paires, par requête :%n", map, NB_PAIRS);
+                    System.out.printf("  %-24s %.3f ms / %d nœuds%n", "Dijkstra complet", dijkstra / NB_PAIRS, dijkstraSettled / NB_PAIRS);
+                    System.out.printf("  %-24s %.3f ms / %d nœuds%n", String.format("A* (rapport %.3f)", aStar.getRatio()), astar / NB_PAIRS, aStarSettled / NB_PAIRS);
+                    System.out.printf("  %-24s %.3f ms / %d nœuds%n", "Dijkstra bidirectionnel", bidirectionnel / NB_PAIRS, bidirectionalSettled / NB_PAIRS);
+                }
+            }
+
+            for (int nbLandmarks : LANDMARK_COUNTS) {
+                long begin = System.nanoTime();
+                cityMap.setLandmarks(Landmarks.compute(graph, nbLandmarks));
+                double preparation = (System.nanoTime() - begin) / 1e6;
+                AStar alt = new AStar(cityMap);
+                for (int round = 0; round < 2; round++) {
+                    long altSettled = 0;
+                    begin = System.nanoTime();
+                    for (int i = 0; i < NB_PAIRS; i++) {
+                        alt.findPath(cityMap.findIntersectionByPos(starts[i]), cityMap.findIntersectionByPos(goals[i]));
+                        altSettled += alt.getNbSettled();
+                    }
+                    double time = (System.nanoTime() - begin) / 1e6;
+                    if (round == 1) {
+                        System.out.printf("  %-24s %.3f ms / %d nœuds (précalcul %.0f ms, %d Ko)%n",
+                                "ALT, " + nbLandmarks + " repères", time / NB_PAIRS, altSettled / NB_PAIRS,
+                                preparation, cityMap.getLandmarks().getFootprint() / 1024);
+                    }
+                }
+            }
+            cityMap.setLandmarks(null);
+
+            long begin = System.nanoTime();
+            GraphPartition partition = GraphPartition.compute(graph, cityMap.getIntersections());
+            double partitioning = (System.nanoTime() - begin) / 1e6;
+            CustomizableRouting routing = new CustomizableRouting(partition, graph);
+            for (int round = 0; round < 2; round++) {
+                begin = System.nanoTime();
+                routing.customize(graph);
+                double customization = (System.nanoTime() - begin) / 1e6;
+                long routingSettled = 0;
+                begin = System.nanoTime();
+                for (int i = 0; i < NB_PAIRS; i++) {
+                    routing.findPath(cityMap.findIntersectionByPos(starts[i]), cityMap.findIntersectionByPos(goals[i]), n);
+                    routingSettled += routing.getNbSettled();
+                }
+                double time = (System.nanoTime() - begin) / 1e6;
+                if (round == 1) {
+                    System.out.printf("  %-24s %.3f ms / %d nœuds (partition %.0f ms, personnalisation %.1f ms)%n",
+                            "Partition, " + partition.getNbLevels() + " niveaux", time / NB_PAIRS, routingSettled / NB_PAIRS,
+                            partitioning, customization);
+                }
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import static org.junit.jupiter.api.Assertions.*;
 class RoadSegmentTest {
 
     private RoadSegment roadSegment;
+    private StreetNameTable streetNames;
     private Intersection origin;
     private Intersection destination;
     private String name;
@@ -18,14 +19,15 @@ class RoadSegmentTest {
         destination = new Intersection(45.9, 8.0, 54321, 2);
         name = "Route 66";
         length = 10.0;
-        roadSegment = new RoadSegment(origin, destination, name, length);
+        streetNames = new StreetNameTable();
+        roadSegment = new RoadSegment(origin, destination, streetNames.intern(name), length);
     }
 
     @Test
     void testConstructor() {
         assertSame(origin, roadSegment.getOrigin(), "Le constructeur ne définit pas correctement l'origine");
         assertSame(destination, roadSegment.getDestination(), "Le constructeur ne définit pas correctement la destination");
-        assertEquals(name, roadSegment.getName(), "Le constructeur ne définit pas correctement le nom");
+        assertEquals(name, streetNames.get(roadSegment.getNameId()), "Le constructeur ne définit pas correctement le nom");
         assertEquals(length, roadSegment.getLength(), "Le constructeur ne définit pas correctement la longueur");
     }
 
@@ -46,8 +48,39 @@ class RoadSegmentTest {
     @Test
     void testSetAndGetName() {
         String newName = "Route 67";
-        roadSegment.setName(newName);
-        assertEquals(newName, roadSegment.getName(), "Le setter/getter pour le nom ne fonctionne pas correctement");
+        roadSegment.setNameId(streetNames.intern(newName));
+        assertEquals(newName, streetNames.get(roadSegment.getNameId()), "Le setter/getter pour le nom ne fonctionne pas correctement");
+    }
+
+    @Test
+    void testNameIsInterned() {
+        RoadSegment sameStreet = new RoadSegment(destination, origin, streetNames.intern(new String("Route 66")), 5.0);
+        assertEquals(roadSegment.getNameId(), sameStreet.getNameId(), "Un même nom doit avoir un seul identifiant");
+        assertSame(streetNames.get(roadSegment.getNameId()), streetNames.get(sameStreet.getNameId()),
+                "Le nom doit être stocké une seule fois");
+        RoadSegment street = new RoadSegment(origin, destination, streetNames.intern("Route 67"), 10.0);
+        assertNotEquals(street.getNameId(), sameStreet.getNameId());
+        assertEquals("Route 67", streetNames.get(street.getNameId()));
+        assertEquals(2, streetNames.size());
+    }
+
+    @Test
+    void testEachMapHasItsOwnNames() throws Exception {
+        String map = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/smallMap.xml";
+        CityMap first = new CityMap();
+        first.loadFromXML(map);
+        CityMap second = new CityMap();
+        second.loadFromXMLParallel(map);
+        StreetNameTable names = first.getStreetNames();
+        assertNotSame(names, second.getStreetNames(), "Chaque carte doit avoir sa propre table de noms");
+        assertEquals(names.size(), second.getStreetNames().size());
+
+        RoadSegment segment = first.getIntersections().get(0).getSuccessors().get(0);
+        RoadSegment sameSegment = second.getIntersections().get(0).getSuccessors().get(0);
+        assertEquals(first.getStreetName(segment.getNameId()), second.getStreetName(sameSegment.getNameId()));
+        first.loadFromXML(map);
+        assertNotSame(names, first.getStreetNames(), "Un nouveau chargement ne doit pas garder les anciens noms");
+        assertEquals(names.size(), first.getStreetNames().size());
     }
 
     @Test
@@ -62,7 +95,7 @@ class RoadSegmentTest {
         String expectedString = "RoadSegment{" +
                 "origin=" + origin +
                 ", destination=" + destination +
-                ", name='" + name + '\'' +
+                ", nameId=" + streetNames.intern(name) +
                 ", length=" + length +
                 '}';
         assertEquals(expectedString, roadSegment.toString(), "La méthode toString ne retourne pas la chaîne attendue");
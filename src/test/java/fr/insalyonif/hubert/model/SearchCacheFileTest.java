@@ -0,0 +1,204 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheFileTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+
+    @Test
+    void testSearchesSurviveRestart(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("mediumMap" + SearchCacheFile.EXTENSION);
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML(MEDIUM_MAP);
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int n = graph.getNbVertices();
+        List<Integer> positions = new ArrayList<>();
+        for (int pos = 40; positions.size() < 4; pos += 97) {
+            if (cityMap.isReachableFromWareHouse(cityMap.findIntersectionByPos(pos))) {
+                positions.add(pos);
+            }
+        }
+        cityMap.getSearchCache().attach(SearchCacheFile.open(file, graph.getChecksum(), n));
+        DeliveryTour first = newTour(cityMap, n);
+        new ParallelMatrixBuilder().addRequests(first, requests(cityMap, positions), cityMap);
+        assertEquals(8, cityMap.getSearchCache().getMisses());
+        assertEquals(8, cityMap.getSearchCache().getFile().size());
+        assertTrue(Files.size(file) < 8 * 12L * n / 4, "Les arbres doivent occuper bien moins que des tableaux sur tout le graphe");
+
+        // Nouvelle session : les recherches sont relues dans le fichier au lieu d'être refaites
+        CityMap restarted = new CityMap();
+        restarted.loadFromXML(MEDIUM_MAP);
+        SearchCacheFile reopened = SearchCacheFile.open(file, restarted.getCompressedGraph().getChecksum(), n);
+        assertEquals(8, reopened.size());
+        restarted.getSearchCache().attach(reopened);
+        DeliveryTour second = newTour(restarted, n);
+        new ParallelMatrixBuilder().addRequests(second, requests(restarted, positions), restarted);
+        SearchCache cache = restarted.getSearchCache();
+        assertEquals(0, cache.getMisses(), "Aucune recherche ne doit être refaite");
+        assertEquals(8, cache.getDiskReads());
+        assertEquals(8, cache.size(), "Les arbres relus sur disque doivent être gardés en mémoire");
+
+        List<Chemin> reference = first.getCheminDij();
+        List<Chemin> chemins = second.getCheminDij();
+        assertEquals(reference.size(), chemins.size());
+        for (int i = 0; i < reference.size(); i++) {
+            assertEquals(reference.get(i).getCout(), chemins.get(i).getCout(), 1e-9, "Coût différent pour le chemin " + i);
+            assertArrayEquals(reference.get(i).toNodes(), chemins.get(i).toNodes());
+        }
+
+        restarted.updateSegmentLengths();
+        assertNull(cache.getFile(), "Le fichier ne vaut plus après une modification des longueurs");
+    }
+
+    @Test
+    void testTruncatedTailAndOtherGraph(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("map" + SearchCacheFile.EXTENSION);
+        SearchCacheFile cacheFile = SearchCacheFile.open(file, 42L, 10);
+        Intersection one = new Intersection(0, 0, 1, 1);
+        Intersection two = new Intersection(0, 0, 2, 2);
+        cacheFile.append(tree(one, false));
+        cacheFile.append(tree(one, true));
+        cacheFile.append(tree(one, true));
+        assertEquals(2, cacheFile.size());
+        assertEquals(7.5, cacheFile.get(one, true).distance(3), "Un arbre en attente doit être lisible");
+        assertFalse(Files.exists(file), "Le fichier ne doit être créé qu'à la première écriture");
+        cacheFile.flush();
+        assertEquals(2, cacheFile.size());
+        assertEquals(7.5, cacheFile.get(one, true).distance(3));
+
+        // Écriture interrompue : le dernier enregistrement est incomplet
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 5);
+        }
+        SearchCacheFile truncated = SearchCacheFile.open(file, 42L, 10);
+        assertEquals(1, truncated.size());
+        ShortestPathTree read = truncated.get(one, false);
+        assertEquals(7.5, read.distance(3));
+        assertArrayEquals(new int[]{5, 3, 1}, read.branch(5));
+        assertNull(truncated.get(one, true));
+        truncated.append(tree(two, false));
+        truncated.flush();
+        assertEquals(2, SearchCacheFile.open(file, 42L, 10).size(), "L'ajout doit écraser l'enregistrement incomplet");
+        assertEquals(9.0, SearchCacheFile.open(file, 42L, 10).get(two, false).distance(5));
+
+        SearchCacheFile other = SearchCacheFile.open(file, 43L, 10);
+        assertEquals(0, other.size(), "Un fichier d'un autre graphe ne doit pas être relu");
+        other.append(tree(two, false));
+        other.flush();
+        assertEquals(1, SearchCacheFile.open(file, 43L, 10).size());
+        assertEquals(0, SearchCacheFile.open(file, 42L, 10).size());
+    }
+
+    @Test
+    void testCompletedTreeReplacesOlderRecord(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("map" + SearchCacheFile.EXTENSION);
+        SearchCacheFile cacheFile = SearchCacheFile.open(file, 42L, 1000);
+        Intersection source = new Intersection(0, 0, 700, 700);
+        cacheFile.append(tree(source, false));
+        cacheFile.flush();
+        ShortestPathTree completed = new ShortestPathTree(source, false, new int[]{3, 5, 900},
+                new int[]{700, 3, 700}, new double[]{7.5, 9.0, 1.25});
+        cacheFile.append(completed);
+        cacheFile.append(tree(source, false));
+        assertEquals(1, cacheFile.size());
+        assertEquals(3, cacheFile.get(source, false).getNbNodes(), "L'arbre complété doit remplacer l'ancien");
+        cacheFile.flush();
+        assertEquals(1, cacheFile.size());
+        assertEquals(3, cacheFile.get(source, false).getNbNodes());
+
+        ShortestPathTree read = SearchCacheFile.open(file, 42L, 1000).get(source, false);
+        assertEquals(3, read.getNbNodes());
+        assertEquals(1.25, read.distance(900));
+        assertArrayEquals(new int[]{5, 3, 700}, read.branch(5));
+    }
+
+    @Test
+    void testCapacityCompactsFile(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("map" + SearchCacheFile.EXTENSION);
+        // Un arbre de deux intersections occupe 30 octets
+        SearchCacheFile cacheFile = SearchCacheFile.open(file, 42L, 10, 200);
+        for (int source = 0; source < 7; source++) {
+            cacheFile.append(tree(new Intersection(0, 0, source, source), false));
+            cacheFile.flush();
+            assertTrue(Files.size(file) <= 200, "Le fichier ne doit pas dépasser sa capacité");
+        }
+        assertEquals(3, cacheFile.size(), "Le compactage garde les arbres les plus récents jusqu'à la moitié de la capacité");
+        assertNull(cacheFile.get(new Intersection(0, 0, 0, 0), false));
+        assertNotNull(cacheFile.get(new Intersection(0, 0, 6, 6), false));
+        assertNotNull(cacheFile.get(new Intersection(0, 0, 4, 4), false));
+
+        SearchCacheFile smaller = SearchCacheFile.open(file, 42L, 10, 100);
+        assertEquals(1, smaller.size(), "Un fichier plus grand que la capacité doit être compacté à l'ouverture");
+        assertNotNull(smaller.get(new Intersection(0, 0, 6, 6), false));
+        assertTrue(Files.size(file) <= 100);
+    }
+
+    @Test
+    void testBatchWrittenAtOnce(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("map" + SearchCacheFile.EXTENSION);
+        // Un arbre de deux intersections occupe 30 octets : le lot de 5 dépasse la capacité
+        SearchCacheFile cacheFile = SearchCacheFile.open(file, 42L, 10, 140);
+        for (int source = 0; source < 5; source++) {
+            cacheFile.append(tree(new Intersection(0, 0, source, source), false));
+        }
+        cacheFile.flush();
+        assertEquals(SearchCacheFile.HEADER_SIZE + 4 * 30, Files.size(file), "Les arbres qui ne tiennent pas sont abandonnés");
+        assertEquals(4, cacheFile.size());
+        assertNull(cacheFile.get(new Intersection(0, 0, 4, 4), false));
+        assertEquals(9.0, cacheFile.get(new Intersection(0, 0, 3, 3), false).distance(5));
+        assertEquals(4, SearchCacheFile.open(file, 42L, 10, 140).size());
+    }
+
+    @Test
+    void testUnmappableFileIsReplaced(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("map" + SearchCacheFile.EXTENSION);
+        SearchCacheFile first = SearchCacheFile.open(file, 42L, 10);
+        first.append(tree(new Intersection(0, 0, 1, 1), false));
+        first.flush();
+        // Au-delà de 2 Go, le fichier ne peut pas être projeté d'un bloc
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[1]), Integer.MAX_VALUE + 1L);
+        }
+        SearchCacheFile stale = SearchCacheFile.open(file, 42L, 10);
+        assertEquals(0, stale.size(), "Un fichier qui ne peut pas être projeté doit être ignoré");
+        stale.append(tree(new Intersection(0, 0, 2, 2), false));
+        stale.flush();
+        assertTrue(Files.size(file) < 100, "Le fichier doit être remplacé au premier ajout");
+        assertEquals(1, SearchCacheFile.open(file, 42L, 10).size());
+    }
+
+    @Test
+    void testTreeWithInvalidParentsIsIgnored(@TempDir Path folder) throws Exception {
+        Path file = folder.resolve("map" + SearchCacheFile.EXTENSION);
+        SearchCacheFile cacheFile = SearchCacheFile.open(file, 42L, 10);
+        Intersection outside = new Intersection(0, 0, 1, 1);
+        Intersection cycle = new Intersection(0, 0, 2, 2);
+        cacheFile.append(new ShortestPathTree(outside, false, new int[]{3, 5}, new int[]{1, 7}, new double[]{7.5, 9.0}));
+        cacheFile.append(new ShortestPathTree(cycle, false, new int[]{3, 5}, new int[]{5, 3}, new double[]{7.5, 9.0}));
+        cacheFile.append(tree(new Intersection(0, 0, 4, 4), false));
+        cacheFile.flush();
+
+        SearchCacheFile reopened = SearchCacheFile.open(file, 42L, 10);
+        assertNull(reopened.get(outside, false), "Un parent hors de l'arbre doit rendre l'arbre illisible");
+        assertNull(reopened.get(cycle, false), "Des parents qui bouclent doivent rendre l'arbre illisible");
+        assertArrayEquals(new int[]{5, 3, 4}, reopened.get(new Intersection(0, 0, 4, 4), false).branch(5));
+    }
+
+    private static ShortestPathTree tree(Intersection source, boolean reverse) {
+        int root = source.getPos();
+        return new ShortestPathTree(source, reverse, new int[]{3, 5}, new int[]{root, 3}, new double[]{7.5, 9.0});
+    }
+}
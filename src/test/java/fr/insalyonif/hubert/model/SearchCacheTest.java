@@ -0,0 +1,123 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.insalyonif.hubert.model.TestMaps.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        // Trois arbres de 160 octets pour une capacité de 350 octets
+        SearchCache cache = new SearchCache(350);
+        Intersection one = new Intersection(0, 0, 1, 1);
+        Intersection two = new Intersection(0, 0, 2, 2);
+        cache.put(tree(one, false, 9));
+        cache.put(tree(one, true, 9));
+        assertNotNull(cache.get(one, false, List.of()));
+        cache.put(tree(two, false, 9));
+
+        assertEquals(2, cache.size());
+        assertEquals(320, cache.getWeight());
+        assertNotNull(cache.get(one, false, List.of()), "L'arbre consulté en dernier doit rester");
+        assertNull(cache.get(one, true, List.of()), "L'arbre le moins récemment utilisé doit être retiré");
+        assertNotNull(cache.get(two, false, List.of()));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(0.75, cache.getHitRate(), 1e-9);
+
+        Intersection three = new Intersection(0, 0, 3, 3);
+        assertNotNull(cache.get(two, false, List.of(new Intersection(0, 0, 200, 200))));
+        assertEquals(2, cache.getMisses(), "Un arbre qui ne contient pas tous les points ne compte pas comme trouvé");
+        cache.put(tree(three, false, 30));
+        assertNull(cache.get(three, false, List.of()), "Un arbre plus grand que la capacité ne doit pas être gardé");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertThrows(IllegalArgumentException.class, () -> new SearchCache(-1));
+    }
+
+    @Test
+    void testToursShareSearches() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML(MEDIUM_MAP);
+        CityMap bounded = new CityMap();
+        bounded.loadFromXML(MEDIUM_MAP);
+        bounded.setSearchCache(new SearchCache(0));
+        int n = cityMap.getIntersections().size();
+        List<Integer> positions = new ArrayList<>();
+        for (int pos = 40; positions.size() < 6; pos += 97) {
+            if (cityMap.isReachableFromWareHouse(cityMap.findIntersectionByPos(pos))) {
+                positions.add(pos);
+            }
+        }
+
+        // Deux livreurs passent par le même point : ses recherches ne sont faites qu'une fois
+        DeliveryTour first = newTour(cityMap, n);
+        DeliveryTour second = newTour(cityMap, n);
+        List<Integer> secondPositions = List.of(positions.get(3), positions.get(5));
+        new ParallelMatrixBuilder().addRequests(first, requests(cityMap, positions.subList(0, 5)), cityMap);
+        SearchCache cache = cityMap.getSearchCache();
+        assertEquals(0, cache.getHits());
+        assertEquals(10, cache.getMisses());
+        assertEquals(10, cache.size());
+
+        // Les tournées sont abandonnées : seul le cache garde les arbres
+        cityMap.getShortestPathTrees().clear();
+        new ParallelMatrixBuilder().addRequests(second, requests(cityMap, secondPositions), cityMap);
+        assertEquals(2, cache.getHits(), "Les recherches du point déjà servi doivent être retrouvées");
+        assertEquals(12, cache.getMisses());
+        assertSameChemins(second, secondPositions, bounded, n);
+
+        // Dans l'autre ordre, l'arbre gardé du premier point ne contient pas le second : seul
+        // celui-ci est cherché, et l'arbre complété garde les points de la première tournée
+        cityMap.getShortestPathTrees().clear();
+        DeliveryTour third = newTour(cityMap, n);
+        List<Integer> thirdPositions = List.of(positions.get(5), positions.get(3));
+        new ParallelMatrixBuilder().addRequests(third, requests(cityMap, thirdPositions), cityMap);
+        assertEquals(4, cache.getHits());
+        assertEquals(14, cache.getMisses());
+        assertSameChemins(third, thirdPositions, bounded, n);
+        Intersection point = cityMap.findIntersectionByPos(positions.get(3));
+        ShortestPathTree completed = cache.get(point, false, List.of(cityMap.findIntersectionByPos(positions.get(0)),
+                cityMap.findIntersectionByPos(positions.get(5))));
+        assertTrue(completed.contains(positions.get(0)) && completed.contains(positions.get(5)));
+        assertEquals(12, cache.size());
+
+        cityMap.updateSegmentLengths();
+        assertEquals(0, cache.size(), "Les recherches ne valent plus après une modification des longueurs");
+    }
+
+    private static void assertSameChemins(DeliveryTour tour, List<Integer> positions, CityMap bounded, int n) {
+        bounded.getShortestPathTrees().clear();
+        DeliveryTour expected = newTour(bounded, n);
+        new ParallelMatrixBuilder().addRequests(expected, requests(bounded, positions), bounded);
+        assertEquals(0, bounded.getSearchCache().size());
+        List<Chemin> chemins = tour.getCheminDij();
+        List<Chemin> reference = expected.getCheminDij();
+        assertEquals(reference.size(), chemins.size());
+        for (int i = 0; i < reference.size(); i++) {
+            assertEquals(reference.get(i).getCout(), chemins.get(i).getCout(), 1e-9, "Coût différent pour le chemin " + i);
+            assertArrayEquals(reference.get(i).toNodes(), chemins.get(i).toNodes());
+        }
+    }
+
+    private static ShortestPathTree tree(Intersection source, boolean reverse, int nbNodes) {
+        int[] nodes = new int[nbNodes];
+        int[] parents = new int[nbNodes];
+        double[] distances = new double[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            nodes[i] = 100 + i;
+            parents[i] = source.getPos();
+            distances[i] = i + 1;
+        }
+        return new ShortestPathTree(source, reverse, nodes, parents, distances);
+    }
+}
@@ -0,0 +1,59 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchWorkspaceTest {
+
+    @Test
+    void testResetForgetsPreviousSearch() {
+        SearchWorkspace workspace = new SearchWorkspace(4);
+        workspace.reset();
+        workspace.set(2, 7.5, 1);
+        workspace.markPending(2);
+        assertTrue(workspace.isReached(2));
+        assertTrue(workspace.settle(2), "La seule cible attendue doit terminer la recherche");
+        assertEquals(1, workspace.getNbSettled());
+
+        workspace.reset();
+        assertFalse(workspace.isReached(2), "Une nouvelle génération ne doit rien voir de la précédente");
+        assertFalse(workspace.isSettled(2));
+        assertEquals(SearchWorkspace.INFINITY, workspace.distance(2));
+        assertEquals(-1, workspace.pi(2));
+        assertEquals(0, workspace.getNbSettled());
+        assertFalse(workspace.settle(2), "La cible de la génération précédente ne doit plus être attendue");
+    }
+
+    @Test
+    void testCopyToFillsUnreachedPositions() {
+        SearchWorkspace workspace = new SearchWorkspace(3);
+        workspace.reset();
+        workspace.set(0, 0.0, -1);
+        workspace.set(1, 4.0, 0);
+        double[] distance = new double[3];
+        int[] pi = new int[3];
+        workspace.copyTo(distance, pi);
+        assertArrayEquals(new double[]{0.0, 4.0, SearchWorkspace.INFINITY}, distance);
+        assertArrayEquals(new int[]{-1, 0, -1}, pi);
+    }
+
+    @Test
+    void testBorrowReusesReturnedWorkspace() {
+        SearchWorkspace first;
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(10)) {
+            first = workspace;
+            workspace.set(3, 1.0, 2);
+        }
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(8)) {
+            assertSame(first, workspace, "L'espace rendu doit être prêté à nouveau");
+            assertFalse(workspace.isReached(3), "L'espace prêté doit être vide");
+            try (SearchWorkspace nested = SearchWorkspace.borrow(8)) {
+                assertNotSame(workspace, nested, "Un espace déjà prêté ne doit pas être partagé");
+            }
+        }
+        try (SearchWorkspace workspace = SearchWorkspace.borrow(20)) {
+            assertTrue(workspace.capacity() >= 20, "Un espace trop petit ne doit pas être prêté");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortestPathTreeStoreTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+
+    private CityMap cityMap;
+    private int n;
+    private List<Intersection> points;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cityMap = new CityMap();
+        cityMap.loadFromXML(MEDIUM_MAP);
+        n = cityMap.getIntersections().size();
+        points = new ArrayList<>();
+        for (int pos = 40; points.size() < 6; pos += 97) {
+            Intersection point = cityMap.findIntersectionByPos(pos);
+            if (cityMap.isReachableFromWareHouse(point)) {
+                points.add(point);
+            }
+        }
+    }
+
+    @Test
+    void testCheminsShareTheTreeOfTheirSearch() {
+        Dijkstra dijkstra = new Dijkstra(n, cityMap);
+        DijkstraInverse inverse = new DijkstraInverse(n, cityMap);
+        for (Intersection point : points) {
+            assertTrue(dijkstra.runDijkstra(point, n));
+            assertTrue(inverse.runDijkstra(point, n));
+        }
+        ShortestPathTreeStore store = cityMap.getShortestPathTrees();
+        assertEquals(2 * points.size(), store.size());
+
+        BidirectionalDijkstra reference = new BidirectionalDijkstra(cityMap);
+        List<Chemin> chemins = new ArrayList<>(dijkstra.getChemins());
+        chemins.addAll(inverse.getChemins());
+        for (Chemin chemin : chemins) {
+            ShortestPathTree tree = chemin.getTree();
+            assertNotNull(tree, "Un chemin de Dijkstra doit référencer l'arbre de sa recherche");
+            Intersection source = tree.isReverse() ? chemin.getFin() : chemin.getDebut();
+            assertSame(source, tree.getSource());
+            assertEquals(1, store.getRefCount(source, tree.isReverse()));
+
+            int[] nodes = chemin.toNodes();
+            assertEquals(chemin.getDebut().getPos(), nodes[0]);
+            assertEquals(chemin.getFin().getPos(), nodes[nodes.length - 1]);
+            assertEquals(reference.findPath(chemin.getDebut(), chemin.getFin()).getCout(), chemin.getCout(), 1e-6);
+            assertArrayEquals(nodes, Chemin.fromNodes(chemin.getDebut(), chemin.getFin(), nodes, n, 0).toNodes());
+        }
+        // Tous les chemins d'une recherche partagent le même arbre
+        Chemin first = dijkstra.getChemins().get(dijkstra.getChemins().size() - 1);
+        Chemin second = dijkstra.getChemins().get(dijkstra.getChemins().size() - 2);
+        assertSame(first.getTree(), second.getTree());
+    }
+
+    @Test
+    void testTreeIsReusedAndReleased() {
+        Intersection last = points.get(points.size() - 1);
+        Dijkstra first = new Dijkstra(n, cityMap);
+        Dijkstra second = new Dijkstra(n, cityMap);
+        for (Intersection point : points) {
+            assertTrue(first.runDijkstra(point, n));
+        }
+        for (Intersection point : points.subList(2, points.size())) {
+            assertTrue(second.runDijkstra(point, n));
+        }
+        ShortestPathTreeStore store = cityMap.getShortestPathTrees();
+        assertEquals(2, store.getRefCount(last, false), "Le dernier point couvre les points de la seconde tournée");
+        assertSame(first.getChemins().get(first.getChemins().size() - 1).getTree(),
+                second.getChemins().get(second.getChemins().size() - 1).getTree());
+
+        first.releaseTree(last);
+        assertEquals(1, store.getRefCount(last, false));
+        second.releaseTree(last);
+        assertEquals(0, store.getRefCount(last, false));
+        assertEquals(points.size() - 1, store.size(), "L'arbre ne doit plus être dans le magasin");
+        // Les chemins gardent leur arbre après sa libération
+        assertTrue(second.getChemins().get(second.getChemins().size() - 1).getNbNodes() > 1);
+
+        cityMap.updateSegmentLengths();
+        assertEquals(0, store.size(), "Les arbres ne valent plus après une modification des longueurs");
+    }
+
+    @Test
+    void testPointToPointSearchesShareTrees() throws Exception {
+        CityMap withHierarchy = new CityMap();
+        withHierarchy.loadFromXML(MEDIUM_MAP);
+        withHierarchy.setContractionHierarchy(ContractionHierarchyBuilder.build(withHierarchy.getCompressedGraph()));
+        Dijkstra dijkstra = new Dijkstra(n, withHierarchy);
+        DijkstraInverse inverse = new DijkstraInverse(n, withHierarchy);
+        Dijkstra expectedDijkstra = new Dijkstra(n, cityMap);
+        DijkstraInverse expectedInverse = new DijkstraInverse(n, cityMap);
+        for (Intersection point : points) {
+            Intersection same = withHierarchy.findIntersectionByPos(point.getPos());
+            assertTrue(dijkstra.runDijkstra(same, n));
+            assertTrue(inverse.runDijkstra(same, n));
+            assertTrue(expectedDijkstra.runDijkstra(point, n));
+            assertTrue(expectedInverse.runDijkstra(point, n));
+        }
+        ShortestPathTreeStore store = withHierarchy.getShortestPathTrees();
+        assertEquals(2 * points.size(), store.size(), "Les requêtes point à point doivent ranger l'arbre de leur source");
+
+        List<Chemin> chemins = new ArrayList<>(dijkstra.getChemins());
+        chemins.addAll(inverse.getChemins());
+        List<Chemin> expected = new ArrayList<>(expectedDijkstra.getChemins());
+        expected.addAll(expectedInverse.getChemins());
+        for (int i = 0; i < chemins.size(); i++) {
+            Chemin chemin = chemins.get(i);
+            assertNotNull(chemin.getTree(), "Un chemin point à point doit référencer l'arbre de sa source");
+            assertEquals(expected.get(i).getCout(), chemin.getCout(), 1e-6, "Coût différent pour le chemin " + i);
+            int[] nodes = chemin.toNodes();
+            assertEquals(chemin.getDebut().getPos(), nodes[0]);
+            assertEquals(chemin.getFin().getPos(), nodes[nodes.length - 1]);
+        }
+
+        Intersection last = withHierarchy.findIntersectionByPos(points.get(points.size() - 1).getPos());
+        dijkstra.releaseTree(last);
+        inverse.releaseTree(last);
+        assertEquals(2 * points.size() - 2, store.size(), "Les arbres du point retiré doivent quitter le magasin");
+    }
+}
@@ -0,0 +1,77 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StronglyConnectedComponentsTest {
+
+    @Test
+    void testCycleAndOneWayTail() {
+        // 0 <-> 1 -> 2 <-> 3 : deux composantes, {0, 1} et {2, 3}
+        List<Intersection> intersections = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            intersections.add(new Intersection(45.0 + i, 4.0, 100 + i, i));
+        }
+        link(intersections.get(0), intersections.get(1));
+        link(intersections.get(1), intersections.get(0));
+        link(intersections.get(1), intersections.get(2));
+        link(intersections.get(2), intersections.get(3));
+        link(intersections.get(3), intersections.get(2));
+        CityMap cityMap = new CityMap();
+        cityMap.setIntersections(intersections);
+        cityMap.setWareHouseLocation(intersections.get(0));
+
+        StronglyConnectedComponents components = cityMap.getStronglyConnectedComponents();
+        assertEquals(2, components.getNbComponents(), "Le nombre de composantes est incorrect");
+        assertTrue(components.sameComponent(0, 1));
+        assertTrue(components.sameComponent(2, 3));
+        assertFalse(components.sameComponent(1, 2), "Une rue à sens unique ne relie pas deux composantes");
+        assertEquals(2, components.getComponentSize(components.getComponent(3)));
+        assertTrue(cityMap.isReachableFromWareHouse(intersections.get(1)));
+        assertFalse(cityMap.isReachableFromWareHouse(intersections.get(2)), "L'entrepôt ne peut pas revenir de 2");
+    }
+
+    @Test
+    void testMatchesForwardAndBackwardSearchOnLargeMap() throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML("src/main/resources/fr/insalyonif/hubert/fichiersXML2022/largeMap.xml");
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        int wareHouse = cityMap.getWareHouseLocation().getPos();
+        boolean[] forward = reachable(graph.forward(), graph.getNbVertices(), wareHouse);
+        boolean[] backward = reachable(graph.reverse(), graph.getNbVertices(), wareHouse);
+
+        StronglyConnectedComponents components = cityMap.getStronglyConnectedComponents();
+        for (int v = 0; v < graph.getNbVertices(); v++) {
+            assertEquals(forward[v] && backward[v], components.sameComponent(wareHouse, v),
+                    "Composante incorrecte pour la position " + v);
+        }
+    }
+
+    private static void link(Intersection origin, Intersection destination) {
+        RoadSegment segment = new RoadSegment(origin, destination, -1, 10);
+        origin.getSuccessors().add(segment);
+        destination.getPredecessors().add(segment);
+    }
+
+    private static boolean[] reachable(CompressedGraph.Adjacency adjacency, int n, int start) {
+        boolean[] seen = new boolean[n];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        seen[start] = true;
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int e = adjacency.begin(u); e < adjacency.end(u); e++) {
+                if (!seen[adjacency.target(e)]) {
+                    seen[adjacency.target(e)] = true;
+                    queue.add(adjacency.target(e));
+                }
+            }
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,103 @@
+package fr.insalyonif.hubert.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Outils communs aux tests qui chargent une carte : chargement des cartes fournies, tournées,
+ * demandes, longueurs de chemins et comparaison de deux cartes chargées.
+ */
+final class TestMaps {
+    static final String MAP_FOLDER = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/";
+
+    private TestMaps() {
+    }
+
+    /**
+     * Charge une des cartes fournies avec l'application, par son nom.
+     *
+     * @param map le nom de la carte, sans extension (smallMap, mediumMap, largeMap).
+     * @return la carte chargée depuis son XML.
+     */
+    static CityMap loadMap(String map) throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.loadFromXML(MAP_FOLDER + map + ".xml");
+        return cityMap;
+    }
+
+    /**
+     * @return une tournée vide dont les recherches portent sur la carte.
+     */
+    static DeliveryTour newTour(CityMap cityMap, int n) {
+        DeliveryTour tour = new DeliveryTour();
+        tour.setDijkstra(new Dijkstra(n, cityMap));
+        tour.setDijkstraInverse(new DijkstraInverse(n, cityMap));
+        return tour;
+    }
+
+    /**
+     * @return une demande de livraison entre 8 h et 9 h pour chaque position.
+     */
+    static List<DeliveryRequest> requests(CityMap cityMap, List<Integer> positions) {
+        List<DeliveryRequest> requests = new ArrayList<>();
+        for (int pos : positions) {
+            requests.add(new DeliveryRequest(cityMap.findIntersectionByPos(pos), new TimeWindow(8, 9)));
+        }
+        return requests;
+    }
+
+    /**
+     * Recalcule la longueur d'un chemin le long des arcs du graphe, en prenant le plus court
+     * arc entre deux intersections successives.
+     *
+     * @return la longueur du chemin de {@code start} à {@code goal} décrit par les prédécesseurs.
+     */
+    static double pathLength(CompressedGraph graph, int[] pi, int start, int goal) {
+        double length = 0;
+        for (int v = goal; v != start; v = pi[v]) {
+            int u = pi[v];
+            double best = Double.MAX_VALUE;
+            for (int e = graph.forward().begin(u); e < graph.forward().end(u); e++) {
+                if (graph.forward().target(e) == v) {
+                    best = Math.min(best, graph.forward().weight(e));
+                }
+            }
+            length += best;
+        }
+        return length;
+    }
+
+    /**
+     * Vérifie que deux cartes ont les mêmes intersections, aux mêmes positions, et les mêmes
+     * segments dans le même ordre.
+     */
+    static void assertSameMap(CityMap expected, CityMap actual) {
+        List<Intersection> a = expected.getIntersections();
+        List<Intersection> b = actual.getIntersections();
+        assertEquals(a.size(), b.size(), "Nombre d'intersections différent");
+        assertEquals(expected.getWareHouseLocation().getId(), actual.getWareHouseLocation().getId(), "Entrepôt différent");
+        assertEquals(expected.getWareHouseLocation().getPos(), actual.getWareHouseLocation().getPos(), "Entrepôt différent");
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.get(i).getId(), b.get(i).getId(), "Numérotation des positions différente");
+            assertEquals(a.get(i).getPos(), b.get(i).getPos());
+            assertEquals(a.get(i).getLatitude(), b.get(i).getLatitude());
+            assertEquals(a.get(i).getLongitude(), b.get(i).getLongitude());
+            assertSameSegments(expected, actual, a.get(i).getSuccessors(), b.get(i).getSuccessors());
+            assertSameSegments(expected, actual, a.get(i).getPredecessors(), b.get(i).getPredecessors());
+        }
+    }
+
+    private static void assertSameSegments(CityMap expectedMap, CityMap actualMap, List<RoadSegment> expected,
+                                           List<RoadSegment> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int j = 0; j < expected.size(); j++) {
+            assertEquals(expected.get(j).getOrigin().getId(), actual.get(j).getOrigin().getId());
+            assertEquals(expected.get(j).getDestination().getId(), actual.get(j).getDestination().getId());
+            assertEquals(expectedMap.getStreetName(expected.get(j).getNameId()),
+                    actualMap.getStreetName(actual.get(j).getNameId()));
+            assertEquals(expected.get(j).getLength(), actual.get(j).getLength());
+        }
+    }
+}
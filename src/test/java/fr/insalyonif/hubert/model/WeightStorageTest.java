@@ -0,0 +1,80 @@
+package fr.insalyonif.hubert.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightStorageTest {
+
+    private static final String MEDIUM_MAP = "src/main/resources/fr/insalyonif/hubert/fichiersXML2022/mediumMap.xml";
+
+    @Test
+    void testCompactModesShrinkSnapshot() throws Exception {
+        CompressedGraph doubles = load(WeightStorage.DOUBLE).getCompressedGraph();
+        long doubleSnapshot = doubles.getFootprint();
+        long floatSnapshot = load(WeightStorage.FLOAT).getCompressedGraph().getFootprint();
+        long decimetreSnapshot = load(WeightStorage.DECIMETRE).getCompressedGraph().getFootprint();
+        assertEquals(2L * doubles.getNbEdges() * Float.BYTES, doubleSnapshot - floatSnapshot,
+                "Seules les longueurs doivent passer de 8 à 4 octets");
+        assertEquals(floatSnapshot, decimetreSnapshot);
+    }
+
+    @Test
+    void testWeights() throws Exception {
+        CityMap cityMap = load(WeightStorage.FLOAT);
+        CompressedGraph graph = cityMap.getCompressedGraph();
+        assertEquals(WeightStorage.FLOAT, graph.getWeightStorage());
+        CompressedGraph doubles = load(WeightStorage.DOUBLE).getCompressedGraph();
+        for (int e = 0; e < graph.getNbEdges(); e++) {
+            assertEquals((float) doubles.forward().weight(e), graph.forward().weight(e));
+        }
+        assertSame(graph, graph.withWeightStorage(WeightStorage.FLOAT));
+        assertEquals(4.87572, cityMap.getWareHouseLocation().getLongitude(), "Les intersections gardent leurs coordonnées exactes");
+
+        CompressedGraph decimetres = load(WeightStorage.DECIMETRE).getCompressedGraph();
+        for (int e = 0; e < decimetres.getNbEdges(); e++) {
+            assertEquals(graph.forward().weight(e), decimetres.forward().weight(e), 0.05 + 1e-9);
+        }
+    }
+
+    @Test
+    void testDistancesWithinTolerance() throws Exception {
+        CityMap reference = load(WeightStorage.DOUBLE);
+        CityMap floats = load(WeightStorage.FLOAT);
+        CityMap decimetres = load(WeightStorage.DECIMETRE);
+        int n = reference.getIntersections().size();
+        for (int s = 0; s < n; s += 97) {
+            Dijkstra expected = new Dijkstra(n, reference);
+            expected.setTargetBounded(false);
+            expected.runDijkstra(reference.findIntersectionByPos(s), n);
+            Dijkstra actualFloat = new Dijkstra(n, floats);
+            actualFloat.setTargetBounded(false);
+            actualFloat.runDijkstra(floats.findIntersectionByPos(s), n);
+            Dijkstra actualDecimetre = new Dijkstra(n, decimetres);
+            actualDecimetre.setTargetBounded(false);
+            actualDecimetre.runDijkstra(decimetres.findIntersectionByPos(s), n);
+            for (int v = 0; v < n; v++) {
+                double cost = expected.getDistance()[v];
+                assertEquals(cost, actualFloat.getDistance()[v], cost * 0x1p-24 + 1e-9,
+                        "Distance float hors tolérance depuis " + s + " vers " + v);
+                assertEquals(cost, actualDecimetre.getDistance()[v], 0.05 * hops(expected.getPi(), v) + 1e-9,
+                        "Distance en décimètres hors tolérance depuis " + s + " vers " + v);
+            }
+        }
+    }
+
+    private static int hops(int[] pi, int v) {
+        int count = 0;
+        for (int u = v; pi[u] != -1; u = pi[u]) {
+            count++;
+        }
+        return count;
+    }
+
+    private static CityMap load(WeightStorage storage) throws Exception {
+        CityMap cityMap = new CityMap();
+        cityMap.setWeightStorage(storage);
+        cityMap.loadFromXML(MEDIUM_MAP);
+        return cityMap;
+    }
+}